@@ -42,7 +42,7 @@ import java.util.Set;
 
 import org.apache.commons.lang.SystemUtils;
 import org.apache.commons.lang.WordUtils;
-import org.apache.commons.math.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math.stat.descriptive.StatisticalSummary;
 import org.apache.log4j.Logger;
 import org.openimaj.citation.ReferenceListener;
 import org.openimaj.citation.annotation.Reference;
@@ -91,7 +91,7 @@ public class ExperimentContext {
 	private Class<?> exptClass;
 	private Experiment experimentDetails;
 	private Set<Reference> bibliography;
-	private Map<String, SummaryStatistics> timingInfo;
+	private Map<String, StatisticalSummary> timingInfo;
 	private Map<Variable, Field> independentVariables = new HashMap<Variable, Field>();
 	private Map<Variable, Field> dependentVariables = new HashMap<Variable, Field>();
 
@@ -176,7 +176,7 @@ public class ExperimentContext {
 	 * 
 	 * @return the timing information
 	 */
-	public Map<String, SummaryStatistics> getTimingInfo() {
+	public Map<String, StatisticalSummary> getTimingInfo() {
 		if (!isLocked)
 			this.timingInfo = TimeTracker.getTimes();
 
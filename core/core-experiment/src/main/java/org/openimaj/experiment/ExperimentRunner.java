@@ -33,7 +33,7 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.math.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math.stat.descriptive.StatisticalSummary;
 import org.openimaj.citation.ReferenceListener;
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.experiment.agent.ExperimentAgent;
@@ -96,7 +96,7 @@ public class ExperimentRunner {
 	private static class InternalRunner {
 		public static synchronized ExperimentContext runExperiment(RunnableExperiment experiment) {
 			Set<Reference> oldRefs = ReferenceListener.reset();
-			Map<String, SummaryStatistics> oldTimes = TimeTracker.reset();
+			Map<String, StatisticalSummary> oldTimes = TimeTracker.reset();
 
 			ExperimentContext context = new ExperimentContext(experiment);
 
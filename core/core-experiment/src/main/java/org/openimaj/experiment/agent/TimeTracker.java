@@ -32,21 +32,35 @@ package org.openimaj.experiment.agent;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.commons.math.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math.stat.descriptive.StatisticalSummary;
+import org.apache.commons.math.stat.descriptive.StatisticalSummaryValues;
 import org.openimaj.time.NanoTimer;
 import org.openimaj.time.Timer;
+import org.openimaj.util.metrics.Histogram;
+import org.openimaj.util.metrics.MetricRegistry;
 
 import com.bethecoder.ascii_table.ASCIITable;
 
 /**
  * A class for tracking various execution times and generating
  * statistics.
+ * <p>
+ * Times are recorded into lock-free {@link Histogram}s held in a
+ * {@link MetricRegistry}, so concurrent calls to instrumented methods
+ * don't serialise on the tracker, and percentiles of the times are
+ * available as well as their moments. {@link #reset()} atomically swaps
+ * in a new registry rather than locking out accumulation; the trade-off
+ * is that a time recorded concurrently with a reset may land in the old
+ * registry after its times have been read, and is then lost.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class TimeTracker {
-	private static Map<String, SummaryStatistics> times = new HashMap<String, SummaryStatistics>();
+	private static final AtomicReference<MetricRegistry> registry = new AtomicReference<MetricRegistry>(new MetricRegistry());
+	private static volatile Map<String, StatisticalSummary> restored = new ConcurrentHashMap<String, StatisticalSummary>();
 	
 	/**
 	 * Accumulate the given duration into the statistics with the given identifier
@@ -54,7 +68,7 @@ public class TimeTracker {
 	 * @param identifier the identifier
 	 * @param timer the timer to retrieve the dureation from
 	 */
-	public static synchronized void accumulate(String identifier, NanoTimer timer) {
+	public static void accumulate(String identifier, NanoTimer timer) {
 		accumulate(identifier, timer.duration());
 	}
 	
@@ -64,7 +78,7 @@ public class TimeTracker {
 	 * @param identifier the identifier
 	 * @param timer the timer to retrieve the dureation from
 	 */
-	public static synchronized void accumulate(String identifier, Timer timer) {
+	public static void accumulate(String identifier, Timer timer) {
 		accumulate(identifier, (long)(timer.duration() * 1e6));
 	}
 	
@@ -74,33 +88,73 @@ public class TimeTracker {
 	 * @param identifier the identifier
 	 * @param nanoTime the duration to accumulate in nano seconds
 	 */
-	public static synchronized void accumulate(String identifier, long nanoTime) {
-		SummaryStatistics t = times.get(identifier);
+	public static void accumulate(String identifier, long nanoTime) {
+		registry.get().histogram(identifier).record(nanoTime);
+	}
+	
+	/**
+	 * Get the registry holding the histograms of the times currently
+	 * being accumulated. The registry can be exported with 
+	 * {@link MetricRegistry#writeCSV(java.io.Writer)}, 
+	 * {@link MetricRegistry#writeJSON(java.io.Writer)} or
+	 * {@link org.openimaj.util.metrics.MetricRegistryMBean}. Note that 
+	 * {@link #reset()} replaces the registry.
+	 * 
+	 * @return the registry
+	 */
+	public static MetricRegistry getRegistry() {
+		return registry.get();
+	}
+	
+	/**
+	 * Get snapshots of the histograms of all the times currently
+	 * being accumulated, from which percentiles can be computed. Any
+	 * other metrics that have been added to the registry are ignored.
+	 * 
+	 * @return the histogram snapshots
+	 */
+	public static Map<String, Histogram.Snapshot> getHistograms() {
+		return getHistograms(registry.get());
+	}
+	
+	private static Map<String, Histogram.Snapshot> getHistograms(MetricRegistry registry) {
+		HashMap<String, Histogram.Snapshot> ret = new HashMap<String, Histogram.Snapshot>();
 		
-		if (t == null) times.put(identifier, t = new SummaryStatistics());
+		for (Entry<String, Histogram> e : registry.getMetrics(Histogram.class).entrySet()) {
+			ret.put(e.getKey(), e.getValue().snapshot());
+		}
 		
-		t.addValue(nanoTime);
+		return ret;
 	}
 	
 	/**
-	 * Reset all the previously accumulated times, returning them.
+	 * Reset all the previously accumulated times, returning them. Times
+	 * accumulated concurrently with the reset may be lost.
 	 * @return the old times
 	 */
-	public static synchronized Map<String, SummaryStatistics> reset() {
-		Map<String, SummaryStatistics> oldTimes = times;
-		times = new HashMap<String, SummaryStatistics>();
-		return oldTimes;
+	public static Map<String, StatisticalSummary> reset() {
+		final Map<String, StatisticalSummary> oldRestored = restored;
+		restored = new ConcurrentHashMap<String, StatisticalSummary>();
+		final MetricRegistry old = registry.getAndSet(new MetricRegistry());
+		
+		return getTimes(old, oldRestored);
 	}
 	
 	/**
 	 * Get a copy of all the accumulated data
 	 * @return a copy of all the accumulated data
 	 */
-	public static synchronized Map<String, SummaryStatistics> getTimes() {
-		HashMap<String, SummaryStatistics> ret = new HashMap<String, SummaryStatistics>();
+	public static Map<String, StatisticalSummary> getTimes() {
+		return getTimes(registry.get(), restored);
+	}
+	
+	private static Map<String, StatisticalSummary> getTimes(MetricRegistry registry, Map<String, StatisticalSummary> restored) {
+		HashMap<String, StatisticalSummary> ret = new HashMap<String, StatisticalSummary>(restored);
 		
-		for (Entry<String, SummaryStatistics> e : times.entrySet()) {
-			ret.put(e.getKey(), e.getValue().copy());
+		for (Entry<String, Histogram.Snapshot> e : getHistograms(registry).entrySet()) {
+			Histogram.Snapshot s = e.getValue();
+			ret.put(e.getKey(), new StatisticalSummaryValues(s.getMean(), s.getVariance(), s.getCount(), 
+					s.getMax(), s.getMin(), s.getSum()));
 		}
 		
 		return ret;
@@ -112,10 +166,13 @@ public class TimeTracker {
 	 * 
 	 * @param timesToAdd the times to add
 	 */
-	public static void addMissing(Map<String, SummaryStatistics> timesToAdd) {
-		for (Entry<String, SummaryStatistics> e : timesToAdd.entrySet()) {
-			if (!times.containsKey(e.getValue()))
-				times.put(e.getKey(), e.getValue());
+	public static void addMissing(Map<String, StatisticalSummary> timesToAdd) {
+		final MetricRegistry registry = TimeTracker.registry.get();
+		final Map<String, StatisticalSummary> restored = TimeTracker.restored;
+		
+		for (Entry<String, StatisticalSummary> e : timesToAdd.entrySet()) {
+			if (registry.getMetric(e.getKey()) == null && !restored.containsKey(e.getKey()))
+				restored.put(e.getKey(), e.getValue());
 		}
 	}
 	
@@ -125,12 +182,12 @@ public class TimeTracker {
 	 * @param times the times
 	 * @return a string representation of the times
 	 */
-	public static String format(Map<String, SummaryStatistics> times) {
+	public static String format(Map<String, ? extends StatisticalSummary> times) {
 		String [] header = {"Timer Identifier", "Recorded Time"};
 		String [][] data = new String[times.size()][];
 		
 		int i = 0;
-		for (Entry<String, SummaryStatistics> e : times.entrySet()) {
+		for (Entry<String, ? extends StatisticalSummary> e : times.entrySet()) {
 			data[i++] = new String [] { e.getKey(), format(e.getValue()) };
 		}
 		
@@ -142,7 +199,7 @@ public class TimeTracker {
 	 * @param ss the stats defining the time
 	 * @return a string representing the time
 	 */
-	public static String format(SummaryStatistics ss) {
+	public static String format(StatisticalSummary ss) {
 		if (ss.getN() == 1) {
 			return formatTime(ss.getMean());
 		} 
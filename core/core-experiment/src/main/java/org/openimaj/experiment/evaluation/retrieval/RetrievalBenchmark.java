@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.retrieval;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.util.metrics.Histogram;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * A harness for measuring the speed and quality of {@link RetrievalEngine}s
+ * together. A fixed set of queries is replayed against an engine by a number
+ * of concurrent threads (after an optional untimed warm-up), and the latency
+ * of every query, the overall throughput and the recall@k of the results with
+ * respect to an exact baseline are recorded in a
+ * {@link RetrievalBenchmarkResult}.
+ * <p>
+ * Typically the baseline is computed once with an exact (brute-force) engine
+ * and {@link #benchmark(Map)} is then used to sweep over approximate engines
+ * built with different parameters (for example the number of trees or checks
+ * of a KD-tree ensemble); the speed/quality trade-off can then be compared
+ * with {@link RetrievalBenchmarkResult#formatTable(List)}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <DOCUMENT>
+ *            Type of documents
+ * @param <QUERY>
+ *            Type of query
+ */
+public class RetrievalBenchmark<DOCUMENT extends Identifiable, QUERY> {
+	private List<QUERY> queries;
+	private Map<QUERY, List<DOCUMENT>> baseline;
+	private int threads = 1;
+	private int warmup = 0;
+	private int repetitions = 1;
+	private int[] recallDepths = { 1, 10 };
+
+	/**
+	 * Construct a benchmark for the given queries, measuring recall against
+	 * the given baseline results.
+	 * 
+	 * @param queries
+	 *            the queries
+	 * @param baseline
+	 *            the exact results of each query; can be null, in which case
+	 *            recall is not measured
+	 */
+	public RetrievalBenchmark(Collection<QUERY> queries, Map<QUERY, List<DOCUMENT>> baseline) {
+		this.queries = new ArrayList<QUERY>(queries);
+		this.baseline = baseline;
+	}
+
+	/**
+	 * Construct a benchmark for the given queries, computing the baseline
+	 * results by searching the given exact engine with each query.
+	 * 
+	 * @param exact
+	 *            the exact engine
+	 * @param queries
+	 *            the queries
+	 */
+	public RetrievalBenchmark(RetrievalEngine<DOCUMENT, QUERY> exact, Collection<QUERY> queries) {
+		this.queries = new ArrayList<QUERY>(queries);
+		this.baseline = new HashMap<QUERY, List<DOCUMENT>>();
+
+		for (final QUERY q : this.queries)
+			baseline.put(q, exact.search(q));
+	}
+
+	/**
+	 * Set the number of threads that concurrently issue queries. Each thread
+	 * issues its next query as soon as its previous one returns.
+	 * 
+	 * @param threads
+	 *            the number of threads (default 1)
+	 * @return this
+	 */
+	public RetrievalBenchmark<DOCUMENT, QUERY> setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Set the number of untimed queries to perform before timing starts, to
+	 * allow JIT compilation and caches to warm up. The queries are taken from
+	 * the query set, cycling if necessary.
+	 * 
+	 * @param warmup
+	 *            the number of warm-up queries (default 0)
+	 * @return this
+	 */
+	public RetrievalBenchmark<DOCUMENT, QUERY> setWarmup(int warmup) {
+		this.warmup = warmup;
+		return this;
+	}
+
+	/**
+	 * Set the number of times the query set is replayed in the timed phase.
+	 * 
+	 * @param repetitions
+	 *            the number of repetitions (default 1)
+	 * @return this
+	 */
+	public RetrievalBenchmark<DOCUMENT, QUERY> setRepetitions(int repetitions) {
+		if (repetitions < 1)
+			throw new IllegalArgumentException("repetitions must be positive");
+		this.repetitions = repetitions;
+		return this;
+	}
+
+	/**
+	 * Set the depths at which recall is measured.
+	 * 
+	 * @param depths
+	 *            the depths (default 1 and 10)
+	 * @return this
+	 */
+	public RetrievalBenchmark<DOCUMENT, QUERY> setRecallDepths(int... depths) {
+		this.recallDepths = depths.clone();
+		return this;
+	}
+
+	/**
+	 * Benchmark each of the given engines in turn. The engines are run in the
+	 * iteration order of the map, so a {@link java.util.LinkedHashMap} can be
+	 * used to control the order of a parameter sweep.
+	 * 
+	 * @param engines
+	 *            the engines, keyed by a name describing their configuration
+	 * @return the results for each engine
+	 */
+	public List<RetrievalBenchmarkResult<DOCUMENT, QUERY>> benchmark(
+			Map<String, ? extends RetrievalEngine<DOCUMENT, QUERY>> engines)
+	{
+		final List<RetrievalBenchmarkResult<DOCUMENT, QUERY>> results = new ArrayList<RetrievalBenchmarkResult<DOCUMENT, QUERY>>();
+
+		for (final Entry<String, ? extends RetrievalEngine<DOCUMENT, QUERY>> e : engines.entrySet())
+			results.add(benchmark(e.getKey(), e.getValue()));
+
+		return results;
+	}
+
+	/**
+	 * Benchmark the given engine.
+	 * 
+	 * @param name
+	 *            a name describing the engine's configuration
+	 * @param engine
+	 *            the engine
+	 * @return the result
+	 */
+	public RetrievalBenchmarkResult<DOCUMENT, QUERY> benchmark(String name, final RetrievalEngine<DOCUMENT, QUERY> engine)
+	{
+		final ExecutorService pool = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+
+		try {
+			if (warmup > 0)
+				run(pool, engine, warmup, null, null);
+
+			final Histogram latency = new Histogram();
+			final Map<QUERY, List<DOCUMENT>> results = new ConcurrentHashMap<QUERY, List<DOCUMENT>>();
+			final long elapsed = run(pool, engine, queries.size() * repetitions, latency, results);
+
+			final RetrievalBenchmarkResult<DOCUMENT, QUERY> result = new RetrievalBenchmarkResult<DOCUMENT, QUERY>();
+			result.name = name;
+			result.threads = threads;
+			result.elapsedNanos = elapsed;
+			result.latency = latency.snapshot();
+			result.results = results;
+
+			if (baseline == null) {
+				result.recallDepths = new int[0];
+				result.recall = new double[0];
+			} else {
+				result.recallDepths = recallDepths.clone();
+				result.recall = new double[recallDepths.length];
+				for (int i = 0; i < recallDepths.length; i++)
+					result.recall[i] = meanRecall(results, recallDepths[i]);
+			}
+
+			return result;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Perform n queries (cycling through the query set) using all the threads
+	 * of the pool, returning the wall-clock time taken.
+	 */
+	private long run(ExecutorService pool, final RetrievalEngine<DOCUMENT, QUERY> engine, final int n,
+			final Histogram latency, final Map<QUERY, List<DOCUMENT>> results)
+	{
+		final AtomicInteger next = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+
+					int i;
+					while ((i = next.getAndIncrement()) < n) {
+						final QUERY query = queries.get(i % queries.size());
+
+						final long t0 = System.nanoTime();
+						final List<DOCUMENT> res = engine.search(query);
+						final long t1 = System.nanoTime();
+
+						if (latency != null)
+							latency.record(t1 - t0);
+						if (results != null)
+							results.put(query, res == null ? Collections.<DOCUMENT> emptyList() : res);
+					}
+					return null;
+				}
+			}));
+		}
+
+		final long t0 = System.nanoTime();
+		start.countDown();
+		try {
+			for (final Future<Void> f : futures)
+				f.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+
+		return System.nanoTime() - t0;
+	}
+
+	private double meanRecall(Map<QUERY, List<DOCUMENT>> results, int k) {
+		double total = 0;
+		int count = 0;
+
+		for (final QUERY q : queries) {
+			final List<DOCUMENT> exact = baseline.get(q);
+			if (exact == null || exact.isEmpty())
+				continue;
+
+			final Set<String> expected = new HashSet<String>();
+			for (final DOCUMENT d : exact.subList(0, Math.min(k, exact.size())))
+				expected.add(d.getID());
+
+			final List<DOCUMENT> actual = results.get(q);
+			int found = 0;
+			for (final DOCUMENT d : actual.subList(0, Math.min(k, actual.size())))
+				if (expected.contains(d.getID()))
+					found++;
+
+			total += (double) found / expected.size();
+			count++;
+		}
+
+		return count == 0 ? Double.NaN : total / count;
+	}
+}
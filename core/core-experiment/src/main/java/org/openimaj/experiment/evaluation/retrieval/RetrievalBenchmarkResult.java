@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.retrieval;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperPrint;
+
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.experiment.evaluation.AnalysisResult;
+import org.openimaj.util.metrics.Histogram;
+
+/**
+ * {@link AnalysisResult} produced by a {@link RetrievalBenchmark}, combining
+ * the speed of a {@link RetrievalEngine} (throughput and the distribution of
+ * per-query latencies) with its quality (mean recall@k against an exact
+ * baseline).
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <DOCUMENT>
+ *            Type of documents
+ * @param <QUERY>
+ *            Type of query
+ */
+public class RetrievalBenchmarkResult<DOCUMENT extends Identifiable, QUERY> implements AnalysisResult {
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+
+	String name;
+	int threads;
+	long elapsedNanos;
+	Histogram.Snapshot latency;
+	int[] recallDepths;
+	double[] recall;
+	Map<QUERY, List<DOCUMENT>> results;
+
+	/**
+	 * @return the name of the benchmarked configuration
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of threads issuing queries
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the number of timed queries
+	 */
+	public long getNumQueries() {
+		return latency.getCount();
+	}
+
+	/**
+	 * @return the wall-clock time taken to perform all the timed queries in
+	 *         nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the throughput in queries per second
+	 */
+	public double getQueriesPerSecond() {
+		return latency.getCount() / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * @return the distribution of per-query latencies in nanoseconds
+	 */
+	public Histogram.Snapshot getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the depths at which recall was measured; empty if there was no
+	 *         baseline
+	 */
+	public int[] getRecallDepths() {
+		return recallDepths;
+	}
+
+	/**
+	 * Get the mean recall@k over all queries for the given depth, where
+	 * recall@k is the fraction of the top-k baseline documents that appear in
+	 * the top-k results.
+	 * 
+	 * @param k
+	 *            the depth; must be one of {@link #getRecallDepths()}
+	 * @return the mean recall@k
+	 */
+	public double getRecall(int k) {
+		for (int i = 0; i < recallDepths.length; i++)
+			if (recallDepths[i] == k)
+				return recall[i];
+
+		throw new IllegalArgumentException("Recall was not measured at depth " + k);
+	}
+
+	/**
+	 * Get the results of the queries. These can be passed to a
+	 * {@link RetrievalAnalyser} to compute other measures of quality.
+	 * 
+	 * @return the results of each query
+	 */
+	public Map<QUERY, List<DOCUMENT>> getResults() {
+		return results;
+	}
+
+	@Override
+	public String toString() {
+		return getSummaryReport();
+	}
+
+	@Override
+	public JasperPrint getSummaryReport(String title, String info) throws JRException {
+		// FIXME
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public JasperPrint getDetailReport(String title, String info) throws JRException {
+		// FIXME
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String getSummaryReport() {
+		final StringBuilder outBuffer = new StringBuilder();
+
+		outBuffer.append("Benchmark of " + name + ":\n");
+		outBuffer.append(String.format("%-15s\t%10d\n", "threads", threads));
+		outBuffer.append(String.format("%-15s\t%10d\n", "num_q", getNumQueries()));
+		outBuffer.append(String.format("%-15s\t%10.1f\n", "qps", getQueriesPerSecond()));
+		outBuffer.append(String.format("%-15s\t%10.3f\n", "mean (ms)", latency.getMean() / 1e6));
+		for (final double p : PERCENTILES)
+			outBuffer.append(String.format("%-15s\t%10.3f\n", "p" + (int) p + " (ms)", latency.getPercentile(p) / 1e6));
+		outBuffer.append(String.format("%-15s\t%10.3f\n", "max (ms)", latency.getMax() / 1e6));
+		for (int i = 0; i < recallDepths.length; i++)
+			outBuffer.append(String.format("%-15s\t%10.4f\n", "recall@" + recallDepths[i], recall[i]));
+
+		return outBuffer.toString();
+	}
+
+	@Override
+	public String getDetailReport() {
+		return getSummaryReport();
+	}
+
+	/**
+	 * Format the results of a parameter sweep as a table with one row per
+	 * configuration.
+	 * 
+	 * @param results
+	 *            the results
+	 * @return the table
+	 */
+	public static String formatTable(List<? extends RetrievalBenchmarkResult<?, ?>> results) {
+		int width = 4;
+		for (final RetrievalBenchmarkResult<?, ?> r : results)
+			width = Math.max(width, r.name.length());
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-" + width + "s\t%7s\t%10s\t%9s\t%9s\t%9s\t%9s", "name", "threads", "qps",
+				"mean (ms)", "p50 (ms)", "p90 (ms)", "p99 (ms)"));
+		if (!results.isEmpty())
+			for (final int k : results.get(0).recallDepths)
+				sb.append(String.format("\t%9s", "recall@" + k));
+		sb.append("\n");
+
+		for (final RetrievalBenchmarkResult<?, ?> r : results) {
+			sb.append(String.format("%-" + width + "s\t%7d\t%10.1f\t%9.3f", r.name, r.threads,
+					r.getQueriesPerSecond(), r.latency.getMean() / 1e6));
+			for (final double p : PERCENTILES)
+				sb.append(String.format("\t%9.3f", r.latency.getPercentile(p) / 1e6));
+			for (final double rec : r.recall)
+				sb.append(String.format("\t%9.4f", rec));
+			sb.append("\n");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Write the results of a parameter sweep as CSV with one row per
+	 * configuration. Latencies are in nanoseconds.
+	 * 
+	 * @param results
+	 *            the results
+	 * @param writer
+	 *            the writer
+	 * @throws IOException
+	 *             if an error occurs writing
+	 */
+	public static void writeCSV(List<? extends RetrievalBenchmarkResult<?, ?>> results, Writer writer)
+			throws IOException
+	{
+		writer.write("name,threads,queries,qps,mean,p50,p90,p99,max");
+		if (!results.isEmpty())
+			for (final int k : results.get(0).recallDepths)
+				writer.write(",recall@" + k);
+		writer.write("\n");
+
+		for (final RetrievalBenchmarkResult<?, ?> r : results) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(r.name.replace(',', ';')).append(',').append(r.threads).append(',').append(r.getNumQueries());
+			sb.append(',').append(r.getQueriesPerSecond()).append(',').append(r.latency.getMean());
+			for (final double p : PERCENTILES)
+				sb.append(',').append(r.latency.getPercentile(p));
+			sb.append(',').append(r.latency.getMax());
+			for (final double rec : r.recall)
+				sb.append(',').append(rec);
+			sb.append("\n");
+			writer.write(sb.toString());
+		}
+
+		writer.flush();
+	}
+}
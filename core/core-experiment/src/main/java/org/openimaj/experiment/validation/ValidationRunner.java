@@ -29,14 +29,18 @@
  */
 package org.openimaj.experiment.validation;
 
+import java.util.Iterator;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.data.dataset.Dataset;
 import org.openimaj.experiment.evaluation.AnalysisResult;
 import org.openimaj.experiment.evaluation.ResultAggregator;
+import org.openimaj.experiment.validation.cross.CrossValidationIterable;
 import org.openimaj.experiment.validation.cross.CrossValidator;
 import org.openimaj.util.function.Operation;
 import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
 import org.openimaj.util.parallel.Parallel;
 import org.openimaj.util.parallel.partition.FixedSizeChunkPartitioner;
 
@@ -85,7 +89,11 @@ public class ValidationRunner {
 	 * are aggregated by the given results aggregator.
 	 * <p>
 	 * Rounds of the validation can be performed in parallel, using
-	 * the available threads in the given pool. 
+	 * the available threads in the given pool. Each round stores its
+	 * result independently of the others, and the results are added
+	 * to the aggregator in the order of the rounds once all the rounds
+	 * have completed, so the aggregator needn't be thread-safe and the
+	 * aggregated result doesn't depend on the scheduling of the rounds.
 	 * 
 	 * @param <DATASET> The type of the dataset
 	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
@@ -97,6 +105,7 @@ public class ValidationRunner {
 	 * @param pool a thread-pool for parallel processing
 	 * @return the aggregated analysis result from all rounds
 	 */
+	@SuppressWarnings("unchecked")
 	public static <DATASET extends Dataset<?>,
 			ANALYSIS_RESULT,
 			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
@@ -109,18 +118,116 @@ public class ValidationRunner {
 				final ValidationOperation<DATASET, ANALYSIS_RESULT> round,
 				ThreadPoolExecutor pool) 
 	{
-		Parallel.forEach(new FixedSizeChunkPartitioner<ValidationData<DATASET>>(cv.createIterable(dataset), 1),
-				new Operation<ValidationData<DATASET>>() {
+		final CrossValidationIterable<DATASET> iterable = cv.createIterable(dataset);
+		final Object[] results = new Object[iterable.numberIterations()];
+		
+		Parallel.forEach(new FixedSizeChunkPartitioner<Round<DATASET>>(new Rounds<DATASET>(iterable), 1),
+				new Operation<Round<DATASET>>() {
 					@Override
-					public void perform(ValidationData<DATASET> cv) {
-						ANALYSIS_RESULT result = round.evaluate(cv.getTrainingDataset(), cv.getValidationDataset());
-						synchronized (aggregator) {
-							aggregator.add(result);
-						}
+					public void perform(Round<DATASET> r) {
+						results[r.index] = round.evaluate(r.data.getTrainingDataset(), r.data.getValidationDataset());
 					}
 				}, 
 				pool);
 		
+		for (Object result : results)
+			aggregator.add((ANALYSIS_RESULT) result);
+		
 		return aggregator.getAggregatedResult();
 	}
+	
+	/**
+	 * Perform cross validation using the given cross validation scheme
+	 * on the given data, with at most the given number of rounds running
+	 * concurrently. The results of operation from each round
+	 * are aggregated by the given results aggregator.
+	 * <p>
+	 * The rounds are run on their own threads rather than on the 
+	 * {@link GlobalExecutorPool}, so the operation can itself use
+	 * the {@link GlobalExecutorPool} (for example to extract features
+	 * in parallel) without the risk of deadlock. This allows the
+	 * available processors to be shared between parallelism across
+	 * rounds and parallelism within rounds: a value of 1 runs the 
+	 * rounds one after the other, leaving all the processors for the
+	 * work within each round, whilst a value equal to the number of
+	 * rounds runs them all at once. 
+	 * 
+	 * @param <DATASET> The type of the dataset
+	 * @param <ANALYSIS_RESULT> The type of the analysis result from each round
+	 * @param <AGGREGATE_ANALYSIS_RESULT> The type of the aggregated analysis result 
+	 * @param aggregator the results aggregator
+	 * @param dataset the dataset
+	 * @param cv the cross-validation scheme
+	 * @param round the operation to perform in each round
+	 * @param concurrentRounds the maximum number of rounds to perform at once
+	 * @return the aggregated analysis result from all rounds
+	 */
+	public static <DATASET extends Dataset<?>,
+			ANALYSIS_RESULT,
+			AGGREGATE_ANALYSIS_RESULT extends AnalysisResult
+			>
+		AGGREGATE_ANALYSIS_RESULT 
+		run(
+				final ResultAggregator<ANALYSIS_RESULT, AGGREGATE_ANALYSIS_RESULT> aggregator, 
+				final DATASET dataset,
+				final CrossValidator<DATASET> cv, 
+				final ValidationOperation<DATASET, ANALYSIS_RESULT> round,
+				int concurrentRounds) 
+	{
+		if (concurrentRounds < 1)
+			throw new IllegalArgumentException("The number of concurrent rounds must be at least one");
+		
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(concurrentRounds, new DaemonThreadFactory());
+		
+		try {
+			return run(aggregator, dataset, cv, round, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	private static class Round<DATASET extends Dataset<?>> {
+		int index;
+		ValidationData<DATASET> data;
+	}
+	
+	/**
+	 * Lazily numbers the rounds produced by a {@link CrossValidationIterable}, 
+	 * so the training and validation data for each round only exist whilst 
+	 * the round is being performed.
+	 */
+	private static class Rounds<DATASET extends Dataset<?>> implements Iterable<Round<DATASET>> {
+		private CrossValidationIterable<DATASET> iterable;
+		
+		Rounds(CrossValidationIterable<DATASET> iterable) {
+			this.iterable = iterable;
+		}
+		
+		@Override
+		public Iterator<Round<DATASET>> iterator() {
+			final Iterator<ValidationData<DATASET>> it = iterable.iterator();
+			
+			return new Iterator<Round<DATASET>>() {
+				int index = 0;
+				
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public Round<DATASET> next() {
+					final Round<DATASET> r = new Round<DATASET>();
+					r.data = it.next();
+					r.index = index++;
+					return r;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.commons.math.stat.descriptive.StatisticalSummary;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link TimeTracker}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TimeTrackerTest {
+	/**
+	 * Start each test with no times
+	 */
+	@Before
+	public void setup() {
+		TimeTracker.reset();
+	}
+
+	/**
+	 * Other metrics in the registry should not be reported as times
+	 */
+	@Test
+	public void testIgnoresOtherMetrics() {
+		TimeTracker.accumulate("a", 100);
+		TimeTracker.accumulate("a", 300);
+		TimeTracker.getRegistry().counter("b").increment();
+
+		assertEquals(1, TimeTracker.getHistograms().size());
+		assertEquals(2, TimeTracker.getHistograms().get("a").getCount());
+
+		final Map<String, StatisticalSummary> times = TimeTracker.getTimes();
+		assertEquals(1, times.size());
+		assertEquals(200, times.get("a").getMean(), 0);
+	}
+
+	/**
+	 * No accumulated time may be returned by more than one reset, even when
+	 * resets race with accumulation, and times accumulated after the last
+	 * reset must all be kept
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrentReset() throws InterruptedException {
+		final int nthreads = 4;
+		final int n = 20000;
+
+		final Thread[] threads = new Thread[nthreads];
+		for (int i = 0; i < nthreads; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < n; j++)
+						TimeTracker.accumulate("t", 1);
+				}
+			};
+			threads[i].start();
+		}
+
+		long total = 0;
+		boolean running = true;
+		while (running) {
+			running = false;
+			for (final Thread t : threads)
+				running |= t.isAlive();
+
+			final StatisticalSummary s = TimeTracker.reset().get("t");
+			if (s != null)
+				total += s.getN();
+		}
+
+		assertTrue(total <= (long) nthreads * n);
+
+		for (int j = 0; j < n; j++)
+			TimeTracker.accumulate("t", 1);
+		assertEquals(n, TimeTracker.reset().get("t").getN());
+		assertNull(TimeTracker.reset().get("t"));
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.evaluation.retrieval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.identity.IdentifiableObject;
+
+/**
+ * Tests for the {@link RetrievalBenchmark}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RetrievalBenchmarkTest {
+	private List<IdentifiableObject<Integer>> documents;
+	private List<Integer> queries;
+	private RetrievalEngine<IdentifiableObject<Integer>, Integer> exact;
+
+	/**
+	 * Set up a trivial exact engine that ranks integers by their distance to
+	 * the query
+	 */
+	@Before
+	public void setup() {
+		documents = new ArrayList<IdentifiableObject<Integer>>();
+		for (int i = 0; i < 100; i++)
+			documents.add(new IdentifiableObject<Integer>("doc" + i, i));
+
+		queries = new ArrayList<Integer>();
+		for (int i = 0; i < 20; i++)
+			queries.add(i * 5);
+
+		exact = new RetrievalEngine<IdentifiableObject<Integer>, Integer>() {
+			@Override
+			public List<IdentifiableObject<Integer>> search(final Integer query) {
+				final List<IdentifiableObject<Integer>> res = new ArrayList<IdentifiableObject<Integer>>(documents);
+				Collections.sort(res, new Comparator<IdentifiableObject<Integer>>() {
+					@Override
+					public int compare(IdentifiableObject<Integer> o1, IdentifiableObject<Integer> o2) {
+						final int d1 = Math.abs(o1.data - query);
+						final int d2 = Math.abs(o2.data - query);
+						return d1 == d2 ? o1.data - o2.data : d1 - d2;
+					}
+				});
+				return res;
+			}
+		};
+	}
+
+	/**
+	 * An engine that misses the best match of every query
+	 */
+	private RetrievalEngine<IdentifiableObject<Integer>, Integer> missFirst() {
+		return new RetrievalEngine<IdentifiableObject<Integer>, Integer>() {
+			@Override
+			public List<IdentifiableObject<Integer>> search(Integer query) {
+				final List<IdentifiableObject<Integer>> res = exact.search(query);
+				return res.subList(1, res.size());
+			}
+		};
+	}
+
+	/**
+	 * Test the speed and quality measurements of a sweep
+	 */
+	@Test
+	public void testSweep() {
+		final RetrievalBenchmark<IdentifiableObject<Integer>, Integer> benchmark = new RetrievalBenchmark<IdentifiableObject<Integer>, Integer>(
+				exact, queries).setThreads(4).setWarmup(50).setRepetitions(3).setRecallDepths(1, 10);
+
+		final Map<String, RetrievalEngine<IdentifiableObject<Integer>, Integer>> engines = new LinkedHashMap<String, RetrievalEngine<IdentifiableObject<Integer>, Integer>>();
+		engines.put("exact", exact);
+		engines.put("missFirst", missFirst());
+
+		final List<RetrievalBenchmarkResult<IdentifiableObject<Integer>, Integer>> results = benchmark
+				.benchmark(engines);
+		assertEquals(2, results.size());
+
+		final RetrievalBenchmarkResult<IdentifiableObject<Integer>, Integer> r0 = results.get(0);
+		assertEquals("exact", r0.getName());
+		assertEquals(4, r0.getThreads());
+		assertEquals(60, r0.getNumQueries());
+		assertEquals(queries.size(), r0.getResults().size());
+		assertTrue(r0.getQueriesPerSecond() > 0);
+		assertTrue(r0.getLatency().getMin() <= r0.getLatency().getPercentile(50));
+		assertEquals(1.0, r0.getRecall(1), 1e-10);
+		assertEquals(1.0, r0.getRecall(10), 1e-10);
+
+		final RetrievalBenchmarkResult<IdentifiableObject<Integer>, Integer> r1 = results.get(1);
+		assertEquals(0.0, r1.getRecall(1), 1e-10);
+		assertEquals(0.9, r1.getRecall(10), 1e-10);
+
+		final String[] table = RetrievalBenchmarkResult.formatTable(results).split("\n");
+		assertEquals(3, table.length);
+		assertTrue(table[0].contains("recall@10"));
+		assertTrue(table[2].startsWith("missFirst"));
+	}
+
+	/**
+	 * Without a baseline recall isn't measured
+	 */
+	@Test
+	public void testNoBaseline() {
+		final RetrievalBenchmark<IdentifiableObject<Integer>, Integer> benchmark = new RetrievalBenchmark<IdentifiableObject<Integer>, Integer>(
+				queries, null);
+
+		final RetrievalBenchmarkResult<IdentifiableObject<Integer>, Integer> r = benchmark.benchmark("exact", exact);
+		assertEquals(0, r.getRecallDepths().length);
+		assertEquals(queries.size(), r.getNumQueries());
+	}
+}
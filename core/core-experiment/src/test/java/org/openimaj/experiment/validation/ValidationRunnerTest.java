@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.experiment.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jasperreports.engine.JasperPrint;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.experiment.evaluation.AnalysisResult;
+import org.openimaj.experiment.evaluation.ResultAggregator;
+import org.openimaj.experiment.validation.cross.KFold;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.function.Operation;
+
+/**
+ * Tests for the {@link ValidationRunner}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ValidationRunnerTest {
+	/**
+	 * Collects the results in the order they are added; deliberately not
+	 * thread-safe.
+	 */
+	static class ListAggregator implements ResultAggregator<Integer, ListAggregator.Result> {
+		static class Result implements AnalysisResult {
+			List<Integer> values = new ArrayList<Integer>();
+
+			@Override
+			public JasperPrint getSummaryReport(String title, String info) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public JasperPrint getDetailReport(String title, String info) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public String getSummaryReport() {
+				return values.toString();
+			}
+
+			@Override
+			public String getDetailReport() {
+				return values.toString();
+			}
+		}
+
+		Result result = new Result();
+
+		@Override
+		public void add(Integer value) {
+			result.values.add(value);
+		}
+
+		@Override
+		public Result getAggregatedResult() {
+			return result;
+		}
+	}
+
+	private ListBackedDataset<Integer> dataset;
+
+	/**
+	 * Create a dataset of the integers 0..999
+	 */
+	@Before
+	public void setup() {
+		dataset = new ListBackedDataset<Integer>();
+
+		for (int i = 0; i < 1000; i++)
+			dataset.getList().add(i);
+	}
+
+	private ValidationOperation<ListDataset<Integer>, Integer> sumValidation() {
+		return new ValidationOperation<ListDataset<Integer>, Integer>() {
+			@Override
+			public Integer evaluate(ListDataset<Integer> training, final ListDataset<Integer> validation) {
+				// use the global pool within the round
+				final int[] sums = new int[validation.size()];
+				Parallel.forIndex(0, validation.size(), 1, new Operation<Integer>() {
+					@Override
+					public void perform(Integer i) {
+						sums[i] = validation.get(i);
+					}
+				}, GlobalExecutorPool.getPool());
+
+				int sum = 0;
+				for (final int s : sums)
+					sum += s;
+				return sum;
+			}
+		};
+	}
+
+	/**
+	 * Every round must be performed and aggregated, with the validation sets
+	 * covering the data exactly once
+	 */
+	@Test
+	public void testConcurrentRounds() {
+		for (final int concurrent : new int[] { 1, 3, 10 }) {
+			final ListAggregator.Result result = ValidationRunner.run(new ListAggregator(), dataset,
+					new KFold<Integer>(10), sumValidation(), concurrent);
+
+			assertEquals(10, result.values.size());
+
+			int total = 0;
+			for (final int v : result.values)
+				total += v;
+			assertEquals(999 * 1000 / 2, total);
+		}
+	}
+}
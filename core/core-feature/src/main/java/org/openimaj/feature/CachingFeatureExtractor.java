@@ -29,14 +29,35 @@
  */
 package org.openimaj.feature;
 
-import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.openimaj.data.identity.Identifiable;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
- * A simple wrapper for a feature extractor that caches the extracted feature to
- * a {@link HashMap}. If a feature has already been generated for a given
- * object, it will be re-read from the {@link HashMap}
+ * A simple wrapper for a feature extractor that caches the extracted feature in
+ * memory. If a feature has already been generated for a given object, it will
+ * be re-read from the cache.
+ * <p>
+ * The cache is safe to use from multiple threads (for example from within
+ * {@link org.openimaj.util.parallel.Parallel#forEach}), and concurrent requests
+ * for an object with the same identifier will only cause the feature to be
+ * extracted once; the other callers block until the feature is available. By
+ * default the cache is unbounded, but it can be configured with a maximum size,
+ * a maximum weight (see {@link #FEATURE_VECTOR_WEIGHER}) or soft-referenced
+ * values by providing a configured {@link CacheBuilder}. Hit, miss, eviction
+ * and extraction time statistics can be obtained through
+ * {@link #getStatistics()}.
+ * <p>
+ * Note that <code>null</code> features are never cached.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -49,13 +70,26 @@ public class CachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 		implements
 		FeatureExtractor<FEATURE, OBJECT>
 {
+	/**
+	 * A {@link Weigher} for {@link FeatureVector}s that weighs each vector by
+	 * its length. Use in combination with
+	 * {@link CacheBuilder#maximumWeight(long)} to bound the cache by the total
+	 * number of stored feature elements rather than the number of features.
+	 */
+	public static final Weigher<Object, FeatureVector> FEATURE_VECTOR_WEIGHER = new Weigher<Object, FeatureVector>() {
+		@Override
+		public int weigh(Object key, FeatureVector value) {
+			return value.length();
+		}
+	};
+
 	private FeatureExtractor<FEATURE, OBJECT> extractor;
 	private boolean force;
 
-	private HashMap<String, FEATURE> cache;
+	private Cache<String, FEATURE> cache;
 
 	/**
-	 * Construct the cache {@link HashMap}. The given extractor will be used to
+	 * Construct an unbounded cache. The given extractor will be used to
 	 * generate the features.
 	 * 
 	 * @param extractor
@@ -66,7 +100,7 @@ public class CachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 	}
 
 	/**
-	 * Construct the cache {@link HashMap} The given extractor will be used to
+	 * Construct an unbounded cache. The given extractor will be used to
 	 * generate the features. Optionally, all features can be regenerated.
 	 * 
 	 * @param extractor
@@ -76,26 +110,103 @@ public class CachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 	 *            rather than being loaded.
 	 */
 	public CachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, boolean force) {
-		this.cache = new HashMap<String, FEATURE>();
+		this(extractor, CacheBuilder.newBuilder(), force);
+	}
+
+	/**
+	 * Construct a cache that holds at most the given number of features. The
+	 * least-recently used features will be evicted once the limit is reached.
+	 * The given extractor will be used to generate the features.
+	 * 
+	 * @param extractor
+	 *            the feature extractor
+	 * @param maximumSize
+	 *            the maximum number of features to hold
+	 */
+	public CachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, long maximumSize) {
+		this(extractor, CacheBuilder.newBuilder().maximumSize(maximumSize), false);
+	}
+
+	/**
+	 * Construct a cache configured by the given {@link CacheBuilder}. This
+	 * allows the eviction policy (maximum size, maximum weight, expiry, soft
+	 * values, etc) to be controlled. Statistics recording is always enabled on
+	 * the builder. The given extractor will be used to generate the features.
+	 * Optionally, all features can be regenerated.
+	 * 
+	 * @param extractor
+	 *            the feature extractor
+	 * @param builder
+	 *            the configured cache builder
+	 * @param force
+	 *            if true, then all features will be regenerated and saved,
+	 *            rather than being loaded.
+	 */
+	public CachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor,
+			CacheBuilder<? super String, ? super FEATURE> builder, boolean force)
+	{
+		this.cache = builder.recordStats().build();
 		this.extractor = extractor;
 		this.force = force;
 	}
 
 	@Override
-	public FEATURE extractFeature(OBJECT object) {
-		final FEATURE cachedFeature = this.cache.get(object.getID());
-
-		FEATURE feature = null;
-		if (!force && cachedFeature != null) {
-			feature = cachedFeature;
+	public FEATURE extractFeature(final OBJECT object) {
+		if (force) {
+			final FEATURE feature = extractor.extractFeature(object);
 
 			if (feature != null)
-				return feature;
+				this.cache.put(object.getID(), feature);
+
+			return feature;
+		}
+
+		try {
+			return this.cache.get(object.getID(), new Callable<FEATURE>() {
+				@Override
+				public FEATURE call() throws Exception {
+					return extractor.extractFeature(object);
+				}
+			});
+		} catch (final InvalidCacheLoadException e) {
+			// the extractor returned null
+			return null;
+		} catch (final UncheckedExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		} catch (final ExecutionError e) {
+			throw (Error) e.getCause();
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
+	}
 
-		feature = extractor.extractFeature(object);
-		this.cache.put(object.getID(), feature);
-		return feature;
+	/**
+	 * Get the statistics of the underlying cache. The statistics include the
+	 * hit and miss counts, the number of evictions and the average time (in
+	 * nanoseconds) spent extracting features on a cache miss.
+	 * 
+	 * @return the cache statistics
+	 */
+	public CacheStats getStatistics() {
+		return cache.stats();
+	}
+
+	/**
+	 * Get the (approximate) number of features currently held in the cache.
+	 * 
+	 * @return the number of cached features
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Remove all the cached features.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
 	}
 
 	@Override
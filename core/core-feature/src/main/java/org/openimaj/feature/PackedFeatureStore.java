@@ -0,0 +1,834 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+import org.openimaj.data.dataset.Dataset;
+import org.openimaj.io.IOUtils;
+import org.openimaj.io.ReadableBinary;
+import org.openimaj.io.WriteableBinary;
+
+/**
+ * A log-structured, disk-backed key-value store for features. Rather than
+ * storing one file per object, records are appended to a small number of large
+ * segment files, and an index mapping keys to record locations is maintained in
+ * memory and persisted to disk when the store is {@link #flush() flushed} or
+ * {@link #close() closed}. If the index is lost or out of date (for example
+ * after a crash), it is rebuilt by scanning the tail of the segments on
+ * opening.
+ * <p>
+ * Features that implement {@link WriteableBinary} (and can be instantiated
+ * through {@link IOUtils#newInstance(String)}) are stored in their native
+ * binary format; other features are serialised with
+ * {@link IOUtils#write(Object, java.io.DataOutput)}.
+ * <p>
+ * Writes append to the active segment through a buffer, which is rolled over
+ * when it exceeds the maximum segment size. The buffer is only flushed when
+ * it fills, or when a read, iteration or {@link #flush()} needs the data to
+ * be on disk. Reads from completed segments are served through memory-mapped
+ * buffers. Any number of threads may concurrently read and write
+ * the store. Overwritten and removed records remain in the segment files until
+ * the store is {@link #compact() compacted}.
+ * <p>
+ * The store is a {@link Dataset} of the stored features; iteration performs a
+ * sequential scan over the segments and is thus much faster than random access
+ * for reading the entire store. Iteration while the store is being compacted is
+ * not supported.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <FEATURE>
+ *            Type of feature
+ */
+public class PackedFeatureStore<FEATURE> implements Dataset<FEATURE>, Closeable {
+	private static Logger logger = Logger.getLogger(PackedFeatureStore.class);
+
+	/**
+	 * The default maximum segment size (256MB)
+	 */
+	public static final long DEFAULT_MAX_SEGMENT_SIZE = 256L * 1024L * 1024L;
+
+	private static final String INDEX_FILE = "index.dat";
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+
+	private static final byte BINARY_RECORD = 0;
+	private static final byte SERIALISED_RECORD = 1;
+	private static final byte TOMBSTONE_RECORD = 2;
+
+	/**
+	 * Location of a record in a segment
+	 */
+	static class Location {
+		final int segment;
+		final long offset;
+		final int length;
+		final byte type;
+
+		Location(int segment, long offset, int length, byte type) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.type = type;
+		}
+	}
+
+	/**
+	 * A segment file
+	 */
+	static class Segment {
+		final int id;
+		final File file;
+		final RandomAccessFile raf;
+		final FileChannel channel;
+		volatile MappedByteBuffer map;
+		volatile long length;
+
+		Segment(int id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "rw");
+			this.channel = raf.getChannel();
+			this.length = raf.length();
+		}
+
+		void seal() throws IOException {
+			if (length > 0 && length <= Integer.MAX_VALUE)
+				map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+
+		byte[] read(Location loc) throws IOException {
+			final byte[] data = new byte[loc.length];
+			final MappedByteBuffer m = map;
+
+			if (m != null) {
+				final ByteBuffer dup = m.duplicate();
+				dup.position((int) loc.offset);
+				dup.get(data);
+			} else {
+				final ByteBuffer buffer = ByteBuffer.wrap(data);
+				long pos = loc.offset;
+				while (buffer.hasRemaining()) {
+					final int read = channel.read(buffer, pos);
+					if (read < 0)
+						throw new EOFException();
+					pos += read;
+				}
+			}
+
+			return data;
+		}
+
+		void close() throws IOException {
+			map = null;
+			raf.close();
+		}
+	}
+
+	private final File directory;
+	private final long maxSegmentSize;
+
+	private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+	private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object appendLock = new Object();
+
+	private Segment active;
+	private DataOutputStream activeOut;
+	private boolean activeDirty = false;
+	private boolean closed = false;
+
+	/**
+	 * Open (or create) a store in the given directory with the default maximum
+	 * segment size.
+	 * 
+	 * @param directory
+	 *            the directory holding the store
+	 * @throws IOException
+	 *             if an error occurs opening the store
+	 */
+	public PackedFeatureStore(File directory) throws IOException {
+		this(directory, DEFAULT_MAX_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open (or create) a store in the given directory.
+	 * 
+	 * @param directory
+	 *            the directory holding the store
+	 * @param maxSegmentSize
+	 *            the size in bytes after which a new segment is started. Must
+	 *            be less than 2GB.
+	 * @throws IOException
+	 *             if an error occurs opening the store
+	 */
+	public PackedFeatureStore(File directory, long maxSegmentSize) throws IOException {
+		if (maxSegmentSize <= 0 || maxSegmentSize >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Maximum segment size must be between 1 and 2^31 bytes");
+
+		this.directory = directory;
+		this.maxSegmentSize = maxSegmentSize;
+
+		directory.mkdirs();
+		open();
+	}
+
+	private void open() throws IOException {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				final String name = f.getName();
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					final int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+							name.length() - SEGMENT_SUFFIX.length()));
+					segments.put(id, new Segment(id, f));
+				}
+			}
+		}
+
+		final TreeMap<Integer, Long> indexed = readIndex();
+
+		for (final Segment s : segments.values()) {
+			final Long start = indexed.get(s.id);
+			recover(s, start == null ? 0 : start);
+		}
+
+		if (segments.isEmpty()) {
+			startSegment(0);
+		} else {
+			for (final Segment s : segments.values()) {
+				if (s != segments.lastEntry().getValue())
+					s.seal();
+			}
+			active = segments.lastEntry().getValue();
+			activeOut = openAppend(active);
+		}
+	}
+
+	private DataOutputStream openAppend(Segment s) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(s.file, true), 64 * 1024));
+	}
+
+	private void startSegment(int id) throws IOException {
+		final File f = new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+		final Segment s = new Segment(id, f);
+		segments.put(id, s);
+		active = s;
+		activeOut = openAppend(s);
+		activeDirty = false;
+	}
+
+	/**
+	 * Scan the segment from the given position, adding any records to the
+	 * index. Truncated records at the end of the segment are discarded.
+	 */
+	private void recover(Segment s, long start) throws IOException {
+		if (start >= s.length)
+			return;
+
+		logger.debug("Recovering records from " + s.file + " starting at " + start);
+
+		final RecordReader reader = new RecordReader(s, start);
+		try {
+			while (reader.next()) {
+				applyToIndex(reader.key, reader.location);
+			}
+		} finally {
+			reader.close();
+		}
+
+		if (reader.position < s.length) {
+			logger.warn("Truncating " + (s.length - reader.position) + " bytes of incomplete records from " + s.file);
+			s.channel.truncate(reader.position);
+			s.length = reader.position;
+		}
+	}
+
+	private void applyToIndex(String key, Location loc) {
+		if (loc.type == TOMBSTONE_RECORD)
+			index.remove(key);
+		else
+			index.put(key, loc);
+	}
+
+	private TreeMap<Integer, Long> readIndex() throws IOException {
+		final TreeMap<Integer, Long> indexed = new TreeMap<Integer, Long>();
+		final File indexFile = new File(directory, INDEX_FILE);
+
+		if (!indexFile.exists())
+			return indexed;
+
+		DataInputStream dis = null;
+		try {
+			dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+			final int nSegments = dis.readInt();
+			for (int i = 0; i < nSegments; i++) {
+				final int id = dis.readInt();
+				final long length = dis.readLong();
+
+				final Segment s = segments.get(id);
+				if (s != null && s.length >= length)
+					indexed.put(id, length);
+			}
+
+			final int nEntries = dis.readInt();
+			for (int i = 0; i < nEntries; i++) {
+				final String key = dis.readUTF();
+				final Location loc = new Location(dis.readInt(), dis.readLong(), dis.readInt(), dis.readByte());
+
+				if (indexed.containsKey(loc.segment))
+					index.put(key, loc);
+			}
+		} catch (final IOException e) {
+			logger.warn("Error reading the index; it will be rebuilt from the segments", e);
+			index.clear();
+			indexed.clear();
+		} finally {
+			if (dis != null)
+				try {
+					dis.close();
+				} catch (final IOException e) {
+				}
+		}
+
+		return indexed;
+	}
+
+	private void writeIndex() throws IOException {
+		final File tmp = new File(directory, INDEX_FILE + ".tmp");
+
+		DataOutputStream dos = null;
+		try {
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+			dos.writeInt(segments.size());
+			for (final Segment s : segments.values()) {
+				dos.writeInt(s.id);
+				dos.writeLong(s.length);
+			}
+
+			final List<Entry<String, Location>> entries = new ArrayList<Entry<String, Location>>(index.entrySet());
+			dos.writeInt(entries.size());
+			for (final Entry<String, Location> e : entries) {
+				final Location loc = e.getValue();
+				dos.writeUTF(e.getKey());
+				dos.writeInt(loc.segment);
+				dos.writeLong(loc.offset);
+				dos.writeInt(loc.length);
+				dos.writeByte(loc.type);
+			}
+		} finally {
+			if (dos != null)
+				dos.close();
+		}
+
+		final File indexFile = new File(directory, INDEX_FILE);
+		if (indexFile.exists() && !indexFile.delete())
+			throw new IOException("Unable to replace " + indexFile);
+		if (!tmp.renameTo(indexFile))
+			throw new IOException("Unable to replace " + indexFile);
+	}
+
+	private static byte[] encode(Object feature, byte[] typeOut) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(baos);
+
+		if (feature instanceof WriteableBinary && feature instanceof ReadableBinary) {
+			typeOut[0] = BINARY_RECORD;
+			dos.writeUTF(feature.getClass().getName());
+			((WriteableBinary) feature).writeBinary(dos);
+		} else {
+			typeOut[0] = SERIALISED_RECORD;
+			IOUtils.write(feature, dos);
+		}
+		dos.flush();
+
+		return baos.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T decode(byte[] data, byte type) throws IOException {
+		final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+
+		if (type == BINARY_RECORD) {
+			final ReadableBinary obj = IOUtils.newInstance(dis.readUTF());
+			obj.readBinary(dis);
+			return (T) obj;
+		}
+
+		return IOUtils.<T> read(dis);
+	}
+
+	private void append(String key, byte[] data, byte type) throws IOException {
+		synchronized (appendLock) {
+			ensureOpen();
+
+			if (active.length > 0 && active.length + data.length > maxSegmentSize) {
+				activeOut.close();
+				active.seal();
+				startSegment(active.id + 1);
+			}
+
+			activeOut.writeUTF(key);
+			activeOut.writeByte(type);
+			activeOut.writeInt(data.length);
+			activeOut.write(data);
+			activeDirty = true;
+
+			final long offset = active.length + 2 + utfLength(key) + 1 + 4;
+			active.length = offset + data.length;
+
+			applyToIndex(key, new Location(active.id, offset, data.length, type));
+		}
+	}
+
+	/**
+	 * Flush any buffered records in the active segment to disk. Must be called
+	 * whilst holding the append lock.
+	 */
+	private void flushActive() throws IOException {
+		if (activeDirty) {
+			activeOut.flush();
+			activeDirty = false;
+		}
+	}
+
+	private static int utfLength(String str) {
+		int len = 0;
+		for (int i = 0; i < str.length(); i++) {
+			final char c = str.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F)
+				len++;
+			else if (c > 0x07FF)
+				len += 3;
+			else
+				len += 2;
+		}
+		return len;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("The store has been closed");
+	}
+
+	/**
+	 * Store a feature against the given key. Any previously stored feature
+	 * with the same key is replaced.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param feature
+	 *            the feature; must not be <code>null</code>
+	 * @throws IOException
+	 *             if an error occurs writing the feature
+	 */
+	public void put(String key, FEATURE feature) throws IOException {
+		if (key == null || feature == null)
+			throw new IllegalArgumentException("Neither the key nor the feature may be null");
+
+		final byte[] type = new byte[1];
+		final byte[] data = encode(feature, type);
+
+		lock.readLock().lock();
+		try {
+			append(key, data, type[0]);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the feature stored against the given key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the feature, or <code>null</code> if there is no feature with
+	 *         the given key.
+	 * @throws IOException
+	 *             if an error occurs reading the feature
+	 */
+	public FEATURE get(String key) throws IOException {
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+
+			final Location loc = index.get(key);
+			if (loc == null)
+				return null;
+
+			final Segment s;
+			synchronized (appendLock) {
+				s = segments.get(loc.segment);
+				if (s == active)
+					flushActive();
+			}
+
+			return decode(s.read(loc), loc.type);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Test whether a feature is stored against the given key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return true if the key is present; false otherwise
+	 */
+	public boolean containsKey(String key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * Remove the feature stored against the given key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @throws IOException
+	 *             if an error occurs writing the removal record
+	 */
+	public void remove(String key) throws IOException {
+		lock.readLock().lock();
+		try {
+			synchronized (appendLock) {
+				if (index.containsKey(key))
+					append(key, new byte[0], TOMBSTONE_RECORD);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the keys of all stored features.
+	 * 
+	 * @return the keys
+	 */
+	public Set<String> keys() {
+		return index.keySet();
+	}
+
+	@Override
+	public int numInstances() {
+		return index.size();
+	}
+
+	@Override
+	public FEATURE getRandomInstance() {
+		final List<String> keys = new ArrayList<String>(index.keySet());
+		if (keys.isEmpty())
+			return null;
+
+		try {
+			return get(keys.get(new Random().nextInt(keys.size())));
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Write any buffered records and the index to disk, so that the store can
+	 * be re-opened without needing to scan the segments.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs writing the index
+	 */
+	public void flush() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			flushActive();
+			writeIndex();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Compact the store by rewriting all live records into new segments and
+	 * deleting the old segments. Reads and writes are blocked whilst the
+	 * compaction is performed.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs during compaction
+	 */
+	public void compact() throws IOException {
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			activeOut.close();
+
+			final List<Segment> old = new ArrayList<Segment>(segments.values());
+			final int firstId = segments.lastKey() + 1;
+			final long liveBefore = index.size();
+
+			startSegment(firstId);
+			for (final Segment s : old) {
+				if (s.map == null)
+					s.seal();
+
+				final RecordReader reader = new RecordReader(s, 0);
+				try {
+					while (reader.next()) {
+						if (isLive(reader.key, reader.location))
+							append(reader.key, s.read(reader.location), reader.location.type);
+					}
+				} finally {
+					reader.close();
+				}
+			}
+
+			// persist the records and index before removing the old data
+			flushActive();
+			writeIndex();
+
+			for (final Segment s : old) {
+				segments.remove(s.id);
+				s.close();
+				if (!s.file.delete())
+					logger.warn("Unable to delete old segment " + s.file);
+			}
+			writeIndex();
+
+			logger.debug("Compacted " + old.size() + " segments containing " + liveBefore + " live records");
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private boolean isLive(String key, Location loc) {
+		final Location current = index.get(key);
+		return current != null && current.segment == loc.segment && current.offset == loc.offset;
+	}
+
+	/**
+	 * Close the store, writing the index to disk.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (closed)
+				return;
+
+			activeOut.close();
+			writeIndex();
+
+			for (final Segment s : segments.values())
+				s.close();
+
+			closed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sequential reader over the records of a segment
+	 */
+	private static class RecordReader {
+		final Segment segment;
+		final DataInputStream in;
+		final long end;
+		long position;
+
+		String key;
+		Location location;
+
+		RecordReader(Segment segment, long start) throws IOException {
+			this.segment = segment;
+			this.end = segment.length;
+			this.position = start;
+
+			final InputStream fis = new FileInputStream(segment.file);
+			long toSkip = start;
+			while (toSkip > 0)
+				toSkip -= fis.skip(toSkip);
+			this.in = new DataInputStream(new BufferedInputStream(fis, 1024 * 1024));
+		}
+
+		/**
+		 * Read the header of the next record and skip over its data
+		 */
+		boolean next() throws IOException {
+			if (!readHeader())
+				return false;
+
+			int toSkip = location.length;
+			while (toSkip > 0) {
+				final int skipped = in.skipBytes(toSkip);
+				if (skipped <= 0)
+					return false;
+				toSkip -= skipped;
+			}
+			position = location.offset + location.length;
+			return true;
+		}
+
+		/**
+		 * Read the next record including its data
+		 */
+		byte[] nextWithData() throws IOException {
+			if (!readHeader())
+				return null;
+
+			final byte[] data = new byte[location.length];
+			in.readFully(data);
+			position = location.offset + location.length;
+			return data;
+		}
+
+		private boolean readHeader() throws IOException {
+			try {
+				if (position >= end)
+					return false;
+
+				final String k = in.readUTF();
+				final byte type = in.readByte();
+				final int length = in.readInt();
+				final long offset = position + 2 + utfLength(k) + 1 + 4;
+
+				if (length < 0 || type < BINARY_RECORD || type > TOMBSTONE_RECORD || offset + length > end)
+					return false;
+
+				this.key = k;
+				this.location = new Location(segment.id, offset, length, type);
+				return true;
+			} catch (final EOFException e) {
+				return false;
+			}
+		}
+
+		void close() {
+			try {
+				in.close();
+			} catch (final IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Iterate over the stored features by sequentially scanning the segments.
+	 * Only the most recent record for each key is returned.
+	 */
+	@Override
+	public Iterator<FEATURE> iterator() {
+		final List<Segment> toScan;
+		synchronized (appendLock) {
+			try {
+				flushActive();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+			toScan = new ArrayList<Segment>(segments.values());
+		}
+
+		return new Iterator<FEATURE>() {
+			int segmentIndex = 0;
+			RecordReader reader;
+			FEATURE next;
+
+			@Override
+			public boolean hasNext() {
+				if (next != null)
+					return true;
+
+				try {
+					while (segmentIndex < toScan.size() || reader != null) {
+						if (reader == null)
+							reader = new RecordReader(toScan.get(segmentIndex++), 0);
+
+						final byte[] data = reader.nextWithData();
+						if (data == null) {
+							reader.close();
+							reader = null;
+							continue;
+						}
+
+						if (reader.location.type != TOMBSTONE_RECORD && isLive(reader.key, reader.location)) {
+							next = decode(data, reader.location.type);
+							return true;
+						}
+					}
+				} catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+
+				return false;
+			}
+
+			@Override
+			public FEATURE next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				final FEATURE f = next;
+				next = null;
+				return f;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * Tests for the {@link CachingFeatureExtractor}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CachingFeatureExtractorTest {
+	static class Obj implements Identifiable {
+		String id;
+
+		Obj(String id) {
+			this.id = id;
+		}
+
+		@Override
+		public String getID() {
+			return id;
+		}
+	}
+
+	static class CountingExtractor implements FeatureExtractor<DoubleFV, Obj> {
+		AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public DoubleFV extractFeature(Obj object) {
+			count.incrementAndGet();
+			try {
+				Thread.sleep(5);
+			} catch (final InterruptedException e) {
+			}
+			return new DoubleFV(new double[] { Double.parseDouble(object.getID()) });
+		}
+	}
+
+	/**
+	 * Test that concurrent requests for the same object only extract once
+	 */
+	@Test
+	public void testConcurrentComputeOnce() {
+		final CountingExtractor ext = new CountingExtractor();
+		final CachingFeatureExtractor<DoubleFV, Obj> cfe = new CachingFeatureExtractor<DoubleFV, Obj>(ext);
+
+		final List<Obj> objects = new ArrayList<Obj>();
+		for (int i = 0; i < 100; i++)
+			objects.add(new Obj("" + (i % 10)));
+
+		Parallel.forEach(objects, new Operation<Obj>() {
+			@Override
+			public void perform(Obj object) {
+				final DoubleFV fv = cfe.extractFeature(object);
+				assertEquals(Double.parseDouble(object.getID()), fv.values[0], 0);
+			}
+		});
+
+		assertEquals(10, ext.count.get());
+		assertEquals(10, cfe.getStatistics().missCount());
+		assertEquals(90, cfe.getStatistics().hitCount());
+	}
+
+	/**
+	 * Test that the size-bounded cache evicts features
+	 */
+	@Test
+	public void testBounded() {
+		final CountingExtractor ext = new CountingExtractor();
+		final CachingFeatureExtractor<DoubleFV, Obj> cfe = new CachingFeatureExtractor<DoubleFV, Obj>(ext, 5);
+
+		final Obj first = new Obj("0");
+		final DoubleFV fv = cfe.extractFeature(first);
+		assertSame(fv, cfe.extractFeature(first));
+
+		for (int i = 1; i < 20; i++)
+			cfe.extractFeature(new Obj("" + i));
+
+		assertEquals(5, cfe.size());
+		assertEquals(15, cfe.getStatistics().evictionCount());
+		assertEquals(20, ext.count.get());
+	}
+}
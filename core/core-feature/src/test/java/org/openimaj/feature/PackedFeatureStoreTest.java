@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.data.identity.Identifiable;
+
+/**
+ * Tests for the {@link PackedFeatureStore}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedFeatureStoreTest {
+	/**
+	 * Temporary folder for the store
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static FloatFV fv(int i) {
+		return new FloatFV(new float[] { i, i + 1, i + 2 });
+	}
+
+	/**
+	 * Test storing, reopening, overwriting, removing and compacting
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testStore() throws IOException {
+		final File dir = folder.newFolder("store");
+
+		PackedFeatureStore<FloatFV> store = new PackedFeatureStore<FloatFV>(dir, 1024);
+		for (int i = 0; i < 200; i++)
+			store.put("key" + i, fv(i));
+		store.close();
+
+		assertFalse(dir.listFiles().length < 3);
+
+		store = new PackedFeatureStore<FloatFV>(dir, 1024);
+		assertEquals(200, store.numInstances());
+		assertArrayEquals(fv(42).values, store.get("key42").values, 0f);
+
+		store.put("key42", fv(1000));
+		store.remove("key43");
+		assertArrayEquals(fv(1000).values, store.get("key42").values, 0f);
+		assertNull(store.get("key43"));
+		assertEquals(199, store.numInstances());
+
+		store.compact();
+		assertArrayEquals(fv(1000).values, store.get("key42").values, 0f);
+		assertArrayEquals(fv(199).values, store.get("key199").values, 0f);
+
+		int count = 0;
+		for (final FloatFV f : store) {
+			assertEquals(3, f.length());
+			count++;
+		}
+		assertEquals(199, count);
+		store.close();
+	}
+
+	/**
+	 * Test that records still in the write buffer can be read back and
+	 * iterated over before the store is flushed
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadBeforeFlush() throws IOException {
+		final PackedFeatureStore<FloatFV> store = new PackedFeatureStore<FloatFV>(folder.newFolder("store"));
+
+		for (int i = 0; i < 10; i++) {
+			store.put("key" + i, fv(i));
+			assertArrayEquals(fv(i).values, store.get("key" + i).values, 0f);
+		}
+
+		int count = 0;
+		for (final FloatFV f : store) {
+			assertEquals(3, f.length());
+			count++;
+		}
+		assertEquals(10, count);
+
+		store.remove("key3");
+		store.remove("key3");
+		assertEquals(9, store.numInstances());
+		store.close();
+	}
+
+	/**
+	 * Test that null features are rejected
+	 * 
+	 * @throws IOException
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullFeature() throws IOException {
+		final PackedFeatureStore<FloatFV> store = new PackedFeatureStore<FloatFV>(folder.newFolder("store"));
+		try {
+			store.put("key", null);
+		} finally {
+			store.close();
+		}
+	}
+
+	/**
+	 * Test that null features from the wrapped extractor are returned without
+	 * being cached
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testExtractorNullFeature() throws IOException {
+		final FeatureExtractor<FloatFV, Identifiable> extractor = new FeatureExtractor<FloatFV, Identifiable>() {
+			@Override
+			public FloatFV extractFeature(Identifiable object) {
+				return null;
+			}
+		};
+		final PackedDiskCachingFeatureExtractor<FloatFV, Identifiable> cache = new PackedDiskCachingFeatureExtractor<FloatFV, Identifiable>(
+				folder.newFolder("store"), extractor);
+
+		final Identifiable object = new Identifiable() {
+			@Override
+			public String getID() {
+				return "key";
+			}
+		};
+
+		try {
+			assertNull(cache.extractFeature(object));
+			assertEquals(0, cache.getStore().numInstances());
+		} finally {
+			cache.close();
+		}
+	}
+
+	/**
+	 * Test that a missing index and a partially written record are recovered
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testRecovery() throws IOException {
+		final File dir = folder.newFolder("store");
+
+		PackedFeatureStore<Object> store = new PackedFeatureStore<Object>(dir);
+		final HashMap<String, Integer> map = new HashMap<String, Integer>();
+		map.put("a", 1);
+		store.put("fv", fv(1));
+		store.put("map", map);
+		store.close();
+
+		new File(dir, "index.dat").delete();
+		final File segment = dir.listFiles()[0];
+		final RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+		raf.seek(raf.length());
+		raf.write(new byte[] { 0, 10, 'p', 'a', 'r' });
+		raf.close();
+
+		store = new PackedFeatureStore<Object>(dir);
+		assertEquals(2, store.numInstances());
+		assertEquals(map, store.get("map"));
+		assertArrayEquals(fv(1).values, ((FloatFV) store.get("fv")).values, 0f);
+		store.close();
+	}
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.colour;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Single-pass conversions from RGB band arrays to the perceptual and hue-based
+ * colour spaces.
+ * Each pixel is read once and written once, so the output arrays may be the
+ * same as the input arrays. The inverse sRGB companding is tabulated over
+ * [0, 1] and linearly interpolated (absolute error below 1e-7, i.e. under a
+ * single float ulp at 1.0); the Lab cube root is seeded from a table and
+ * refined with one Newton step, which brings it to within float precision of
+ * {@link Math#cbrt(double)}. Values outside [0, 1] fall back to the exact
+ * formulae. The tables are only used here;
+ * {@link Transforms#RGB_TO_CIEXYZ(org.openimaj.image.MBFImage)} keeps the exact
+ * companding.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class FusedColourTransforms {
+	private static final double EPSILON = 0.008856;
+	private static final double KAPPA = 903.3;
+
+	private static final double Xr = 0.950456;
+	private static final double Yr = 1.0;
+	private static final double Zr = 1.088754;
+
+	private static final int GAMMA_BINS = 4096;
+	private static final float[] GAMMA_LUT = new float[GAMMA_BINS + 2];
+
+	private static final int CBRT_BINS = 1024;
+	private static final float[] CBRT_LUT = new float[CBRT_BINS + 2];
+
+	static {
+		for (int i = 0; i < GAMMA_LUT.length; i++)
+			GAMMA_LUT[i] = (float) invCompand((double) i / GAMMA_BINS);
+
+		for (int i = 0; i < CBRT_LUT.length; i++)
+			CBRT_LUT[i] = (float) Math.cbrt((double) i / CBRT_BINS);
+	}
+
+	private FusedColourTransforms() {
+	}
+
+	private static double invCompand(double v) {
+		return (v <= 0.04045) ? (v / 12.92) : (Math.pow((v + 0.055) / 1.055, 2.4));
+	}
+
+	/**
+	 * Inverse sRGB companding.
+	 * 
+	 * @param v
+	 *            the companded value
+	 * @return the linear value
+	 */
+	static double linearise(float v) {
+		if (v >= 0 && v < 1) {
+			final float p = v * GAMMA_BINS;
+			final int i = (int) p;
+			final float f = p - i;
+			return GAMMA_LUT[i] + f * (GAMMA_LUT[i + 1] - GAMMA_LUT[i]);
+		}
+		return invCompand(v);
+	}
+
+	/**
+	 * The CIE Lab companding function f(t).
+	 * 
+	 * @param t
+	 *            the normalised tristimulus value
+	 * @return f(t)
+	 */
+	static double labF(double t) {
+		if (t <= EPSILON)
+			return (KAPPA * t + 16.0) / 116.0;
+
+		if (t < 1) {
+			final double p = t * CBRT_BINS;
+			final int i = (int) p;
+			final double y = CBRT_LUT[i] + (p - i) * (CBRT_LUT[i + 1] - CBRT_LUT[i]);
+			return y - (y * y * y - t) / (3 * y * y);
+		}
+		return Math.cbrt(t);
+	}
+
+	/**
+	 * Convert RGB to CIE Lab, optionally scaling the output into [0, 1].
+	 */
+	static void rgbToLab(final float[][] R, final float[][] G, final float[][] B, final float[][] L,
+			final float[][] A, final float[][] Bs, final boolean norm, ThreadPoolExecutor pool)
+	{
+		final float Lscale = norm ? 1f / 100f : 1;
+		final float abscale = norm ? 1f / 256f : 1;
+		final float abdelta = norm ? 127 : 0;
+
+		Parallel.forRange(0, R.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int y = range.start; y < range.stop; y++) {
+					final float[] rr = R[y], gr = G[y], br = B[y];
+					final float[] lr = L[y], ar = A[y], bsr = Bs[y];
+
+					for (int x = 0; x < rr.length; x++) {
+						final double r = linearise(rr[x]);
+						final double g = linearise(gr[x]);
+						final double b = linearise(br[x]);
+
+						final float X = (float) (r * 0.4124564 + g * 0.3575761 + b * 0.1804375);
+						final float Y = (float) (r * 0.2126729 + g * 0.7151522 + b * 0.0721750);
+						final float Z = (float) (r * 0.0193339 + g * 0.1191920 + b * 0.9503041);
+
+						final double fx = labF(X / Xr);
+						final double fy = labF(Y / Yr);
+						final double fz = labF(Z / Zr);
+
+						lr[x] = ((float) (116.0 * fy - 16.0)) * Lscale;
+						ar[x] = ((float) (500.0 * (fx - fy)) + abdelta) * abscale;
+						bsr[x] = ((float) (200.0 * (fy - fz)) + abdelta) * abscale;
+					}
+				}
+			}
+		}, pool);
+	}
+
+	/**
+	 * Convert RGB to CIE Luv.
+	 */
+	static void rgbToLuv(final float[][] R, final float[][] G, final float[][] B, final float[][] L,
+			final float[][] U, final float[][] V, ThreadPoolExecutor pool)
+	{
+		final double urp = (float) ((4 * Xr) / (Xr + 15 * Yr + 3 * Zr));
+		final double vrp = (9 * Yr) / (Xr + 15 * Yr + 3 * Zr);
+
+		Parallel.forRange(0, R.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int y = range.start; y < range.stop; y++) {
+					final float[] rr = R[y], gr = G[y], br = B[y];
+					final float[] lr = L[y], ur = U[y], vr = V[y];
+
+					for (int x = 0; x < rr.length; x++) {
+						final double r = linearise(rr[x]);
+						final double g = linearise(gr[x]);
+						final double b = linearise(br[x]);
+
+						final float X = (float) (r * 0.4124564 + g * 0.3575761 + b * 0.1804375);
+						final float Y = (float) (r * 0.2126729 + g * 0.7151522 + b * 0.0721750);
+						final float Z = (float) (r * 0.0193339 + g * 0.1191920 + b * 0.9503041);
+
+						final double yr = Y / Yr;
+						final float l = (float) (yr > EPSILON ? 116 * (labF(yr)) - 16 : KAPPA * yr);
+
+						final double denom = X + 15 * Y + 3 * Z;
+						lr[x] = l;
+						ur[x] = (float) (13 * l * ((4 * X) / denom - urp));
+						vr[x] = (float) (13 * l * ((9 * Y) / denom - vrp));
+					}
+				}
+			}
+		}, pool);
+	}
+
+	/**
+	 * The hue of an RGB pixel as computed by
+	 * {@link Transforms#RGB_TO_HSV(float[], float[])}, given its value (the
+	 * maximum component) and the difference between the maximum and minimum
+	 * components.
+	 */
+	static float hue(float R, float G, float B, float V, float delta) {
+		if (V == 0)
+			return 0;
+
+		float H;
+		if ((B > G) && (B > R))
+			H = delta != 0 ? 4 + (R - G) / delta : 4 + (R - G);
+		else if (G > R)
+			H = delta != 0 ? 2 + (B - R) / delta : 2 + (B - R);
+		else
+			H = delta != 0 ? (G - B) / delta : (G - B);
+
+		H *= 60;
+		if (H < 0)
+			H += 360;
+
+		return H / 360;
+	}
+
+	/**
+	 * Convert RGB to HSV.
+	 */
+	static void rgbToHsv(final float[][] R, final float[][] G, final float[][] B, final float[][] H,
+			final float[][] S, final float[][] V, ThreadPoolExecutor pool)
+	{
+		Parallel.forRange(0, R.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int y = range.start; y < range.stop; y++) {
+					final float[] rr = R[y], gr = G[y], br = B[y];
+					final float[] hr = H[y], sr = S[y], vr = V[y];
+
+					for (int x = 0; x < rr.length; x++) {
+						final float r = rr[x], g = gr[x], b = br[x];
+						final float v = Math.max(r, Math.max(g, b));
+						final float delta = v - Math.min(r, Math.min(g, b));
+
+						hr[x] = hue(r, g, b, v, delta);
+						sr[x] = v != 0 && delta != 0 ? delta / v : 0;
+						vr[x] = v;
+					}
+				}
+			}
+		}, pool);
+	}
+
+	/**
+	 * Convert RGB to H2SV, using either the first or second variant of the
+	 * two-component hue (see {@link Transforms#H_TO_H1H2(org.openimaj.image.FImage)}
+	 * and {@link Transforms#H_TO_H1H2_2(org.openimaj.image.FImage)}).
+	 */
+	static void rgbToH2sv(final float[][] R, final float[][] G, final float[][] B, final float[][] H1,
+			final float[][] H2, final float[][] S, final float[][] V, final boolean variant2, ThreadPoolExecutor pool)
+	{
+		Parallel.forRange(0, R.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int y = range.start; y < range.stop; y++) {
+					final float[] rr = R[y], gr = G[y], br = B[y];
+					final float[] h1r = H1[y], h2r = H2[y], sr = S[y], vr = V[y];
+
+					for (int x = 0; x < rr.length; x++) {
+						final float r = rr[x], g = gr[x], b = br[x];
+						final float v = Math.max(r, Math.max(g, b));
+						final float delta = v - Math.min(r, Math.min(g, b));
+						final float h = hue(r, g, b, v, delta);
+
+						if (variant2) {
+							if (h > 0.3333333333F) {
+								h2r[x] = ((h - 0.3333333333F) / 0.6666666666F);
+								if (h > 0.6666666666F)
+									h1r[x] = ((h - 0.6666666666F) / 0.5F);
+								else
+									h1r[x] = (1 - (h - 0.1666666666F) / 0.5F);
+							} else {
+								h2r[x] = (1 - h / 0.3333333333F);
+								if (h > 0.1666666666F)
+									h1r[x] = (1 - (h - 0.1666666666F) / 0.5F);
+								else
+									h1r[x] = ((2.0F / 3.0F) + h / 0.5F);
+							}
+						} else {
+							if (h > 0.5F) {
+								h2r[x] = ((h - 0.5F) / 0.5F);
+								if (h > 0.75)
+									h1r[x] = ((h - 0.75F) / 0.5F);
+								else
+									h1r[x] = (1 - (h - 0.25F) / 0.5F);
+							} else {
+								h2r[x] = (1F - h / 0.5F);
+								if (h > 0.25F)
+									h1r[x] = (1 - (h - 0.25F) / 0.5F);
+								else
+									h1r[x] = (0.5F + h / 0.5F);
+							}
+						}
+
+						sr[x] = v != 0 && delta != 0 ? delta / v : 0;
+						vr[x] = v;
+					}
+				}
+			}
+		}, pool);
+	}
+}
@@ -29,10 +29,14 @@
  */
 package org.openimaj.image.colour;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.MBFImage;
 import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
 
 /**
  * A collection of static methods for colour transformations
@@ -498,39 +502,50 @@ public class Transforms {
 	 * @return HSV image
 	 */
 	public static MBFImage RGB_TO_HSV(final MBFImage in) {
+		return RGB_TO_HSV(in, false, null);
+	}
+
+	/**
+	 * Transform 3 band RGB image to HSV, optionally reusing the band arrays of
+	 * the input and optionally spreading the rows over a thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param in
+	 *            RGB or RGBA image
+	 * @param inPlace
+	 *            if true then the input image is converted in place (dropping
+	 *            any alpha band), rather than creating a new image
+	 * @param pool
+	 *            the pool to convert with; may be null to convert on the
+	 *            calling thread
+	 * @return HSV image
+	 */
+	public static MBFImage RGB_TO_HSV(final MBFImage in, final boolean inPlace, final ThreadPoolExecutor pool) {
 		if (in.colourSpace != ColourSpace.RGB && in.colourSpace != ColourSpace.RGBA)
 			throw new IllegalArgumentException("RGB or RGBA colourspace is required");
 
-		final int width = in.getWidth();
-		final int height = in.getHeight();
-
-		final MBFImage out = new MBFImage(width, height, ColourSpace.HSV);
-
-		final float[][] R = in.getBand(0).pixels;
-		final float[][] G = in.getBand(1).pixels;
-		final float[][] B = in.getBand(2).pixels;
+		final MBFImage out = prepareOutput(in, inPlace, ColourSpace.HSV);
 
-		final float[][] H = out.getBand(0).pixels;
-		final float[][] S = out.getBand(1).pixels;
-		final float[][] V = out.getBand(2).pixels;
+		FusedColourTransforms.rgbToHsv(in.getBand(0).pixels, in.getBand(1).pixels, in.getBand(2).pixels,
+				out.getBand(0).pixels, out.getBand(1).pixels, out.getBand(2).pixels, pool);
 
-		final float[] pIn = new float[3];
-		final float[] pOut = new float[3];
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
+		return out;
+	}
 
-				pIn[0] = R[y][x];
-				pIn[1] = G[y][x];
-				pIn[2] = B[y][x];
+	/**
+	 * Get the output image for a three band conversion from the given image.
+	 * When converting in place the input is relabelled and any bands beyond
+	 * the third are dropped.
+	 */
+	private static MBFImage prepareOutput(final MBFImage in, final boolean inPlace, final ColourSpace space) {
+		if (!inPlace)
+			return new MBFImage(in.getWidth(), in.getHeight(), space);
 
-				Transforms.RGB_TO_HSV(pIn, pOut);
+		while (in.numBands() > 3)
+			in.bands.remove(in.numBands() - 1);
+		in.colourSpace = space;
 
-				H[y][x] = pOut[0];
-				S[y][x] = pOut[1];
-				V[y][x] = pOut[2];
-			}
-		}
-		return out;
+		return in;
 	}
 
 	/**
@@ -843,19 +858,28 @@ public class Transforms {
 	}
 
 	/**
-	 * Convert RGB to H2SV
+	 * Convert RGB to H2SV in a single pass over the pixels
 	 * 
 	 * @param in
 	 *            RGB or RGBA image
 	 * @return H2SV image
 	 */
 	public static MBFImage RGB_TO_H2SV(final MBFImage in) {
+		return RGB_TO_H2SV(in, false);
+	}
+
+	private static MBFImage RGB_TO_H2SV(final MBFImage in, final boolean variant2) {
 		if (in.colourSpace != ColourSpace.RGB && in.colourSpace != ColourSpace.RGBA)
 			throw new IllegalArgumentException("RGB or RGBA colourspace is required");
 
-		final MBFImage HSV = Transforms.RGB_TO_HSV(in);
+		final MBFImage out = new MBFImage(in.getWidth(), in.getHeight(), variant2 ? ColourSpace.H2SV_2
+				: ColourSpace.H2SV);
 
-		return Transforms.HSV_TO_H2SV(HSV);
+		FusedColourTransforms.rgbToH2sv(in.getBand(0).pixels, in.getBand(1).pixels, in.getBand(2).pixels,
+				out.getBand(0).pixels, out.getBand(1).pixels, out.getBand(2).pixels, out.getBand(3).pixels,
+				variant2, null);
+
+		return out;
 	}
 
 	/**
@@ -1013,19 +1037,14 @@ public class Transforms {
 	}
 
 	/**
-	 * Convert RGB to H2SV2 VARIANT 2
+	 * Convert RGB to H2SV2 VARIANT 2 in a single pass over the pixels
 	 * 
 	 * @param in
 	 *            RGB or RGBA image
 	 * @return H2SV_2 image
 	 */
 	public static MBFImage RGB_TO_H2SV_2(final MBFImage in) {
-		if (in.colourSpace != ColourSpace.RGB && in.colourSpace != ColourSpace.RGBA)
-			throw new IllegalArgumentException("RGB or RGBA colourspace is required");
-
-		final MBFImage HSV = Transforms.RGB_TO_HSV(in);
-
-		return Transforms.HSV_TO_H2SV_2(HSV);
+		return RGB_TO_H2SV(in, true);
 	}
 
 	/**
@@ -1283,14 +1302,49 @@ public class Transforms {
 	 * href="http://www.brucelindbloom.com/index.html?Math.html">
 	 * http://www.brucelindbloom.com/index.html?Math.html</a>
 	 * 
-	 * Conversion goes from RGB-&gt;XYZ-&gt;Lab
+	 * Conversion goes from RGB-&gt;XYZ-&gt;Lab in a single pass over the
+	 * pixels.
 	 * 
 	 * @param input
 	 *            input RGB image
 	 * @return transformed CIE Lab image
 	 */
 	public static MBFImage RGB_TO_CIELab(final MBFImage input) {
-		return Transforms.CIEXYZ_TO_CIELab(Transforms.RGB_TO_CIEXYZ(input), true);
+		return RGB_TO_CIELab(input, false, null);
+	}
+
+	/**
+	 * Convert RGB to CIE Lab in a single pass, optionally reusing the band
+	 * arrays of the input and optionally spreading the rows over a thread
+	 * pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param input
+	 *            input RGB image
+	 * @param inPlace
+	 *            if true then the input image is converted in place (dropping
+	 *            any alpha band), rather than creating a new image
+	 * @param pool
+	 *            the pool to convert with; may be null to convert on the
+	 *            calling thread
+	 * @return transformed CIE Lab image
+	 */
+	public static MBFImage RGB_TO_CIELab(final MBFImage input, final boolean inPlace, final ThreadPoolExecutor pool) {
+		return RGB_TO_CIELab(input, inPlace, false, pool);
+	}
+
+	private static MBFImage RGB_TO_CIELab(final MBFImage input, final boolean inPlace, final boolean norm,
+			final ThreadPoolExecutor pool)
+	{
+		if (input.colourSpace != ColourSpace.RGB && input.colourSpace != ColourSpace.RGBA)
+			throw new IllegalArgumentException("RGB or RGBA colourspace is required");
+
+		final MBFImage out = prepareOutput(input, inPlace, norm ? ColourSpace.CIE_Lab_Norm : ColourSpace.CIE_Lab);
+
+		FusedColourTransforms.rgbToLab(input.getBand(0).pixels, input.getBand(1).pixels, input.getBand(2).pixels,
+				out.getBand(0).pixels, out.getBand(1).pixels, out.getBand(2).pixels, norm, pool);
+
+		return out;
 	}
 
 	/**
@@ -1383,7 +1437,7 @@ public class Transforms {
 	 * @return converted image
 	 */
 	public static MBFImage RGB_TO_CIELabNormalised(final MBFImage input) {
-		return Transforms.CIEXYZ_TO_CIELab(Transforms.RGB_TO_CIEXYZ(input), true, true);
+		return Transforms.RGB_TO_CIELab(input, false, true, null);
 	}
 
 	/**
@@ -1488,14 +1542,43 @@ public class Transforms {
 	 * href="http://www.brucelindbloom.com/index.html?Math.html">
 	 * http://www.brucelindbloom.com/index.html?Math.html</a>
 	 * 
-	 * Conversion goes from RGB-&gt;XYZ-&gt;LUV
+	 * Conversion goes from RGB-&gt;XYZ-&gt;LUV in a single pass over the
+	 * pixels.
 	 * 
 	 * @param input
 	 *            input RGB image
 	 * @return transformed CIE LUV image
 	 */
 	public static MBFImage RGB_TO_CIELUV(final MBFImage input) {
-		return Transforms.CIEXYZ_TO_CIELUV(Transforms.RGB_TO_CIEXYZ(input), true);
+		return RGB_TO_CIELUV(input, false, null);
+	}
+
+	/**
+	 * Convert RGB to CIE LUV in a single pass, optionally reusing the band
+	 * arrays of the input and optionally spreading the rows over a thread
+	 * pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param input
+	 *            input RGB image
+	 * @param inPlace
+	 *            if true then the input image is converted in place (dropping
+	 *            any alpha band), rather than creating a new image
+	 * @param pool
+	 *            the pool to convert with; may be null to convert on the
+	 *            calling thread
+	 * @return transformed CIE LUV image
+	 */
+	public static MBFImage RGB_TO_CIELUV(final MBFImage input, final boolean inPlace, final ThreadPoolExecutor pool) {
+		if (input.colourSpace != ColourSpace.RGB && input.colourSpace != ColourSpace.RGBA)
+			throw new IllegalArgumentException("RGB or RGBA colourspace is required");
+
+		final MBFImage out = prepareOutput(input, inPlace, ColourSpace.CIE_Luv);
+
+		FusedColourTransforms.rgbToLuv(input.getBand(0).pixels, input.getBand(1).pixels, input.getBand(2).pixels,
+				out.getBand(0).pixels, out.getBand(1).pixels, out.getBand(2).pixels, pool);
+
+		return out;
 	}
 
 	/**
@@ -0,0 +1,586 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.pixel;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openimaj.image.FImage;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+import Jama.Matrix;
+
+/**
+ * A compact, run-length encoded {@link ConnectedComponent}. Rather than
+ * holding a {@link Pixel} object per pixel, the set is stored as horizontal
+ * runs of pixels (a row, and the first and last column of the run) in three
+ * <code>int</code> arrays, sorted in raster order (by row, and then by column
+ * within a row).
+ * <p>
+ * The area, bounding box, centroid, moments and translation are computed
+ * directly from the runs, and membership tests use a binary search, so none
+ * of these operations need to create any {@link Pixel}s. All of the other
+ * {@link PixelSet} and {@link ConnectedComponent} methods work as normal; the
+ * {@link #pixels} field is a live view of the runs that creates a new
+ * {@link Pixel} for each pixel as it is iterated. Pixels added to or removed
+ * from the view (or with {@link #addPixel(Pixel)}) update the runs; modifying
+ * the coordinates of a {@link Pixel} obtained from the view has no effect on
+ * the set, and the {@link #pixels} field must not be replaced.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RunLengthPixelSet extends ConnectedComponent {
+	private int[] rows;
+	private int[] starts;
+	private int[] ends;
+	private int numRuns;
+	private int area;
+
+	/**
+	 * Construct an empty set
+	 */
+	public RunLengthPixelSet() {
+		this(8);
+	}
+
+	/**
+	 * Construct an empty set with space for the given number of runs
+	 * 
+	 * @param capacity
+	 *            the initial number of runs to allocate space for
+	 */
+	public RunLengthPixelSet(int capacity) {
+		capacity = Math.max(1, capacity);
+		rows = new int[capacity];
+		starts = new int[capacity];
+		ends = new int[capacity];
+		pixels = new RunSet();
+	}
+
+	/**
+	 * Construct from the pixels of a mask image with a value of at least the
+	 * given threshold
+	 * 
+	 * @param mask
+	 *            the mask
+	 * @param thresh
+	 *            the threshold
+	 */
+	public RunLengthPixelSet(FImage mask, float thresh) {
+		this();
+
+		for (int y = 0; y < mask.height; y++) {
+			final float[] row = mask.pixels[y];
+
+			int x = 0;
+			while (x < mask.width) {
+				if (row[x] < thresh) {
+					x++;
+					continue;
+				}
+
+				final int start = x;
+				while (x < mask.width && row[x] >= thresh)
+					x++;
+
+				addRun(y, start, x - 1);
+			}
+		}
+	}
+
+	/**
+	 * Append a run of pixels. The run must come after all of the existing
+	 * runs in raster order; use {@link #addPixel(int, int)} to add pixels in
+	 * an arbitrary order.
+	 * 
+	 * @param y
+	 *            the row
+	 * @param startX
+	 *            the first column of the run
+	 * @param endX
+	 *            the last column of the run (inclusive)
+	 * @throws IllegalArgumentException
+	 *             if the run is empty or out of order
+	 */
+	public void addRun(int y, int startX, int endX) {
+		if (endX < startX)
+			throw new IllegalArgumentException("Empty run");
+
+		if (numRuns > 0) {
+			final int last = numRuns - 1;
+			if (y < rows[last] || (y == rows[last] && startX <= ends[last]))
+				throw new IllegalArgumentException("Runs must be added in raster order and must not overlap");
+
+			// extend the previous run if this one is adjacent
+			if (y == rows[last] && startX == ends[last] + 1) {
+				ends[last] = endX;
+				area += endX - startX + 1;
+				return;
+			}
+		}
+
+		insertRun(numRuns, y, startX, endX);
+		area += endX - startX + 1;
+	}
+
+	private void insertRun(int run, int y, int startX, int endX) {
+		if (numRuns == rows.length) {
+			final int capacity = rows.length * 2;
+			rows = Arrays.copyOf(rows, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+		}
+
+		final int tail = numRuns - run;
+		if (tail > 0) {
+			System.arraycopy(rows, run, rows, run + 1, tail);
+			System.arraycopy(starts, run, starts, run + 1, tail);
+			System.arraycopy(ends, run, ends, run + 1, tail);
+		}
+
+		rows[run] = y;
+		starts[run] = startX;
+		ends[run] = endX;
+		numRuns++;
+	}
+
+	private void deleteRun(int run) {
+		final int tail = numRuns - run - 1;
+		if (tail > 0) {
+			System.arraycopy(rows, run + 1, rows, run, tail);
+			System.arraycopy(starts, run + 1, starts, run, tail);
+			System.arraycopy(ends, run + 1, ends, run, tail);
+		}
+		numRuns--;
+	}
+
+	/**
+	 * Find the run containing the given pixel.
+	 * 
+	 * @return the index of the run, or <code>-(insertion point) - 1</code>
+	 *         where the insertion point is the index of the first run after
+	 *         the pixel in raster order.
+	 */
+	private int indexOf(int x, int y) {
+		int lo = 0, hi = numRuns - 1;
+
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+
+			if (rows[mid] < y || (rows[mid] == y && ends[mid] < x))
+				lo = mid + 1;
+			else if (rows[mid] > y || starts[mid] > x)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+
+		return -(lo + 1);
+	}
+
+	private boolean insert(int x, int y) {
+		int run = indexOf(x, y);
+		if (run >= 0)
+			return false;
+		run = -run - 1;
+
+		final boolean joinPrev = run > 0 && rows[run - 1] == y && ends[run - 1] == x - 1;
+		final boolean joinNext = run < numRuns && rows[run] == y && starts[run] == x + 1;
+
+		if (joinPrev && joinNext) {
+			ends[run - 1] = ends[run];
+			deleteRun(run);
+		} else if (joinPrev) {
+			ends[run - 1] = x;
+		} else if (joinNext) {
+			starts[run] = x;
+		} else {
+			insertRun(run, y, x, x);
+		}
+
+		area++;
+		return true;
+	}
+
+	private boolean delete(int x, int y) {
+		final int run = indexOf(x, y);
+		if (run < 0)
+			return false;
+
+		if (starts[run] == ends[run]) {
+			deleteRun(run);
+		} else if (x == starts[run]) {
+			starts[run]++;
+		} else if (x == ends[run]) {
+			ends[run]--;
+		} else {
+			insertRun(run + 1, y, x + 1, ends[run]);
+			ends[run] = x - 1;
+		}
+
+		area--;
+		return true;
+	}
+
+	/**
+	 * @return the number of runs
+	 */
+	public int getNumRuns() {
+		return numRuns;
+	}
+
+	/**
+	 * Get the row of the given run
+	 * 
+	 * @param run
+	 *            the run index
+	 * @return the row
+	 */
+	public int getRunRow(int run) {
+		return rows[run];
+	}
+
+	/**
+	 * Get the first column of the given run
+	 * 
+	 * @param run
+	 *            the run index
+	 * @return the first column
+	 */
+	public int getRunStart(int run) {
+		return starts[run];
+	}
+
+	/**
+	 * Get the last column (inclusive) of the given run
+	 * 
+	 * @param run
+	 *            the run index
+	 * @return the last column
+	 */
+	public int getRunEnd(int run) {
+		return ends[run];
+	}
+
+	@Override
+	public void addPixel(int x, int y) {
+		insert(x, y);
+	}
+
+	@Override
+	public void addPixel(Pixel p) {
+		insert(p.x, p.y);
+	}
+
+	@Override
+	public int calculateArea() {
+		return area;
+	}
+
+	@Override
+	public boolean find(int x, int y) {
+		return indexOf(x, y) >= 0;
+	}
+
+	@Override
+	public boolean find(Pixel p) {
+		return find(p.x, p.y);
+	}
+
+	@Override
+	public Rectangle calculateRegularBoundingBox() {
+		if (numRuns == 0)
+			return super.calculateRegularBoundingBox();
+
+		int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+		for (int i = 0; i < numRuns; i++) {
+			if (starts[i] < xmin)
+				xmin = starts[i];
+			if (ends[i] > xmax)
+				xmax = ends[i];
+		}
+
+		return new Rectangle(xmin, rows[0], xmax - xmin, rows[numRuns - 1] - rows[0]);
+	}
+
+	/**
+	 * Calculate the standard moment m<sub>pq</sub> about the origin for p + q
+	 * &lt;= 2. The sums over each run are computed in closed form.
+	 * 
+	 * @param p
+	 *            The P moment to calculate
+	 * @param q
+	 *            The Q moment to calculate
+	 * @return The pq moment
+	 * @throws IllegalArgumentException
+	 *             if p + q &gt; 2
+	 */
+	public double calculateRawMoment(int p, int q) {
+		if (p < 0 || q < 0 || p + q > 2)
+			throw new IllegalArgumentException("Only moments up to second order are supported");
+
+		double m = 0;
+		for (int i = 0; i < numRuns; i++) {
+			final double y = rows[i];
+			final double n = ends[i] - starts[i] + 1;
+			final double sx = n * (starts[i] + (double) ends[i]) / 2;
+
+			double sx2 = 0;
+			if (p == 2)
+				sx2 = sumSquares(ends[i]) - sumSquares(starts[i] - 1);
+
+			final double xs = p == 0 ? n : (p == 1 ? sx : sx2);
+			m += xs * (q == 0 ? 1 : (q == 1 ? y : y * y));
+		}
+		return m;
+	}
+
+	private static double sumSquares(double k) {
+		// sum of i^2 for i = 0..k; valid for negative k as the difference of
+		// two such terms gives the sum over a run
+		return k * (k + 1) * (2 * k + 1) / 6;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Central moments up to second order are computed in closed form from
+	 * the runs; higher orders fall back to iterating over the pixels.
+	 */
+	@Override
+	public double calculateMoment(int p, int q) {
+		if (p < 0 || q < 0 || p + q > 2)
+			return super.calculateMoment(p, q);
+
+		if (p + q == 0)
+			return area;
+		if (p + q == 1)
+			return 0;
+
+		final double m00 = area;
+		final double xc = calculateRawMoment(1, 0) / m00;
+		final double yc = calculateRawMoment(0, 1) / m00;
+
+		if (p == 2)
+			return calculateRawMoment(2, 0) - xc * xc * m00;
+		if (q == 2)
+			return calculateRawMoment(0, 2) - yc * yc * m00;
+		return calculateRawMoment(1, 1) - xc * yc * m00;
+	}
+
+	@Override
+	public double[] calculateCentroid() {
+		return new double[] { calculateRawMoment(1, 0) / area, calculateRawMoment(0, 1) / area };
+	}
+
+	@Override
+	public double calculateDirection() {
+		final double u11 = calculateMoment(1, 1);
+		final double u20 = calculateMoment(2, 0);
+		final double u02 = calculateMoment(0, 2);
+
+		return 0.5 * Math.atan2((2 * u11), (u20 - u02));
+	}
+
+	@Override
+	public void translate(int x, int y) {
+		for (int i = 0; i < numRuns; i++) {
+			rows[i] += y;
+			starts[i] += x;
+			ends[i] += x;
+		}
+	}
+
+	@Override
+	public void transform(Matrix transform) {
+		final List<Pixel> transformed = new ArrayList<Pixel>(area);
+		final Matrix p1 = new Matrix(3, 1);
+
+		for (final Pixel p : this) {
+			p1.set(0, 0, p.x);
+			p1.set(1, 0, p.y);
+			p1.set(2, 0, 1);
+
+			final Matrix p2_est = transform.times(p1);
+
+			p.x = (int) Math.rint(p2_est.get(0, 0));
+			p.y = (int) Math.rint(p2_est.get(1, 0));
+			transformed.add(p);
+		}
+
+		pixels.clear();
+		for (final Pixel p : transformed)
+			insert(p.x, p.y);
+	}
+
+	@Override
+	public Pixel topLeftMostPixel() {
+		if (numRuns == 0)
+			return null;
+		return new Pixel(starts[0], rows[0]);
+	}
+
+	@Override
+	public Pixel bottomRightMostPixel() {
+		if (numRuns == 0)
+			return null;
+		return new Pixel(ends[numRuns - 1], rows[numRuns - 1]);
+	}
+
+	/**
+	 * Convert to a {@link ConnectedComponent} containing the same pixels in a
+	 * conventional {@link java.util.HashSet}.
+	 * 
+	 * @return the connected component
+	 */
+	public ConnectedComponent toConnectedComponent() {
+		final ConnectedComponent cc = new ConnectedComponent();
+		for (final Pixel p : this)
+			cc.addPixel(p);
+		return cc;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The runs are copied; no {@link Pixel}s are created.
+	 */
+	@Override
+	public RunLengthPixelSet clone() {
+		final RunLengthPixelSet tmp = new RunLengthPixelSet(numRuns);
+		System.arraycopy(rows, 0, tmp.rows, 0, numRuns);
+		System.arraycopy(starts, 0, tmp.starts, 0, numRuns);
+		System.arraycopy(ends, 0, tmp.ends, 0, numRuns);
+		tmp.numRuns = numRuns;
+		tmp.area = area;
+		return tmp;
+	}
+
+	/**
+	 * Iterate over the pixels in raster order. A new {@link Pixel} is created
+	 * for each pixel.
+	 */
+	@Override
+	public Iterator<Pixel> iterator() {
+		return new Iterator<Pixel>() {
+			int run = 0;
+			int x = numRuns > 0 ? starts[0] : 0;
+			int lastX, lastY;
+			boolean canRemove;
+
+			@Override
+			public boolean hasNext() {
+				return run < numRuns;
+			}
+
+			@Override
+			public Pixel next() {
+				if (run >= numRuns)
+					throw new NoSuchElementException();
+
+				final Pixel p = new Pixel(x, rows[run]);
+
+				if (x == ends[run]) {
+					run++;
+					if (run < numRuns)
+						x = starts[run];
+				} else {
+					x++;
+				}
+
+				lastX = p.x;
+				lastY = p.y;
+				canRemove = true;
+				return p;
+			}
+
+			@Override
+			public void remove() {
+				if (!canRemove)
+					throw new IllegalStateException();
+
+				final boolean more = hasNext();
+				final int y = more ? rows[run] : 0;
+
+				delete(lastX, lastY);
+				canRemove = false;
+
+				// the runs may have been split, shortened or removed, so
+				// re-locate the next pixel
+				run = more ? indexOf(x, y) : numRuns;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RunLengthPixelSet(area=%d, runs=%d)", area, numRuns);
+	}
+
+	/**
+	 * A {@link java.util.Set} view of the runs
+	 */
+	private class RunSet extends AbstractSet<Pixel> {
+		@Override
+		public Iterator<Pixel> iterator() {
+			return RunLengthPixelSet.this.iterator();
+		}
+
+		@Override
+		public int size() {
+			return area;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Pixel && find((Pixel) o);
+		}
+
+		@Override
+		public boolean add(Pixel p) {
+			return insert(p.x, p.y);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return o instanceof Pixel && delete(((Pixel) o).x, ((Pixel) o).y);
+		}
+
+		@Override
+		public void clear() {
+			numRuns = 0;
+			area = 0;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.colour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Test;
+import org.openimaj.image.MBFImage;
+
+/**
+ * Tests for the fused colour space conversions in {@link Transforms}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TransformsTest {
+	/**
+	 * The tabulated companding functions should be within float precision of
+	 * the exact ones
+	 */
+	@Test
+	public void testTables() {
+		for (int i = 0; i <= 100000; i++) {
+			final float v = i / 100000f;
+			final double exact = (v <= 0.04045) ? (v / 12.92) : (Math.pow((v + 0.055) / 1.055, 2.4));
+			assertEquals(exact, FusedColourTransforms.linearise(v), 1e-7);
+
+			final double t = v * 1.1;
+			final double f = (t > 0.008856) ? Math.pow(t, 1.0 / 3.0) : ((903.3 * t + 16.0) / 116.0);
+			assertEquals(f, FusedColourTransforms.labF(t), 1e-7);
+		}
+	}
+
+	/**
+	 * The fused conversions should match the two-pass ones
+	 */
+	@Test
+	public void testFusedMatchesTwoPass() {
+		final MBFImage rgb = MBFImage.randomImage(97, 61);
+		rgb.getBand(0).pixels[0][0] = 0;
+		rgb.getBand(1).pixels[0][0] = 0;
+		rgb.getBand(2).pixels[0][0] = 0;
+
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(3);
+		try {
+			final MBFImage xyz = Transforms.RGB_TO_CIEXYZ(rgb);
+
+			assertClose(Transforms.CIEXYZ_TO_CIELab(xyz), Transforms.RGB_TO_CIELab(rgb), 1e-3f);
+			assertClose(Transforms.CIEXYZ_TO_CIELab(xyz), Transforms.RGB_TO_CIELab(rgb, false, pool), 1e-3f);
+			assertClose(Transforms.CIEXYZ_TO_CIELUV(xyz), Transforms.RGB_TO_CIELUV(rgb, false, pool), 1e-3f);
+
+			final MBFImage hsv = Transforms.RGB_TO_HSV(rgb);
+			assertClose(hsv, Transforms.RGB_TO_HSV(rgb, false, pool), 0);
+
+			final MBFImage rgba = ColourSpace.convert(rgb, ColourSpace.RGBA);
+			final MBFImage lab = Transforms.RGB_TO_CIELab(rgba, true, null);
+			assertSame(rgba, lab);
+			assertEquals(3, lab.numBands());
+			assertEquals(ColourSpace.CIE_Lab, lab.colourSpace);
+			assertClose(Transforms.CIEXYZ_TO_CIELab(xyz), lab, 1e-3f);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The normalised Lab conversion should scale the two-pass Lab output into
+	 * [0, 1], and convert back to the original RGB
+	 */
+	@Test
+	public void testCIELabNormalised() {
+		final MBFImage rgb = MBFImage.randomImage(53, 41);
+		final MBFImage lab = Transforms.CIEXYZ_TO_CIELab(Transforms.RGB_TO_CIEXYZ(rgb));
+
+		final MBFImage norm = Transforms.RGB_TO_CIELabNormalised(rgb);
+		assertEquals(ColourSpace.CIE_Lab_Norm, norm.colourSpace);
+		assertClose(norm, ColourSpace.convert(rgb, ColourSpace.CIE_Lab_Norm), 0);
+
+		for (int y = 0; y < rgb.getHeight(); y++) {
+			for (int x = 0; x < rgb.getWidth(); x++) {
+				assertEquals(lab.getBand(0).pixels[y][x] / 100f, norm.getBand(0).pixels[y][x], 1e-5f);
+				assertEquals((lab.getBand(1).pixels[y][x] + 127) / 256f, norm.getBand(1).pixels[y][x], 1e-5f);
+				assertEquals((lab.getBand(2).pixels[y][x] + 127) / 256f, norm.getBand(2).pixels[y][x], 1e-5f);
+			}
+		}
+
+		assertClose(rgb, Transforms.CIELabNormalised_TO_RGB(norm), 1e-3f);
+	}
+
+	/**
+	 * The single-pass HSV and H2SV conversions should exactly match the
+	 * per-pixel HSV conversion, including on ties between the components
+	 */
+	@Test
+	public void testHSV() {
+		final MBFImage rgb = MBFImage.randomImage(37, 29);
+		final float[][] values = { { 0, 0, 0 }, { 1, 1, 1 }, { 0.5f, 0.5f, 0.2f }, { 0.2f, 0.5f, 0.5f },
+				{ 0.5f, 0.2f, 0.5f }, { 0, 0, 0.7f }, { 0.3f, 0, 0 } };
+		for (int i = 0; i < values.length; i++)
+			for (int b = 0; b < 3; b++)
+				rgb.getBand(b).pixels[0][i] = values[i][b];
+
+		final MBFImage expected = new MBFImage(rgb.getWidth(), rgb.getHeight(), ColourSpace.HSV);
+		final float[] pIn = new float[3];
+		final float[] pOut = new float[3];
+		for (int y = 0; y < rgb.getHeight(); y++) {
+			for (int x = 0; x < rgb.getWidth(); x++) {
+				for (int b = 0; b < 3; b++)
+					pIn[b] = rgb.getBand(b).pixels[y][x];
+				Transforms.RGB_TO_HSV(pIn, pOut);
+				for (int b = 0; b < 3; b++)
+					expected.getBand(b).pixels[y][x] = pOut[b];
+			}
+		}
+
+		assertClose(expected, Transforms.RGB_TO_HSV(rgb), 0);
+
+		final MBFImage h2sv = Transforms.HSV_TO_H2SV(expected);
+		h2sv.colourSpace = ColourSpace.H2SV;
+		assertClose(h2sv, Transforms.RGB_TO_H2SV(rgb), 0);
+		assertClose(Transforms.HSV_TO_H2SV_2(expected), Transforms.RGB_TO_H2SV_2(rgb), 0);
+	}
+
+	/**
+	 * The fused Lab conversion should reject non-RGB input
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testLabRequiresRGB() {
+		Transforms.RGB_TO_CIELab(Transforms.RGB_TO_HSV(MBFImage.randomImage(5, 5)));
+	}
+
+	/**
+	 * The fused Luv conversion should reject non-RGB input
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testLuvRequiresRGB() {
+		Transforms.RGB_TO_CIELUV(Transforms.RGB_TO_HSV(MBFImage.randomImage(5, 5)), true, null);
+	}
+
+	private static void assertClose(MBFImage expected, MBFImage actual, float tol) {
+		assertEquals(expected.colourSpace, actual.colourSpace);
+		assertEquals(expected.numBands(), actual.numBands());
+
+		for (int b = 0; b < expected.numBands(); b++) {
+			final float[][] e = expected.getBand(b).pixels;
+			final float[][] a = actual.getBand(b).pixels;
+			for (int y = 0; y < e.length; y++)
+				for (int x = 0; x < e[y].length; x++)
+					assertEquals(e[y][x], a[y][x], tol);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.pixel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RunLengthPixelSet}, checked against a conventional
+ * {@link ConnectedComponent} with the same pixels.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RunLengthPixelSetTest {
+	private ConnectedComponent expected;
+	private RunLengthPixelSet rle;
+
+	/**
+	 * Build a blob with holes, adding the pixels in a random order
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(3);
+		final List<Pixel> pixels = new ArrayList<Pixel>();
+		for (int y = 5; y < 30; y++)
+			for (int x = 10; x < 40; x++)
+				if ((x - 25) * (x - 25) + 2 * (y - 17) * (y - 17) < 180 && rng.nextFloat() < 0.8f)
+					pixels.add(new Pixel(x, y));
+		Collections.shuffle(pixels, rng);
+
+		expected = new ConnectedComponent();
+		rle = new RunLengthPixelSet();
+		for (final Pixel p : pixels) {
+			expected.addPixel(p.clone());
+			rle.addPixel(p.clone());
+		}
+	}
+
+	private void assertSameSet() {
+		assertEquals(expected.getPixels(), rle.getPixels());
+		assertEquals(expected.calculateArea(), rle.calculateArea());
+
+		int n = 0;
+		for (int i = 0; i < rle.getNumRuns(); i++) {
+			// runs are in raster order, and adjacent runs are merged
+			if (i > 0)
+				assertTrue(rle.getRunRow(i) > rle.getRunRow(i - 1) || rle.getRunStart(i) > rle.getRunEnd(i - 1) + 1);
+			n += rle.getRunEnd(i) - rle.getRunStart(i) + 1;
+		}
+		assertEquals(rle.calculateArea(), n);
+	}
+
+	/**
+	 * Check the {@link PixelSet} measurements
+	 */
+	@Test
+	public void testMeasurements() {
+		assertSameSet();
+
+		assertEquals(expected.calculateRegularBoundingBox(), rle.calculateRegularBoundingBox());
+		assertEquals(expected.calculateCentroid()[0], rle.calculateCentroid()[0], 1e-8);
+		assertEquals(expected.calculateCentroid()[1], rle.calculateCentroid()[1], 1e-8);
+		assertEquals(expected.calculateDirection(), rle.calculateDirection(), 1e-8);
+		assertEquals(expected.topLeftMostPixel(), rle.topLeftMostPixel());
+		assertEquals(expected.bottomRightMostPixel(), rle.bottomRightMostPixel());
+
+		for (int p = 0; p <= 3; p++)
+			for (int q = 0; p + q <= 3; q++)
+				assertEquals(expected.calculateMoment(p, q), rle.calculateMoment(p, q), 1e-4);
+
+		for (int y = 0; y < 35; y++)
+			for (int x = 5; x < 45; x++)
+				assertEquals(expected.find(x, y), rle.find(x, y));
+	}
+
+	/**
+	 * Check that the {@link ConnectedComponent} methods that work from the
+	 * pixels give the same results
+	 */
+	@Test
+	public void testConnectedComponentMethods() {
+		assertEquals(expected.getOuterBoundary(), rle.getOuterBoundary());
+		assertEquals(expected.toPolygon().getVertices(), rle.toPolygon().getVertices());
+		assertEquals(expected.calculateConvexHull().getVertices(), rle.calculateConvexHull().getVertices());
+		assertEquals(expected.toFImage(), rle.toFImage());
+	}
+
+	/**
+	 * Check removal through the set view and its iterator
+	 */
+	@Test
+	public void testRemove() {
+		final Random rng = new Random(5);
+		final List<Pixel> pixels = new ArrayList<Pixel>(expected.getPixels());
+		for (int i = 0; i < 100; i++) {
+			final Pixel p = pixels.get(rng.nextInt(pixels.size()));
+			assertEquals(expected.getPixels().remove(p), rle.getPixels().remove(p));
+		}
+		assertSameSet();
+
+		final Iterator<Pixel> it = rle.iterator();
+		while (it.hasNext()) {
+			final Pixel p = it.next();
+			if ((p.x + p.y) % 3 == 0) {
+				it.remove();
+				expected.getPixels().remove(p);
+			}
+		}
+		assertSameSet();
+
+		rle.getPixels().clear();
+		assertEquals(0, rle.calculateArea());
+		assertFalse(rle.iterator().hasNext());
+	}
+
+	/**
+	 * Check translation, repositioning and cloning
+	 */
+	@Test
+	public void testTranslateAndClone() {
+		final RunLengthPixelSet copy = rle.clone();
+
+		expected.translate(-3, 7);
+		rle.translate(-3, 7);
+		assertSameSet();
+
+		expected.reposition();
+		rle.reposition();
+		assertSameSet();
+
+		assertEquals(expected.calculateArea(), copy.calculateArea());
+		assertTrue(copy.find(copy.topLeftMostPixel()));
+		assertFalse(copy.getPixels().equals(rle.getPixels()));
+	}
+
+	/**
+	 * Check that the set can be written and read back
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadWrite() throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		rle.writeBinary(new DataOutputStream(baos));
+
+		final RunLengthPixelSet read = new RunLengthPixelSet();
+		read.readBinary(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+		assertEquals(rle.getPixels(), read.getPixels());
+		assertEquals(rle.getNumRuns(), read.getNumRuns());
+	}
+}
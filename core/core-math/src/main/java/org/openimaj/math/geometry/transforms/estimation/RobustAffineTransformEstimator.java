@@ -37,9 +37,12 @@ import org.openimaj.math.geometry.transforms.TransformUtilities;
 import org.openimaj.math.geometry.transforms.estimation.sampling.BucketingSampler2d;
 import org.openimaj.math.geometry.transforms.residuals.AlgebraicResidual2d;
 import org.openimaj.math.model.fit.LMedS;
+import org.openimaj.math.model.fit.ParallelRANSAC;
 import org.openimaj.math.model.fit.RANSAC;
 import org.openimaj.math.model.fit.RANSAC.StoppingCondition;
 import org.openimaj.math.model.fit.RobustModelFitting;
+import org.openimaj.math.model.fit.SPRTRANSAC;
+import org.openimaj.util.ProgressiveSampler;
 import org.openimaj.util.function.Predicate;
 import org.openimaj.util.pair.IndependentPair;
 
@@ -128,6 +131,18 @@ public class RobustAffineTransformEstimator implements RobustModelFitting<Point2
 				new BucketingSampler2d());
 	}
 
+	/**
+	 * Construct using the given robust fitter (for example an
+	 * {@link SPRTRANSAC}, a {@link ParallelRANSAC}, or a {@link RANSAC} with a
+	 * {@link ProgressiveSampler}).
+	 * 
+	 * @param robustFitter
+	 *            the robust fitter
+	 */
+	public RobustAffineTransformEstimator(RobustModelFitting<Point2d, Point2d, AffineTransformModel> robustFitter) {
+		this.robustFitter = robustFitter;
+	}
+
 	@Override
 	public boolean fitData(List<? extends IndependentPair<Point2d, Point2d>> data) {
 		// Use a robust fitting technique to find the inliers and estimate a
@@ -40,9 +40,12 @@ import org.openimaj.math.geometry.transforms.estimation.sampling.BucketingSample
 import org.openimaj.math.geometry.transforms.residuals.AlgebraicResidual2d;
 import org.openimaj.math.geometry.transforms.residuals.SymmetricTransferResidual2d;
 import org.openimaj.math.model.fit.LMedS;
+import org.openimaj.math.model.fit.ParallelRANSAC;
 import org.openimaj.math.model.fit.RANSAC;
 import org.openimaj.math.model.fit.RANSAC.StoppingCondition;
 import org.openimaj.math.model.fit.RobustModelFitting;
+import org.openimaj.math.model.fit.SPRTRANSAC;
+import org.openimaj.util.ProgressiveSampler;
 import org.openimaj.util.function.Predicate;
 import org.openimaj.util.pair.IndependentPair;
 import org.openimaj.util.pair.Pair;
@@ -162,6 +165,27 @@ public class RobustHomographyEstimator implements RobustModelFitting<Point2d, Po
 		this.refinement = refinement;
 	}
 
+	/**
+	 * Construct using the given robust fitter (for example an
+	 * {@link SPRTRANSAC}, a {@link ParallelRANSAC}, or a {@link RANSAC} with a
+	 * {@link ProgressiveSampler}). The data given to the fitter is normalised
+	 * first, so the fitter's model should be a {@link HomographyModel} that
+	 * doesn't normalise its own data, and its threshold applies in the
+	 * normalised space. The order of the data is preserved, so data that has
+	 * been sorted by quality can be progressively sampled.
+	 *
+	 * @param robustFitter
+	 *            the robust fitter
+	 * @param refinement
+	 *            the refinement technique
+	 */
+	public RobustHomographyEstimator(RobustModelFitting<Point2d, Point2d, HomographyModel> robustFitter,
+			HomographyRefinement refinement)
+	{
+		this.robustFitter = robustFitter;
+		this.refinement = refinement;
+	}
+
 	@Override
 	public boolean fitData(List<? extends IndependentPair<Point2d, Point2d>> data) {
 		final Pair<Matrix> norms = TransformUtilities.getNormalisations(data);
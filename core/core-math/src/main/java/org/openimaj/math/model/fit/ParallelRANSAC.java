@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.model.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.math.model.EstimatableModel;
+import org.openimaj.math.model.fit.residuals.ResidualCalculator;
+import org.openimaj.math.util.distance.DistanceCheck;
+import org.openimaj.math.util.distance.ThresholdDistanceCheck;
+import org.openimaj.util.CollectionSampler;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+import org.openimaj.util.pair.IndependentPair;
+
+import com.rits.cloning.Cloner;
+
+/**
+ * {@link RANSAC} that estimates and evaluates batches of hypotheses in
+ * parallel. The samples are all drawn from the sampler on the calling thread,
+ * and the evaluated hypotheses are then considered in the order they were
+ * sampled, so the result is exactly the same as that of {@link RANSAC} with
+ * the same sampler and seed, regardless of the number of threads. Giving the
+ * sampler a seeded random number generator therefore makes the fitting
+ * deterministic.
+ * <p>
+ * Each thread estimates models with its own clone of the model, and computes
+ * residuals with its own deep copy of the residual calculator. The
+ * {@link DistanceCheck} is shared, and must be safe to use concurrently (as
+ * {@link ThresholdDistanceCheck} is).
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <I>
+ *            type of independent data
+ * @param <D>
+ *            type of dependent data
+ * @param <M>
+ *            concrete type of model learned
+ */
+public class ParallelRANSAC<I, D, M extends EstimatableModel<I, D>> extends RANSAC<I, D, M> {
+	private final ThreadPoolExecutor pool;
+	private final int batchSize;
+
+	private final List<List<? extends IndependentPair<I, D>>> samples;
+	private final boolean[] estimated;
+	private boolean[][] consistent;
+	private int next;
+	private int drawn;
+
+	/**
+	 * Create a parallel RANSAC object (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}
+	 * for the restrictions on the pool).
+	 * 
+	 * @param model
+	 *            Model object with which to fit data
+	 * @param errorModel
+	 *            object to compute the error of the model
+	 * @param errorThreshold
+	 *            the threshold below which error is deemed acceptable for a fit
+	 * @param nIterations
+	 *            Maximum number of allowed iterations (L)
+	 * @param stoppingCondition
+	 *            the stopping condition
+	 * @param impEst
+	 *            True if we want to perform a final fitting of the model with
+	 *            all inliers, false otherwise
+	 * @param sampler
+	 *            the sampling algorithm for selecting random subsets
+	 * @param pool
+	 *            the pool to evaluate hypotheses with
+	 */
+	public ParallelRANSAC(M model, ResidualCalculator<I, D, M> errorModel,
+			double errorThreshold, int nIterations,
+			StoppingCondition stoppingCondition, boolean impEst, CollectionSampler<IndependentPair<I, D>> sampler,
+			ThreadPoolExecutor pool)
+	{
+		this(model, errorModel, new ThresholdDistanceCheck(errorThreshold), nIterations, stoppingCondition, impEst,
+				sampler, pool, 8 * pool.getMaximumPoolSize());
+	}
+
+	/**
+	 * Create a parallel RANSAC object (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}
+	 * for the restrictions on the pool).
+	 * 
+	 * @param model
+	 *            Model object with which to fit data
+	 * @param errorModel
+	 *            object to compute the error of the model
+	 * @param dc
+	 *            the distance check that tests whether a point with given error
+	 *            from the error model should be considered an inlier
+	 * @param nIterations
+	 *            Maximum number of allowed iterations (L)
+	 * @param stoppingCondition
+	 *            the stopping condition
+	 * @param impEst
+	 *            True if we want to perform a final fitting of the model with
+	 *            all inliers, false otherwise
+	 * @param sampler
+	 *            the sampling algorithm for selecting random subsets
+	 * @param pool
+	 *            the pool to evaluate hypotheses with
+	 * @param batchSize
+	 *            the number of hypotheses to evaluate between checks of the
+	 *            stopping condition
+	 */
+	public ParallelRANSAC(M model, ResidualCalculator<I, D, M> errorModel,
+			DistanceCheck dc, int nIterations,
+			StoppingCondition stoppingCondition, boolean impEst, CollectionSampler<IndependentPair<I, D>> sampler,
+			ThreadPoolExecutor pool, int batchSize)
+	{
+		super(model, errorModel, dc, nIterations, stoppingCondition, impEst, sampler);
+
+		this.pool = pool;
+		this.batchSize = batchSize;
+		this.samples = new ArrayList<List<? extends IndependentPair<I, D>>>(batchSize);
+		this.estimated = new boolean[batchSize];
+	}
+
+	@Override
+	public boolean fitData(final List<? extends IndependentPair<I, D>> data) {
+		samples.clear();
+		next = 0;
+		drawn = 0;
+
+		if (consistent == null || consistent[0].length != data.size())
+			consistent = new boolean[batchSize][data.size()];
+
+		return super.fitData(data);
+	}
+
+	/**
+	 * Takes the next hypothesis from the current batch, drawing and evaluating
+	 * a new batch in parallel when the current one is exhausted.
+	 */
+	@Override
+	protected boolean hypothesise(final List<? extends IndependentPair<I, D>> data) {
+		if (next == samples.size())
+			evaluateBatch(data);
+
+		final int i = next++;
+		this.setModelConstructionData(samples.get(i));
+
+		if (!estimated[i])
+			return false; // bad estimate
+
+		inliers.clear();
+		outliers.clear();
+		for (int j = 0; j < data.size(); j++) {
+			if (consistent[i][j])
+				inliers.add(data.get(j));
+			else
+				outliers.add(data.get(j));
+		}
+
+		return true;
+	}
+
+	/**
+	 * The hypotheses are estimated on clones of the model, so the model is
+	 * re-estimated from the sample of the hypothesis that met the stopping
+	 * condition.
+	 */
+	@Override
+	protected boolean restoreHypothesis() {
+		return model.estimate(modelConstructionData);
+	}
+
+	private void evaluateBatch(final List<? extends IndependentPair<I, D>> data) {
+		final int M = model.numItemsToEstimate();
+
+		final int n = Math.min(batchSize, nIter - drawn);
+		drawn += n;
+
+		// draw the samples in order on this thread
+		samples.clear();
+		for (int i = 0; i < n; i++)
+			samples.add(sampler.sample(M));
+		next = 0;
+
+		// estimate and evaluate in parallel
+		Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				@SuppressWarnings("unchecked")
+				final M localModel = (M) model.clone();
+				final ResidualCalculator<I, D, M> localError = new Cloner().deepClone(errorModel);
+
+				for (int i = range.start; i < range.stop; i++) {
+					final List<? extends IndependentPair<I, D>> sample = samples.get(i);
+
+					estimated[i] = sample != null && localModel.estimate(sample);
+					if (!estimated[i])
+						continue;
+
+					localError.setModel(localModel);
+					final boolean[] c = consistent[i];
+					for (int j = 0; j < c.length; j++)
+						c[j] = dc.check(localError.computeResidual(data.get(j)));
+				}
+			}
+		}, pool);
+	}
+}
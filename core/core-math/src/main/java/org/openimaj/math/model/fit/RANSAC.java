@@ -466,29 +466,11 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 		sampler.setCollection(data);
 
 		for (l = 0; l < nIter; l++) {
-			// 1
-			final List<? extends IndependentPair<I, D>> rnd = sampler.sample(M);
-			this.setModelConstructionData(rnd);
-
-			// 2
-			if (!model.estimate(rnd))
-				continue; // bad estimate
-
-			errorModel.setModel(model);
-
-			// 3
-			int K = 0;
-			inliers.clear();
-			outliers.clear();
-			for (final IndependentPair<I, D> dp : data) {
-				if (dc.check(errorModel.computeResidual(dp)))
-				{
-					K++;
-					inliers.add(dp);
-				} else {
-					outliers.add(dp);
-				}
-			}
+			// 1, 2 & 3
+			if (!hypothesise(data))
+				continue; // bad estimate, or rejected without full evaluation
+
+			final int K = inliers.size();
 
 			if (bestModelInliers == null || inliers.size() >= bestModelInliers.size()) {
 				// copy
@@ -502,6 +484,9 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 				inliers = bestModelInliers;
 				outliers = bestModelOutliers;
 
+				if (!restoreHypothesis())
+					return false;
+
 				if (improveEstimate) {
 					if (inliers.size() >= model.numItemsToEstimate())
 						if (!model.estimate(inliers))
@@ -532,6 +517,70 @@ public class RANSAC<I, D, M extends EstimatableModel<I, D>> implements RobustMod
 		return stoppingCondition.finalFitCondition(inliers.size());
 	}
 
+	/**
+	 * Draw a sample of the data with the {@link #sampler}, record it as the
+	 * {@link #modelConstructionData}, estimate the {@link #model} from it, and
+	 * evaluate the model against the data (see
+	 * {@link #evaluateModel(List)}). Subclasses can override this to change
+	 * how hypotheses are generated.
+	 *
+	 * @param data
+	 *            the data being fitted
+	 * @return true if a model was estimated and evaluated against all the
+	 *         data, filling the {@link #inliers} and {@link #outliers} lists;
+	 *         false if the estimate failed or the model was rejected early
+	 */
+	protected boolean hypothesise(final List<? extends IndependentPair<I, D>> data) {
+		final List<? extends IndependentPair<I, D>> rnd = sampler.sample(model.numItemsToEstimate());
+		this.setModelConstructionData(rnd);
+
+		if (!model.estimate(rnd))
+			return false;
+
+		errorModel.setModel(model);
+
+		return evaluateModel(data);
+	}
+
+	/**
+	 * Put the {@link #model} into the state estimated from the
+	 * {@link #modelConstructionData} of the last successful call to
+	 * {@link #hypothesise(List)}. This is called when the stopping condition
+	 * is met. The default implementation does nothing, as
+	 * {@link #hypothesise(List)} estimates the model in place.
+	 *
+	 * @return false if the model could not be estimated
+	 */
+	protected boolean restoreHypothesis() {
+		return true;
+	}
+
+	/**
+	 * Evaluate the current model (which has already been set on the error
+	 * model) against the data, filling the {@link #inliers} and
+	 * {@link #outliers} lists. Subclasses can override this to reject bad
+	 * models without testing every data item.
+	 *
+	 * @param data
+	 *            the data being fitted
+	 * @return true if the model was evaluated against all the data; false if
+	 *         it was rejected early, in which case the inlier and outlier
+	 *         lists are incomplete and the model is discarded
+	 */
+	protected boolean evaluateModel(final List<? extends IndependentPair<I, D>> data) {
+		inliers.clear();
+		outliers.clear();
+		for (final IndependentPair<I, D> dp : data) {
+			if (dc.check(errorModel.computeResidual(dp)))
+			{
+				inliers.add(dp);
+			} else {
+				outliers.add(dp);
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public List<? extends IndependentPair<I, D>> getInliers()
 			{
@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.model.fit;
+
+import java.util.List;
+import java.util.Random;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.math.model.EstimatableModel;
+import org.openimaj.math.model.fit.residuals.ResidualCalculator;
+import org.openimaj.math.util.distance.DistanceCheck;
+import org.openimaj.math.util.distance.ThresholdDistanceCheck;
+import org.openimaj.util.CollectionSampler;
+import org.openimaj.util.UniformSampler;
+import org.openimaj.util.pair.IndependentPair;
+
+/**
+ * {@link RANSAC} with hypothesis evaluation by Wald's Sequential Probability
+ * Ratio Test (R-RANSAC with SPRT). The data items are tested against each
+ * hypothesised model in a random order, and the test stops as soon as the
+ * evidence that the model is bad outweighs the likelihood that it is good, so
+ * bad models are typically rejected after testing only a few tens of items.
+ * <p>
+ * The test depends on the probability that an item is consistent with a good
+ * model (&epsilon;, the inlier ratio) and with a bad model (&delta;). Both are
+ * estimated as the fitting progresses, starting from the given initial
+ * values: &epsilon; from the best model found so far, and &delta; from the
+ * fraction of consistent items in rejected models. A model is only reported if
+ * it has been tested against all the data, so the inliers and outliers are
+ * always complete.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <I>
+ *            type of independent data
+ * @param <D>
+ *            type of dependent data
+ * @param <M>
+ *            concrete type of model learned
+ */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "Chum, O.", "Matas, J." },
+		title = "Optimal Randomized RANSAC",
+		year = "2008",
+		journal = "IEEE Transactions on Pattern Analysis and Machine Intelligence",
+		pages = { "1472", "1482" },
+		number = "8",
+		volume = "30")
+public class SPRTRANSAC<I, D, M extends EstimatableModel<I, D>> extends RANSAC<I, D, M> {
+	/**
+	 * Default initial estimate of the probability that an item is consistent
+	 * with a good model
+	 */
+	public static final double DEFAULT_INITIAL_EPSILON = 0.1;
+
+	/**
+	 * Default initial estimate of the probability that an item is consistent
+	 * with a bad model
+	 */
+	public static final double DEFAULT_INITIAL_DELTA = 0.01;
+
+	/**
+	 * Default time taken to estimate a model, in units of the time taken to
+	 * test a single item
+	 */
+	public static final double DEFAULT_MODEL_ESTIMATION_COST = 200;
+
+	private final double initialEpsilon;
+	private final double initialDelta;
+	private final double modelEstimationCost;
+	private final Random rng;
+
+	private double epsilon;
+	private double delta;
+	private double threshold;
+	private int[] order;
+	private boolean[] consistent;
+	private int numRejected;
+	private double rejectedConsistency;
+
+	/**
+	 * Create an SPRT RANSAC object with uniform random sampling for creating
+	 * the subsets and the default SPRT parameters
+	 * 
+	 * @param model
+	 *            Model object with which to fit data
+	 * @param errorModel
+	 *            object to compute the error of the model
+	 * @param errorThreshold
+	 *            the threshold below which error is deemed acceptable for a fit
+	 * @param nIterations
+	 *            Maximum number of allowed iterations (L)
+	 * @param stoppingCondition
+	 *            the stopping condition
+	 * @param impEst
+	 *            True if we want to perform a final fitting of the model with
+	 *            all inliers, false otherwise
+	 */
+	public SPRTRANSAC(M model, ResidualCalculator<I, D, M> errorModel,
+			double errorThreshold, int nIterations,
+			StoppingCondition stoppingCondition, boolean impEst)
+	{
+		this(model, errorModel, new ThresholdDistanceCheck(errorThreshold), nIterations, stoppingCondition, impEst,
+				new UniformSampler<IndependentPair<I, D>>(), DEFAULT_INITIAL_EPSILON, DEFAULT_INITIAL_DELTA,
+				DEFAULT_MODEL_ESTIMATION_COST, new Random());
+	}
+
+	/**
+	 * Create an SPRT RANSAC object
+	 * 
+	 * @param model
+	 *            Model object with which to fit data
+	 * @param errorModel
+	 *            object to compute the error of the model
+	 * @param dc
+	 *            the distance check that tests whether a point with given error
+	 *            from the error model should be considered an inlier
+	 * @param nIterations
+	 *            Maximum number of allowed iterations (L)
+	 * @param stoppingCondition
+	 *            the stopping condition
+	 * @param impEst
+	 *            True if we want to perform a final fitting of the model with
+	 *            all inliers, false otherwise
+	 * @param sampler
+	 *            the sampling algorithm for selecting random subsets
+	 * @param initialEpsilon
+	 *            initial estimate of the probability that an item is consistent
+	 *            with a good model
+	 * @param initialDelta
+	 *            initial estimate of the probability that an item is consistent
+	 *            with a bad model
+	 * @param modelEstimationCost
+	 *            the time taken to estimate a model, in units of the time taken
+	 *            to test a single item
+	 * @param rng
+	 *            the random number generator used to order the tests
+	 */
+	public SPRTRANSAC(M model, ResidualCalculator<I, D, M> errorModel,
+			DistanceCheck dc, int nIterations,
+			StoppingCondition stoppingCondition, boolean impEst, CollectionSampler<IndependentPair<I, D>> sampler,
+			double initialEpsilon, double initialDelta, double modelEstimationCost, Random rng)
+	{
+		super(model, errorModel, dc, nIterations, stoppingCondition, impEst, sampler);
+
+		this.initialEpsilon = initialEpsilon;
+		this.initialDelta = initialDelta;
+		this.modelEstimationCost = modelEstimationCost;
+		this.rng = rng;
+	}
+
+	@Override
+	public boolean fitData(List<? extends IndependentPair<I, D>> data) {
+		epsilon = initialEpsilon;
+		delta = initialDelta;
+		numRejected = 0;
+		rejectedConsistency = 0;
+		threshold = computeThreshold();
+
+		order = new int[data.size()];
+		for (int i = 0; i < order.length; i++) {
+			final int j = rng.nextInt(i + 1);
+			order[i] = order[j];
+			order[j] = i;
+		}
+		consistent = new boolean[data.size()];
+
+		return super.fitData(data);
+	}
+
+	/**
+	 * Compute the SPRT decision threshold A for the current estimates of
+	 * epsilon and delta, by iterating A = K + log(A) to convergence.
+	 */
+	private double computeThreshold() {
+		if (epsilon <= delta)
+			return Double.POSITIVE_INFINITY; // the test can't distinguish
+
+		final double c = (1 - delta) * Math.log((1 - delta) / (1 - epsilon)) + delta * Math.log(delta / epsilon);
+		final double k = modelEstimationCost * c + 1;
+
+		double a = k;
+		for (int i = 0; i < 10; i++)
+			a = k + Math.log(a);
+
+		return a;
+	}
+
+	@Override
+	protected boolean evaluateModel(List<? extends IndependentPair<I, D>> data) {
+		final double consistentRatio = delta / epsilon;
+		final double inconsistentRatio = (1 - delta) / (1 - epsilon);
+
+		double lambda = 1;
+		int numConsistent = 0;
+		for (int j = 0; j < order.length; j++) {
+			final int k = order[j];
+
+			consistent[k] = dc.check(errorModel.computeResidual(data.get(k)));
+			if (consistent[k]) {
+				numConsistent++;
+				lambda *= consistentRatio;
+			} else {
+				lambda *= inconsistentRatio;
+			}
+
+			if (lambda > threshold) {
+				rejected((double) numConsistent / (j + 1));
+				return false;
+			}
+		}
+
+		// the model was tested against all the data, so report the inliers
+		// and outliers in the order of the data rather than the test order
+		inliers.clear();
+		outliers.clear();
+		for (int k = 0; k < consistent.length; k++) {
+			if (consistent[k])
+				inliers.add(data.get(k));
+			else
+				outliers.add(data.get(k));
+		}
+
+		final int best = bestModelInliers == null ? 0 : bestModelInliers.size();
+		if (inliers.size() > best && inliers.size() > epsilon * data.size()) {
+			epsilon = (double) inliers.size() / data.size();
+			threshold = computeThreshold();
+		}
+
+		return true;
+	}
+
+	private void rejected(double consistency) {
+		numRejected++;
+		rejectedConsistency += consistency;
+
+		final double newDelta = Math.max(rejectedConsistency / numRejected, 1e-6);
+		if (Math.abs(newDelta - delta) > 0.05 * delta) {
+			delta = newDelta;
+			threshold = computeThreshold();
+		}
+	}
+}
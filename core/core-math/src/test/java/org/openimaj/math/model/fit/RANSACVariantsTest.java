@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.model.fit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Test;
+import org.openimaj.math.geometry.point.Point2d;
+import org.openimaj.math.geometry.point.Point2dImpl;
+import org.openimaj.math.geometry.transforms.AffineTransformModel;
+import org.openimaj.math.geometry.transforms.residuals.SingleImageTransferResidual2d;
+import org.openimaj.math.geometry.transforms.residuals.TransformedSITR2d;
+import org.openimaj.math.model.fit.RANSAC.StoppingCondition;
+import org.openimaj.math.util.distance.ThresholdDistanceCheck;
+import org.openimaj.util.ProgressiveSampler;
+import org.openimaj.util.UniformSampler;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.pair.Pair;
+
+import Jama.Matrix;
+
+/**
+ * Tests for the {@link SPRTRANSAC} and {@link ParallelRANSAC} variants of
+ * {@link RANSAC}, and for {@link ProgressiveSampler}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RANSACVariantsTest {
+	private static final double THRESHOLD = 4;
+
+	/**
+	 * Create point pairs of which the first nInliers are related by an affine
+	 * transform (with a little noise) and the rest are random
+	 */
+	private static List<Pair<Point2d>> createData(Random rng, int nInliers, int nOutliers) {
+		final List<Pair<Point2d>> data = new ArrayList<Pair<Point2d>>();
+
+		for (int i = 0; i < nInliers + nOutliers; i++) {
+			final Point2dImpl p = new Point2dImpl(rng.nextFloat() * 500, rng.nextFloat() * 500);
+			final Point2dImpl q;
+
+			if (i < nInliers) {
+				q = new Point2dImpl(0.9f * p.x - 0.2f * p.y + 20, 0.1f * p.x + 1.1f * p.y - 5);
+				q.x += (float) rng.nextGaussian() * 0.3f;
+				q.y += (float) rng.nextGaussian() * 0.3f;
+			} else {
+				q = new Point2dImpl(rng.nextFloat() * 500, rng.nextFloat() * 500);
+			}
+
+			data.add(new Pair<Point2d>(p, q));
+		}
+
+		return data;
+	}
+
+	private static Set<Pair<Point2d>> inliersOf(List<Pair<Point2d>> data, int nInliers) {
+		return new HashSet<Pair<Point2d>>(data.subList(0, nInliers));
+	}
+
+	/**
+	 * The parallel variant must give exactly the same result as the sequential
+	 * one with the same seed
+	 */
+	@Test
+	public void testParallelIsDeterministic() {
+		final List<Pair<Point2d>> data = createData(new Random(1), 60, 140);
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(3);
+
+		try {
+			for (final StoppingCondition sc : new StoppingCondition[] {
+					new RANSAC.BestFitStoppingCondition(),
+					new RANSAC.ProbabilisticMinInliersStoppingCondition(0.01),
+					new RANSAC.NumberInliersStoppingCondition(55) })
+			for (final boolean impEst : new boolean[] { true, false })
+			{
+				final RANSAC<Point2d, Point2d, AffineTransformModel> seq = new RANSAC<Point2d, Point2d, AffineTransformModel>(
+						new AffineTransformModel(), new SingleImageTransferResidual2d<AffineTransformModel>(),
+						new ThresholdDistanceCheck(THRESHOLD), 300, sc, impEst,
+						new UniformSampler<IndependentPair<Point2d, Point2d>>(new Random(7)));
+
+				// the residual calculator has no no-argument constructor, so
+				// must be copied for each thread
+				final ParallelRANSAC<Point2d, Point2d, AffineTransformModel> par = new ParallelRANSAC<Point2d, Point2d, AffineTransformModel>(
+						new AffineTransformModel(), new TransformedSITR2d<AffineTransformModel>(Matrix.identity(3, 3),
+								Matrix.identity(3, 3)),
+						new ThresholdDistanceCheck(THRESHOLD), 300, sc, impEst,
+						new UniformSampler<IndependentPair<Point2d, Point2d>>(new Random(7)), pool, 13);
+
+				assertEquals(seq.fitData(data), par.fitData(data));
+				assertEquals(seq.getInliers(), par.getInliers());
+				assertEquals(seq.getOutliers(), par.getOutliers());
+
+				final double[][] expected = seq.getModel().getTransform().getArray();
+				final double[][] actual = par.getModel().getTransform().getArray();
+				for (int i = 0; i < expected.length; i++)
+					assertArrayEquals(expected[i], actual[i], 0);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The parallel variant must report failure if the model can't be
+	 * re-estimated from the hypothesis that met the stopping condition
+	 */
+	@Test
+	public void testParallelChecksFinalEstimate() {
+		final List<Pair<Point2d>> data = createData(new Random(1), 60, 140);
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(3);
+
+		try {
+			// clones are plain affine models, so only the final estimate on
+			// the original fails
+			final AffineTransformModel failing = new AffineTransformModel() {
+				@Override
+				public boolean estimate(List<? extends IndependentPair<Point2d, Point2d>> data) {
+					return false;
+				}
+			};
+
+			final ParallelRANSAC<Point2d, Point2d, AffineTransformModel> par = new ParallelRANSAC<Point2d, Point2d, AffineTransformModel>(
+					failing, new SingleImageTransferResidual2d<AffineTransformModel>(),
+					new ThresholdDistanceCheck(THRESHOLD), 300, new RANSAC.NumberInliersStoppingCondition(30), false,
+					new UniformSampler<IndependentPair<Point2d, Point2d>>(new Random(7)), pool, 13);
+
+			assertFalse(par.fitData(data));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The SPRT variant should find the inliers, and report the inliers and
+	 * outliers in the order of the data
+	 */
+	@Test
+	public void testSPRT() {
+		final List<Pair<Point2d>> data = createData(new Random(2), 80, 320);
+		final Set<Pair<Point2d>> truth = inliersOf(data, 80);
+
+		final SPRTRANSAC<Point2d, Point2d, AffineTransformModel> sprt = new SPRTRANSAC<Point2d, Point2d, AffineTransformModel>(
+				new AffineTransformModel(), new SingleImageTransferResidual2d<AffineTransformModel>(),
+				new ThresholdDistanceCheck(THRESHOLD), 1000, new RANSAC.BestFitStoppingCondition(), true,
+				new UniformSampler<IndependentPair<Point2d, Point2d>>(new Random(3)),
+				SPRTRANSAC.DEFAULT_INITIAL_EPSILON, SPRTRANSAC.DEFAULT_INITIAL_DELTA,
+				SPRTRANSAC.DEFAULT_MODEL_ESTIMATION_COST, new Random(4));
+
+		assertTrue(sprt.fitData(data));
+		assertEquals(data.size(), sprt.getInliers().size() + sprt.getOutliers().size());
+		assertTrue(sprt.getInliers().size() >= 76);
+		for (final IndependentPair<Point2d, Point2d> p : sprt.getInliers())
+			assertTrue(truth.contains(p));
+
+		assertInDataOrder(data, sprt.getInliers());
+		assertInDataOrder(data, sprt.getOutliers());
+	}
+
+	private static void assertInDataOrder(List<Pair<Point2d>> data, List<? extends IndependentPair<Point2d, Point2d>> items) {
+		int last = -1;
+		for (final IndependentPair<Point2d, Point2d> p : items) {
+			final int index = data.indexOf(p);
+			assertTrue(index > last);
+			last = index;
+		}
+	}
+
+	/**
+	 * Progressive sampling should start at the top of the ordering, and
+	 * should reach the whole collection
+	 */
+	@Test
+	public void testProgressiveSampler() {
+		final List<Integer> items = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++)
+			items.add(i);
+
+		final ProgressiveSampler<Integer> sampler = new ProgressiveSampler<Integer>(null, 2000, new Random(5));
+		sampler.setCollection(items);
+
+		int maxSeen = 0;
+		for (int t = 0; t < 5000; t++) {
+			final List<Integer> sample = sampler.sample(4);
+			assertEquals(4, new HashSet<Integer>(sample).size());
+
+			for (final int i : sample) {
+				if (t < 10)
+					assertTrue(i < 20);
+				maxSeen = Math.max(maxSeen, i);
+			}
+		}
+		assertEquals(99, maxSeen);
+	}
+
+	/**
+	 * With well-ordered data progressive sampling should need far fewer
+	 * iterations than uniform sampling
+	 */
+	@Test
+	public void testProsac() {
+		final List<Pair<Point2d>> data = createData(new Random(6), 30, 270);
+		final Set<Pair<Point2d>> truth = inliersOf(data, 30);
+
+		final int[] iterations = new int[1];
+		final RANSAC<Point2d, Point2d, AffineTransformModel> prosac = new RANSAC<Point2d, Point2d, AffineTransformModel>(
+				new AffineTransformModel(), new SingleImageTransferResidual2d<AffineTransformModel>(),
+				new ThresholdDistanceCheck(THRESHOLD), 1000, new RANSAC.NumberInliersStoppingCondition(25) {
+					@Override
+					public boolean shouldStopIterations(int numInliers) {
+						iterations[0]++;
+						return super.shouldStopIterations(numInliers);
+					}
+				}, true, new ProgressiveSampler<IndependentPair<Point2d, Point2d>>(null, 10000, new Random(8)));
+
+		assertTrue(prosac.fitData(data));
+		assertTrue(iterations[0] < 50);
+		for (final IndependentPair<Point2d, Point2d> p : prosac.getInliers())
+			assertTrue(truth.contains(p));
+	}
+}
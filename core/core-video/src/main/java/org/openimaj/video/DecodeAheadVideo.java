@@ -0,0 +1,449 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.openimaj.image.Image;
+import org.openimaj.video.timecode.FrameNumberVideoTimecode;
+
+/**
+ * A {@link Video} that decodes the frames of an underlying video ahead of time
+ * on a background thread. Decoded frames are copied from the underlying
+ * video's frame buffer into a pool of reusable frame buffers and queued until
+ * they are consumed, so that decoding can proceed in parallel with the
+ * processing of the frames.
+ * <p>
+ * Frames can be consumed in two ways. Through the normal {@link Video} API,
+ * {@link #getNextFrame()} returns the next decoded frame; as with other
+ * videos, the returned image is only valid until the next call to
+ * {@link #getNextFrame()}, at which point its buffer is returned to the pool.
+ * Alternatively, {@link #nextPooledFrame()} returns a {@link PooledVideoFrame}
+ * which remains valid until it is explicitly {@link PooledVideoFrame#release()
+ * released}; this allows frames to be handed to other threads without
+ * copying. Note that the decoder blocks if all of the buffers in the pool are
+ * held by consumers.
+ * <p>
+ * Frames should be consumed by a single thread. Other threads may
+ * concurrently call {@link #stop()}, {@link #reset()} or
+ * {@link #getTimeStamp()}; these are not blocked whilst the consumer waits
+ * for the decoder. The end of the video is signalled to the consumer by a
+ * marker frame that the decoder queues after the last frame, or that
+ * {@link #stop()} queues to wake a waiting consumer.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <T>
+ *            Type of {@link Image} in the video
+ */
+public class DecodeAheadVideo<T extends Image<?, T>> extends Video<T> {
+	/**
+	 * A frame decoded by a {@link DecodeAheadVideo} whose buffer belongs to
+	 * the video's buffer pool. The frame must be {@link #release() released}
+	 * once it is no longer required.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 * 
+	 * @param <T>
+	 *            Type of {@link Image} in the video
+	 */
+	public static class PooledVideoFrame<T extends Image<?, T>> extends VideoFrame<T> {
+		/** The timestamp of the frame in milliseconds */
+		public final long timestamp;
+
+		/** The index of the frame in the video */
+		public final int index;
+
+		private DecodeAheadVideo<T> owner;
+
+		PooledVideoFrame(DecodeAheadVideo<T> owner, T frame, long timestamp, int index) {
+			this(frame, timestamp, index, owner.getFPS());
+			this.owner = owner;
+		}
+
+		/**
+		 * Construct a frame that doesn't belong to a pool. Calling
+		 * {@link #release()} on such a frame has no effect.
+		 * 
+		 * @param frame
+		 *            the frame
+		 * @param timestamp
+		 *            the timestamp of the frame in milliseconds
+		 * @param index
+		 *            the index of the frame in the video
+		 * @param fps
+		 *            the frame rate of the video
+		 */
+		public PooledVideoFrame(T frame, long timestamp, int index, double fps) {
+			super(frame, new FrameNumberVideoTimecode(index, fps));
+			this.timestamp = timestamp;
+			this.index = index;
+		}
+
+		/**
+		 * Return the frame buffer to the pool. The frame must not be used after
+		 * it has been released. Releasing a frame more than once has no
+		 * effect.
+		 */
+		public synchronized void release() {
+			if (owner != null) {
+				owner.recycle(frame);
+				owner = null;
+			}
+		}
+	}
+
+	private final Video<T> video;
+	private final int bufferSize;
+
+	private final BlockingQueue<PooledVideoFrame<T>> decoded;
+	private final BlockingQueue<T> pool;
+	private int allocated = 0;
+
+	private final PooledVideoFrame<T> endOfStream;
+
+	private volatile Thread decoder;
+	private volatile Throwable decoderError;
+
+	private PooledVideoFrame<T> current;
+	private PooledVideoFrame<T> pending;
+	private boolean finished = false;
+	private int generation = 0;
+
+	/**
+	 * Construct a {@link DecodeAheadVideo} that decodes up to the given number
+	 * of frames ahead of the consumer. The pool holds two more buffers than
+	 * the number of decoded-ahead frames, so that the consumer can hold the
+	 * current frame whilst the decoder fills the queue.
+	 * 
+	 * @param video
+	 *            the underlying video
+	 * @param bufferSize
+	 *            the maximum number of frames to decode ahead
+	 */
+	public DecodeAheadVideo(Video<T> video, int bufferSize) {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize must be at least 1");
+
+		this.video = video;
+		this.bufferSize = bufferSize;
+		this.decoded = new ArrayBlockingQueue<PooledVideoFrame<T>>(bufferSize + 1);
+		this.pool = new ArrayBlockingQueue<T>(bufferSize + 2);
+		this.endOfStream = new PooledVideoFrame<T>(null, -1, -1, 0);
+
+		startDecoder();
+	}
+
+	/**
+	 * Construct a {@link DecodeAheadVideo} that decodes up to 8 frames ahead
+	 * of the consumer.
+	 * 
+	 * @param video
+	 *            the underlying video
+	 */
+	public DecodeAheadVideo(Video<T> video) {
+		this(video, 8);
+	}
+
+	private synchronized void startDecoder() {
+		finished = false;
+		decoderError = null;
+		generation++;
+
+		final Thread thread = new Thread("DecodeAheadVideo decoder") {
+			@Override
+			public void run() {
+				decode(this);
+			}
+		};
+		thread.setDaemon(true);
+		decoder = thread;
+		thread.start();
+	}
+
+	private void decode(Thread self) {
+		try {
+			while (decoder == self) {
+				final T frame = video.getNextFrame();
+
+				if (frame == null)
+					break;
+
+				final T buffer = acquireBuffer(frame);
+				decoded.put(new PooledVideoFrame<T>(this, buffer, video.getTimeStamp(),
+						video.getCurrentFrameIndex()));
+			}
+		} catch (final InterruptedException e) {
+			return;
+		} catch (final Throwable t) {
+			decoderError = t;
+		}
+
+		try {
+			if (decoder == self)
+				decoded.put(endOfStream);
+		} catch (final InterruptedException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * Get a buffer from the pool (allocating a new one if the pool hasn't
+	 * reached its capacity) and copy the given frame into it. Blocks until a
+	 * buffer is available.
+	 */
+	private T acquireBuffer(T frame) throws InterruptedException {
+		T buffer = pool.poll();
+
+		if (buffer == null) {
+			synchronized (pool) {
+				if (allocated < bufferSize + 2) {
+					allocated++;
+					return frame.clone();
+				}
+			}
+			buffer = pool.take();
+		}
+
+		if (buffer.getWidth() != frame.getWidth() || buffer.getHeight() != frame.getHeight())
+			return frame.clone();
+
+		return buffer.internalCopy(frame);
+	}
+
+	void recycle(T buffer) {
+		if (buffer != null)
+			pool.offer(buffer);
+	}
+
+	private synchronized void stopDecoder() {
+		final Thread thread = decoder;
+		decoder = null;
+
+		if (thread != null) {
+			thread.interrupt();
+
+			// unblock the decoder if it's waiting on a full queue
+			drain();
+
+			try {
+				thread.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		drain();
+	}
+
+	private void drain() {
+		PooledVideoFrame<T> f;
+		while ((f = decoded.poll()) != null)
+			f.release();
+	}
+
+	/**
+	 * Get the next decoded frame from the queue, blocking until it is
+	 * available. Returns null at the end of the video. The wait on the queue
+	 * is made without holding this video's monitor, so a slow decoder doesn't
+	 * block callers of the other methods.
+	 */
+	private PooledVideoFrame<T> takeDecoded() {
+		while (true) {
+			final int gen;
+			synchronized (this) {
+				if (pending != null) {
+					final PooledVideoFrame<T> f = pending;
+					pending = null;
+					return f;
+				}
+
+				if (finished)
+					return null;
+
+				gen = generation;
+			}
+
+			final PooledVideoFrame<T> f;
+			try {
+				f = decoded.take();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+
+			if (f != endOfStream)
+				return f;
+
+			synchronized (this) {
+				// the marker of a decoder that has since been restarted
+				if (gen != generation)
+					continue;
+
+				finished = true;
+
+				// leave the marker in place for any other waiting consumer
+				decoded.offer(endOfStream);
+
+				if (decoderError != null)
+					throw new RuntimeException("Error decoding video", decoderError);
+
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Get the next decoded frame. Unlike {@link #getNextFrame()}, the returned
+	 * frame remains valid until it is {@link PooledVideoFrame#release()
+	 * released}, and it doesn't become the current frame of this video.
+	 * 
+	 * @return the next frame, or null if the end of the video has been
+	 *         reached.
+	 */
+	public PooledVideoFrame<T> nextPooledFrame() {
+		return takeDecoded();
+	}
+
+	@Override
+	public T getNextFrame() {
+		final PooledVideoFrame<T> next = takeDecoded();
+
+		if (next == null)
+			return null;
+
+		synchronized (this) {
+			if (current != null)
+				current.release();
+
+			current = next;
+			currentFrame = next.index;
+			return current.frame;
+		}
+	}
+
+	@Override
+	public T getCurrentFrame() {
+		synchronized (this) {
+			if (current != null)
+				return current.frame;
+		}
+
+		return getNextFrame();
+	}
+
+	@Override
+	public boolean hasNextFrame() {
+		synchronized (this) {
+			if (pending != null)
+				return true;
+		}
+
+		final PooledVideoFrame<T> next = takeDecoded();
+
+		synchronized (this) {
+			pending = next;
+			return next != null;
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return video.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return video.getHeight();
+	}
+
+	@Override
+	public synchronized long getTimeStamp() {
+		return current == null ? 0 : current.timestamp;
+	}
+
+	@Override
+	public double getFPS() {
+		return video.getFPS();
+	}
+
+	@Override
+	public long countFrames() {
+		return video.countFrames();
+	}
+
+	@Override
+	public synchronized void reset() {
+		stopDecoder();
+
+		if (pending != null)
+			pending.release();
+		pending = null;
+
+		if (current != null)
+			current.release();
+		current = null;
+		currentFrame = 0;
+
+		video.reset();
+		startDecoder();
+	}
+
+	/**
+	 * Stop decoding frames in the background and release any queued frames.
+	 * Unlike {@link #close()}, the underlying video is not closed. Any frames
+	 * that have already been obtained remain valid until they are released.
+	 */
+	public synchronized void stop() {
+		stopDecoder();
+
+		if (pending != null)
+			pending.release();
+		pending = null;
+		finished = true;
+
+		// wake any consumer waiting for a frame
+		decoded.offer(endOfStream);
+	}
+
+	@Override
+	public synchronized void close() {
+		stop();
+		video.close();
+	}
+
+	/**
+	 * @return the underlying video
+	 */
+	public Video<T> getUnderlyingVideo() {
+		return video;
+	}
+}
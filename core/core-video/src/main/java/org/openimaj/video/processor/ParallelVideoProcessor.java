@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video.processor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openimaj.image.Image;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.video.DecodeAheadVideo;
+import org.openimaj.video.DecodeAheadVideo.PooledVideoFrame;
+import org.openimaj.video.Video;
+
+/**
+ * Runs a {@link VideoProcessor} over a {@link Video} using multiple threads.
+ * Frames are decoded ahead on a background thread (see
+ * {@link DecodeAheadVideo}), processed out-of-order by a worker pool, and
+ * delivered to an output {@link Operation} strictly in the order in which they
+ * appear in the video through a bounded reorder buffer.
+ * <p>
+ * Only processors marked as {@link FrameIndependent} are run on multiple
+ * frames concurrently. Other processors are assumed to hold temporal state and
+ * are run on one frame at a time, in order, on a single worker thread; decoding
+ * and output still overlap with the processing in this case.
+ * <p>
+ * Frames given to the output operation are only valid for the duration of the
+ * call. Throughput and latency statistics for the most recent run are
+ * available once {@link #process(Operation)} has returned.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <T>
+ *            Type of {@link Image}
+ */
+public class ParallelVideoProcessor<T extends Image<?, T>> {
+	private final Video<T> video;
+	private final VideoProcessor<T> processor;
+	private final ExecutorService pool;
+	private final int maxInFlight;
+
+	private long framesProcessed;
+	private long elapsedNanos;
+	private long totalLatencyNanos;
+	private long maxLatencyNanos;
+
+	/**
+	 * Construct a {@link ParallelVideoProcessor} that uses the global thread
+	 * pool and allows twice as many frames in flight as there are threads in
+	 * the pool.
+	 * 
+	 * @param video
+	 *            the video to process
+	 * @param processor
+	 *            the processor to apply
+	 */
+	public ParallelVideoProcessor(Video<T> video, VideoProcessor<T> processor) {
+		this(video, processor, GlobalExecutorPool.getPool(), 2 * GlobalExecutorPool.getPool().getMaximumPoolSize());
+	}
+
+	/**
+	 * Construct a {@link ParallelVideoProcessor} with the given pool and size
+	 * of the reorder buffer.
+	 * 
+	 * @param video
+	 *            the video to process
+	 * @param processor
+	 *            the processor to apply
+	 * @param pool
+	 *            the pool of worker threads
+	 * @param maxInFlight
+	 *            the maximum number of frames being decoded, processed or
+	 *            waiting to be output at any one time
+	 */
+	public ParallelVideoProcessor(Video<T> video, VideoProcessor<T> processor, ExecutorService pool,
+			int maxInFlight)
+	{
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+
+		this.video = video;
+		this.processor = processor;
+		this.pool = pool;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * A frame being processed. The input frame is released by whichever of
+	 * the output and the clean-up after a failure is last to need it; if the
+	 * job is abandoned whilst its worker is running, the worker releases the
+	 * frame when it finishes.
+	 */
+	private static class Job<T extends Image<?, T>> {
+		PooledVideoFrame<T> input;
+		Future<T> output;
+		long start;
+
+		private boolean running;
+		private boolean abandoned;
+
+		synchronized boolean begin() {
+			if (abandoned)
+				return false;
+
+			running = true;
+			return true;
+		}
+
+		synchronized void end() {
+			running = false;
+
+			if (abandoned)
+				input.release();
+		}
+
+		synchronized void abandon() {
+			abandoned = true;
+
+			if (!running)
+				input.release();
+		}
+	}
+
+	/**
+	 * Process the video, passing each processed frame to the given operation
+	 * in frame order. {@link VideoProcessor#processingComplete()} is called on
+	 * the processor once all frames have been processed.
+	 * 
+	 * @param output
+	 *            the operation to apply to each processed frame; can be null
+	 */
+	public void process(Operation<PooledVideoFrame<T>> output) {
+		final boolean parallel = processor instanceof FrameIndependent;
+		final ExecutorService executor = parallel ? pool : Executors.newSingleThreadExecutor();
+		final DecodeAheadVideo<T> source = new DecodeAheadVideo<T>(video, maxInFlight);
+		final ArrayDeque<Job<T>> reorder = new ArrayDeque<Job<T>>(maxInFlight);
+
+		framesProcessed = 0;
+		totalLatencyNanos = 0;
+		maxLatencyNanos = 0;
+		final long startTime = System.nanoTime();
+
+		try {
+			PooledVideoFrame<T> frame;
+			while ((frame = source.nextPooledFrame()) != null) {
+				final Job<T> job = new Job<T>();
+				job.input = frame;
+				job.start = System.nanoTime();
+
+				final T image = frame.frame;
+				job.output = executor.submit(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						if (!job.begin())
+							return null;
+
+						try {
+							return processor.processFrame(image);
+						} finally {
+							job.end();
+						}
+					}
+				});
+				reorder.add(job);
+
+				if (reorder.size() >= maxInFlight)
+					complete(reorder.poll(), output);
+			}
+
+			while (!reorder.isEmpty())
+				complete(reorder.poll(), output);
+
+			processor.processingComplete();
+		} finally {
+			for (final Job<T> job : reorder) {
+				job.abandon();
+				job.output.cancel(true);
+			}
+
+			source.stop();
+
+			if (!parallel)
+				executor.shutdownNow();
+
+			elapsedNanos = System.nanoTime() - startTime;
+		}
+	}
+
+	private void complete(Job<T> job, Operation<PooledVideoFrame<T>> output) {
+		try {
+			final T result = job.output.get();
+
+			if (output != null) {
+				output.perform(result == job.input.frame ? job.input :
+						new PooledVideoFrame<T>(result, job.input.timestamp, job.input.index, video.getFPS()));
+			}
+
+			final long latency = System.nanoTime() - job.start;
+			totalLatencyNanos += latency;
+			maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+			framesProcessed++;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			// if the wait was interrupted the worker may still be running
+			job.abandon();
+		}
+	}
+
+	/**
+	 * @return the number of frames processed in the most recent run
+	 */
+	public long getFramesProcessed() {
+		return framesProcessed;
+	}
+
+	/**
+	 * @return the throughput of the most recent run in frames per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : framesProcessed / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * @return the mean time in milliseconds between a frame being submitted
+	 *         for processing and it being output in the most recent run
+	 */
+	public double getMeanLatency() {
+		return framesProcessed == 0 ? 0 : (totalLatencyNanos / 1e6) / framesProcessed;
+	}
+
+	/**
+	 * @return the maximum time in milliseconds between a frame being
+	 *         submitted for processing and it being output in the most recent
+	 *         run
+	 */
+	public double getMaxLatency() {
+		return maxLatencyNanos / 1e6;
+	}
+}
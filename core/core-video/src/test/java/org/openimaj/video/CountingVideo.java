@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video;
+
+import org.openimaj.image.FImage;
+
+/**
+ * A finite synthetic video for testing. Every pixel of frame <code>i</code>
+ * has the value <code>i</code>. Like a real decoder, the video reuses a
+ * single frame buffer, so each frame is overwritten by the next one.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CountingVideo extends Video<FImage> {
+	private final int nFrames;
+	private final long delay;
+	private final FImage buffer = new FImage(4, 3);
+
+	/**
+	 * Construct the video
+	 * 
+	 * @param nFrames
+	 *            the number of frames
+	 * @param delay
+	 *            the time in milliseconds taken to decode each frame
+	 */
+	public CountingVideo(int nFrames, long delay) {
+		this.nFrames = nFrames;
+		this.delay = delay;
+		this.currentFrame = -1;
+	}
+
+	@Override
+	public synchronized FImage getNextFrame() {
+		if (currentFrame + 1 >= nFrames)
+			return null;
+
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		currentFrame++;
+		buffer.fill(currentFrame);
+		return buffer;
+	}
+
+	@Override
+	public synchronized FImage getCurrentFrame() {
+		return buffer;
+	}
+
+	@Override
+	public int getWidth() {
+		return buffer.width;
+	}
+
+	@Override
+	public int getHeight() {
+		return buffer.height;
+	}
+
+	@Override
+	public synchronized long getTimeStamp() {
+		return (long) (1000 * currentFrame / getFPS());
+	}
+
+	@Override
+	public double getFPS() {
+		return 25;
+	}
+
+	@Override
+	public synchronized boolean hasNextFrame() {
+		return currentFrame + 1 < nFrames;
+	}
+
+	@Override
+	public long countFrames() {
+		return nFrames;
+	}
+
+	@Override
+	public synchronized void reset() {
+		currentFrame = -1;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.video.DecodeAheadVideo.PooledVideoFrame;
+
+/**
+ * Tests for the {@link DecodeAheadVideo}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DecodeAheadVideoTest {
+	/**
+	 * Test that frames are returned in order and the end of the video is
+	 * reported
+	 */
+	@Test
+	public void testFrameOrderAndEndOfStream() {
+		final DecodeAheadVideo<FImage> video = new DecodeAheadVideo<FImage>(new CountingVideo(50, 0), 4);
+
+		for (int i = 0; i < 50; i++) {
+			assertTrue(video.hasNextFrame());
+
+			final FImage frame = video.getNextFrame();
+			assertEquals(i, frame.pixels[0][0], 0f);
+			assertEquals(i, video.getCurrentFrameIndex());
+		}
+
+		assertFalse(video.hasNextFrame());
+		assertNull(video.getNextFrame());
+		assertNull(video.nextPooledFrame());
+
+		video.reset();
+		assertEquals(0, video.getNextFrame().pixels[0][0], 0f);
+		video.close();
+	}
+
+	/**
+	 * Test that held pooled frames aren't overwritten whilst decoding
+	 * continues, even though the underlying video reuses its buffer
+	 */
+	@Test
+	public void testHeldFramesAreNotReused() {
+		final DecodeAheadVideo<FImage> video = new DecodeAheadVideo<FImage>(new CountingVideo(100, 0), 4);
+
+		final List<PooledVideoFrame<FImage>> held = new ArrayList<PooledVideoFrame<FImage>>();
+		for (int i = 0; i < 3; i++)
+			held.add(video.nextPooledFrame());
+
+		PooledVideoFrame<FImage> frame;
+		int expected = 3;
+		while ((frame = video.nextPooledFrame()) != null) {
+			assertEquals(expected++, frame.frame.pixels[0][0], 0f);
+			frame.release();
+		}
+		assertEquals(100, expected);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, held.get(i).index);
+			assertEquals(i, held.get(i).frame.pixels[0][0], 0f);
+			held.get(i).release();
+		}
+		video.close();
+	}
+
+	/**
+	 * Test that a consumer waiting on a slow decoder doesn't block other
+	 * callers, and is woken when the video is stopped
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testWaitingConsumer() throws InterruptedException {
+		final DecodeAheadVideo<FImage> video = new DecodeAheadVideo<FImage>(new CountingVideo(10, 5000), 4);
+
+		final FImage[] result = { new FImage(1, 1) };
+		final Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				result[0] = video.getNextFrame();
+			}
+		};
+		consumer.start();
+		Thread.sleep(100);
+
+		final long start = System.currentTimeMillis();
+		video.getTimeStamp();
+		video.stop();
+		consumer.join(2000);
+
+		assertTrue(System.currentTimeMillis() - start < 2000);
+		assertFalse(consumer.isAlive());
+		assertNull(result[0]);
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.video.CountingVideo;
+import org.openimaj.video.DecodeAheadVideo.PooledVideoFrame;
+
+/**
+ * Tests for the {@link ParallelVideoProcessor}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ParallelVideoProcessorTest {
+	private static final int N_FRAMES = 200;
+	private static final int MAX_IN_FLIGHT = 6;
+
+	/**
+	 * Doubles each frame in place, taking a random amount of time so that
+	 * frames complete out of order
+	 */
+	static class Doubler extends VideoProcessor<FImage> implements FrameIndependent {
+		@Override
+		public FImage processFrame(FImage frame) {
+			try {
+				Thread.sleep(new Random().nextInt(3));
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return frame.multiplyInplace(2f);
+		}
+	}
+
+	/**
+	 * Replaces each frame with the running total of the frames so far; the
+	 * output depends on the frames being processed in order
+	 */
+	static class RunningTotal extends VideoProcessor<FImage> {
+		float total = 0;
+
+		@Override
+		public FImage processFrame(FImage frame) {
+			total += frame.pixels[0][0];
+			return frame.fill(total);
+		}
+	}
+
+	private ExecutorService pool;
+
+	/**
+	 * Create the worker pool
+	 */
+	@Before
+	public void setup() {
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Shutdown the worker pool
+	 */
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	private static List<Float> sequential(VideoProcessor<FImage> processor) {
+		final CountingVideo video = new CountingVideo(N_FRAMES, 0);
+		final List<Float> values = new ArrayList<Float>();
+
+		FImage frame;
+		while ((frame = video.getNextFrame()) != null)
+			values.add(processor.processFrame(frame).pixels[0][0]);
+
+		return values;
+	}
+
+	private List<Float> parallel(VideoProcessor<FImage> processor, final Map<FImage, Boolean> buffers) {
+		final List<Float> values = new ArrayList<Float>();
+		final List<Integer> indices = new ArrayList<Integer>();
+
+		final ParallelVideoProcessor<FImage> pvp = new ParallelVideoProcessor<FImage>(new CountingVideo(N_FRAMES, 0),
+				processor, pool, MAX_IN_FLIGHT);
+
+		pvp.process(new Operation<PooledVideoFrame<FImage>>() {
+			@Override
+			public void perform(PooledVideoFrame<FImage> frame) {
+				values.add(frame.frame.pixels[0][0]);
+				indices.add(frame.index);
+				buffers.put(frame.frame, true);
+			}
+		});
+
+		assertEquals(N_FRAMES, pvp.getFramesProcessed());
+		for (int i = 0; i < N_FRAMES; i++)
+			assertEquals(i, (int) indices.get(i));
+
+		return values;
+	}
+
+	/**
+	 * Test that frame-independent processing gives the same frames in the
+	 * same order as the sequential processor, and that the frame buffers are
+	 * reused
+	 */
+	@Test
+	public void testFrameIndependent() {
+		final Map<FImage, Boolean> buffers = Collections.synchronizedMap(new IdentityHashMap<FImage, Boolean>());
+
+		assertEquals(sequential(new Doubler()), parallel(new Doubler(), buffers));
+
+		// the decode-ahead pool holds two more buffers than the frames in
+		// flight
+		assertTrue(buffers.size() <= MAX_IN_FLIGHT + 2);
+	}
+
+	/**
+	 * Test that a processor with temporal state gives the same result as the
+	 * sequential processor
+	 */
+	@Test
+	public void testTemporalState() {
+		final Map<FImage, Boolean> buffers = Collections.synchronizedMap(new IdentityHashMap<FImage, Boolean>());
+
+		assertEquals(sequential(new RunningTotal()), parallel(new RunningTotal(), buffers));
+	}
+
+	/**
+	 * Test that a failing processor stops the run with its exception
+	 */
+	@Test
+	public void testFailure() {
+		final VideoProcessor<FImage> failing = new Doubler() {
+			@Override
+			public FImage processFrame(FImage frame) {
+				if (frame.pixels[0][0] == 50)
+					throw new IllegalStateException("failed");
+				return super.processFrame(frame);
+			}
+		};
+
+		try {
+			new ParallelVideoProcessor<FImage>(new CountingVideo(N_FRAMES, 0), failing, pool, MAX_IN_FLIGHT)
+					.process(null);
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals("failed", e.getMessage());
+		}
+	}
+}
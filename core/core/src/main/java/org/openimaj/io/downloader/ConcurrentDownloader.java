@@ -0,0 +1,555 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io.downloader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.util.EntityUtils;
+import org.openimaj.io.HttpUtils;
+import org.openimaj.io.HttpUtils.MetaRefreshRedirectStrategy;
+import org.openimaj.util.metrics.Counter;
+import org.openimaj.util.metrics.Gauge;
+import org.openimaj.util.metrics.Histogram;
+import org.openimaj.util.metrics.MetricRegistry;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * An asynchronous HTTP downloader that keeps many requests in flight at once
+ * whilst remaining polite to the individual hosts being crawled.
+ * <p>
+ * Downloads are submitted with a key and a list of candidate URLs; the
+ * candidates are tried in order until one succeeds. Requests are executed on
+ * a fixed pool of worker threads sharing a single pooled HTTP client, so
+ * connections to the same host are kept alive and reused. For each host at
+ * most {@link #getMaxPerHost()} requests are in flight at any time, and
+ * successive requests to the same host are started at least
+ * {@link #getPolitenessDelay()} milliseconds apart. Requests that fail with an
+ * I/O error (including timeouts), a 5xx status or a 429 status are retried
+ * with exponential backoff; other failures move straight on to the next
+ * candidate URL.
+ * <p>
+ * The number of submitted but uncompleted downloads is bounded, so
+ * {@link #submit(String, List, DownloadListener)} blocks when the downloader
+ * falls behind. Throughput, latency and failure statistics are recorded in a
+ * {@link MetricRegistry} under names prefixed with "downloader.".
+ * <p>
+ * Only the body and status of the final response are reported, so clients
+ * that need to intercept individual redirects or inspect response headers
+ * (such as the picslurper tool, which follows redirects itself and decides
+ * what to do with a link by its content type) still use {@link HttpUtils}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ConcurrentDownloader implements Closeable {
+	/**
+	 * Default connection and read timeout in milliseconds
+	 */
+	public static final int DEFAULT_TIMEOUT = 15000;
+
+	private final int maxConcurrent;
+	private final int maxPerHost;
+	private final long politenessDelay;
+	private final int maxRetries;
+	private final long retryBackoff;
+	private final int maxOutstanding;
+
+	private final PoolingClientConnectionManager connectionManager;
+	private final DefaultHttpClient client;
+	private final ThreadPoolExecutor workers;
+	private final ScheduledExecutorService scheduler;
+	private final Semaphore outstanding;
+	private final Map<String, Host> hosts = new HashMap<String, Host>();
+	private final Set<Task> live = Collections.newSetFromMap(new ConcurrentHashMap<Task, Boolean>());
+	private volatile boolean closed;
+
+	private final long startTime = System.nanoTime();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final Counter requests;
+	private final Counter retries;
+	private final Counter successes;
+	private final Counter failures;
+	private final Counter bytes;
+	private final Histogram requestLatency;
+	private final Histogram latency;
+
+	/**
+	 * Per-host scheduling state; guarded by the downloader's lock.
+	 */
+	private static class Host {
+		final String name;
+		final ArrayDeque<Task> pending = new ArrayDeque<Task>();
+		int inFlight;
+		long nextAllowed;
+		boolean wakeupScheduled;
+
+		Host(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * A submitted download, which moves through its candidate URLs and
+	 * retries. A task is only ever run by one worker at a time, and is
+	 * completed exactly once, either by a worker or by {@link #close()}.
+	 */
+	private class Task implements Runnable {
+		final String key;
+		final List<URL> urls;
+		final DownloadListener listener;
+		final long submitted = System.nanoTime();
+		final AtomicBoolean done = new AtomicBoolean();
+		int index;
+		int retry;
+		int attempts;
+		Host host;
+
+		Task(String key, List<URL> urls, DownloadListener listener) {
+			this.key = key;
+			this.urls = urls;
+			this.listener = listener;
+		}
+
+		URL url() {
+			return urls.get(index);
+		}
+
+		@Override
+		public void run() {
+			try {
+				attempt();
+			} catch (final Throwable e) {
+				fail(e);
+				throw e;
+			}
+		}
+
+		private void attempt() {
+			final URL url = url();
+			byte[] data = null;
+			int status = -1;
+			Throwable error = null;
+			boolean retryable = false;
+
+			attempts++;
+			requests.increment();
+			final long t0 = System.nanoTime();
+			HttpGet get = null;
+			try {
+				get = new HttpGet(url.toURI());
+				final HttpResponse resp = client.execute(get);
+				status = resp.getStatusLine().getStatusCode();
+				final HttpEntity entity = resp.getEntity();
+
+				if (status >= 200 && status < 300) {
+					data = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+				} else {
+					EntityUtils.consume(entity);
+					retryable = status >= 500 || status == 429;
+				}
+			} catch (final URISyntaxException e) {
+				error = e;
+			} catch (final IOException e) {
+				error = e;
+				retryable = true;
+				if (get != null)
+					get.abort();
+			} catch (final RuntimeException e) {
+				error = e;
+				if (get != null)
+					get.abort();
+			} finally {
+				requestLatency.record(System.nanoTime() - t0);
+				release(host);
+			}
+
+			if (data != null) {
+				bytes.add(data.length);
+				complete(new DownloadResult(key, url, data, status, null, attempts, System.nanoTime() - submitted));
+			} else if (retryable && retry < maxRetries && !closed) {
+				final long delay = retryBackoff << retry;
+				retry++;
+				retries.increment();
+				try {
+					scheduler.schedule(new Runnable() {
+						@Override
+						public void run() {
+							enqueue(Task.this);
+						}
+					}, delay, TimeUnit.MILLISECONDS);
+				} catch (final RejectedExecutionException e) {
+					// the downloader has been closed, which fails the task
+				}
+			} else if (index + 1 < urls.size()) {
+				index++;
+				retry = 0;
+				enqueue(this);
+			} else {
+				complete(new DownloadResult(key, url, null, status, error, attempts, System.nanoTime() - submitted));
+			}
+		}
+
+		void fail(Throwable error) {
+			complete(new DownloadResult(key, url(), null, -1, error, attempts, System.nanoTime() - submitted));
+		}
+
+		private void complete(DownloadResult result) {
+			if (!done.compareAndSet(false, true))
+				return;
+
+			live.remove(this);
+			try {
+				if (result.isSuccess())
+					successes.increment();
+				else
+					failures.increment();
+				latency.record(result.getLatency());
+
+				listener.downloadCompleted(result);
+			} finally {
+				outstanding.release();
+			}
+		}
+	}
+
+	/**
+	 * Construct with the given maximum number of concurrent requests. At most
+	 * two requests will be made to any host at once, there is no politeness
+	 * delay, failed requests are retried twice with a one second initial
+	 * backoff and redirects are followed.
+	 *
+	 * @param maxConcurrent
+	 *            the maximum number of requests in flight
+	 */
+	public ConcurrentDownloader(int maxConcurrent) {
+		this(maxConcurrent, 2, 0, true);
+	}
+
+	/**
+	 * Construct with the given concurrency and politeness settings. Failed
+	 * requests are retried twice with a one second initial backoff.
+	 *
+	 * @param maxConcurrent
+	 *            the maximum number of requests in flight
+	 * @param maxPerHost
+	 *            the maximum number of requests in flight to a single host
+	 * @param politenessDelay
+	 *            the minimum time in milliseconds between starting successive
+	 *            requests to the same host
+	 * @param followRedirects
+	 *            should HTTP and meta-refresh redirects be followed?
+	 */
+	public ConcurrentDownloader(int maxConcurrent, int maxPerHost, long politenessDelay, boolean followRedirects) {
+		this(maxConcurrent, maxPerHost, politenessDelay, DEFAULT_TIMEOUT, 2, 1000, followRedirects,
+				new MetricRegistry());
+	}
+
+	/**
+	 * Construct with the given settings.
+	 *
+	 * @param maxConcurrent
+	 *            the maximum number of requests in flight
+	 * @param maxPerHost
+	 *            the maximum number of requests in flight to a single host
+	 * @param politenessDelay
+	 *            the minimum time in milliseconds between starting successive
+	 *            requests to the same host
+	 * @param timeout
+	 *            the connection and read timeout in milliseconds
+	 * @param maxRetries
+	 *            the number of times a request to a single URL is retried
+	 *            after a transient failure
+	 * @param retryBackoff
+	 *            the delay in milliseconds before the first retry; the delay
+	 *            doubles with each subsequent retry
+	 * @param followRedirects
+	 *            should HTTP and meta-refresh redirects be followed?
+	 * @param registry
+	 *            the registry in which to record metrics
+	 */
+	public ConcurrentDownloader(int maxConcurrent, int maxPerHost, long politenessDelay, int timeout,
+			int maxRetries, long retryBackoff, boolean followRedirects, MetricRegistry registry)
+	{
+		if (maxConcurrent < 1 || maxPerHost < 1)
+			throw new IllegalArgumentException("Concurrency limits must be positive");
+
+		this.maxConcurrent = maxConcurrent;
+		this.maxPerHost = maxPerHost;
+		this.politenessDelay = politenessDelay;
+		this.maxRetries = maxRetries;
+		this.retryBackoff = retryBackoff;
+		this.maxOutstanding = 4 * maxConcurrent;
+		this.outstanding = new Semaphore(maxOutstanding);
+
+		connectionManager = new PoolingClientConnectionManager();
+		connectionManager.setMaxTotal(maxConcurrent);
+		connectionManager.setDefaultMaxPerRoute(maxPerHost);
+
+		final HttpParams params = new BasicHttpParams();
+		HttpConnectionParams.setConnectionTimeout(params, timeout);
+		HttpConnectionParams.setSoTimeout(params, timeout);
+		HttpProtocolParams.setUserAgent(params, HttpUtils.DEFAULT_USERAGENT);
+		HttpClientParams.setRedirecting(params, followRedirects);
+		client = new DefaultHttpClient(connectionManager, params);
+		if (followRedirects)
+			client.setRedirectStrategy(new MetaRefreshRedirectStrategy());
+
+		workers = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+		scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory());
+
+		requests = registry.counter("downloader.requests");
+		retries = registry.counter("downloader.retries");
+		successes = registry.counter("downloader.success");
+		failures = registry.counter("downloader.failure");
+		bytes = registry.counter("downloader.bytes");
+		requestLatency = registry.histogram("downloader.requestLatency");
+		latency = registry.histogram("downloader.latency");
+		registry.register("downloader.bytesPerSecond", new Gauge() {
+			@Override
+			public double getValue() {
+				return bytes.getCount() / ((System.nanoTime() - startTime) / 1e9);
+			}
+		});
+		registry.register("downloader.inFlight", new Gauge() {
+			@Override
+			public double getValue() {
+				return inFlight.get();
+			}
+		});
+	}
+
+	/**
+	 * Submit a download with a single candidate URL.
+	 *
+	 * @param key
+	 *            the key identifying the download
+	 * @param url
+	 *            the URL to download
+	 * @param listener
+	 *            the listener to notify on completion
+	 * @throws InterruptedException
+	 *             if interrupted whilst waiting for capacity
+	 */
+	public void submit(String key, URL url, DownloadListener listener) throws InterruptedException {
+		submit(key, Arrays.asList(url), listener);
+	}
+
+	/**
+	 * Submit a download. The candidate URLs are tried in order until one
+	 * succeeds. This method blocks if the maximum number of outstanding
+	 * downloads has been reached.
+	 *
+	 * @param key
+	 *            the key identifying the download
+	 * @param urls
+	 *            the candidate URLs
+	 * @param listener
+	 *            the listener to notify on completion
+	 * @throws InterruptedException
+	 *             if interrupted whilst waiting for capacity
+	 */
+	public void submit(String key, List<URL> urls, DownloadListener listener) throws InterruptedException {
+		if (urls.isEmpty())
+			throw new IllegalArgumentException("At least one URL is required");
+		if (closed)
+			throw new IllegalStateException("The downloader has been closed");
+
+		outstanding.acquire();
+
+		final Task task = new Task(key, new ArrayList<URL>(urls), listener);
+		live.add(task);
+		enqueue(task);
+
+		// close() may have run since the check above without seeing the task
+		if (closed)
+			task.fail(new IOException("The downloader has been closed"));
+	}
+
+	/**
+	 * Wait until all submitted downloads have completed and their listeners
+	 * have been notified.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted whilst waiting
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		outstanding.acquire(maxOutstanding);
+		outstanding.release(maxOutstanding);
+	}
+
+	/**
+	 * Shut down the downloader. Any downloads that have not completed are
+	 * abandoned, and their listeners are notified with a failed
+	 * {@link DownloadResult}; call {@link #awaitCompletion()} first to wait
+	 * for them to complete normally.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		scheduler.shutdownNow();
+		workers.shutdownNow();
+		connectionManager.shutdown();
+
+		synchronized (hosts) {
+			hosts.clear();
+		}
+
+		final IOException error = new IOException("The downloader has been closed");
+		for (final Task task : new ArrayList<Task>(live))
+			task.fail(error);
+	}
+
+	private void enqueue(Task task) {
+		final String name = task.url().getHost().toLowerCase(Locale.ENGLISH);
+
+		synchronized (hosts) {
+			Host host = hosts.get(name);
+			if (host == null)
+				hosts.put(name, host = new Host(name));
+
+			task.host = host;
+			host.pending.add(task);
+			dispatch(host);
+		}
+	}
+
+	private void release(Host host) {
+		inFlight.decrementAndGet();
+
+		synchronized (hosts) {
+			host.inFlight--;
+			dispatch(host);
+
+			if (host.inFlight == 0 && host.pending.isEmpty() && !host.wakeupScheduled
+					&& host.nextAllowed <= System.currentTimeMillis())
+				hosts.remove(host.name);
+		}
+	}
+
+	/**
+	 * Start as many of the host's pending tasks as its limits allow, arranging
+	 * to be woken when the politeness delay has expired if necessary. Must be
+	 * called whilst holding the lock.
+	 */
+	private void dispatch(final Host host) {
+		if (closed)
+			return;
+
+		while (!host.pending.isEmpty() && host.inFlight < maxPerHost) {
+			final long now = System.currentTimeMillis();
+
+			if (now < host.nextAllowed) {
+				if (!host.wakeupScheduled) {
+					try {
+						scheduler.schedule(new Runnable() {
+							@Override
+							public void run() {
+								synchronized (hosts) {
+									host.wakeupScheduled = false;
+									dispatch(host);
+								}
+							}
+						}, host.nextAllowed - now, TimeUnit.MILLISECONDS);
+						host.wakeupScheduled = true;
+					} catch (final RejectedExecutionException e) {
+						// the downloader has been closed, which fails the tasks
+					}
+				}
+				return;
+			}
+
+			host.inFlight++;
+			host.nextAllowed = now + politenessDelay;
+			inFlight.incrementAndGet();
+			try {
+				workers.execute(host.pending.poll());
+			} catch (final RejectedExecutionException e) {
+				// the downloader has been closed, which fails the task
+				host.inFlight--;
+				inFlight.decrementAndGet();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum number of requests in flight
+	 */
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * @return the maximum number of requests in flight to a single host
+	 */
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	/**
+	 * @return the minimum time in milliseconds between starting successive
+	 *         requests to the same host
+	 */
+	public long getPolitenessDelay() {
+		return politenessDelay;
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io.downloader;
+
+import java.net.URL;
+
+/**
+ * The result of a download performed by a {@link ConcurrentDownloader}. On
+ * success the URL is the candidate that was actually downloaded; on failure it
+ * is the last candidate that was attempted.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DownloadResult {
+	private final String key;
+	private final URL url;
+	private final byte[] data;
+	private final int statusCode;
+	private final Throwable error;
+	private final int attempts;
+	private final long latency;
+
+	DownloadResult(String key, URL url, byte[] data, int statusCode, Throwable error, int attempts, long latency) {
+		this.key = key;
+		this.url = url;
+		this.data = data;
+		this.statusCode = statusCode;
+		this.error = error;
+		this.attempts = attempts;
+		this.latency = latency;
+	}
+
+	/**
+	 * @return true if the download succeeded; false otherwise
+	 */
+	public boolean isSuccess() {
+		return data != null;
+	}
+
+	/**
+	 * @return the key that the download was submitted with
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the URL that was downloaded, or the last URL that was tried if
+	 *         the download failed
+	 */
+	public URL getURL() {
+		return url;
+	}
+
+	/**
+	 * @return the downloaded bytes, or null if the download failed
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return the HTTP status code of the last response, or -1 if no response
+	 *         was received
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return the exception that caused the last attempt to fail, or null if
+	 *         there was none
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return the total number of HTTP requests made across all candidate URLs
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * @return the time in nanoseconds from submission to completion
+	 */
+	public long getLatency() {
+		return latency;
+	}
+
+	@Override
+	public String toString() {
+		if (isSuccess())
+			return String.format("%s: %s [%d bytes, %d attempts]", key, url, data.length, attempts);
+		return String.format("%s: %s [failed with %s, %d attempts]", key, url,
+				error != null ? error.toString() : "status " + statusCode, attempts);
+	}
+}
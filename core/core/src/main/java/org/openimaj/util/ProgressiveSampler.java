@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.data.RandomData;
+
+/**
+ * Implementation of a {@link CollectionSampler} that performs progressive
+ * sampling (PROSAC). The items are assumed to be ordered from best to worst
+ * quality (for example by the distance ratio of a keypoint match), either
+ * because the collection is already sorted, or by sorting it with a given
+ * comparator. Early samples are drawn from the top few items, and the pool
+ * being drawn from grows until, after the given number of samples, the
+ * sampling is uniform over the whole collection. When the good items are near
+ * the top, a robust estimator using this sampler typically finds a good model
+ * in far fewer iterations than with uniform sampling.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <T>
+ *            type of items in the collection being sampled
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Chum, O.", "Matas, J." },
+		title = "Matching with PROSAC - progressive sample consensus",
+		year = "2005",
+		booktitle = "Computer Vision and Pattern Recognition, 2005. CVPR 2005. IEEE Computer Society Conference on",
+		pages = { "220", "226" },
+		volume = "1")
+public class ProgressiveSampler<T> implements CollectionSampler<T> {
+	/**
+	 * The default number of samples after which sampling becomes uniform
+	 */
+	public static final int DEFAULT_MAX_SAMPLES = 200000;
+
+	private final Comparator<? super T> order;
+	private final int maxSamples;
+	private final Random rng;
+
+	private List<T> data;
+	private int sampleSize;
+	private int t;
+	private int n;
+	private double tn;
+	private int tnPrime;
+
+	/**
+	 * Construct the sampler for collections that are already sorted from best
+	 * to worst
+	 */
+	public ProgressiveSampler() {
+		this(null);
+	}
+
+	/**
+	 * Construct the sampler with the given ordering of items from best to
+	 * worst
+	 * 
+	 * @param order
+	 *            the ordering of the items, best first; can be null if the
+	 *            collections will already be ordered
+	 */
+	public ProgressiveSampler(Comparator<? super T> order) {
+		this(order, DEFAULT_MAX_SAMPLES, new Random());
+	}
+
+	/**
+	 * Construct the sampler with the given ordering, number of samples after
+	 * which the sampling becomes uniform, and random number generator. Passing
+	 * a generator with a fixed seed makes the sequence of samples repeatable.
+	 * 
+	 * @param order
+	 *            the ordering of the items, best first; can be null if the
+	 *            collections will already be ordered
+	 * @param maxSamples
+	 *            the number of samples after which the sampling is uniform
+	 * @param rng
+	 *            the random number generator
+	 */
+	public ProgressiveSampler(Comparator<? super T> order, int maxSamples, Random rng) {
+		this.order = order;
+		this.maxSamples = maxSamples;
+		this.rng = rng;
+	}
+
+	@Override
+	public void setCollection(Collection<? extends T> collection) {
+		this.data = new ArrayList<T>(collection);
+
+		if (order != null)
+			Collections.sort(data, order);
+
+		this.sampleSize = -1;
+	}
+
+	private void reset(int m) {
+		final int N = data.size();
+
+		sampleSize = m;
+		t = 0;
+		n = m;
+		tnPrime = 1;
+
+		// the expected number of samples drawn only from the top m items
+		tn = maxSamples;
+		for (int i = 0; i < m; i++)
+			tn *= (double) (m - i) / (N - i);
+	}
+
+	@Override
+	public List<T> sample(int nItems) {
+		final int N = data.size();
+		if (nItems > N)
+			return null;
+
+		if (nItems != sampleSize)
+			reset(nItems);
+
+		t++;
+		while (t == tnPrime && n < N) {
+			final double tn1 = tn * (n + 1) / (n + 1 - nItems);
+			tnPrime += (int) Math.ceil(tn1 - tn);
+			tn = tn1;
+			n++;
+		}
+
+		final List<T> out = new ArrayList<T>(nItems);
+		if (tnPrime < t) {
+			for (final int i : RandomData.getUniqueRandomInts(nItems, 0, n, rng))
+				out.add(data.get(i));
+		} else {
+			for (final int i : RandomData.getUniqueRandomInts(nItems - 1, 0, n - 1, rng))
+				out.add(data.get(i));
+			out.add(data.get(n - 1));
+		}
+
+		return out;
+	}
+}
@@ -32,6 +32,7 @@ package org.openimaj.util;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 import org.openimaj.data.RandomData;
 
@@ -48,6 +49,25 @@ import org.openimaj.data.RandomData;
  */
 public class UniformSampler<T> implements CollectionSampler<T> {
 	private List<T> data;
+	private Random rng;
+
+	/**
+	 * Construct the sampler with a randomly seeded random number generator
+	 */
+	public UniformSampler() {
+		this(new Random());
+	}
+
+	/**
+	 * Construct the sampler with the given random number generator. Passing a
+	 * generator with a fixed seed makes the sequence of samples repeatable.
+	 * 
+	 * @param rng
+	 *            the random number generator
+	 */
+	public UniformSampler(Random rng) {
+		this.rng = rng;
+	}
 
 	@Override
 	public void setCollection(Collection<? extends T> collection) {
@@ -56,7 +76,7 @@ public class UniformSampler<T> implements CollectionSampler<T> {
 
 	@Override
 	public List<T> sample(int nItems) {
-		final int[] rints = RandomData.getUniqueRandomInts(nItems, 0, data.size());
+		final int[] rints = RandomData.getUniqueRandomInts(nItems, 0, data.size(), rng);
 		final List<T> out = new ArrayList<T>(nItems);
 
 		for (final int i : rints) {
@@ -31,7 +31,9 @@ package org.openimaj.util.list;
 
 import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A read-only view on a list with a set of indices from the
@@ -47,6 +49,7 @@ import java.util.List;
 public class SkippingListView<T> extends AbstractList<T> {
 	private List<T> list;
 	private int[] skips;
+	private int[] sortedSkips;
 	private int size;
 
 	/**
@@ -65,6 +68,7 @@ public class SkippingListView<T> extends AbstractList<T> {
 		
 		this.skips = skips.clone();
 		Arrays.sort(this.skips);
+		this.sortedSkips = this.skips.clone();
 		
 		for (int i=0; i<skips.length; i++)
 			this.skips[i] -= i;
@@ -88,6 +92,49 @@ public class SkippingListView<T> extends AbstractList<T> {
 		return list.get(index + shift);
 	}
 
+	/**
+	 * Iterate over the view. Unlike {@link #get(int)}, which has to search
+	 * the skipped indices, the iterator walks the underlying list and the
+	 * sorted skipped indices together, so a complete iteration takes time
+	 * linear in the size of the underlying list.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			final Iterator<T> it = list.iterator();
+			int pos = 0;
+			int skip = 0;
+			int returned = 0;
+
+			@Override
+			public boolean hasNext() {
+				return returned < size;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				while (skip < sortedSkips.length && sortedSkips[skip] <= pos) {
+					if (sortedSkips[skip++] == pos) {
+						it.next();
+						pos++;
+					}
+				}
+
+				pos++;
+				returned++;
+				return it.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
 	@Override
 	public int size() {
 		return size;
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free counter. Updates are spread over a number of padded stripes
+ * chosen by the calling thread, so many threads can increment the same counter
+ * without contending on a single memory location; reads sum over the stripes.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class Counter implements Metric {
+	// 8 longs is a 64 byte cache-line; keeps stripes from false-sharing
+	private static final int PAD = 8;
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	/**
+	 * Construct a new counter with a value of zero
+	 */
+	public Counter() {
+		final int nstripes = stripes();
+		this.cells = new AtomicLongArray(nstripes * PAD);
+		this.mask = nstripes - 1;
+	}
+
+	/**
+	 * @return the number of stripes to use; the next power of two above the
+	 *         number of processors
+	 */
+	static int stripes() {
+		return Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+	}
+
+	/**
+	 * @return a stripe index for the calling thread
+	 */
+	static int stripe(int mask) {
+		long id = Thread.currentThread().getId();
+		id ^= (id >>> 16);
+		id *= 0x85ebca6bL;
+		return (int) (id ^ (id >>> 13)) & mask;
+	}
+
+	/**
+	 * Increment the counter by one
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * Add the given amount to the counter
+	 * 
+	 * @param delta
+	 *            the amount to add
+	 */
+	public void add(long delta) {
+		cells.addAndGet(stripe(mask) * PAD, delta);
+	}
+
+	/**
+	 * Get the current value of the counter. If other threads are concurrently
+	 * updating the counter the result may or may not include their updates.
+	 * 
+	 * @return the current value
+	 */
+	public long getCount() {
+		long sum = 0;
+		for (int i = 0; i <= mask; i++)
+			sum += cells.get(i * PAD);
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(getCount());
+	}
+}
@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free histogram of non-negative long values (typically latencies in
+ * nanoseconds), from which counts, moments and percentiles can be computed.
+ * <p>
+ * Values are recorded into log-linear buckets: each power-of-two range is
+ * split into {@value #SUB_BUCKETS} equal sub-buckets, so percentiles are
+ * reported with a relative error of at most 1/{@value #SUB_BUCKETS} over the
+ * full range of a long, in a fixed amount of memory. The count, sum, sum of
+ * squares, minimum and maximum are tracked exactly.
+ * <p>
+ * Recording is wait-free apart from the min/max/sum-of-squares CAS loops, and
+ * threads record into separate stripes which are only allocated once a thread
+ * that maps to them records a value. A {@link Snapshot} merges the stripes;
+ * values recorded concurrently with taking a snapshot may or may not be
+ * included in it.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class Histogram implements Metric {
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * The number of linear sub-buckets per power of two
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private static class Stripe {
+		final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong sum = new AtomicLong();
+		final AtomicLong sumSqBits = new AtomicLong(Double.doubleToRawLongBits(0));
+		final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+		void record(long value) {
+			buckets.incrementAndGet(bucketIndex(value));
+			count.incrementAndGet();
+			sum.addAndGet(value);
+
+			final double sq = (double) value * value;
+			long bits;
+			do {
+				bits = sumSqBits.get();
+			} while (!sumSqBits.compareAndSet(bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + sq)));
+
+			long m;
+			while (value < (m = min.get()) && !min.compareAndSet(m, value))
+				;
+			while (value > (m = max.get()) && !max.compareAndSet(m, value))
+				;
+		}
+	}
+
+	private final AtomicReferenceArray<Stripe> stripes;
+	private final int mask;
+
+	/**
+	 * Construct an empty histogram
+	 */
+	public Histogram() {
+		final int nstripes = Counter.stripes();
+		this.stripes = new AtomicReferenceArray<Stripe>(nstripes);
+		this.mask = nstripes - 1;
+	}
+
+	/**
+	 * Get the index of the bucket that holds the given value
+	 * 
+	 * @param value
+	 *            the value (must be non-negative)
+	 * @return the bucket index
+	 */
+	static int bucketIndex(long value) {
+		if (value < 2 * SUB_BUCKETS)
+			return (int) value;
+
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * Get the largest value that falls in the given bucket
+	 * 
+	 * @param index
+	 *            the bucket index
+	 * @return the upper bound (inclusive) of the bucket
+	 */
+	static long bucketUpperBound(int index) {
+		if (index < 2 * SUB_BUCKETS)
+			return index;
+
+		final int shift = index / SUB_BUCKETS - 1;
+		final long mantissa = (index % SUB_BUCKETS) + SUB_BUCKETS;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	/**
+	 * Record a value. Negative values are recorded as zero.
+	 * 
+	 * @param value
+	 *            the value
+	 */
+	public void record(long value) {
+		final int idx = Counter.stripe(mask);
+
+		Stripe stripe = stripes.get(idx);
+		if (stripe == null) {
+			stripes.compareAndSet(idx, null, new Stripe());
+			stripe = stripes.get(idx);
+		}
+
+		stripe.record(value < 0 ? 0 : value);
+	}
+
+	/**
+	 * Take a snapshot of the current state of the histogram
+	 * 
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		final long[] buckets = new long[NUM_BUCKETS];
+		long count = 0;
+		long sum = 0;
+		double sumSq = 0;
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+
+		for (int s = 0; s <= mask; s++) {
+			final Stripe stripe = stripes.get(s);
+			if (stripe == null)
+				continue;
+
+			for (int i = 0; i < NUM_BUCKETS; i++)
+				buckets[i] += stripe.buckets.get(i);
+
+			count += stripe.count.get();
+			sum += stripe.sum.get();
+			sumSq += Double.longBitsToDouble(stripe.sumSqBits.get());
+			min = Math.min(min, stripe.min.get());
+			max = Math.max(max, stripe.max.get());
+		}
+
+		return new Snapshot(buckets, count, sum, sumSq, min, max);
+	}
+
+	/**
+	 * An immutable view of the state of a {@link Histogram} at a point in time.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class Snapshot {
+		private final long[] buckets;
+		private final long count;
+		private final long sum;
+		private final double sumSq;
+		private final long min;
+		private final long max;
+
+		Snapshot(long[] buckets, long count, long sum, double sumSq, long min, long max) {
+			this.buckets = buckets;
+			this.count = count;
+			this.sum = sum;
+			this.sumSq = sumSq;
+			this.min = count == 0 ? 0 : min;
+			this.max = count == 0 ? 0 : max;
+		}
+
+		/**
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the sum of the recorded values
+		 */
+		public long getSum() {
+			return sum;
+		}
+
+		/**
+		 * @return the smallest recorded value, or 0 if the histogram is empty
+		 */
+		public long getMin() {
+			return min;
+		}
+
+		/**
+		 * @return the largest recorded value, or 0 if the histogram is empty
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * @return the mean of the recorded values, or NaN if the histogram is
+		 *         empty
+		 */
+		public double getMean() {
+			return count == 0 ? Double.NaN : (double) sum / count;
+		}
+
+		/**
+		 * @return the (bias-corrected) sample variance of the recorded values,
+		 *         or NaN if fewer than two values were recorded
+		 */
+		public double getVariance() {
+			if (count < 2)
+				return count == 0 ? Double.NaN : 0;
+
+			final double mean = (double) sum / count;
+			return Math.max(0, (sumSq - count * mean * mean) / (count - 1));
+		}
+
+		/**
+		 * @return the standard deviation of the recorded values
+		 * @see #getVariance()
+		 */
+		public double getStandardDeviation() {
+			return Math.sqrt(getVariance());
+		}
+
+		/**
+		 * Get the value below which the given percentage of the recorded
+		 * values fall. The result is accurate to within the width of a bucket
+		 * (a relative error of at most 1/{@value Histogram#SUB_BUCKETS}), and
+		 * always lies between {@link #getMin()} and {@link #getMax()}.
+		 * 
+		 * @param percentile
+		 *            the percentile in the range 0..100
+		 * @return the value at the percentile, or 0 if the histogram is empty
+		 */
+		public long getPercentile(double percentile) {
+			if (percentile < 0 || percentile > 100)
+				throw new IllegalArgumentException("percentile must be in the range 0..100");
+
+			if (count == 0)
+				return 0;
+
+			final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank)
+					return Math.max(min, Math.min(max, bucketUpperBound(i)));
+			}
+
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d, mean=%.1f, min=%d, p50=%d, p99=%d, max=%d", count, getMean(), min,
+					getPercentile(50), getPercentile(99), max);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A named collection of metrics ({@link Counter}s, {@link Histogram}s and
+ * {@link Gauge}s). Code on a hot path should look up its metric once (for
+ * example in a static field) and then update it directly; all metrics are
+ * lock-free, so instrumentation does not serialise the threads being measured.
+ * <p>
+ * A process-wide registry is available through {@link #getDefault()}. The
+ * contents of a registry can be written as CSV or JSON, or exposed over JMX
+ * with a {@link MetricRegistryMBean}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MetricRegistry {
+	private static final MetricRegistry DEFAULT = new MetricRegistry();
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+	/**
+	 * Get the process-wide default registry
+	 * 
+	 * @return the default registry
+	 */
+	public static MetricRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Get the {@link Counter} with the given name, creating it if it doesn't
+	 * exist.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the counter
+	 * @throws IllegalArgumentException
+	 *             if a metric of a different type is registered with the name
+	 */
+	public Counter counter(String name) {
+		return getOrCreate(name, Counter.class);
+	}
+
+	/**
+	 * Get the {@link Histogram} with the given name, creating it if it doesn't
+	 * exist.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the histogram
+	 * @throws IllegalArgumentException
+	 *             if a metric of a different type is registered with the name
+	 */
+	public Histogram histogram(String name) {
+		return getOrCreate(name, Histogram.class);
+	}
+
+	/**
+	 * Register a {@link Gauge} with the given name. If a gauge is already
+	 * registered with the name then it is replaced.
+	 * 
+	 * @param name
+	 *            the name
+	 * @param gauge
+	 *            the gauge
+	 * @return the gauge
+	 * @throws IllegalArgumentException
+	 *             if a metric of a different type is registered with the name
+	 */
+	public Gauge register(String name, Gauge gauge) {
+		final Metric old = metrics.put(name, gauge);
+
+		if (old != null && !(old instanceof Gauge)) {
+			metrics.put(name, old);
+			throw new IllegalArgumentException("A metric of type " + old.getClass().getSimpleName()
+					+ " is already registered as " + name);
+		}
+
+		return gauge;
+	}
+
+	private <T extends Metric> T getOrCreate(String name, Class<T> clz) {
+		Metric metric = metrics.get(name);
+
+		if (metric == null) {
+			try {
+				final Metric created = clz.newInstance();
+				metric = metrics.putIfAbsent(name, created);
+				if (metric == null)
+					metric = created;
+			} catch (final Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		if (!clz.isInstance(metric))
+			throw new IllegalArgumentException("A metric of type " + metric.getClass().getSimpleName()
+					+ " is already registered as " + name);
+
+		return clz.cast(metric);
+	}
+
+	/**
+	 * Remove the metric with the given name
+	 * 
+	 * @param name
+	 *            the name
+	 * @return true if a metric was removed; false otherwise
+	 */
+	public boolean remove(String name) {
+		return metrics.remove(name) != null;
+	}
+
+	/**
+	 * Remove all the metrics
+	 */
+	public void clear() {
+		metrics.clear();
+	}
+
+	/**
+	 * Get all the metrics, ordered by name. The returned map is a copy; the
+	 * metrics within it are live.
+	 * 
+	 * @return the metrics
+	 */
+	public Map<String, Metric> getMetrics() {
+		return new TreeMap<String, Metric>(metrics);
+	}
+
+	/**
+	 * Get all the metrics of the given type, ordered by name. The returned map
+	 * is a copy; the metrics within it are live.
+	 * 
+	 * @param type
+	 *            the type of metric
+	 * @return the metrics of the given type
+	 */
+	public <T extends Metric> Map<String, T> getMetrics(Class<T> type) {
+		final Map<String, T> ret = new LinkedHashMap<String, T>();
+
+		for (final Entry<String, Metric> e : getMetrics().entrySet()) {
+			if (type.isInstance(e.getValue()))
+				ret.put(e.getKey(), type.cast(e.getValue()));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Get the metric with the given name
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the metric, or null if there is none
+	 */
+	public Metric getMetric(String name) {
+		return metrics.get(name);
+	}
+
+	/**
+	 * Write the current values of all the {@link Counter}s, {@link Gauge}s and
+	 * {@link Histogram}s as CSV. Each metric is written on its own line with
+	 * the columns
+	 * <code>name,type,count,value,mean,stddev,min,max,p50,p90,p99,p99.9</code>
+	 * ; columns that don't apply to the type of metric are left empty.
+	 * 
+	 * @param writer
+	 *            the writer
+	 * @throws IOException
+	 *             if an error occurs writing
+	 */
+	public void writeCSV(Writer writer) throws IOException {
+		writer.write("name,type,count,value,mean,stddev,min,max,p50,p90,p99,p99.9\n");
+
+		for (final Entry<String, Metric> e : getMetrics().entrySet()) {
+			final Metric metric = e.getValue();
+			if (!isExportable(metric))
+				continue;
+
+			final StringBuilder sb = new StringBuilder();
+
+			sb.append(escapeCSV(e.getKey())).append(',');
+			if (metric instanceof Counter) {
+				sb.append("counter,,").append(((Counter) metric).getCount()).append(",,,,,,,,");
+			} else if (metric instanceof Gauge) {
+				sb.append("gauge,,").append(((Gauge) metric).getValue()).append(",,,,,,,,");
+			} else {
+				final Histogram.Snapshot s = ((Histogram) metric).snapshot();
+				sb.append("histogram,").append(s.getCount()).append(",,");
+				sb.append(s.getMean()).append(',').append(s.getStandardDeviation()).append(',');
+				sb.append(s.getMin()).append(',').append(s.getMax());
+				for (final double p : PERCENTILES)
+					sb.append(',').append(s.getPercentile(p));
+			}
+			sb.append('\n');
+
+			writer.write(sb.toString());
+		}
+
+		writer.flush();
+	}
+
+	/**
+	 * Write the current values of all the {@link Counter}s, {@link Gauge}s and
+	 * {@link Histogram}s as a JSON object keyed by metric name.
+	 * 
+	 * @param writer
+	 *            the writer
+	 * @throws IOException
+	 *             if an error occurs writing
+	 */
+	public void writeJSON(Writer writer) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+
+		sb.append('{');
+		for (final Entry<String, Metric> e : getMetrics().entrySet()) {
+			final Metric metric = e.getValue();
+			if (!isExportable(metric))
+				continue;
+
+			if (sb.length() > 1)
+				sb.append(',');
+
+			sb.append('"').append(escapeJSON(e.getKey())).append("\":{");
+			if (metric instanceof Counter) {
+				sb.append("\"type\":\"counter\",\"count\":").append(((Counter) metric).getCount());
+			} else if (metric instanceof Gauge) {
+				sb.append("\"type\":\"gauge\",\"value\":").append(jsonNumber(((Gauge) metric).getValue()));
+			} else {
+				final Histogram.Snapshot s = ((Histogram) metric).snapshot();
+				sb.append("\"type\":\"histogram\",\"count\":").append(s.getCount());
+				sb.append(",\"mean\":").append(jsonNumber(s.getMean()));
+				sb.append(",\"stddev\":").append(jsonNumber(s.getStandardDeviation()));
+				sb.append(",\"min\":").append(s.getMin());
+				sb.append(",\"max\":").append(s.getMax());
+				for (final double p : PERCENTILES)
+					sb.append(",\"p").append(percentileName(p)).append("\":").append(s.getPercentile(p));
+			}
+			sb.append('}');
+		}
+		sb.append('}');
+
+		writer.write(sb.toString());
+		writer.flush();
+	}
+
+	private static boolean isExportable(Metric metric) {
+		return metric instanceof Counter || metric instanceof Gauge || metric instanceof Histogram;
+	}
+
+	static String percentileName(double p) {
+		return p == (long) p ? Long.toString((long) p) : Double.toString(p);
+	}
+
+	private static String jsonNumber(double d) {
+		return Double.isNaN(d) || Double.isInfinite(d) ? "null" : Double.toString(d);
+	}
+
+	private static String escapeCSV(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+			return s;
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+
+	private static String escapeJSON(String s) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * A JMX {@link DynamicMBean} that exposes the contents of a
+ * {@link MetricRegistry} as read-only attributes, so that the metrics can be
+ * inspected with tools such as jconsole or VisualVM. The attributes are
+ * computed from the registry every time they are read, so metrics registered
+ * after the bean are also visible.
+ * <p>
+ * Counters and gauges are exposed as a single attribute with the metric's name;
+ * histograms are exposed as a set of attributes named
+ * <code>&lt;name&gt;.count</code>, <code>&lt;name&gt;.mean</code>,
+ * <code>&lt;name&gt;.min</code>, <code>&lt;name&gt;.max</code>,
+ * <code>&lt;name&gt;.p50</code>, <code>&lt;name&gt;.p90</code>,
+ * <code>&lt;name&gt;.p99</code> and <code>&lt;name&gt;.p99.9</code>.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MetricRegistryMBean implements DynamicMBean {
+	private static final String[] HISTOGRAM_ATTRIBUTES = { "count", "mean", "min", "max", "p50", "p90", "p99",
+			"p99.9" };
+
+	private final MetricRegistry registry;
+
+	/**
+	 * Construct with the given registry
+	 * 
+	 * @param registry
+	 *            the registry to expose
+	 */
+	public MetricRegistryMBean(MetricRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Register the given registry with the platform MBean server under the
+	 * given name (for example <code>org.openimaj:type=Metrics</code>).
+	 * 
+	 * @param registry
+	 *            the registry
+	 * @param name
+	 *            the JMX object name
+	 * @return the object name the bean was registered with
+	 * @throws JMException
+	 *             if the name is invalid or already registered
+	 */
+	public static ObjectName register(MetricRegistry registry, String name) throws JMException {
+		final ObjectName oname = new ObjectName(name);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricRegistryMBean(registry), oname);
+		return oname;
+	}
+
+	/**
+	 * Unregister a bean previously registered with
+	 * {@link #register(MetricRegistry, String)}.
+	 * 
+	 * @param name
+	 *            the object name
+	 * @throws JMException
+	 *             if the bean isn't registered
+	 */
+	public static void unregister(ObjectName name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		final Metric metric = registry.getMetric(attribute);
+
+		if (metric instanceof Counter)
+			return ((Counter) metric).getCount();
+		if (metric instanceof Gauge)
+			return ((Gauge) metric).getValue();
+
+		final int dot = attribute.lastIndexOf('.', attribute.endsWith(".p99.9") ? attribute.length() - 6 : attribute
+				.length());
+		if (dot > 0) {
+			final Metric hist = registry.getMetric(attribute.substring(0, dot));
+
+			if (hist instanceof Histogram) {
+				final Histogram.Snapshot s = ((Histogram) hist).snapshot();
+				final String field = attribute.substring(dot + 1);
+
+				if (field.equals("count"))
+					return s.getCount();
+				if (field.equals("mean"))
+					return s.getMean();
+				if (field.equals("min"))
+					return s.getMin();
+				if (field.equals("max"))
+					return s.getMax();
+				if (field.startsWith("p")) {
+					try {
+						return s.getPercentile(Double.parseDouble(field.substring(1)));
+					} catch (final IllegalArgumentException e) {
+						// fall through
+					}
+				}
+			}
+		}
+
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metric attributes are read-only");
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		final AttributeList list = new AttributeList();
+
+		for (final String name : attributes) {
+			try {
+				list.add(new Attribute(name, getAttribute(name)));
+			} catch (final AttributeNotFoundException e) {
+				// skip it, as per the contract of getAttributes
+			}
+		}
+
+		return list;
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		final List<MBeanAttributeInfo> attrs = new ArrayList<MBeanAttributeInfo>();
+
+		for (final Entry<String, Metric> e : registry.getMetrics().entrySet()) {
+			final Metric metric = e.getValue();
+
+			if (metric instanceof Counter) {
+				attrs.add(new MBeanAttributeInfo(e.getKey(), "long", "counter", true, false, false));
+			} else if (metric instanceof Gauge) {
+				attrs.add(new MBeanAttributeInfo(e.getKey(), "double", "gauge", true, false, false));
+			} else if (metric instanceof Histogram) {
+				for (final String a : HISTOGRAM_ATTRIBUTES) {
+					final String type = a.equals("mean") ? "double" : "long";
+					attrs.add(new MBeanAttributeInfo(e.getKey() + "." + a, type, "histogram " + a, true, false, false));
+				}
+			}
+		}
+
+		return new MBeanInfo(getClass().getName(), "OpenIMAJ metrics", attrs.toArray(new MBeanAttributeInfo[attrs
+				.size()]), null, new MBeanOperationInfo[0], null);
+	}
+}
@@ -107,7 +107,17 @@ public class Parallel {
 		 */
 		public final int incr;
 
-		IntRange(int start, int stop, int incr) {
+		/**
+		 * Construct a range.
+		 *
+		 * @param start
+		 *            starting value (inclusive)
+		 * @param stop
+		 *            stopping value (exclusive)
+		 * @param incr
+		 *            increment amount
+		 */
+		public IntRange(int start, int stop, int incr) {
 			this.start = start;
 			this.stop = stop;
 			this.incr = incr;
@@ -134,11 +144,10 @@ public class Parallel {
 		int loops = pool.getMaximumPoolSize();
 		final int ops = (stop - start) / incr;
 
-		final double div = ops / (double) loops;
-		int chunksize = (int) div;
-		int remainder = (int) ((div - chunksize) * loops);
+		int chunksize = ops / loops;
+		int remainder = ops - chunksize * loops;
 
-		if (div < 1) {
+		if (chunksize < 1) {
 			chunksize = 1;
 			remainder = 0;
 			loops = ops;
@@ -215,6 +224,14 @@ public class Parallel {
 	 * potentially slightly faster as it avoids auto-boxing/unboxing and results
 	 * in fewer method calls. The downside is that users have to write an extra
 	 * loop to iterate over the {@link IntRange} object.
+	 * <p>
+	 * If the pool is <code>null</code>, the operation is performed once over
+	 * the whole range in the calling thread. This allows classes that can
+	 * optionally work in parallel to accept a <code>null</code> pool to mean
+	 * sequential processing. The calling thread blocks until all the chunks
+	 * have been processed, so the pool must not be one that the caller is
+	 * itself running in: a fixed-size pool will deadlock if all of its threads
+	 * are waiting on chunks queued behind them.
 	 *
 	 * @param start
 	 *            starting value
@@ -225,19 +242,24 @@ public class Parallel {
 	 * @param op
 	 *            operation to perform
 	 * @param pool
-	 *            the thread pool.
+	 *            the thread pool; can be <code>null</code>.
 	 */
 	public static void forRange(final int start, final int stop, final int incr, final Operation<IntRange> op,
 			final ThreadPoolExecutor pool)
 	{
+		if (pool == null) {
+			if (start < stop)
+				op.perform(new IntRange(start, stop, incr));
+			return;
+		}
+
 		int loops = pool.getMaximumPoolSize();
 		final int ops = (stop - start) / incr;
 
-		final double div = ops / (double) loops;
-		int chunksize = (int) div;
-		int remainder = (int) ((div - chunksize) * loops);
+		int chunksize = ops / loops;
+		int remainder = ops - chunksize * loops;
 
-		if (div < 1) {
+		if (chunksize < 1) {
 			chunksize = 1;
 			remainder = 0;
 			loops = ops;
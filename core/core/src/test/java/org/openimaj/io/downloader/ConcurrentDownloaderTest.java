@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io.downloader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.util.metrics.Counter;
+import org.openimaj.util.metrics.MetricRegistry;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for the {@link ConcurrentDownloader} against a local stub server.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ConcurrentDownloaderTest {
+	private HttpServer server;
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+	private final List<Long> starts = new CopyOnWriteArrayList<Long>();
+	private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<String, AtomicInteger>();
+	private volatile long responseDelay = 0;
+
+	/**
+	 * Start a stub server. "/data/x" returns "x" after the response delay,
+	 * "/flaky/n/x" fails with a 503 n times before returning "x" and anything
+	 * else is a 404.
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				starts.add(System.currentTimeMillis());
+				final int now = active.incrementAndGet();
+				synchronized (maxActive) {
+					if (now > maxActive.get())
+						maxActive.set(now);
+				}
+
+				try {
+					final String path = exchange.getRequestURI().getPath();
+					hits.putIfAbsent(path, new AtomicInteger());
+					final int hit = hits.get(path).incrementAndGet();
+
+					if (responseDelay > 0)
+						Thread.sleep(responseDelay);
+
+					final String[] parts = path.split("/");
+					if (parts[1].equals("data")) {
+						send(exchange, 200, parts[2]);
+					} else if (parts[1].equals("flaky") && hit > Integer.parseInt(parts[2])) {
+						send(exchange, 200, parts[3]);
+					} else if (parts[1].equals("flaky")) {
+						send(exchange, 503, "unavailable");
+					} else {
+						send(exchange, 404, "not found");
+					}
+				} catch (final InterruptedException e) {
+					send(exchange, 500, "interrupted");
+				} finally {
+					active.decrementAndGet();
+				}
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	/**
+	 * Stop the server
+	 */
+	@After
+	public void teardown() {
+		server.stop(0);
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		final OutputStream os = exchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	private URL url(String path) throws IOException {
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static class Collector implements DownloadListener {
+		final List<DownloadResult> results = Collections.synchronizedList(new ArrayList<DownloadResult>());
+
+		@Override
+		public void downloadCompleted(DownloadResult result) {
+			results.add(result);
+		}
+	}
+
+	/**
+	 * Many downloads should be in flight at once and all should complete
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentDownloads() throws Exception {
+		responseDelay = 50;
+		final MetricRegistry registry = new MetricRegistry();
+		final ConcurrentDownloader downloader = new ConcurrentDownloader(8, 8, 0, 5000, 0, 0, true, registry);
+		final Collector collector = new Collector();
+
+		for (int i = 0; i < 64; i++)
+			downloader.submit("k" + i, url("/data/" + i), collector);
+		downloader.awaitCompletion();
+		downloader.close();
+
+		assertEquals(64, collector.results.size());
+		for (final DownloadResult r : collector.results) {
+			assertTrue(r.isSuccess());
+			assertEquals("k" + new String(r.getData(), "UTF-8"), r.getKey());
+			assertEquals(1, r.getAttempts());
+		}
+
+		assertTrue(maxActive.get() > 1);
+		assertTrue(maxActive.get() <= 8);
+		assertEquals(64, ((Counter) registry.getMetric("downloader.success")).getCount());
+		assertTrue(((Counter) registry.getMetric("downloader.bytes")).getCount() > 64);
+	}
+
+	/**
+	 * No more than the per-host limit of requests should reach a host at once
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPerHostLimit() throws Exception {
+		responseDelay = 20;
+		final ConcurrentDownloader downloader = new ConcurrentDownloader(16, 2, 0, true);
+		final Collector collector = new Collector();
+
+		for (int i = 0; i < 32; i++)
+			downloader.submit("k" + i, url("/data/" + i), collector);
+		downloader.awaitCompletion();
+		downloader.close();
+
+		assertEquals(32, collector.results.size());
+		assertEquals(2, maxActive.get());
+	}
+
+	/**
+	 * Successive requests to a host should respect the politeness delay
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPolitenessDelay() throws Exception {
+		final ConcurrentDownloader downloader = new ConcurrentDownloader(4, 4, 100, true);
+		final Collector collector = new Collector();
+
+		for (int i = 0; i < 5; i++)
+			downloader.submit("k" + i, url("/data/" + i), collector);
+		downloader.awaitCompletion();
+		downloader.close();
+
+		assertEquals(5, starts.size());
+		final List<Long> sorted = new ArrayList<Long>(starts);
+		Collections.sort(sorted);
+		for (int i = 1; i < sorted.size(); i++)
+			assertTrue(sorted.get(i) - sorted.get(i - 1) >= 90);
+	}
+
+	/**
+	 * Transient failures should be retried with backoff
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetry() throws Exception {
+		final MetricRegistry registry = new MetricRegistry();
+		final ConcurrentDownloader downloader = new ConcurrentDownloader(2, 2, 0, 5000, 2, 10, true, registry);
+		final Collector collector = new Collector();
+
+		downloader.submit("a", url("/flaky/2/a"), collector);
+		downloader.submit("b", url("/flaky/3/b"), collector);
+		downloader.awaitCompletion();
+		downloader.close();
+
+		assertEquals(2, collector.results.size());
+		for (final DownloadResult r : collector.results) {
+			if (r.getKey().equals("a")) {
+				assertTrue(r.isSuccess());
+				assertArrayEquals("a".getBytes("UTF-8"), r.getData());
+			} else {
+				assertFalse(r.isSuccess());
+				assertEquals(503, r.getStatusCode());
+			}
+			assertEquals(3, r.getAttempts());
+		}
+		assertEquals(4, ((Counter) registry.getMetric("downloader.retries")).getCount());
+	}
+
+	/**
+	 * A missing resource should not be retried, but the next candidate should
+	 * be tried
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFallback() throws Exception {
+		final ConcurrentDownloader downloader = new ConcurrentDownloader(2, 2, 0, 5000, 2, 10, true,
+				new MetricRegistry());
+		final Collector collector = new Collector();
+
+		downloader.submit("a", Arrays.asList(url("/missing"), url("/data/a")), collector);
+		downloader.submit("b", url("/missing"), collector);
+		downloader.awaitCompletion();
+		downloader.close();
+
+		assertEquals(2, collector.results.size());
+		for (final DownloadResult r : collector.results) {
+			if (r.getKey().equals("a")) {
+				assertTrue(r.isSuccess());
+				assertEquals(url("/data/a"), r.getURL());
+				assertEquals(2, r.getAttempts());
+			} else {
+				assertFalse(r.isSuccess());
+				assertEquals(404, r.getStatusCode());
+				assertEquals(1, r.getAttempts());
+			}
+		}
+		assertEquals(2, hits.get("/missing").get());
+	}
+
+	/**
+	 * Closing the downloader should fail the downloads that have not completed
+	 * rather than leaving {@link ConcurrentDownloader#awaitCompletion()}
+	 * blocked
+	 *
+	 * @throws Exception
+	 */
+	@Test(timeout = 10000)
+	public void testClose() throws Exception {
+		responseDelay = 500;
+		final ConcurrentDownloader downloader = new ConcurrentDownloader(1, 1, 0, 5000, 2, 10, true,
+				new MetricRegistry());
+		final Collector collector = new Collector();
+
+		for (int i = 0; i < 3; i++)
+			downloader.submit("" + i, url("/data/" + i), collector);
+
+		Thread.sleep(100);
+		downloader.close();
+		downloader.awaitCompletion();
+
+		assertEquals(3, collector.results.size());
+		for (final DownloadResult r : collector.results)
+			assertFalse(r.isSuccess());
+	}
+}
@@ -106,4 +106,22 @@ public class SkippingListViewTest {
 		
 		assertArrayEquals(new Integer[] {0, 4, 5, 7, 8, 9}, view.toArray(new Integer[6]));		
 	}
+
+	/**
+	 * The iterator must agree with get() for random skips
+	 */
+	@Test
+	public void testIterator() {
+		final java.util.Random rng = new java.util.Random(0);
+		
+		for (int t=0; t<100; t++) {
+			final int[] skips = org.openimaj.data.RandomData.getUniqueRandomInts(rng.nextInt(10), 0, 10, rng);
+			final SkippingListView<Integer> view = new SkippingListView<Integer>(list, skips);
+			
+			int i = 0;
+			for (Integer v : view)
+				assertEquals(view.get(i++), v);
+			assertEquals(view.size(), i);
+		}
+	}
 }
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link Histogram} and {@link Counter}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HistogramTest {
+	/**
+	 * Every value must map to a bucket whose upper bound is not smaller than
+	 * it, and the buckets must be contiguous
+	 */
+	@Test
+	public void testBuckets() {
+		final Random rng = new Random(0);
+
+		for (int i = 0; i < 100000; i++) {
+			final long v = i < 1000 ? i : rng.nextLong() >>> (1 + rng.nextInt(63));
+			final int idx = Histogram.bucketIndex(v);
+
+			assertTrue(Histogram.bucketUpperBound(idx) >= v);
+			if (idx > 0)
+				assertTrue(Histogram.bucketUpperBound(idx - 1) < v);
+		}
+
+		assertEquals(Long.MAX_VALUE, Histogram.bucketUpperBound(Histogram.bucketIndex(Long.MAX_VALUE)));
+	}
+
+	/**
+	 * Test the moments and percentiles of a uniform set of values
+	 */
+	@Test
+	public void testStatistics() {
+		final Histogram h = new Histogram();
+		for (int i = 1; i <= 10000; i++)
+			h.record(i);
+
+		final Histogram.Snapshot s = h.snapshot();
+		assertEquals(10000, s.getCount());
+		assertEquals(1, s.getMin());
+		assertEquals(10000, s.getMax());
+		assertEquals(5000.5, s.getMean(), 1e-9);
+		assertEquals(2886.8957, s.getStandardDeviation(), 1e-3);
+
+		for (final double p : new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+			final double expected = p * 100;
+			assertEquals(expected, s.getPercentile(p), expected / Histogram.SUB_BUCKETS);
+		}
+		assertEquals(1, s.getPercentile(0));
+		assertEquals(10000, s.getPercentile(100));
+	}
+
+	/**
+	 * An empty histogram should have sensible values
+	 */
+	@Test
+	public void testEmpty() {
+		final Histogram.Snapshot s = new Histogram().snapshot();
+
+		assertEquals(0, s.getCount());
+		assertEquals(0, s.getPercentile(50));
+		assertTrue(Double.isNaN(s.getMean()));
+	}
+
+	/**
+	 * Concurrent updates must not be lost
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final Histogram h = new Histogram();
+		final Counter c = new Counter();
+		final int nthreads = 8;
+		final int n = 100000;
+
+		final Thread[] threads = new Thread[nthreads];
+		for (int t = 0; t < nthreads; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						h.record(i + offset);
+						c.increment();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread t : threads)
+			t.join();
+
+		final Histogram.Snapshot s = h.snapshot();
+		assertEquals(nthreads * n, s.getCount());
+		assertEquals(nthreads * n, c.getCount());
+		assertEquals(0, s.getMin());
+		assertEquals(n - 1 + nthreads - 1, s.getMax());
+
+		long sum = 0;
+		for (int t = 0; t < nthreads; t++)
+			sum += (long) n * (n - 1) / 2 + (long) n * t;
+		assertEquals(sum, s.getSum());
+	}
+}
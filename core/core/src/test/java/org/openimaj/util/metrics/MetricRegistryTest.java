@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link MetricRegistry} and its exporters.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MetricRegistryTest {
+	private MetricRegistry registry;
+
+	/**
+	 * Set up a registry with one of each type of metric
+	 */
+	@Before
+	public void setup() {
+		registry = new MetricRegistry();
+		registry.counter("requests").add(3);
+		registry.histogram("latency").record(100);
+		registry.histogram("latency").record(200);
+		registry.register("queue", new Gauge() {
+			@Override
+			public double getValue() {
+				return 42;
+			}
+		});
+	}
+
+	/**
+	 * Metrics must be looked up by name, and types must not clash
+	 */
+	@Test
+	public void testLookup() {
+		assertSame(registry.counter("requests"), registry.counter("requests"));
+		assertEquals(3, registry.counter("requests").getCount());
+
+		try {
+			registry.histogram("requests");
+			assertTrue(false);
+		} catch (final IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Metrics can be listed by type
+	 */
+	@Test
+	public void testTypedLookup() {
+		final Map<String, Histogram> histograms = registry.getMetrics(Histogram.class);
+		assertEquals(1, histograms.size());
+		assertSame(registry.histogram("latency"), histograms.get("latency"));
+
+		final Map<String, Counter> counters = registry.getMetrics(Counter.class);
+		assertEquals(1, counters.size());
+		assertSame(registry.counter("requests"), counters.get("requests"));
+
+		assertEquals(3, registry.getMetrics(Metric.class).size());
+	}
+
+	/**
+	 * Test the CSV export
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testCSV() throws IOException {
+		final StringWriter sw = new StringWriter();
+		registry.writeCSV(sw);
+
+		final String[] lines = sw.toString().split("\n");
+		assertEquals(4, lines.length);
+		assertEquals(12, lines[0].split(",", -1).length);
+		assertEquals("latency,histogram,2,,150.0,70.71067811865476,100,200,101,200,200,200", lines[1]);
+		assertEquals("queue,gauge,,42.0,,,,,,,,", lines[2]);
+		assertEquals("requests,counter,,3,,,,,,,,", lines[3]);
+	}
+
+	/**
+	 * Test the JSON export
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testJSON() throws IOException {
+		final StringWriter sw = new StringWriter();
+		registry.writeJSON(sw);
+
+		final String json = sw.toString();
+		assertTrue(json.startsWith("{\"latency\":{\"type\":\"histogram\",\"count\":2,"));
+		assertTrue(json.contains("\"p99.9\":200"));
+		assertTrue(json.contains("\"queue\":{\"type\":\"gauge\",\"value\":42.0}"));
+		assertTrue(json.endsWith("\"requests\":{\"type\":\"counter\",\"count\":3}}"));
+	}
+
+	/**
+	 * Test the JMX bean
+	 * 
+	 * @throws JMException
+	 */
+	@Test
+	public void testJMX() throws JMException {
+		final ObjectName name = MetricRegistryMBean.register(registry, "org.openimaj:type=MetricRegistryTest");
+
+		try {
+			final MetricRegistryMBean bean = new MetricRegistryMBean(registry);
+			assertEquals(3L, bean.getAttribute("requests"));
+			assertEquals(42.0, bean.getAttribute("queue"));
+			assertEquals(2L, bean.getAttribute("latency.count"));
+			assertEquals(200L, bean.getAttribute("latency.p99.9"));
+			assertEquals(2 + 8, bean.getMBeanInfo().getAttributes().length);
+
+			registry.counter("late").increment();
+			assertEquals(1L, java.lang.management.ManagementFactory.getPlatformMBeanServer().getAttribute(name,
+					"late"));
+
+			try {
+				java.lang.management.ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", null, null);
+				fail();
+			} catch (final ReflectionException e) {
+				assertTrue(e.getCause() instanceof NoSuchMethodException);
+			}
+		} finally {
+			MetricRegistryMBean.unregister(name);
+		}
+	}
+}
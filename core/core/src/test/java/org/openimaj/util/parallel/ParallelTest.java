@@ -36,9 +36,13 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.junit.Test;
 import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel.IntRange;
 import org.openimaj.util.parallel.partition.GrowingChunkPartitioner;
 import org.openimaj.util.parallel.partition.RangePartitioner;
 
@@ -96,4 +100,55 @@ public class ParallelTest {
 
 		assertEquals(intsList.size(), out.size());
 	}
+
+	/**
+	 * Test that the range loop visits every index exactly once, including
+	 * when the range doesn't divide evenly over the pool
+	 */
+	@Test
+	public void testForRange() {
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(3);
+
+		try {
+			for (int n = 0; n < 100; n++) {
+				final AtomicIntegerArray counts = new AtomicIntegerArray(n);
+
+				Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						for (int i = range.start; i < range.stop; i += range.incr)
+							counts.incrementAndGet(i);
+					}
+				}, pool);
+
+				for (int i = 0; i < n; i++)
+					assertEquals(1, counts.get(i));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test that the range loop runs in the calling thread without a pool
+	 */
+	@Test
+	public void testForRangeNullPool() {
+		final List<Thread> threads = new ArrayList<Thread>();
+		final AtomicIntegerArray counts = new AtomicIntegerArray(10);
+
+		Parallel.forRange(0, 10, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				threads.add(Thread.currentThread());
+				for (int i = range.start; i < range.stop; i += range.incr)
+					counts.incrementAndGet(i);
+			}
+		}, null);
+
+		assertEquals(1, threads.size());
+		assertEquals(Thread.currentThread(), threads.get(0));
+		for (int i = 0; i < 10; i++)
+			assertEquals(1, counts.get(i));
+	}
 }
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.local.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.math.geometry.transforms.AffineTransformModel;
+import org.openimaj.math.geometry.transforms.estimation.RobustAffineTransformEstimator;
+import org.openimaj.math.model.fit.RANSAC;
+
+/**
+ * Benchmarks the query latency of a {@link MultiModelKeypointMatcher} against a
+ * growing number of models of random keypoints, compared to matching against a
+ * {@link FastBasicKeypointMatcher} per model.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MultiModelKeypointMatcherBenchmark {
+	private static List<Keypoint> randomKeypoints(Random rng, int n) {
+		final List<Keypoint> kps = new ArrayList<Keypoint>();
+		for (int i = 0; i < n; i++) {
+			final Keypoint kp = new Keypoint();
+			kp.x = rng.nextFloat() * 640;
+			kp.y = rng.nextFloat() * 480;
+			for (int j = 0; j < kp.ivec.length; j++)
+				kp.ivec[j] = (byte) (rng.nextInt(256) - 128);
+			kps.add(kp);
+		}
+		return kps;
+	}
+
+	/**
+	 * Make a query from a scaled and shifted copy of the given model with
+	 * noisy descriptors, mixed with random clutter
+	 */
+	private static List<Keypoint> makeQuery(Random rng, List<Keypoint> model, int clutter) {
+		final List<Keypoint> query = randomKeypoints(rng, clutter);
+		for (final Keypoint m : model) {
+			final Keypoint kp = m.clone();
+			kp.x = 0.7f * m.x + 31;
+			kp.y = 0.7f * m.y - 12;
+			for (int j = 0; j < kp.ivec.length; j++)
+				kp.ivec[j] = (byte) Math.max(-128, Math.min(127, m.ivec[j] + rng.nextInt(9) - 4));
+			query.add(kp);
+		}
+		return query;
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            ignored
+	 */
+	public static void main(String[] args) {
+		final Random rng = new Random(0);
+		final int kpsPerModel = 200;
+
+		for (final int nmodels : new int[] { 10, 100, 1000, 5000 }) {
+			final List<List<Keypoint>> models = new ArrayList<List<Keypoint>>();
+			for (int i = 0; i < nmodels; i++)
+				models.add(randomKeypoints(rng, kpsPerModel));
+			final List<Keypoint> query = makeQuery(rng, models.get(nmodels / 2), 500);
+
+			final MultiModelKeypointMatcher<Integer, Keypoint, AffineTransformModel> matcher = new MultiModelKeypointMatcher<Integer, Keypoint, AffineTransformModel>(
+					new RobustAffineTransformEstimator(3.0, 500, new RANSAC.PercentageInliersStoppingCondition(0.5)));
+			for (int i = 0; i < nmodels; i++)
+				matcher.addModel(i, models.get(i));
+			matcher.buildIndex();
+
+			matcher.findMatches(query);
+			final int nq = 5;
+			long t0 = System.nanoTime();
+			for (int i = 0; i < nq; i++)
+				matcher.findMatches(query);
+			final double multi = (System.nanoTime() - t0) / 1e6 / nq;
+
+			String perModel = "-";
+			if (nmodels <= 100) {
+				final List<FastBasicKeypointMatcher<Keypoint>> matchers = new ArrayList<FastBasicKeypointMatcher<Keypoint>>();
+				for (final List<Keypoint> m : models) {
+					final FastBasicKeypointMatcher<Keypoint> fbkm = new FastBasicKeypointMatcher<Keypoint>(8);
+					fbkm.setModelFeatures(m);
+					matchers.add(fbkm);
+				}
+
+				t0 = System.nanoTime();
+				for (final FastBasicKeypointMatcher<Keypoint> m : matchers)
+					m.findMatches(query);
+				perModel = String.format("%.1fms", (System.nanoTime() - t0) / 1e6);
+			}
+
+			System.out.format("%5d models: shared index %.1fms/query, per-model matchers %s/query%n", nmodels, multi,
+					perModel);
+		}
+	}
+}
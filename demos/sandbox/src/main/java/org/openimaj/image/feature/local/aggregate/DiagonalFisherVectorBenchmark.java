@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openimaj.feature.FloatFV;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+
+import Jama.Matrix;
+
+/**
+ * Compares the time taken by {@link FisherVector} and
+ * {@link DiagonalFisherVector} (with all posteriors, and with only the top 5)
+ * to encode features drawn from a random diagonal-covariance mixture.
+ * <p>
+ * Usage: <code>DiagonalFisherVectorBenchmark [nfeatures]</code>
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DiagonalFisherVectorBenchmark {
+	private static MixtureOfGaussians createGMM(int k, int d, Random rng) {
+		final MultivariateGaussian[] gaussians = new MultivariateGaussian[k];
+		final double[] weights = new double[k];
+
+		double sum = 0;
+		for (int i = 0; i < k; i++) {
+			final Matrix mean = new Matrix(1, d);
+			final double[] var = new double[d];
+			for (int j = 0; j < d; j++) {
+				mean.set(0, j, rng.nextDouble() * 10);
+				var[j] = 0.5 + rng.nextDouble();
+			}
+			gaussians[i] = new DiagonalMultivariateGaussian(mean, var);
+			weights[i] = 0.5 + rng.nextDouble();
+			sum += weights[i];
+		}
+		for (int i = 0; i < k; i++)
+			weights[i] /= sum;
+
+		return new MixtureOfGaussians(gaussians, weights);
+	}
+
+	private static List<FloatFV> createFeatures(MixtureOfGaussians gmm, int n, Random rng) {
+		final List<FloatFV> features = new ArrayList<FloatFV>(n);
+		for (int i = 0; i < n; i++) {
+			final MultivariateGaussian g = gmm.gaussians[rng.nextInt(gmm.gaussians.length)];
+			final double[] mean = g.getMean().getArray()[0];
+			final float[] v = new float[mean.length];
+			for (int j = 0; j < v.length; j++)
+				v[j] = (float) (mean[j] + rng.nextGaussian() * Math.sqrt(g.getCovariance(j, j)));
+			features.add(new FloatFV(v));
+		}
+		return features;
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            optionally, the number of features to encode (default 5000)
+	 */
+	public static void main(String[] args) {
+		final int n = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final MixtureOfGaussians gmm = createGMM(64, 64, new Random(0));
+		final List<FloatFV> features = createFeatures(gmm, n, new Random(1));
+
+		final FisherVector<float[]> ref = new FisherVector<float[]>(gmm, true);
+		final DiagonalFisherVector<float[]> all = new DiagonalFisherVector<float[]>(gmm, true);
+		final DiagonalFisherVector<float[]> top = new DiagonalFisherVector<float[]>(gmm, 5, true, true);
+
+		for (int r = 0; r < 3; r++) {
+			final long t0 = System.currentTimeMillis();
+			ref.aggregateVectors(features);
+			final long t1 = System.currentTimeMillis();
+			all.aggregateVectors(features);
+			final long t2 = System.currentTimeMillis();
+			top.aggregateVectors(features);
+			final long t3 = System.currentTimeMillis();
+
+			System.out.format("FisherVector: %dms; DiagonalFisherVector: %dms; top-5: %dms%n", t1 - t0, t2 - t1, t3 - t2);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.morphology;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.Pixel;
+
+/**
+ * Compares the time taken by the {@link PackedBinaryImage} morphological
+ * operators with the existing {@link FImage} and {@link ConnectedComponent}
+ * based operators on random masks.
+ * <p>
+ * Usage: <code>PackedBinaryImageBenchmark [size]</code>
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedBinaryImageBenchmark {
+	private static FImage randomMask(int width, int height, long seed) {
+		final Random rng = new Random(seed);
+		final FImage mask = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				mask.pixels[y][x] = rng.nextFloat() < 0.7 ? 1 : 0;
+		return mask;
+	}
+
+	private static ConnectedComponent copy(ConnectedComponent cc) {
+		return new ConnectedComponent(new HashSet<Pixel>(cc.getPixels()));
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            optionally, the width and height of the image mask (default
+	 *            512); the connected component is a quarter of this size
+	 */
+	public static void main(String[] args) {
+		final int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		final FImage mask = randomMask(size, size, 0);
+		final ConnectedComponent cc = new ConnectedComponent(randomMask(size / 4, size / 4, 1), 0.5f);
+		final StructuringElement se = StructuringElement.disk(5);
+
+		for (int i = 0; i < 3; i++) {
+			long t0 = System.nanoTime();
+			mask.process(new Dilate(se), true);
+			long t1 = System.nanoTime();
+			new PackedBinaryImage(mask).dilate(se).toFImage();
+			long t2 = System.nanoTime();
+			System.out.format("FImage dilate (disk 5): %.1fms; packed: %.1fms%n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+
+			t0 = System.nanoTime();
+			new Dilate(se).process(copy(cc));
+			t1 = System.nanoTime();
+			new PackedBinaryImage(cc, 6).dilate(se).toConnectedComponent();
+			t2 = System.nanoTime();
+			System.out.format("ConnectedComponent dilate (disk 5): %.1fms; packed: %.1fms%n", (t1 - t0) / 1e6,
+					(t2 - t1) / 1e6);
+
+			t0 = System.nanoTime();
+			new Skeleton().process(copy(cc));
+			t1 = System.nanoTime();
+			new PackedBinaryImage(cc, 2).skeleton().toConnectedComponent();
+			t2 = System.nanoTime();
+			System.out.format("ConnectedComponent skeleton: %.1fms; packed: %.1fms%n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+		}
+	}
+}
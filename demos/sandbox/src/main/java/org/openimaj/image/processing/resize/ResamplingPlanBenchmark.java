@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import org.openimaj.image.FImage;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Benchmarks a typical thumbnailing workload with {@link ResamplingPlan}: a
+ * stream of frames resized to a fixed size, rebuilding the resampling plan for
+ * every frame, reusing a cached plan, and reusing the plan with parallel rows.
+ * <p>
+ * Usage: <code>ResamplingPlanBenchmark [nframes]</code>
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ResamplingPlanBenchmark {
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            optionally, the number of 1280x720 frames to resize to
+	 *            160x90 in each run (default 200)
+	 */
+	public static void main(String[] args) {
+		final int nframes = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+		final FImage frame = new FImage(1280, 720);
+		for (int y = 0; y < frame.height; y++)
+			for (int x = 0; x < frame.width; x++)
+				frame.pixels[y][x] = ((x * 7 + y * 13) % 256) / 255f;
+
+		final FImage thumb = new FImage(160, 90);
+		for (int run = 0; run < 3; run++) {
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < nframes; i++)
+				new ResamplingPlan(1280, 720, 160, 90, ResizeProcessor.DEFAULT_FILTER).apply(frame, thumb, null);
+			final long uncached = System.currentTimeMillis() - start;
+
+			final ResamplingPlan plan = ResamplingPlan.get(1280, 720, 160, 90, ResizeProcessor.DEFAULT_FILTER);
+			start = System.currentTimeMillis();
+			for (int i = 0; i < nframes; i++)
+				plan.apply(frame, thumb, null);
+			final long cached = System.currentTimeMillis() - start;
+
+			start = System.currentTimeMillis();
+			for (int i = 0; i < nframes; i++)
+				plan.apply(frame, thumb, GlobalExecutorPool.getPool());
+			final long parallel = System.currentTimeMillis() - start;
+
+			System.out.format("%d frames 1280x720->160x90: new plan per frame %dms; cached plan %dms; "
+					+ "cached plan + parallel rows %dms%n", nframes, uncached, cached, parallel);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.model.fit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openimaj.math.geometry.point.Point2d;
+import org.openimaj.math.geometry.point.Point2dImpl;
+import org.openimaj.math.geometry.transforms.AffineTransformModel;
+import org.openimaj.math.geometry.transforms.residuals.SingleImageTransferResidual2d;
+import org.openimaj.util.pair.Pair;
+
+/**
+ * Compares the time taken by plain {@link RANSAC} and {@link SPRTRANSAC} to
+ * fit an affine transform to point pairs of which 30% are inliers.
+ * <p>
+ * Usage: <code>SPRTRANSACBenchmark [npairs]</code>
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SPRTRANSACBenchmark {
+	private static final double THRESHOLD = 4;
+
+	private static List<Pair<Point2d>> createData(Random rng, int nInliers, int nOutliers) {
+		final List<Pair<Point2d>> data = new ArrayList<Pair<Point2d>>();
+
+		for (int i = 0; i < nInliers + nOutliers; i++) {
+			final Point2dImpl p = new Point2dImpl(rng.nextFloat() * 500, rng.nextFloat() * 500);
+			final Point2dImpl q;
+
+			if (i < nInliers) {
+				q = new Point2dImpl(0.9f * p.x - 0.2f * p.y + 20, 0.1f * p.x + 1.1f * p.y - 5);
+				q.x += (float) rng.nextGaussian() * 0.3f;
+				q.y += (float) rng.nextGaussian() * 0.3f;
+			} else {
+				q = new Point2dImpl(rng.nextFloat() * 500, rng.nextFloat() * 500);
+			}
+
+			data.add(new Pair<Point2d>(p, q));
+		}
+
+		return data;
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            optionally, the number of point pairs (default 2000)
+	 */
+	public static void main(String[] args) {
+		final int npairs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		final List<Pair<Point2d>> data = createData(new Random(0), 3 * npairs / 10, npairs - 3 * npairs / 10);
+
+		for (int r = 0; r < 3; r++) {
+			final RANSAC<Point2d, Point2d, AffineTransformModel> plain = new RANSAC<Point2d, Point2d, AffineTransformModel>(
+					new AffineTransformModel(), new SingleImageTransferResidual2d<AffineTransformModel>(), THRESHOLD,
+					2000, new RANSAC.BestFitStoppingCondition(), true);
+			final SPRTRANSAC<Point2d, Point2d, AffineTransformModel> sprt = new SPRTRANSAC<Point2d, Point2d, AffineTransformModel>(
+					new AffineTransformModel(), new SingleImageTransferResidual2d<AffineTransformModel>(), THRESHOLD,
+					2000, new RANSAC.BestFitStoppingCondition(), true);
+
+			long t0 = System.nanoTime();
+			plain.fitData(data);
+			final double tp = (System.nanoTime() - t0) / 1e6;
+
+			t0 = System.nanoTime();
+			sprt.fitData(data);
+			final double ts = (System.nanoTime() - t0) / 1e6;
+
+			System.out.format("RANSAC %.1fms (%d inliers); SPRT %.1fms (%d inliers)%n", tp, plain.getInliers().size(),
+					ts, sprt.getInliers().size());
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.gmm;
+
+import java.util.Random;
+
+import org.openimaj.data.FloatArrayBackedDataSource;
+import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.ml.gmm.StreamingGaussianMixtureModelEM.IterationStatistics;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Compares the time taken by {@link GaussianMixtureModelEM} and
+ * {@link StreamingGaussianMixtureModelEM} to fit a diagonal mixture to samples
+ * drawn from a known three-component mixture.
+ * <p>
+ * Usage: <code>StreamingGaussianMixtureModelEMBenchmark [nsamples]</code>
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingGaussianMixtureModelEMBenchmark {
+	private static final double[][] MEANS = { { 0, 0, 0 }, { 10, 10, 0 }, { -10, 5, 10 } };
+	private static final double[][] SIGMAS = { { 1, 1, 1 }, { 2, 0.5, 1 }, { 1, 1, 3 } };
+	private static final double[] WEIGHTS = { 0.5, 0.3, 0.2 };
+
+	private static float[][] createData(int n, Random rng) {
+		final float[][] x = new float[n][];
+
+		for (int i = 0; i < n; i++) {
+			final double r = rng.nextDouble();
+			int k = 0;
+			for (double c = WEIGHTS[0]; r > c; c += WEIGHTS[++k])
+				;
+
+			x[i] = new float[MEANS[k].length];
+			for (int j = 0; j < x[i].length; j++)
+				x[i][j] = (float) (MEANS[k][j] + rng.nextGaussian() * SIGMAS[k][j]);
+		}
+
+		return x;
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            optionally, the number of samples (default 20000)
+	 */
+	public static void main(String[] args) {
+		final int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		final float[][] x = createData(n, new Random(0));
+		final double[][] xd = new double[x.length][x[0].length];
+		for (int i = 0; i < x.length; i++)
+			for (int j = 0; j < x[i].length; j++)
+				xd[i][j] = x[i][j];
+
+		final FloatArrayBackedDataSource ds = new FloatArrayBackedDataSource(x);
+
+		final long t0 = System.currentTimeMillis();
+		new GaussianMixtureModelEM(3, CovarianceType.Diagonal).estimate(xd);
+		final long t1 = System.currentTimeMillis();
+		final StreamingGaussianMixtureModelEM em = new StreamingGaussianMixtureModelEM(3, CovarianceType.Diagonal,
+				1e-2, 1e-3, 100, 1000, 0, GlobalExecutorPool.getPool());
+		em.estimate(ds);
+		final long t2 = System.currentTimeMillis();
+
+		System.out.format("GaussianMixtureModelEM: %dms; StreamingGaussianMixtureModelEM: %dms%n", t1 - t0, t2 - t1);
+		for (final IterationStatistics s : em.getIterationStatistics())
+			System.out.println(s);
+	}
+}
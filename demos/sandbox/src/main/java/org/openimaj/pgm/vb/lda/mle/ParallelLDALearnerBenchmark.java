@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.pgm.vb.lda.mle;
+
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.pgm.util.Corpus;
+import org.openimaj.pgm.util.Document;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Measures the number of documents processed per second by the batch and
+ * online modes of {@link ParallelLDALearner}, serially and in parallel, on a
+ * synthetic corpus with a realistic size of vocabulary and documents. Each
+ * document mixes two topics, and each topic uses its own block of the
+ * vocabulary.
+ * <p>
+ * Usage: <code>ParallelLDALearnerBenchmark [ndocs]</code>
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ParallelLDALearnerBenchmark {
+	private static Corpus createCorpus(int ntopics, int wordsPerTopic, int ndocs, int docLength, Random rng) {
+		final Corpus corpus = new Corpus(ntopics * wordsPerTopic);
+
+		for (int i = 0; i < ndocs; i++) {
+			final int t1 = rng.nextInt(ntopics);
+			final int t2 = rng.nextInt(ntopics);
+			final int[] counts = new int[corpus.vocabularySize()];
+
+			for (int j = 0; j < docLength; j++) {
+				final int topic = rng.nextBoolean() ? t1 : t2;
+				counts[topic * wordsPerTopic + rng.nextInt(wordsPerTopic)]++;
+			}
+
+			final Document doc = new Document(corpus);
+			for (int w = 0; w < counts.length; w++)
+				if (counts[w] > 0)
+					doc.setWordCount(w, counts[w]);
+			corpus.addDocument(doc);
+		}
+
+		return corpus;
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            optionally, the number of documents (default 20000)
+	 */
+	public static void main(String[] args) {
+		final int ndocs = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		final int ntopics = 50;
+		final Corpus corpus = createCorpus(ntopics, 200, ndocs, 150, new Random(0));
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+		for (final ThreadPoolExecutor p : new ThreadPoolExecutor[] { null, pool }) {
+			final ParallelLDALearner learner = new ParallelLDALearner(ntopics, p);
+			learner.setMaxIterations(3);
+
+			final long t0 = System.currentTimeMillis();
+			final LDAModel model = learner.estimate(corpus);
+			final long t1 = System.currentTimeMillis();
+			learner.estimateOnline(corpus, 256);
+			final long t2 = System.currentTimeMillis();
+
+			System.out.format("%s: batch %.0f docs/sec; online %.0f docs/sec%n", p == null ? "serial" : "parallel",
+					1000.0 * model.iteration * corpus.size() / (t1 - t0), 1000.0 * corpus.size() / (t2 - t1));
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.storm;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.feature.FloatFVComparison;
+import org.openimaj.image.FImage;
+import org.openimaj.storm.utils.ImageStormUtils;
+
+import backtype.storm.Config;
+import backtype.storm.LocalCluster;
+import backtype.storm.spout.SpoutOutputCollector;
+import backtype.storm.task.TopologyContext;
+import backtype.storm.topology.BasicOutputCollector;
+import backtype.storm.topology.OutputFieldsDeclarer;
+import backtype.storm.topology.TopologyBuilder;
+import backtype.storm.topology.base.BaseBasicBolt;
+import backtype.storm.topology.base.BaseRichSpout;
+import backtype.storm.tuple.Fields;
+import backtype.storm.tuple.Tuple;
+import backtype.storm.tuple.Values;
+import backtype.storm.utils.Utils;
+
+/**
+ * Local-mode benchmark of an image &rarr; feature &rarr; classification
+ * pipeline, measuring the tuples per second that can be pushed through the
+ * topology with Java serialisation, with the Kryo serialisers from
+ * {@link ImageStormUtils}, and with the Kryo serialisers and 8-bit quantised
+ * image transport. The topology runs across two workers so that tuples are
+ * serialised when they move between them.
+ * <p>
+ * Usage: <code>ImagePipelineBenchmark [imageSize [seconds]]</code>
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ImagePipelineBenchmark {
+	static {
+		Logger.getRootLogger().setLevel(Level.FATAL);
+	}
+
+	private static final AtomicLong classified = new AtomicLong();
+
+	/**
+	 * Spout that repeatedly emits images from a fixed pool of random images.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class ImageSpout extends BaseRichSpout {
+		private static final long serialVersionUID = 1L;
+
+		private int size;
+		private FImage[] images;
+		private SpoutOutputCollector collector;
+		private long id;
+
+		/**
+		 * @param size
+		 *            the width and height of the images
+		 */
+		public ImageSpout(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public void open(@SuppressWarnings("rawtypes") Map conf, TopologyContext context, SpoutOutputCollector collector)
+		{
+			final Random rng = new Random(context.getThisTaskId());
+			images = new FImage[16];
+			for (int i = 0; i < images.length; i++) {
+				images[i] = new FImage(size, size);
+				for (int y = 0; y < size; y++)
+					for (int x = 0; x < size; x++)
+						images[i].pixels[y][x] = rng.nextFloat();
+			}
+			this.collector = collector;
+		}
+
+		@Override
+		public void nextTuple() {
+			id++;
+			collector.emit(new Values(id, images[(int) (id % images.length)]), id);
+		}
+
+		@Override
+		public void declareOutputFields(OutputFieldsDeclarer declarer) {
+			declarer.declare(new Fields("id", "image"));
+		}
+	}
+
+	/**
+	 * Bolt that extracts a feature vector of the mean intensities of an 8x8
+	 * grid of blocks.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class FeatureBolt extends BaseBasicBolt {
+		private static final long serialVersionUID = 1L;
+		private static final int GRID = 8;
+
+		@Override
+		public void execute(Tuple input, BasicOutputCollector collector) {
+			final FImage image = (FImage) input.getValueByField("image");
+			final float[] fv = new float[GRID * GRID];
+
+			for (int y = 0; y < image.height; y++) {
+				final int by = y * GRID / image.height;
+				for (int x = 0; x < image.width; x++)
+					fv[by * GRID + x * GRID / image.width] += image.pixels[y][x];
+			}
+
+			final float norm = (float) (GRID * GRID) / (image.width * image.height);
+			for (int i = 0; i < fv.length; i++)
+				fv[i] *= norm;
+
+			collector.emit(new Values(input.getValueByField("id"), new FloatFV(fv)));
+		}
+
+		@Override
+		public void declareOutputFields(OutputFieldsDeclarer declarer) {
+			declarer.declare(new Fields("id", "feature"));
+		}
+	}
+
+	/**
+	 * Bolt that assigns each feature to the nearest of a fixed set of random
+	 * class centroids.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class ClassifierBolt extends BaseBasicBolt {
+		private static final long serialVersionUID = 1L;
+		private FloatFV[] centroids;
+
+		@Override
+		public void prepare(@SuppressWarnings("rawtypes") Map stormConf, TopologyContext context) {
+			final Random rng = new Random(0);
+			centroids = new FloatFV[10];
+			for (int i = 0; i < centroids.length; i++) {
+				centroids[i] = new FloatFV(64);
+				for (int j = 0; j < 64; j++)
+					centroids[i].values[j] = rng.nextFloat();
+			}
+		}
+
+		@Override
+		public void execute(Tuple input, BasicOutputCollector collector) {
+			final FloatFV feature = (FloatFV) input.getValueByField("feature");
+
+			int best = -1;
+			double bestDistance = Double.MAX_VALUE;
+			for (int i = 0; i < centroids.length; i++) {
+				final double d = FloatFVComparison.SUM_SQUARE.compare(feature, centroids[i]);
+				if (d < bestDistance) {
+					bestDistance = d;
+					best = i;
+				}
+			}
+
+			classified.incrementAndGet();
+			collector.emit(new Values(input.getValueByField("id"), best));
+		}
+
+		@Override
+		public void declareOutputFields(OutputFieldsDeclarer declarer) {
+			declarer.declare(new Fields("id", "class"));
+		}
+	}
+
+	private static double run(String name, Config conf, int size, int seconds) {
+		conf.setNumWorkers(2);
+		conf.setMaxSpoutPending(256);
+
+		final TopologyBuilder builder = new TopologyBuilder();
+		builder.setSpout("images", new ImageSpout(size), 2);
+		builder.setBolt("features", new FeatureBolt(), 2).shuffleGrouping("images");
+		builder.setBolt("classifier", new ClassifierBolt(), 2).shuffleGrouping("features");
+
+		final LocalCluster cluster = new LocalCluster();
+		cluster.submitTopology(name, conf, builder.createTopology());
+
+		// warm up before measuring
+		Utils.sleep(5000);
+		final long start = System.nanoTime();
+		final long startCount = classified.get();
+		Utils.sleep(seconds * 1000L);
+		final double rate = (classified.get() - startCount) / ((System.nanoTime() - start) / 1e9);
+
+		cluster.killTopology(name);
+		cluster.shutdown();
+
+		return rate;
+	}
+
+	/**
+	 * Run the benchmark
+	 *
+	 * @param args
+	 *            optional image size and duration in seconds
+	 */
+	public static void main(String[] args) {
+		final int size = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		final Config java = new Config();
+		java.setFallBackOnJavaSerialization(true);
+
+		final Config kryo = new Config();
+		kryo.setFallBackOnJavaSerialization(false);
+		ImageStormUtils.registerSerializers(kryo);
+
+		final Config quantised = new Config();
+		quantised.setFallBackOnJavaSerialization(false);
+		ImageStormUtils.registerSerializers(quantised, true);
+
+		System.out.format("%dx%d images, %d seconds per configuration%n", size, size, seconds);
+		System.out.format("java serialisation:      %10.1f tuples/sec%n", run("java", java, size, seconds));
+		System.out.format("kryo serialisers:        %10.1f tuples/sec%n", run("kryo", kryo, size, seconds));
+		System.out.format("kryo, quantised images:  %10.1f tuples/sec%n", run("quantised", quantised, size, seconds));
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter.experiments;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.openimaj.twitter.GeneralJSONTwitter;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
+import org.openimaj.twitter.USMFStatus;
+import org.openimaj.twitter.collection.USMFStatusReader;
+
+/**
+ * Measures the throughput, in tweets per second, of reading a file of
+ * line-delimited raw Twitter JSON into {@link USMFStatus}es. Three approaches
+ * are compared: a full Gson parse of every line into a new status (the way
+ * statuses were read before the {@link org.openimaj.twitter.StreamingTwitterParser}
+ * was introduced), the streaming parser extracting all fields, and the
+ * streaming parser extracting only the id, text and analysis into a single
+ * reused status.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class TweetParsingBenchmark {
+	private static final int ROUNDS = 3;
+
+	private interface Approach {
+		long read(File file) throws IOException;
+	}
+
+	private static long readGson(File file) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		long n = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final USMFStatus status = new USMFStatus(GeneralJSONTwitter.class);
+				try {
+					new GeneralJSONTwitter().instanceFromString(line).fillUSMF(status);
+				} catch (final Exception e) {
+					status.text = line;
+				}
+				if (status.text != null)
+					n++;
+			}
+		} finally {
+			reader.close();
+		}
+		return n;
+	}
+
+	private static long readStreaming(File file, Set<Field> fields, boolean reuse) throws IOException {
+		final InputStream stream = new FileInputStream(file);
+		return count(new USMFStatusReader(stream, "UTF-8", GeneralJSONTwitter.class, fields, reuse));
+	}
+
+	private static long count(USMFStatusReader reader) throws IOException {
+		long n = 0;
+		try {
+			for (final USMFStatus status : reader) {
+				if (status.text != null)
+					n++;
+			}
+		} finally {
+			reader.close();
+		}
+		return n;
+	}
+
+	private static void run(String name, Approach approach, File file) throws IOException {
+		// the first round warms up the JIT and the file cache
+		approach.read(file);
+
+		long tweets = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			tweets += approach.read(file);
+		final double secs = (System.nanoTime() - start) / 1e9;
+
+		System.out.format("%-30s %10d tweets with text %12.0f tweets/sec%n", name, tweets / ROUNDS, tweets / secs);
+	}
+
+	/**
+	 * Run the benchmark
+	 *
+	 * @param args
+	 *            the path of a file of line-delimited raw Twitter JSON
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: TweetParsingBenchmark tweets.json");
+			return;
+		}
+		final File file = new File(args[0]);
+
+		run("Gson, new status per tweet", new Approach() {
+			@Override
+			public long read(File file) throws IOException {
+				return readGson(file);
+			}
+		}, file);
+
+		run("Streaming, all fields", new Approach() {
+			@Override
+			public long read(File file) throws IOException {
+				return readStreaming(file, EnumSet.allOf(Field.class), false);
+			}
+		}, file);
+
+		run("Streaming, text only, reused", new Approach() {
+			@Override
+			public long read(File file) throws IOException {
+				return readStreaming(file, EnumSet.noneOf(Field.class), true);
+			}
+		}, file);
+	}
+}
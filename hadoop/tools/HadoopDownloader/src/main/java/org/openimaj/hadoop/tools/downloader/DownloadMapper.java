@@ -32,6 +32,9 @@ package org.openimaj.hadoop.tools.downloader;
 import java.io.IOException;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Path;
@@ -42,27 +45,35 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.log4j.Logger;
 import org.openimaj.hadoop.tools.downloader.InputMode.Parser;
-import org.openimaj.io.HttpUtils;
+import org.openimaj.io.downloader.ConcurrentDownloader;
+import org.openimaj.io.downloader.DownloadListener;
+import org.openimaj.io.downloader.DownloadResult;
+import org.openimaj.util.metrics.MetricRegistry;
 import org.openimaj.util.pair.IndependentPair;
 
 /**
- * A Hadoop {@link Mapper} for downloading files.
+ * A Hadoop {@link Mapper} for downloading files. Downloads are performed
+ * asynchronously by a {@link ConcurrentDownloader}, so many requests are in
+ * flight at once; completed downloads are written to the output from the
+ * mapper thread as they become available.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritable> {
 	private static Logger logger = Logger.getLogger(DownloadMapper.class);
+	private static final AtomicInteger instances = new AtomicInteger();
 
 	private Parser parser;
-	private long sleep;
-	private boolean followRedirects;
-	private static FSDataOutputStream failureWriter = null;
+	private ConcurrentDownloader downloader;
+	private FSDataOutputStream failureWriter;
+	private final BlockingQueue<IndependentPair<String, DownloadResult>> completed = new LinkedBlockingQueue<IndependentPair<String, DownloadResult>>();
 
 	protected enum Counters {
 		DOWNLOADED,
 		FAILED,
-		PARSE_ERROR
+		PARSE_ERROR,
+		BYTES
 	}
 
 	@Override
@@ -72,21 +83,26 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 		options.prepare(false);
 
 		parser = options.getInputParser();
-		sleep = options.getSleep();
-		followRedirects = options.followRedirects();
-
-		synchronized (DownloadMapper.class) {
-			if (options.writeFailures() && failureWriter != null) {
-				final String[] taskId = context.getConfiguration().get("mapred.task.id").split("_");
-				Path workPath = FileOutputFormat.getWorkOutputPath(context);
-				workPath = workPath.suffix("/failures" + "-" + taskId[4].substring(1));
-				failureWriter = workPath.getFileSystem(context.getConfiguration()).create(workPath);
-			}
+		downloader = new ConcurrentDownloader(options.getConcurrentDownloads(), options.getMaxPerHost(),
+				options.getSleep(), ConcurrentDownloader.DEFAULT_TIMEOUT, options.getRetries(), 1000,
+				options.followRedirects(), new MetricRegistry());
+
+		if (options.writeFailures()) {
+			// each mapper instance (there may be several in a multithreaded
+			// mapper) has its own failure file
+			final String[] taskId = context.getConfiguration().get("mapred.task.id").split("_");
+			Path workPath = FileOutputFormat.getWorkOutputPath(context);
+			workPath = workPath.suffix("/failures" + "-" + taskId[4].substring(1) + "-" + instances.getAndIncrement());
+			failureWriter = workPath.getFileSystem(context.getConfiguration()).create(workPath);
 		}
 	}
 
 	@Override
 	protected void cleanup(Context context) throws IOException, InterruptedException {
+		downloader.awaitCompletion();
+		downloader.close();
+		drain(context);
+
 		if (failureWriter != null) {
 			failureWriter.close();
 			failureWriter = null;
@@ -96,55 +112,61 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 	}
 
 	@Override
-	public void map(LongWritable index, Text urlLine, Context context) {
-		logger.info("Attempting to download: " + urlLine);
+	public void map(LongWritable index, Text urlLine, Context context) throws IOException, InterruptedException {
+		final String line = urlLine.toString();
+		logger.info("Attempting to download: " + line);
 
 		try {
-			final IndependentPair<String, List<URL>> urlData = parser.parse(urlLine.toString());
+			final IndependentPair<String, List<URL>> urlData = parser.parse(line);
 
 			if (urlData == null) {
 				logger.trace("parser returned null; record skipped.");
-				return;
-			}
-
-			boolean downloaded = false;
-			for (final URL potential : urlData.secondObject()) {
-				downloaded = tryDownload(urlData.firstObject(), potential, context);
-
-				if (downloaded) {
-					logger.info("Dowloaded: " + potential);
-					context.getCounter(Counters.DOWNLOADED).increment(1);
-					return;
-				}
-
-				logger.trace("Not found; trying next");
-			}
-
-			if (!downloaded) {
-				logger.info("Failed to download: " + urlLine);
-				context.getCounter(Counters.FAILED).increment(1);
-				writeFailure(urlLine, context);
 			} else {
-				context.getCounter(Counters.DOWNLOADED).increment(1);
+				downloader.submit(urlData.firstObject(), urlData.secondObject(), new DownloadListener() {
+					@Override
+					public void downloadCompleted(DownloadResult result) {
+						completed.add(IndependentPair.pair(line, result));
+					}
+				});
 			}
+		} catch (final InterruptedException e) {
+			throw e;
 		} catch (final Exception e) {
-			logger.info("Error parsing: " + urlLine);
+			logger.info("Error parsing: " + line);
 			logger.trace(e);
 			context.getCounter(Counters.PARSE_ERROR).increment(1);
-			writeFailure(urlLine, context);
+			writeFailure(line);
 		}
 
-		if (sleep > 0) {
-			try {
-				logger.trace("Waiting before continuing");
-				Thread.sleep(sleep);
-			} catch (final InterruptedException e) {
-				logger.trace("Wait was interupted; ignoring");
+		drain(context);
+	}
+
+	/**
+	 * Write out any downloads that have completed. The context is not
+	 * thread-safe, so this is only called from the mapper thread.
+	 */
+	private void drain(Context context) throws IOException, InterruptedException {
+		IndependentPair<String, DownloadResult> item;
+
+		while ((item = completed.poll()) != null) {
+			final DownloadResult result = item.secondObject();
+
+			if (result.isSuccess()) {
+				logger.info("Dowloaded: " + result.getURL());
+				context.write(new Text(result.getKey()), new BytesWritable(result.getData()));
+				context.getCounter(Counters.DOWNLOADED).increment(1);
+				context.getCounter(Counters.BYTES).increment(result.getData().length);
+			} else {
+				logger.info("Failed to download: " + item.firstObject());
+				if (result.getError() != null)
+					logger.trace(result.getError());
+				context.getCounter(Counters.FAILED).increment(1);
+				writeFailure(item.firstObject());
 			}
 		}
 	}
 
-	private synchronized static void writeFailure(Text urlLine, Context context) {
+	private void writeFailure(String urlLine) {
 		if (failureWriter != null) {
 			try {
 				failureWriter.writeUTF(urlLine + "\n");
@@ -153,21 +175,4 @@ public class DownloadMapper extends Mapper<LongWritable, Text, Text, BytesWritab
 			}
 		}
 	}
-
-	private boolean tryDownload(String key, URL url, Context context) throws InterruptedException {
-		try {
-			final byte[] bytes = HttpUtils.readURLAsBytes(url, followRedirects);
-
-			if (bytes == null)
-				return false;
-
-			final BytesWritable bw = new BytesWritable(bytes);
-			context.write(new Text(key), bw);
-		} catch (final IOException e) {
-			logger.trace(e);
-			return false;
-		}
-
-		return true;
-	}
 }
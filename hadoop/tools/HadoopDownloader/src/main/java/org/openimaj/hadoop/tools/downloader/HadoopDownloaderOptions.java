@@ -92,10 +92,34 @@ public class HadoopDownloaderOptions {
 			name = "--sleep",
 			aliases = "-s",
 			required = false,
-			usage = "Time in milliseconds to sleep after downloading a file.",
+			usage = "Minimum time in milliseconds between successive requests to the same host.",
 			metaVar = "LONG")
 	private long sleep = 0;
 
+	@Option(
+			name = "--concurrent-downloads",
+			aliases = "-cd",
+			required = false,
+			usage = "Maximum number of downloads in flight in each mapper.",
+			metaVar = "INT")
+	private int concurrentDownloads = 16;
+
+	@Option(
+			name = "--max-per-host",
+			aliases = "-mph",
+			required = false,
+			usage = "Maximum number of downloads in flight to a single host from each mapper.",
+			metaVar = "INT")
+	private int maxPerHost = 2;
+
+	@Option(
+			name = "--retries",
+			aliases = "-r",
+			required = false,
+			usage = "Number of times a URL is retried after a timeout or server error.",
+			metaVar = "INT")
+	private int retries = 2;
+
 	@Option(name = "--follow-redirects", aliases = "-f", usage = "Follow URL redirections", required = false)
 	private boolean followRedirects = false;
 
@@ -179,12 +203,36 @@ public class HadoopDownloaderOptions {
 	}
 
 	/**
-	 * @return the time in milliseconds to sleep after downloading a file
+	 * @return the minimum time in milliseconds between successive requests to
+	 *         the same host
 	 */
 	public long getSleep() {
 		return sleep;
 	}
 
+	/**
+	 * @return the maximum number of downloads in flight in each mapper
+	 */
+	public int getConcurrentDownloads() {
+		return concurrentDownloads;
+	}
+
+	/**
+	 * @return the maximum number of downloads in flight to a single host from
+	 *         each mapper
+	 */
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	/**
+	 * @return the number of times a URL is retried after a timeout or server
+	 *         error
+	 */
+	public int getRetries() {
+		return retries;
+	}
+
 	/**
 	 * @return true if redirects should be followed; false otherwise
 	 */
@@ -289,6 +289,20 @@ public class ConnectedComponentLabeler implements ImageAnalyser<FImage> {
 				// 13. Return.
 				return cc;
 			}
+		},
+		/**
+		 * The run-based union-find algorithm implemented by
+		 * {@link UnionFindLabeler}.
+		 *
+		 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+		 */
+		UNION_FIND {
+			@Override
+			public List<ConnectedComponent> findComponents(FImage image, float bgThreshold, ConnectMode mode) {
+				final UnionFindLabeler labeler = new UnionFindLabeler(bgThreshold, mode);
+				labeler.analyseImage(image);
+				return labeler.getComponents();
+			}
 		};
 
 		/**
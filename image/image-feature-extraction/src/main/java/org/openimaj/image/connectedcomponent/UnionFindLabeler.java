@@ -0,0 +1,511 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.RunLengthPixelSet;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * A two-pass, run-based, union-find connected component labeller.
+ * <p>
+ * The first pass scans each row for runs of foreground pixels and links each
+ * run to the overlapping runs of the previous row with a union-find structure.
+ * The second pass resolves the equivalences, writes an <code>int</code> label
+ * image (0 for the background, and 1 to {@link #getNumComponents()} for the
+ * components, numbered in raster order of their first pixel) and accumulates
+ * the area, bounding box and moments of every component from its runs.
+ * <p>
+ * The image can optionally be split into horizontal strips that are labelled
+ * in parallel, with the labels merged across the strip boundaries afterwards.
+ * The result is identical to the sequential case.
+ * <p>
+ * No {@link org.openimaj.image.pixel.Pixel} objects are created; the pixels of
+ * each component are held in a {@link RunLengthPixelSet}, which is a
+ * {@link ConnectedComponent} and can be passed to any code that expects one.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class UnionFindLabeler implements ImageAnalyser<FImage> {
+	/**
+	 * Statistics of a single labelled component, accumulated from its runs.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class ComponentStatistics {
+		/** The label of the component in the label image */
+		public int label;
+
+		/** The number of pixels in the component */
+		public int area;
+
+		/** The minimum x-coordinate */
+		public int minX = Integer.MAX_VALUE;
+
+		/** The maximum x-coordinate */
+		public int maxX = Integer.MIN_VALUE;
+
+		/** The minimum y-coordinate */
+		public int minY = Integer.MAX_VALUE;
+
+		/** The maximum y-coordinate */
+		public int maxY = Integer.MIN_VALUE;
+
+		/** The sum of the x-coordinates (m<sub>10</sub>) */
+		public double m10;
+
+		/** The sum of the y-coordinates (m<sub>01</sub>) */
+		public double m01;
+
+		/** The sum of the squared x-coordinates (m<sub>20</sub>) */
+		public double m20;
+
+		/** The sum of the products of the coordinates (m<sub>11</sub>) */
+		public double m11;
+
+		/** The sum of the squared y-coordinates (m<sub>02</sub>) */
+		public double m02;
+
+		void addRun(int y, int x0, int x1) {
+			final double n = x1 - x0 + 1;
+			final double sx = n * ((double) x0 + x1) / 2;
+
+			area += n;
+			m10 += sx;
+			m01 += n * y;
+			m20 += sumSquares(x1) - sumSquares(x0 - 1);
+			m11 += sx * y;
+			m02 += n * y * y;
+
+			if (x0 < minX)
+				minX = x0;
+			if (x1 > maxX)
+				maxX = x1;
+			if (y < minY)
+				minY = y;
+			if (y > maxY)
+				maxY = y;
+		}
+
+		private static double sumSquares(double k) {
+			return k * (k + 1) * (2 * k + 1) / 6;
+		}
+
+		/**
+		 * Get the bounding box, in the same form as
+		 * {@link ConnectedComponent#calculateRegularBoundingBox()}.
+		 * 
+		 * @return the bounding box
+		 */
+		public Rectangle getBoundingBox() {
+			return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+		}
+
+		/**
+		 * @return the centroid (x then y)
+		 */
+		public double[] getCentroid() {
+			return new double[] { m10 / area, m01 / area };
+		}
+
+		/**
+		 * Get the pq central moment, μ<sub>pq</sub> for p + q &lt;= 2.
+		 * 
+		 * @param p
+		 *            The P moment to calculate
+		 * @param q
+		 *            The Q moment to calculate
+		 * @return The pq moment
+		 */
+		public double getCentralMoment(int p, int q) {
+			if (p < 0 || q < 0 || p + q > 2)
+				throw new IllegalArgumentException("Only moments up to second order are supported");
+
+			if (p + q == 0)
+				return area;
+			if (p + q == 1)
+				return 0;
+
+			final double xc = m10 / area;
+			final double yc = m01 / area;
+
+			if (p == 2)
+				return m20 - xc * xc * area;
+			if (q == 2)
+				return m02 - yc * yc * area;
+			return m11 - xc * yc * area;
+		}
+
+		/**
+		 * Get the principle direction of the component, as per
+		 * {@link ConnectedComponent#calculateDirection()}.
+		 * 
+		 * @return The principle direction (-PI/2 to +PI/2 radians)
+		 */
+		public double getDirection() {
+			return 0.5 * Math.atan2(2 * getCentralMoment(1, 1), getCentralMoment(2, 0) - getCentralMoment(0, 2));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("ComponentStatistics(label=%d, area=%d, bbox=[%d,%d,%d,%d])", label, area, minX, minY,
+					maxX, maxY);
+		}
+	}
+
+	/**
+	 * The runs found in a horizontal strip of the image, together with their
+	 * provisional labels and the union-find forest over those labels.
+	 */
+	private static class Strip {
+		final int y0;
+		final int y1;
+		final int[] rowStart;
+		final TIntArrayList runX0 = new TIntArrayList();
+		final TIntArrayList runX1 = new TIntArrayList();
+		final TIntArrayList runLabel = new TIntArrayList();
+		final TIntArrayList parent = new TIntArrayList();
+
+		Strip(int y0, int y1) {
+			this.y0 = y0;
+			this.y1 = y1;
+			this.rowStart = new int[y1 - y0 + 1];
+		}
+
+		void label(FImage image, float bgThreshold, int slack) {
+			int prevStart = 0;
+			int prevEnd = 0;
+
+			for (int y = y0; y < y1; y++) {
+				final float[] row = image.pixels[y];
+				rowStart[y - y0] = runX0.size();
+
+				int p = prevStart;
+				int x = 0;
+				while (x < image.width) {
+					if (row[x] <= bgThreshold) {
+						x++;
+						continue;
+					}
+
+					final int x0 = x;
+					while (x < image.width && row[x] > bgThreshold)
+						x++;
+					final int x1 = x - 1;
+
+					// link to the overlapping runs in the previous row
+					while (p < prevEnd && runX1.getQuick(p) < x0 - slack)
+						p++;
+
+					int label = -1;
+					for (int q = p; q < prevEnd && runX0.getQuick(q) <= x1 + slack; q++) {
+						final int l = find(parent, runLabel.getQuick(q));
+
+						if (label < 0)
+							label = l;
+						else if (l != label)
+							label = union(parent, label, l);
+					}
+
+					if (label < 0) {
+						label = parent.size();
+						parent.add(label);
+					}
+
+					runX0.add(x0);
+					runX1.add(x1);
+					runLabel.add(label);
+				}
+
+				prevStart = rowStart[y - y0];
+				prevEnd = runX0.size();
+			}
+
+			rowStart[y1 - y0] = runX0.size();
+		}
+	}
+
+	protected float bgThreshold = 0;
+	protected ConnectMode mode;
+	protected ThreadPoolExecutor pool;
+	protected int numStrips;
+
+	protected int[][] labels;
+	protected List<ComponentStatistics> statistics;
+	protected List<RunLengthPixelSet> pixelSets;
+
+	/**
+	 * Construct with the given {@link ConnectMode}, and background pixels
+	 * having a value of 0 or less.
+	 * 
+	 * @param mode
+	 *            the connection mode.
+	 */
+	public UnionFindLabeler(ConnectMode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct with the given background pixel threshold and
+	 * {@link ConnectMode}.
+	 * 
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower (or equal) values are
+	 *            considered to be the background
+	 * @param mode
+	 *            the connection mode.
+	 */
+	public UnionFindLabeler(float bgThreshold, ConnectMode mode) {
+		this.bgThreshold = bgThreshold;
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct a labeller that splits the image into the given number of
+	 * strips and labels them in parallel using the given thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}
+	 * for the restrictions on the pool).
+	 * 
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower (or equal) values are
+	 *            considered to be the background
+	 * @param mode
+	 *            the connection mode.
+	 * @param numStrips
+	 *            the number of strips to split the image into
+	 * @param pool
+	 *            the thread pool
+	 */
+	public UnionFindLabeler(float bgThreshold, ConnectMode mode, int numStrips, ThreadPoolExecutor pool) {
+		this.bgThreshold = bgThreshold;
+		this.mode = mode;
+		this.numStrips = numStrips;
+		this.pool = pool;
+	}
+
+	@Override
+	public void analyseImage(final FImage image) {
+		final int slack = mode == ConnectMode.CONNECT_8 ? 1 : 0;
+		final int nStrips = pool == null ? 1 : Math.max(1, Math.min(numStrips, image.height));
+
+		// first pass: find and provisionally label runs in each strip
+		final Strip[] strips = new Strip[nStrips];
+		for (int i = 0; i < nStrips; i++)
+			strips[i] = new Strip(i * image.height / nStrips, (i + 1) * image.height / nStrips);
+
+		if (nStrips == 1) {
+			strips[0].label(image, bgThreshold, slack);
+		} else {
+			Parallel.forIndex(0, nStrips, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					strips[i].label(image, bgThreshold, slack);
+				}
+			}, pool);
+		}
+
+		// build the global forest, and merge across the strip boundaries
+		final int[] offsets = new int[nStrips + 1];
+		for (int i = 0; i < nStrips; i++)
+			offsets[i + 1] = offsets[i] + strips[i].parent.size();
+
+		final TIntArrayList parent = new TIntArrayList(offsets[nStrips]);
+		for (int i = 0; i < nStrips; i++)
+			for (int j = 0; j < strips[i].parent.size(); j++)
+				parent.add(strips[i].parent.getQuick(j) + offsets[i]);
+
+		for (int i = 1; i < nStrips; i++)
+			mergeBoundary(strips[i - 1], offsets[i - 1], strips[i], offsets[i], parent, slack);
+
+		// resolve the final labels in order of first appearance
+		final int[] finalLabel = new int[parent.size()];
+		int numComponents = 0;
+		for (int i = 0; i < finalLabel.length; i++) {
+			final int root = find(parent, i);
+			finalLabel[i] = root == i ? ++numComponents : finalLabel[root];
+		}
+
+		// second pass: write the labels and accumulate the statistics
+		labels = new int[image.height][image.width];
+		statistics = new ArrayList<ComponentStatistics>(numComponents);
+		pixelSets = new ArrayList<RunLengthPixelSet>(numComponents);
+		for (int i = 0; i < numComponents; i++) {
+			final ComponentStatistics stats = new ComponentStatistics();
+			stats.label = i + 1;
+			statistics.add(stats);
+			pixelSets.add(new RunLengthPixelSet());
+		}
+
+		for (int i = 0; i < nStrips; i++) {
+			final Strip strip = strips[i];
+
+			for (int y = strip.y0; y < strip.y1; y++) {
+				final int[] row = labels[y];
+
+				for (int r = strip.rowStart[y - strip.y0]; r < strip.rowStart[y - strip.y0 + 1]; r++) {
+					final int x0 = strip.runX0.getQuick(r);
+					final int x1 = strip.runX1.getQuick(r);
+					final int label = finalLabel[strip.runLabel.getQuick(r) + offsets[i]];
+
+					Arrays.fill(row, x0, x1 + 1, label);
+					statistics.get(label - 1).addRun(y, x0, x1);
+					pixelSets.get(label - 1).addRun(y, x0, x1);
+				}
+			}
+		}
+	}
+
+	private static void mergeBoundary(Strip above, int aboveOffset, Strip below, int belowOffset,
+			TIntArrayList parent, int slack)
+	{
+		final int aStart = above.rowStart[above.y1 - above.y0 - 1];
+		final int aEnd = above.rowStart[above.y1 - above.y0];
+		final int bStart = below.rowStart[0];
+		final int bEnd = below.rowStart[1];
+
+		int p = aStart;
+		for (int r = bStart; r < bEnd; r++) {
+			final int x0 = below.runX0.getQuick(r);
+			final int x1 = below.runX1.getQuick(r);
+
+			while (p < aEnd && above.runX1.getQuick(p) < x0 - slack)
+				p++;
+
+			for (int q = p; q < aEnd && above.runX0.getQuick(q) <= x1 + slack; q++)
+				union(parent, above.runLabel.getQuick(q) + aboveOffset, below.runLabel.getQuick(r) + belowOffset);
+		}
+	}
+
+	/**
+	 * Find the root of the given label, halving the path as we go
+	 */
+	private static int find(TIntArrayList parent, int i) {
+		while (parent.getQuick(i) != i) {
+			final int gp = parent.getQuick(parent.getQuick(i));
+			parent.setQuick(i, gp);
+			i = gp;
+		}
+		return i;
+	}
+
+	/**
+	 * Merge the trees containing the two labels. The smaller root becomes the
+	 * root of the merged tree; it is returned.
+	 */
+	private static int union(TIntArrayList parent, int a, int b) {
+		final int ra = find(parent, a);
+		final int rb = find(parent, b);
+
+		if (ra < rb) {
+			parent.setQuick(rb, ra);
+			return ra;
+		} else {
+			parent.setQuick(ra, rb);
+			return rb;
+		}
+	}
+
+	/**
+	 * Get the label image from the last call to {@link #analyseImage(FImage)}.
+	 * Background pixels have a label of 0 and components are labelled from 1.
+	 * 
+	 * @return the label image
+	 */
+	public int[][] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * @return the number of components found in the last call to
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public int getNumComponents() {
+		return statistics.size();
+	}
+
+	/**
+	 * Get the statistics of the components found in the last call to
+	 * {@link #analyseImage(FImage)}. The statistics of the component with
+	 * label <code>l</code> are at index <code>l - 1</code>.
+	 * 
+	 * @return the component statistics
+	 */
+	public List<ComponentStatistics> getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Get the pixels of the components found in the last call to
+	 * {@link #analyseImage(FImage)}. The pixels of the component with label
+	 * <code>l</code> are at index <code>l - 1</code>.
+	 * 
+	 * @return the run-length encoded pixels of each component
+	 */
+	public List<RunLengthPixelSet> getPixelSets() {
+		return pixelSets;
+	}
+
+	/**
+	 * Get the components found in the last call to
+	 * {@link #analyseImage(FImage)} as {@link ConnectedComponent}s. The
+	 * components are the {@link RunLengthPixelSet}s returned by
+	 * {@link #getPixelSets()}, so no pixels are copied.
+	 * 
+	 * @return the connected components
+	 */
+	public List<ConnectedComponent> getComponents() {
+		return new ArrayList<ConnectedComponent>(pixelSets);
+	}
+
+	/**
+	 * Syntactic sugar for calling {@link #analyseImage(FImage)} followed by
+	 * {@link #getLabels()};
+	 * 
+	 * @param image
+	 *            the image to label
+	 * @return the label image
+	 */
+	public int[][] label(FImage image) {
+		analyseImage(image);
+		return labels;
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.connectedcomponent.ConnectedComponentLabeler.Algorithm;
+import org.openimaj.image.connectedcomponent.UnionFindLabeler.ComponentStatistics;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.image.pixel.RunLengthPixelSet;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for the {@link UnionFindLabeler}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class UnionFindLabelerTest {
+	private static FImage randomImage(int width, int height, float density, long seed) {
+		final Random rng = new Random(seed);
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat() < density ? 1 : 0;
+		return image;
+	}
+
+	private static Set<Set<Pixel>> asSets(List<ConnectedComponent> components) {
+		final Set<Set<Pixel>> sets = new HashSet<Set<Pixel>>();
+		for (final ConnectedComponent cc : components)
+			sets.add(cc.getPixels());
+		return sets;
+	}
+
+	/**
+	 * Check that the components match the two-pass algorithm in both
+	 * connection modes, sequentially and in parallel strips
+	 */
+	@Test
+	public void testComponents() {
+		for (final ConnectMode mode : ConnectMode.values()) {
+			for (final float density : new float[] { 0.3f, 0.5f, 0.7f }) {
+				final FImage image = randomImage(83, 61, density, 42);
+				final Set<Set<Pixel>> expected = asSets(Algorithm.TWO_PASS.findComponents(image, 0, mode));
+
+				final UnionFindLabeler seq = new UnionFindLabeler(mode);
+				seq.analyseImage(image);
+				assertEquals(expected, asSets(seq.getComponents()));
+
+				final UnionFindLabeler par = new UnionFindLabeler(0, mode, 7, GlobalExecutorPool.getPool());
+				par.analyseImage(image);
+				assertEquals(seq.getNumComponents(), par.getNumComponents());
+				for (int y = 0; y < image.height; y++)
+					for (int x = 0; x < image.width; x++)
+						assertEquals(seq.getLabels()[y][x], par.getLabels()[y][x]);
+			}
+		}
+	}
+
+	/**
+	 * Check the label image and statistics against the components
+	 */
+	@Test
+	public void testStatistics() {
+		final FImage image = randomImage(71, 53, 0.6f, 7);
+		final UnionFindLabeler labeler = new UnionFindLabeler(ConnectMode.CONNECT_8);
+		labeler.analyseImage(image);
+
+		final List<ComponentStatistics> stats = labeler.getStatistics();
+		final List<RunLengthPixelSet> sets = labeler.getPixelSets();
+		final List<ConnectedComponent> components = labeler.getComponents();
+
+		int total = 0;
+		for (int i = 0; i < labeler.getNumComponents(); i++) {
+			final ComponentStatistics s = stats.get(i);
+			final RunLengthPixelSet rle = sets.get(i);
+			final ConnectedComponent cc = rle.toConnectedComponent();
+			assertSame(rle, components.get(i));
+
+			assertEquals(i + 1, s.label);
+			assertEquals(cc.calculateArea(), s.area);
+			assertEquals(cc.calculateArea(), rle.calculateArea());
+			assertEquals(cc.calculateRegularBoundingBox(), s.getBoundingBox());
+			assertEquals(cc.calculateRegularBoundingBox(), rle.calculateRegularBoundingBox());
+
+			final double[] c = cc.calculateCentroid();
+			assertEquals(c[0], s.getCentroid()[0], 1e-8);
+			assertEquals(c[1], s.getCentroid()[1], 1e-8);
+			assertEquals(cc.calculateMoment(2, 0), s.getCentralMoment(2, 0), 1e-6);
+			assertEquals(cc.calculateMoment(1, 1), s.getCentralMoment(1, 1), 1e-6);
+			assertEquals(cc.calculateMoment(0, 2), rle.calculateMoment(0, 2), 1e-6);
+
+			for (final Pixel p : cc.getPixels()) {
+				assertEquals(i + 1, labeler.getLabels()[p.y][p.x]);
+				assertTrue(rle.find(p));
+			}
+			assertTrue(!rle.find(s.minX - 1, s.minY));
+
+			total += s.area;
+		}
+
+		int foreground = 0;
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				if (image.pixels[y][x] > 0)
+					foreground++;
+		assertEquals(foreground, total);
+	}
+}
@@ -0,0 +1,416 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.local.matcher;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.knn.approximate.ByteNearestNeighboursKDTree;
+import org.openimaj.math.geometry.point.Point2d;
+import org.openimaj.math.model.EstimatableModel;
+import org.openimaj.math.model.fit.RobustModelFitting;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.pair.Pair;
+
+/**
+ * Keypoint matcher for recognising which of a large number of model images
+ * appear in a query image. Rather than building a KD-tree per model and
+ * matching the query against each model in turn (as a
+ * {@link FastBasicKeypointMatcher} would require), the keypoints of all the
+ * models are indexed in a single approximate nearest-neighbour structure, with
+ * each keypoint tagged by the model it came from.
+ * <p>
+ * Each query keypoint is searched once. Following Lowe, the distance ratio
+ * test compares the nearest neighbour against the nearest neighbour belonging
+ * to a <em>different</em> model, so that repeated structure within a single
+ * model doesn't suppress its matches. The surviving matches vote for their
+ * model, and only the most voted-for models are geometrically verified with
+ * the robust model fitter (in the same way as
+ * {@link org.openimaj.feature.local.matcher.consistent.ConsistentLocalFeatureMatcher2d}).
+ * <p>
+ * Instances are not thread-safe as the fitter is shared between queries.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <K>
+ *            The type of model identifier
+ * @param <T>
+ *            The type of keypoint
+ * @param <M>
+ *            The type of geometric model used for verification
+ */
+@Reference(
+		type = ReferenceType.Article,
+		author = { "David Lowe" },
+		title = "Distinctive image features from scale-invariant keypoints",
+		year = "2004",
+		journal = "IJCV",
+		pages = { "91", "110" },
+		month = "January",
+		number = "2",
+		volume = "60")
+public class MultiModelKeypointMatcher<K, T extends Keypoint, M extends EstimatableModel<Point2d, Point2d>> {
+	/**
+	 * A model that was found in the query, together with the matches that were
+	 * consistent with it.
+	 * 
+	 * @param <K>
+	 *            The type of model identifier
+	 * @param <T>
+	 *            The type of keypoint
+	 * @param <M>
+	 *            The type of geometric model
+	 */
+	public static class Result<K, T extends Keypoint, M> {
+		private final K modelId;
+		private final int votes;
+		private final List<Pair<T>> matches;
+		private final M model;
+
+		Result(K modelId, int votes, List<Pair<T>> matches, M model) {
+			this.modelId = modelId;
+			this.votes = votes;
+			this.matches = matches;
+			this.model = model;
+		}
+
+		/**
+		 * @return the identifier of the matched model
+		 */
+		public K getModelId() {
+			return modelId;
+		}
+
+		/**
+		 * @return the number of ratio-tested matches that voted for the model
+		 */
+		public int getVotes() {
+			return votes;
+		}
+
+		/**
+		 * @return the geometrically consistent (query, model) keypoint pairs
+		 */
+		public List<Pair<T>> getMatches() {
+			return matches;
+		}
+
+		/**
+		 * @return the geometric model mapping query points to model points
+		 */
+		public M getModel() {
+			return model;
+		}
+
+		@Override
+		public String toString() {
+			return modelId + " (" + matches.size() + "/" + votes + ")";
+		}
+	}
+
+	private final List<K> modelIds = new ArrayList<K>();
+	private final List<List<T>> modelKeypoints = new ArrayList<List<T>>();
+
+	private final RobustModelFitting<Point2d, Point2d, M> modelfit;
+	private final int thresh;
+	private final int ntrees;
+	private final int nchecks;
+
+	private int numNeighbours = 5;
+	private int maxCandidates = 10;
+	private int minVotes;
+	private int minInliers;
+
+	private ByteNearestNeighboursKDTree index;
+	private List<T> indexKeypoints;
+	private int[] indexModels;
+
+	/**
+	 * Construct with a threshold of 8, corresponding to the 0.8 in Lowe's IJCV
+	 * paper, and the default KD-tree parameters.
+	 * 
+	 * @param fit
+	 *            the robust model fitter used to verify the candidate models
+	 */
+	public MultiModelKeypointMatcher(RobustModelFitting<Point2d, Point2d, M> fit) {
+		this(8, fit, ByteNearestNeighboursKDTree.DEFAULT_NTREES, ByteNearestNeighboursKDTree.DEFAULT_NCHECKS);
+	}
+
+	/**
+	 * Construct with the given parameters.
+	 * 
+	 * @param threshold
+	 *            threshold for determining matching keypoints (the distance
+	 *            ratio multiplied by 10)
+	 * @param fit
+	 *            the robust model fitter used to verify the candidate models
+	 * @param ntrees
+	 *            the number of trees in the KD-tree ensemble
+	 * @param nchecks
+	 *            the number of checks to make per nearest-neighbour search
+	 */
+	public MultiModelKeypointMatcher(int threshold, RobustModelFitting<Point2d, Point2d, M> fit, int ntrees,
+			int nchecks)
+	{
+		this.thresh = threshold;
+		this.modelfit = fit;
+		this.ntrees = ntrees;
+		this.nchecks = nchecks;
+		this.minVotes = 2 * fit.numItemsToEstimate();
+		this.minInliers = 2 * fit.numItemsToEstimate();
+	}
+
+	/**
+	 * Add a model to the matcher. The index is rebuilt on the next query.
+	 * 
+	 * @param id
+	 *            the identifier of the model
+	 * @param keypoints
+	 *            the keypoints of the model
+	 */
+	public void addModel(K id, List<T> keypoints) {
+		modelIds.add(id);
+		modelKeypoints.add(keypoints);
+		index = null;
+	}
+
+	/**
+	 * @return the number of models
+	 */
+	public int numModels() {
+		return modelIds.size();
+	}
+
+	/**
+	 * Set the number of neighbours retrieved per query keypoint when looking
+	 * for the nearest keypoint of a different model for the ratio test. If all
+	 * the neighbours belong to the same model, the distance to the furthest is
+	 * used instead, which can only make the test stricter. Defaults to 5.
+	 * 
+	 * @param numNeighbours
+	 *            the number of neighbours
+	 */
+	public void setNumNeighbours(int numNeighbours) {
+		this.numNeighbours = Math.max(2, numNeighbours);
+	}
+
+	/**
+	 * Set the maximum number of the most voted-for models that are verified
+	 * per query. Defaults to 10.
+	 * 
+	 * @param maxCandidates
+	 *            the number of candidates
+	 */
+	public void setMaxCandidates(int maxCandidates) {
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * Set the minimum number of votes a model needs to be verified. Defaults to
+	 * twice the number of points needed to estimate the geometric model, and
+	 * can't be less than that number.
+	 * 
+	 * @param minVotes
+	 *            the minimum number of votes
+	 */
+	public void setMinVotes(int minVotes) {
+		this.minVotes = Math.max(minVotes, modelfit.numItemsToEstimate());
+	}
+
+	/**
+	 * Set the minimum number of consistent matches for a verified model to be
+	 * reported. Defaults to twice the number of points needed to estimate the
+	 * geometric model (with exactly that number the fit is always perfect, so
+	 * it says nothing about whether the model is present).
+	 * 
+	 * @param minInliers
+	 *            the minimum number of inliers
+	 */
+	public void setMinInliers(int minInliers) {
+		this.minInliers = minInliers;
+	}
+
+	/**
+	 * Build the index over the keypoints of all the models. This is called
+	 * automatically on the first query after a model is added, but can be
+	 * called explicitly to avoid the cost on the first query.
+	 */
+	public void buildIndex() {
+		int total = 0;
+		for (final List<T> kps : modelKeypoints)
+			total += kps.size();
+
+		final byte[][] data = new byte[total][];
+		indexKeypoints = new ArrayList<T>(total);
+		indexModels = new int[total];
+
+		for (int m = 0, i = 0; m < modelKeypoints.size(); m++) {
+			for (final T kp : modelKeypoints.get(m)) {
+				data[i] = kp.ivec;
+				indexKeypoints.add(kp);
+				indexModels[i++] = m;
+			}
+		}
+
+		index = new ByteNearestNeighboursKDTree(data, ntrees, nchecks);
+	}
+
+	/**
+	 * Find the models that appear in the query. The results are ordered by
+	 * decreasing number of consistent matches.
+	 * 
+	 * @param query
+	 *            the keypoints of the query image
+	 * @return the verified models
+	 */
+	public List<Result<K, T, M>> findMatches(List<T> query) {
+		if (index == null)
+			buildIndex();
+
+		final List<Result<K, T, M>> results = new ArrayList<Result<K, T, M>>();
+		if (query.isEmpty() || indexKeypoints.isEmpty())
+			return results;
+
+		final List<Candidate> candidates = vote(query);
+
+		for (int c = 0; c < Math.min(maxCandidates, candidates.size()); c++) {
+			final Candidate candidate = candidates.get(c);
+			if (candidate.matches.size() < minVotes)
+				break;
+
+			final Result<K, T, M> r = verify(candidate);
+			if (r != null)
+				results.add(r);
+		}
+
+		Collections.sort(results, new Comparator<Result<K, T, M>>() {
+			@Override
+			public int compare(Result<K, T, M> o1, Result<K, T, M> o2) {
+				return o2.matches.size() - o1.matches.size();
+			}
+		});
+
+		return results;
+	}
+
+	/**
+	 * The ratio-tested matches that voted for a single model
+	 */
+	private class Candidate {
+		final int model;
+		final List<Pair<T>> matches = new ArrayList<Pair<T>>();
+
+		Candidate(int model) {
+			this.model = model;
+		}
+	}
+
+	/**
+	 * Match the query keypoints against the index and group the ratio-tested
+	 * matches by model, ordered by decreasing number of votes
+	 */
+	private List<Candidate> vote(List<T> query) {
+		final int k = Math.min(numNeighbours, indexKeypoints.size());
+
+		final byte[][] data = new byte[query.size()][];
+		for (int i = 0; i < query.size(); i++)
+			data[i] = query.get(i).ivec;
+
+		final int[][] argmins = new int[query.size()][k];
+		final float[][] mins = new float[query.size()][k];
+		index.searchKNN(data, k, argmins, mins);
+
+		final TIntObjectHashMap<Candidate> votes = new TIntObjectHashMap<Candidate>();
+		for (int i = 0; i < query.size(); i++) {
+			final int nn = argmins[i][0];
+			final int model = indexModels[nn];
+
+			float distsq2 = k > 1 ? mins[i][k - 1] : Float.MAX_VALUE;
+			for (int j = 1; j < k; j++) {
+				if (indexModels[argmins[i][j]] != model) {
+					distsq2 = mins[i][j];
+					break;
+				}
+			}
+
+			if (10 * 10 * mins[i][0] < thresh * thresh * distsq2) {
+				Candidate c = votes.get(model);
+				if (c == null)
+					votes.put(model, c = new Candidate(model));
+
+				c.matches.add(new Pair<T>(query.get(i), indexKeypoints.get(nn)));
+			}
+		}
+
+		final List<Candidate> candidates = new ArrayList<Candidate>(votes.valueCollection());
+		Collections.sort(candidates, new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate o1, Candidate o2) {
+				return o2.matches.size() - o1.matches.size();
+			}
+		});
+
+		return candidates;
+	}
+
+	/**
+	 * Fit the geometric model to the matches of a candidate, returning null if
+	 * the fit fails or has too few inliers
+	 */
+	@SuppressWarnings("unchecked")
+	private Result<K, T, M> verify(Candidate candidate) {
+		final List<Pair<Point2d>> pairs = new ArrayList<Pair<Point2d>>(candidate.matches.size());
+		for (final Pair<T> m : candidate.matches)
+			pairs.add(new Pair<Point2d>(m.firstObject(), m.secondObject()));
+
+		if (!modelfit.fitData(pairs))
+			return null;
+
+		final List<? extends IndependentPair<Point2d, Point2d>> inliers = modelfit.getInliers();
+		if (inliers.size() < minInliers)
+			return null;
+
+		final List<Pair<T>> consistent = new ArrayList<Pair<T>>(inliers.size());
+		for (final IndependentPair<Point2d, Point2d> p : inliers) {
+			final IndependentPair<T, T> kp = (IndependentPair<T, T>) (Object) p;
+			consistent.add(new Pair<T>(kp.firstObject(), kp.secondObject()));
+		}
+
+		return new Result<K, T, M>(modelIds.get(candidate.model), candidate.matches.size(), consistent,
+				(M) modelfit.getModel().clone());
+	}
+}
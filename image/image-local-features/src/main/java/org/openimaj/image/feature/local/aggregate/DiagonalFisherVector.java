@@ -0,0 +1,379 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.feature.ArrayFeatureVector;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A faster implementation of the {@link FisherVector} encoding for mixtures of
+ * gaussians with diagonal covariance. The means and inverse standard deviations
+ * of the gaussians are extracted once, at construction, into flat float
+ * arrays, and the posterior of each feature is computed directly from them
+ * with a log-sum-exp, without going through the {@link MultivariateGaussian}
+ * objects or converting all the features to doubles first.
+ * <p>
+ * Optionally, only the top-k posteriors of each feature are used (renormalised
+ * to sum to one); as most features have non-negligible posteriors for only a
+ * handful of gaussians, this substantially reduces the cost of accumulating
+ * the vector with little effect on the result. With all the posteriors, the
+ * output is the same as that of {@link FisherVector} up to float rounding.
+ * <p>
+ * Instances are immutable, so can be shared between threads, and
+ * {@link #aggregateAll(List, ThreadPoolExecutor)} and
+ * {@link #aggregateAllVectors(List, ThreadPoolExecutor)} can be used to encode
+ * many images in parallel.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <T>
+ *            Primitive array type of the {@link ArrayFeatureVector}s used by
+ *            the {@link LocalFeature}s that will be processed.
+ */
+public class DiagonalFisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>, FloatFV> {
+	private final int K;
+	private final int D;
+	private final float[][] means;
+	private final float[][] invSigmas;
+	private final float[] logConsts;
+	private final float[] wt1;
+	private final float[] wt2;
+
+	private final int topK;
+	private final boolean hellinger;
+	private final boolean l2normalise;
+
+	/**
+	 * Construct with the given mixture of Gaussians, using all the posteriors,
+	 * and the optional improvement steps. The covariance matrices of the
+	 * gaussians are all assumed to be diagonal, and will be treated as such;
+	 * any non-zero off-diagonal values will be completely ignored.
+	 * 
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param improved
+	 *            if true then Hellinger's kernel is used, and the vector is l2
+	 *            normalised.
+	 */
+	public DiagonalFisherVector(MixtureOfGaussians gmm, boolean improved) {
+		this(gmm, gmm.gaussians.length, improved, improved);
+	}
+
+	/**
+	 * Construct with the given mixture of Gaussians and optional improvement
+	 * steps. The covariance matrices of the gaussians are all assumed to be
+	 * diagonal, and will be treated as such; any non-zero off-diagonal values
+	 * will be completely ignored.
+	 * 
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param topK
+	 *            the number of largest posteriors of each feature to use
+	 * @param hellinger
+	 *            if true then use Hellinger's kernel rather than the linear one
+	 *            by signed square rooting the values in the final vector
+	 * @param l2normalise
+	 *            if true then apply l2 normalisation to the final vector. This
+	 *            occurs after the Hellinger step if it is used.
+	 */
+	public DiagonalFisherVector(MixtureOfGaussians gmm, int topK, boolean hellinger, boolean l2normalise) {
+		this.K = gmm.gaussians.length;
+		this.D = gmm.gaussians[0].getMean().getColumnDimension();
+		this.topK = Math.max(1, Math.min(topK, K));
+		this.hellinger = hellinger;
+		this.l2normalise = l2normalise;
+
+		this.means = new float[K][D];
+		this.invSigmas = new float[K][D];
+		this.logConsts = new float[K];
+		this.wt1 = new float[K];
+		this.wt2 = new float[K];
+
+		for (int k = 0; k < K; k++) {
+			final MultivariateGaussian gauss = gmm.gaussians[k];
+			final double[] mean = gauss.getMean().getArray()[0];
+
+			double logDet = 0;
+			for (int j = 0; j < D; j++) {
+				final double var = gauss.getCovariance(j, j);
+
+				means[k][j] = (float) mean[j];
+				invSigmas[k][j] = (float) (1.0 / Math.sqrt(var));
+				logDet += Math.log(var);
+			}
+
+			logConsts[k] = (float) (Math.log(gmm.weights[k]) - 0.5 * (D * Math.log(2 * Math.PI) + logDet));
+			wt1[k] = (float) (1.0 / Math.sqrt(gmm.weights[k]));
+			wt2[k] = (float) (1.0 / Math.sqrt(2 * gmm.weights[k]));
+		}
+	}
+
+	@Override
+	public FloatFV aggregate(List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features) {
+		if (features == null || features.size() <= 0)
+			return null;
+
+		final Workspace ws = new Workspace();
+		for (final LocalFeature<?, ? extends ArrayFeatureVector<T>> f : features)
+			accumulate(f.getFeatureVector(), ws);
+
+		return finish(ws, features.size());
+	}
+
+	@Override
+	public FloatFV aggregateVectors(List<? extends ArrayFeatureVector<T>> features) {
+		if (features == null || features.size() <= 0)
+			return null;
+
+		final Workspace ws = new Workspace();
+		for (final ArrayFeatureVector<T> f : features)
+			accumulate(f, ws);
+
+		return finish(ws, features.size());
+	}
+
+	/**
+	 * Aggregate the features of each of the given images, optionally spreading
+	 * the images over a thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param images
+	 *            the features of each image
+	 * @param pool
+	 *            the pool to encode with; may be null to encode on the calling
+	 *            thread
+	 * @return the aggregated vector of each image (null for images with no
+	 *         features)
+	 */
+	public List<FloatFV> aggregateAll(final List<? extends List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>>> images,
+			ThreadPoolExecutor pool)
+	{
+		final FloatFV[] out = new FloatFV[images.size()];
+
+		Parallel.forRange(0, out.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i++)
+					out[i] = aggregate(images.get(i));
+			}
+		}, pool);
+
+		return new ArrayList<FloatFV>(Arrays.asList(out));
+	}
+
+	/**
+	 * Aggregate the feature vectors of each of the given images, optionally
+	 * spreading the images over a thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param images
+	 *            the feature vectors of each image
+	 * @param pool
+	 *            the pool to encode with; may be null to encode on the calling
+	 *            thread
+	 * @return the aggregated vector of each image (null for images with no
+	 *         features)
+	 */
+	public List<FloatFV> aggregateAllVectors(final List<? extends List<? extends ArrayFeatureVector<T>>> images,
+			ThreadPoolExecutor pool)
+	{
+		final FloatFV[] out = new FloatFV[images.size()];
+
+		Parallel.forRange(0, out.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int i = range.start; i < range.stop; i++)
+					out[i] = aggregateVectors(images.get(i));
+			}
+		}, pool);
+
+		return new ArrayList<FloatFV>(Arrays.asList(out));
+	}
+
+	/**
+	 * Per-call buffers, so that the encoder itself is stateless
+	 */
+	private class Workspace {
+		final float[] vector = new float[2 * K * D];
+		final float[] x = new float[D];
+		final float[] diff = new float[D];
+		final float[] logp = new float[K];
+		final int[] top = new int[topK];
+		final float[] post = new float[topK];
+	}
+
+	private void accumulate(ArrayFeatureVector<T> fv, Workspace ws) {
+		final float[] x = toFloat(fv, ws.x);
+		final float[] logp = ws.logp;
+
+		// log-likelihood of each weighted component
+		float max = Float.NEGATIVE_INFINITY;
+		for (int k = 0; k < K; k++) {
+			final float[] mean = means[k];
+			final float[] invSigma = invSigmas[k];
+
+			float sum = 0;
+			for (int j = 0; j < D; j++) {
+				final float d = (x[j] - mean[j]) * invSigma[j];
+				sum += d * d;
+			}
+
+			logp[k] = logConsts[k] - 0.5f * sum;
+			if (logp[k] > max)
+				max = logp[k];
+		}
+
+		// posteriors of the top components via log-sum-exp
+		final int n = selectTop(logp, ws.top);
+		double total = 0;
+		for (int i = 0; i < n; i++) {
+			ws.post[i] = (float) Math.exp(logp[ws.top[i]] - max);
+			total += ws.post[i];
+		}
+
+		final float[] vector = ws.vector;
+		final float[] diff = ws.diff;
+		for (int i = 0; i < n; i++) {
+			final float apk = (float) (ws.post[i] / total);
+
+			if (apk < 1e-6)
+				continue; // speed-up: ignore really small terms...
+
+			final int k = ws.top[i];
+			final float[] mean = means[k];
+			final float[] invSigma = invSigmas[k];
+			final int o1 = k * 2 * D;
+			final int o2 = o1 + D;
+
+			for (int j = 0; j < D; j++)
+				diff[j] = (x[j] - mean[j]) * invSigma[j];
+
+			for (int j = 0; j < D; j++) {
+				vector[o1 + j] += apk * diff[j];
+				vector[o2 + j] += apk * (diff[j] * diff[j] - 1);
+			}
+		}
+	}
+
+	/**
+	 * Find the indices of the topK largest values, returning how many were
+	 * found
+	 */
+	private int selectTop(float[] logp, int[] top) {
+		if (topK == K) {
+			for (int k = 0; k < K; k++)
+				top[k] = k;
+			return K;
+		}
+
+		int n = 0;
+		for (int k = 0; k < K; k++) {
+			if (n < topK) {
+				top[n++] = k;
+			} else if (logp[k] > logp[top[n - 1]]) {
+				top[n - 1] = k;
+			} else {
+				continue;
+			}
+
+			// keep sorted in decreasing order by insertion
+			for (int i = n - 1; i > 0 && logp[top[i]] > logp[top[i - 1]]; i--) {
+				final int tmp = top[i];
+				top[i] = top[i - 1];
+				top[i - 1] = tmp;
+			}
+		}
+		return n;
+	}
+
+	private float[] toFloat(ArrayFeatureVector<T> fv, float[] buffer) {
+		final Object values = fv.values;
+
+		if (values instanceof float[]) {
+			return (float[]) values;
+		} else if (values instanceof byte[]) {
+			final byte[] v = (byte[]) values;
+			for (int i = 0; i < D; i++)
+				buffer[i] = v[i];
+		} else if (values instanceof double[]) {
+			final double[] v = (double[]) values;
+			for (int i = 0; i < D; i++)
+				buffer[i] = (float) v[i];
+		} else {
+			for (int i = 0; i < D; i++)
+				buffer[i] = (float) fv.getAsDouble(i);
+		}
+		return buffer;
+	}
+
+	private FloatFV finish(Workspace ws, int nFeatures) {
+		final float[] vector = ws.vector;
+
+		for (int k = 0; k < K; k++) {
+			final float w1 = wt1[k] / nFeatures;
+			final float w2 = wt2[k] / nFeatures;
+
+			for (int j = 0; j < D; j++) {
+				vector[k * 2 * D + j] *= w1;
+				vector[k * 2 * D + j + D] *= w2;
+			}
+		}
+
+		if (hellinger) {
+			for (int i = 0; i < vector.length; i++) {
+				vector[i] = (float) (vector[i] > 0 ? Math.sqrt(vector[i]) : -1 * Math.sqrt(-1 * vector[i]));
+			}
+		}
+
+		if (l2normalise) {
+			double sumsq = 0;
+			for (int i = 0; i < vector.length; i++) {
+				sumsq += (vector[i] * vector[i]);
+			}
+			final float norm = (float) (1.0 / Math.sqrt(sumsq));
+			for (int i = 0; i < vector.length; i++) {
+				vector[i] *= norm;
+			}
+		}
+
+		return new FloatFV(vector);
+	}
+}
@@ -46,6 +46,9 @@ import org.openimaj.image.feature.local.detector.dog.pyramid.DoGOctaveExtremaFin
 import org.openimaj.image.feature.local.detector.pyramid.BasicOctaveExtremaFinder;
 import org.openimaj.image.feature.local.detector.pyramid.OctaveInterestPointFinder;
 import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.util.metrics.Counter;
+import org.openimaj.util.metrics.Histogram;
+import org.openimaj.util.metrics.MetricRegistry;
 
 /**
  * <p>
@@ -57,6 +60,11 @@ import org.openimaj.image.feature.local.keypoints.Keypoint;
  * the work needed to extract SIFT features into a single place without having
  * to deal with the setup of pyramid finders, collectors and providers.
  * </p>
+ * <p>
+ * The time taken by each call to {@link #findFeatures(FImage)}, and the number
+ * of features it found, are recorded in the default {@link MetricRegistry} as
+ * <code>DoGSIFTEngine.time</code> and <code>DoGSIFTEngine.features</code>.
+ * </p>
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -82,6 +90,9 @@ import org.openimaj.image.feature.local.keypoints.Keypoint;
 		)
 })
 public class DoGSIFTEngine implements Engine<Keypoint, FImage> {
+	private static final Histogram EXTRACT_TIMES = MetricRegistry.getDefault().histogram("DoGSIFTEngine.time");
+	private static final Counter FEATURES = MetricRegistry.getDefault().counter("DoGSIFTEngine.features");
+
 	DoGSIFTEngineOptions<FImage> options;
 
 	/**
@@ -103,6 +114,8 @@ public class DoGSIFTEngine implements Engine<Keypoint, FImage> {
 
 	@Override
 	public LocalFeatureList<Keypoint> findFeatures(FImage image) {
+		final long start = System.nanoTime();
+
 		final OctaveInterestPointFinder<GaussianOctave<FImage>, FImage> finder =
 				new DoGOctaveExtremaFinder(new BasicOctaveExtremaFinder(options.magnitudeThreshold,
 						options.eigenvalueRatio));
@@ -135,7 +148,11 @@ public class DoGSIFTEngine implements Engine<Keypoint, FImage> {
 		final GaussianPyramid<FImage> pyr = new GaussianPyramid<FImage>(options);
 		pyr.process(image);
 
-		return collector.getFeatures();
+		final LocalFeatureList<Keypoint> features = collector.getFeatures();
+		EXTRACT_TIMES.record(System.nanoTime() - start);
+		FEATURES.add(features.size());
+
+		return features;
 	}
 
 	/**
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.keypoints.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.feature.local.matcher.MultiModelKeypointMatcher;
+import org.openimaj.feature.local.matcher.MultiModelKeypointMatcher.Result;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.math.geometry.point.Point2d;
+import org.openimaj.math.geometry.transforms.AffineTransformModel;
+import org.openimaj.math.geometry.transforms.estimation.RobustAffineTransformEstimator;
+import org.openimaj.math.model.fit.RANSAC;
+import org.openimaj.util.pair.Pair;
+
+/**
+ * Tests for {@link MultiModelKeypointMatcher}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MultiModelKeypointMatcherTest {
+	private static List<Keypoint> randomKeypoints(Random rng, int n) {
+		final List<Keypoint> kps = new ArrayList<Keypoint>();
+		for (int i = 0; i < n; i++) {
+			final Keypoint kp = new Keypoint();
+			kp.x = rng.nextFloat() * 640;
+			kp.y = rng.nextFloat() * 480;
+			for (int j = 0; j < kp.ivec.length; j++)
+				kp.ivec[j] = (byte) (rng.nextInt(256) - 128);
+			kps.add(kp);
+		}
+		return kps;
+	}
+
+	/**
+	 * Make a query from a scaled and shifted copy of the given model with
+	 * noisy descriptors, mixed with random clutter
+	 */
+	private static List<Keypoint> makeQuery(Random rng, List<Keypoint> model, int clutter) {
+		final List<Keypoint> query = randomKeypoints(rng, clutter);
+		for (final Keypoint m : model) {
+			final Keypoint kp = m.clone();
+			kp.x = 0.7f * m.x + 31;
+			kp.y = 0.7f * m.y - 12;
+			for (int j = 0; j < kp.ivec.length; j++)
+				kp.ivec[j] = (byte) Math.max(-128, Math.min(127, m.ivec[j] + rng.nextInt(9) - 4));
+			query.add(kp);
+		}
+		return query;
+	}
+
+	private static MultiModelKeypointMatcher<Integer, Keypoint, AffineTransformModel> createMatcher() {
+		return new MultiModelKeypointMatcher<Integer, Keypoint, AffineTransformModel>(
+				new RobustAffineTransformEstimator(3.0, 500, new RANSAC.PercentageInliersStoppingCondition(0.5)));
+	}
+
+	/**
+	 * The model that the query was made from should be the only one found,
+	 * with the correct transform
+	 */
+	@Test
+	public void testRecognition() {
+		final Random rng = new Random(42);
+		final MultiModelKeypointMatcher<Integer, Keypoint, AffineTransformModel> matcher = createMatcher();
+
+		final List<List<Keypoint>> models = new ArrayList<List<Keypoint>>();
+		for (int i = 0; i < 50; i++) {
+			models.add(randomKeypoints(rng, 100));
+			matcher.addModel(i, models.get(i));
+		}
+
+		final List<Result<Integer, Keypoint, AffineTransformModel>> results = matcher.findMatches(makeQuery(rng,
+				models.get(17), 200));
+
+		assertEquals(1, results.size());
+		assertEquals(17, (int) results.get(0).getModelId());
+		assertTrue(results.get(0).getMatches().size() > 90);
+
+		final Keypoint q = new Keypoint();
+		q.x = 0.7f * 100 + 31;
+		q.y = 0.7f * 200 - 12;
+		final Point2d p = results.get(0).getModel().predict(q);
+		assertEquals(100, p.getX(), 0.5);
+		assertEquals(200, p.getY(), 0.5);
+
+		for (final Pair<Keypoint> m : results.get(0).getMatches())
+			assertTrue(models.get(17).contains(m.secondObject()));
+	}
+
+	/**
+	 * A query made only of clutter shouldn't match anything
+	 */
+	@Test
+	public void testNoMatch() {
+		final Random rng = new Random(1);
+		final MultiModelKeypointMatcher<Integer, Keypoint, AffineTransformModel> matcher = createMatcher();
+
+		for (int i = 0; i < 50; i++)
+			matcher.addModel(i, randomKeypoints(rng, 100));
+
+		assertEquals(0, matcher.findMatches(randomKeypoints(rng, 300)).size());
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link DiagonalFisherVector}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ */
+public class DiagonalFisherVectorTest {
+	private static final int K = 16;
+	private static final int D = 32;
+
+	private MixtureOfGaussians gmm;
+	private List<FloatFV> features;
+
+	/**
+	 * Setup for the tests - build a random gmm and draw features from it
+	 */
+	@Before
+	public void setup() {
+		gmm = createGMM(K, D, new Random(0));
+		features = createFeatures(gmm, 500, new Random(1));
+	}
+
+	static MixtureOfGaussians createGMM(int k, int d, Random rng) {
+		final MultivariateGaussian[] gaussians = new MultivariateGaussian[k];
+		final double[] weights = new double[k];
+
+		double sum = 0;
+		for (int i = 0; i < k; i++) {
+			final Matrix mean = new Matrix(1, d);
+			final double[] var = new double[d];
+			for (int j = 0; j < d; j++) {
+				mean.set(0, j, rng.nextDouble() * 10);
+				var[j] = 0.5 + rng.nextDouble();
+			}
+			gaussians[i] = new DiagonalMultivariateGaussian(mean, var);
+			weights[i] = 0.5 + rng.nextDouble();
+			sum += weights[i];
+		}
+		for (int i = 0; i < k; i++)
+			weights[i] /= sum;
+
+		return new MixtureOfGaussians(gaussians, weights);
+	}
+
+	static List<FloatFV> createFeatures(MixtureOfGaussians gmm, int n, Random rng) {
+		final List<FloatFV> features = new ArrayList<FloatFV>(n);
+		for (int i = 0; i < n; i++) {
+			final MultivariateGaussian g = gmm.gaussians[rng.nextInt(gmm.gaussians.length)];
+			final double[] mean = g.getMean().getArray()[0];
+			final float[] v = new float[mean.length];
+			for (int j = 0; j < v.length; j++)
+				v[j] = (float) (mean[j] + rng.nextGaussian() * Math.sqrt(g.getCovariance(j, j)));
+			features.add(new FloatFV(v));
+		}
+		return features;
+	}
+
+	/**
+	 * Using all the posteriors should give the same result as the reference
+	 * implementation
+	 */
+	@Test
+	public void testMatchesFisherVector() {
+		for (final boolean improved : new boolean[] { false, true }) {
+			final FloatFV expected = new FisherVector<float[]>(gmm, improved).aggregateVectors(features);
+			final FloatFV actual = new DiagonalFisherVector<float[]>(gmm, improved).aggregateVectors(features);
+
+			assertEquals(expected.length(), actual.length());
+			for (int i = 0; i < expected.length(); i++)
+				assertEquals(expected.values[i], actual.values[i], 1e-3);
+		}
+	}
+
+	/**
+	 * Using only the top posteriors should give a vector very close to the
+	 * full one
+	 */
+	@Test
+	public void testTopK() {
+		final FloatFV full = new DiagonalFisherVector<float[]>(gmm, true).aggregateVectors(features);
+		final FloatFV top = new DiagonalFisherVector<float[]>(gmm, 3, true, true).aggregateVectors(features);
+
+		double dot = 0;
+		for (int i = 0; i < full.length(); i++)
+			dot += full.values[i] * top.values[i];
+
+		assertTrue(dot > 0.99);
+	}
+
+	/**
+	 * Encoding in parallel should give the same result as encoding serially
+	 */
+	@Test
+	public void testParallel() {
+		final DiagonalFisherVector<float[]> fv = new DiagonalFisherVector<float[]>(gmm, 5, true, true);
+
+		final List<List<FloatFV>> images = new ArrayList<List<FloatFV>>();
+		for (int i = 0; i < 20; i++)
+			images.add(features.subList(i * 20, i * 20 + 25));
+
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+		final List<FloatFV> serial = fv.aggregateAllVectors(images, null);
+		final List<FloatFV> parallel = fv.aggregateAllVectors(images, pool);
+
+		for (int i = 0; i < images.size(); i++) {
+			assertEquals(fv.aggregateVectors(images.get(i)), serial.get(i));
+			assertEquals(serial.get(i), parallel.get(i));
+		}
+	}
+}
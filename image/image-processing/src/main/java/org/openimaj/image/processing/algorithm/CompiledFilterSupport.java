@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.algorithm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.openimaj.image.pixel.Pixel;
+
+/**
+ * A {@link FilterSupport} region compiled into primitive arrays for fast
+ * iteration. The support is available both as a flat list of offsets sorted in
+ * raster order (rows, then columns), and as a list of horizontal runs of
+ * contiguous pixels. Filters that need to visit the support for every pixel of
+ * an image should use this rather than iterating over a {@link Set} of
+ * {@link Pixel}s.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CompiledFilterSupport {
+	/** The x offsets of the support pixels in raster order */
+	public final int[] offsetX;
+
+	/** The y offsets of the support pixels in raster order */
+	public final int[] offsetY;
+
+	/** The y offset of each horizontal run */
+	public final int[] runY;
+
+	/** The x offset of the first pixel of each horizontal run */
+	public final int[] runX;
+
+	/** The number of pixels in each horizontal run */
+	public final int[] runLength;
+
+	/** The minimum x offset */
+	public final int minX;
+
+	/** The maximum x offset */
+	public final int maxX;
+
+	/** The minimum y offset */
+	public final int minY;
+
+	/** The maximum y offset */
+	public final int maxY;
+
+	/**
+	 * Compile the given support.
+	 * 
+	 * @param support
+	 *            the support; must not be empty
+	 */
+	public CompiledFilterSupport(Set<Pixel> support) {
+		if (support.isEmpty())
+			throw new IllegalArgumentException("The support must not be empty");
+
+		final List<Pixel> pixels = new ArrayList<Pixel>(support);
+		Collections.sort(pixels, new Comparator<Pixel>() {
+			@Override
+			public int compare(Pixel o1, Pixel o2) {
+				if (o1.y != o2.y)
+					return o1.y < o2.y ? -1 : 1;
+				return o1.x < o2.x ? -1 : (o1.x == o2.x ? 0 : 1);
+			}
+		});
+
+		final int n = pixels.size();
+		offsetX = new int[n];
+		offsetY = new int[n];
+
+		int nruns = 0;
+		int mnx = Integer.MAX_VALUE, mxx = Integer.MIN_VALUE;
+		for (int i = 0; i < n; i++) {
+			final Pixel p = pixels.get(i);
+			offsetX[i] = p.x;
+			offsetY[i] = p.y;
+
+			mnx = Math.min(mnx, p.x);
+			mxx = Math.max(mxx, p.x);
+
+			if (i == 0 || offsetY[i - 1] != p.y || offsetX[i - 1] != p.x - 1)
+				nruns++;
+		}
+
+		minX = mnx;
+		maxX = mxx;
+		minY = offsetY[0];
+		maxY = offsetY[n - 1];
+
+		runY = new int[nruns];
+		runX = new int[nruns];
+		runLength = new int[nruns];
+		for (int i = 0, r = -1; i < n; i++) {
+			if (i == 0 || offsetY[i - 1] != offsetY[i] || offsetX[i - 1] != offsetX[i] - 1) {
+				r++;
+				runY[r] = offsetY[i];
+				runX[r] = offsetX[i];
+			}
+			runLength[r]++;
+		}
+	}
+
+	/**
+	 * @return the number of pixels in the support
+	 */
+	public int size() {
+		return offsetX.length;
+	}
+
+	/**
+	 * @return the number of horizontal runs in the support
+	 */
+	public int numRuns() {
+		return runX.length;
+	}
+}
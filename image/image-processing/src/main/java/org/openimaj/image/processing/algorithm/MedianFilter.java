@@ -30,20 +30,36 @@
 package org.openimaj.image.processing.algorithm;
 
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 import org.openimaj.math.util.FloatArrayStatsUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Median filter; replaces each pixel with the median of its neighbours.
+ * <p>
+ * For pixels whose support lies entirely within the image, the median is
+ * maintained incrementally along each row: the support is compiled into
+ * horizontal runs, and moving one pixel to the right replaces one value per
+ * run in a pair of indexed heaps holding the lower and upper halves of the
+ * window. This costs <code>O(r log n)</code> per pixel for a support of
+ * <code>n</code> pixels in <code>r</code> runs, rather than the
+ * <code>O(n)</code> of selecting the median afresh, and gives exactly the same
+ * result. Pixels near the border, and supports whose runs are too short for
+ * this to pay off (such as 3x3 blocks), are handled individually. Optionally, the
+ * image can be processed in parallel bands using a thread pool.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  */
 public class MedianFilter implements SinglebandImageProcessor<Float, FImage> {
-	private Set<Pixel> support;
+	private CompiledFilterSupport support;
+	private ThreadPoolExecutor pool;
 
 	/**
 	 * Construct with the given support region for selecting pixels to take the
@@ -55,30 +71,286 @@ public class MedianFilter implements SinglebandImageProcessor<Float, FImage> {
 	 *            the support coordinates
 	 */
 	public MedianFilter(Set<Pixel> support) {
-		this.support = support;
+		this(support, null);
+	}
+
+	/**
+	 * Construct with the given support region for selecting pixels to take the
+	 * median from. The image will be processed in parallel bands using the
+	 * given thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param support
+	 *            the support coordinates
+	 * @param pool
+	 *            the thread pool; if null the image will be processed in the
+	 *            current thread
+	 */
+	public MedianFilter(Set<Pixel> support, ThreadPoolExecutor pool) {
+		this.support = new CompiledFilterSupport(support);
+		this.pool = pool;
 	}
 
 	@Override
-	public void processImage(FImage image) {
-		final float[] tmp = new float[support.size()];
+	public void processImage(final FImage image) {
 		final FImage tmpImage = new FImage(image.width, image.height);
 
-		for (int y = 0; y < image.height; y++) {
+		Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				process(image, tmpImage, range.start, range.stop);
+			}
+		}, pool);
+
+		image.internalAssign(tmpImage);
+	}
+
+	private void process(FImage image, FImage output, int startRow, int stopRow) {
+		final int[] ox = support.offsetX;
+		final int[] oy = support.offsetY;
+		final int n = ox.length;
+		final float[] tmp = new float[n];
+		final float[][] pixels = image.pixels;
+
+		final int nruns = support.numRuns();
+		final int[] runX = support.runX;
+		final int[] runY = support.runY;
+		final int[] runLength = support.runLength;
+		final int[] runBase = new int[nruns];
+		for (int r = 1; r < nruns; r++)
+			runBase[r] = runBase[r - 1] + runLength[r - 1];
+		final MedianHeap heap = new MedianHeap(n);
+
+		// selecting afresh is quicker for supports made of short runs
+		final boolean slide = n > 4 * nruns;
+
+		// note that the last row and column of the image are not used
+		final int xlimit = image.width - 1;
+		final int ylimit = image.height - 1;
+
+		// range of pixels for which the support is entirely within the limits
+		final int x0 = Math.max(0, -support.minX);
+		final int x1 = Math.min(image.width, xlimit - support.maxX);
+		final int y0 = Math.max(0, -support.minY);
+		final int y1 = Math.min(image.height, ylimit - support.maxY);
+
+		for (int y = startRow; y < stopRow; y++) {
+			final float[] out = output.pixels[y];
+			final boolean interiorRow = slide && y >= y0 && y < y1 && x0 < x1;
+
 			for (int x = 0; x < image.width; x++) {
-				int count = 0;
+				if (interiorRow && x == x0) {
+					// fill the window; the pixel in column c of run r is held
+					// in slot runBase[r] + c % runLength[r], so the pixel
+					// leaving the window shares its slot with the one entering
+					for (int r = 0; r < nruns; r++) {
+						final float[] row = pixels[y + runY[r]];
+						for (int i = 0, c = x + runX[r]; i < runLength[r]; i++, c++)
+							heap.value[runBase[r] + c % runLength[r]] = row[c];
+					}
+					heap.build();
+					out[x] = heap.median();
 
-				for (final Pixel sp : support) {
-					final int xx = x + sp.x;
-					final int yy = y + sp.y;
+					for (x = x0 + 1; x < x1; x++) {
+						for (int r = 0; r < nruns; r++) {
+							final int c = x + runX[r] + runLength[r] - 1;
+							heap.replace(runBase[r] + c % runLength[r], pixels[y + runY[r]][c]);
+						}
+						out[x] = heap.median();
+					}
 
-					if (xx >= 0 && xx < image.width - 1 && yy >= 0 && yy < image.height - 1) {
-						tmp[count++] = image.pixels[yy][xx];
+					if (x >= image.width)
+						break;
+				}
+
+				int count = 0;
+				for (int i = 0; i < n; i++) {
+					final int xx = x + ox[i];
+					final int yy = y + oy[i];
+
+					if (xx >= 0 && xx < xlimit && yy >= 0 && yy < ylimit) {
+						tmp[count++] = pixels[yy][xx];
 					}
 				}
 
-				tmpImage.pixels[y][x] = FloatArrayStatsUtils.median(tmp, 0, count);
+				out[x] = FloatArrayStatsUtils.median(tmp, 0, count);
 			}
 		}
-		image.internalAssign(tmpImage);
+	}
+
+	/**
+	 * The values of a window split into a max-heap of the lower half and a
+	 * min-heap of the upper half. Values are held in fixed slots, and the
+	 * position of each slot in the heaps is tracked so that the value of any
+	 * slot can be replaced in logarithmic time.
+	 */
+	static final class MedianHeap {
+		final float[] value;
+
+		private final int n;
+		private final int nlo;
+		private final int[] lo;
+		private final int[] hi;
+		private final int[] pos;
+		private final boolean[] inLo;
+
+		MedianHeap(int n) {
+			this.n = n;
+			this.nlo = (n + 1) / 2;
+			this.value = new float[n];
+			this.lo = new int[nlo];
+			this.hi = new int[n - nlo];
+			this.pos = new int[n];
+			this.inLo = new boolean[n];
+		}
+
+		/**
+		 * Arrange the heaps from the current slot values
+		 */
+		void build() {
+			for (int i = 0; i < n; i++) {
+				if (i < nlo) {
+					lo[i] = i;
+					pos[i] = i;
+					inLo[i] = true;
+				} else {
+					hi[i - nlo] = i;
+					pos[i] = i - nlo;
+					inLo[i] = false;
+				}
+			}
+
+			for (int i = lo.length / 2 - 1; i >= 0; i--)
+				downLo(i);
+			for (int i = hi.length / 2 - 1; i >= 0; i--)
+				downHi(i);
+
+			while (hi.length > 0 && value[lo[0]] > value[hi[0]])
+				swapTops();
+		}
+
+		/**
+		 * Replace the value of a slot
+		 */
+		void replace(int slot, float v) {
+			final float old = value[slot];
+			value[slot] = v;
+
+			if (inLo[slot]) {
+				if (v > old)
+					upLo(pos[slot]);
+				else
+					downLo(pos[slot]);
+			} else {
+				if (v < old)
+					upHi(pos[slot]);
+				else
+					downHi(pos[slot]);
+			}
+
+			if (hi.length > 0 && value[lo[0]] > value[hi[0]])
+				swapTops();
+		}
+
+		/**
+		 * @return the median; for an even number of values this is the lower
+		 *         of the two middle values, as selected by
+		 *         {@link FloatArrayStatsUtils#median(float[], int, int)}
+		 */
+		float median() {
+			return value[lo[0]];
+		}
+
+		private void swapTops() {
+			final int a = lo[0];
+			final int b = hi[0];
+
+			lo[0] = b;
+			pos[b] = 0;
+			inLo[b] = true;
+
+			hi[0] = a;
+			pos[a] = 0;
+			inLo[a] = false;
+
+			downLo(0);
+			downHi(0);
+		}
+
+		private void setLo(int i, int slot) {
+			lo[i] = slot;
+			pos[slot] = i;
+		}
+
+		private void setHi(int i, int slot) {
+			hi[i] = slot;
+			pos[slot] = i;
+		}
+
+		private void upLo(int i) {
+			final int slot = lo[i];
+			final float v = value[slot];
+
+			while (i > 0) {
+				final int parent = (i - 1) >> 1;
+				if (value[lo[parent]] >= v)
+					break;
+				setLo(i, lo[parent]);
+				i = parent;
+			}
+			setLo(i, slot);
+		}
+
+		private void downLo(int i) {
+			final int slot = lo[i];
+			final float v = value[slot];
+			final int size = lo.length;
+
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if (child + 1 < size && value[lo[child + 1]] > value[lo[child]])
+					child++;
+				if (value[lo[child]] <= v)
+					break;
+				setLo(i, lo[child]);
+				i = child;
+			}
+			setLo(i, slot);
+		}
+
+		private void upHi(int i) {
+			final int slot = hi[i];
+			final float v = value[slot];
+
+			while (i > 0) {
+				final int parent = (i - 1) >> 1;
+				if (value[hi[parent]] <= v)
+					break;
+				setHi(i, hi[parent]);
+				i = parent;
+			}
+			setHi(i, slot);
+		}
+
+		private void downHi(int i) {
+			final int slot = hi[i];
+			final float v = value[slot];
+			final int size = hi.length;
+
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if (child + 1 < size && value[hi[child + 1]] < value[hi[child]])
+					child++;
+				if (value[hi[child]] >= v)
+					break;
+				setHi(i, hi[child]);
+				i = child;
+			}
+			setHi(i, slot);
+		}
 	}
 }
@@ -30,22 +30,34 @@
 package org.openimaj.image.processing.algorithm;
 
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.pixel.Pixel;
 import org.openimaj.image.processor.SinglebandImageProcessor;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Min filter; replaces each pixel with the minimum of its neighbours. This is
  * equivalent to greyscale morphological erosion.
+ * <p>
+ * The filter is computed with the van Herk/Gil-Werman algorithm, which takes
+ * a constant number of comparisons per pixel regardless of the width of the
+ * support. Rectangular supports are filtered separably; other supports are
+ * decomposed into horizontal runs, so the cost per pixel is proportional to
+ * the height of the support rather than its area. Optionally, the image can
+ * be processed in parallel bands using a thread pool.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
  */
 public class MinFilter implements SinglebandImageProcessor<Float, FImage> {
-	private Set<Pixel> support;
+	private CompiledFilterSupport support;
 	private int blockWidth;
 	private int blockHeight;
+	private ThreadPoolExecutor pool;
 
 	/**
 	 * Construct with the given support region for selecting pixels to take the
@@ -57,7 +69,24 @@ public class MinFilter implements SinglebandImageProcessor<Float, FImage> {
 	 *            the support coordinates
 	 */
 	public MinFilter(Set<Pixel> support) {
-		this.support = support;
+		this(support, null);
+	}
+
+	/**
+	 * Construct with the given support region for selecting pixels to take the
+	 * minimum from. The image will be processed in parallel bands using the
+	 * given thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param support
+	 *            the support coordinates
+	 * @param pool
+	 *            the thread pool; if null the image will be processed in the
+	 *            current thread
+	 */
+	public MinFilter(Set<Pixel> support, ThreadPoolExecutor pool) {
+		this.support = new CompiledFilterSupport(support);
+		this.pool = pool;
 
 		if (FilterSupport.isBlockSupport(support)) {
 			blockWidth = FilterSupport.getSupportWidth(support);
@@ -66,79 +95,117 @@ public class MinFilter implements SinglebandImageProcessor<Float, FImage> {
 	}
 
 	@Override
-	public void processImage(FImage image) {
+	public void processImage(final FImage image) {
 		if (blockWidth >= 1 && blockHeight >= 1) {
-			minHorizontalSym(image, blockWidth);
-			minVerticalSym(image, blockWidth);
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					minHorizontal(image, blockWidth, range.start, range.stop);
+				}
+			}, pool);
+			Parallel.forRange(0, image.width, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					minVertical(image, blockHeight, range.start, range.stop);
+				}
+			}, pool);
 		} else {
 			final FImage tmpImage = new FImage(image.width, image.height);
 
-			for (int y = 0; y < image.height; y++) {
-				for (int x = 0; x < image.width; x++) {
-					float min = Float.MAX_VALUE;
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					minRuns(image, tmpImage, range.start, range.stop);
+				}
+			}, pool);
+
+			image.internalAssign(tmpImage);
+		}
+	}
+
+	private void minRuns(FImage image, FImage output, int startRow, int stopRow) {
+		final int width = image.width;
+		final int height = image.height;
 
-					for (final Pixel sp : support) {
-						final int xx = x + sp.x;
-						final int yy = y + sp.y;
+		int maxRun = 0;
+		for (int i = 0; i < support.numRuns(); i++)
+			maxRun = Math.max(maxRun, support.runLength[i]);
 
-						if (xx >= 0 && xx < image.width && yy >= 0 && yy < image.height) {
-							min = Math.min(min, image.pixels[yy][xx]);
-						}
-					}
+		final float[] g = new float[width + maxRun];
+		final float[] h = new float[width + maxRun];
+		final float[] tmp = new float[width];
 
-					tmpImage.pixels[y][x] = min;
+		for (int y = startRow; y < stopRow; y++) {
+			final float[] out = output.pixels[y];
+			for (int x = 0; x < width; x++)
+				out[x] = Float.MAX_VALUE;
+
+			for (int i = 0; i < support.numRuns(); i++) {
+				final int yy = y + support.runY[i];
+
+				if (yy >= 0 && yy < height) {
+					slidingMin(image.pixels[yy], width, support.runX[i], support.runLength[i], width, g, h, tmp);
+
+					for (int x = 0; x < width; x++)
+						out[x] = Math.min(tmp[x], out[x]);
 				}
 			}
-			image.internalAssign(tmpImage);
 		}
 	}
 
-	private static void minHorizontalSym(FImage image, int width) {
-		final int halfsize = width / 2;
-		final float buffer[] = new float[image.width + width];
+	/**
+	 * Compute the minimum of a sliding window over the given data using the van
+	 * Herk/Gil-Werman algorithm. For each <code>x</code> in
+	 * <code>[0, n)</code>, <code>out[x]</code> is set to the minimum of the
+	 * values of <code>data[j]</code> for <code>j</code> in
+	 * <code>[x + offset, x + offset + length)</code> that also lie in
+	 * <code>[0, limit)</code> (or {@link Float#MAX_VALUE} if none do).
+	 */
+	private static void slidingMin(float[] data, int limit, int offset, int length, int n, float[] g, float[] h,
+			float[] out)
+	{
+		final int len = n + length - 1;
 
-		for (int r = 0; r < image.height; r++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[r][0];
-			for (int i = 0; i < image.width; i++)
-				buffer[halfsize + i] = image.pixels[r][i];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.width + i] = image.pixels[r][image.width - 1];
+		for (int k = 0; k < len; k++) {
+			final int j = k + offset;
+			final float v = (j >= 0 && j < limit) ? data[j] : Float.MAX_VALUE;
 
-			final int l = buffer.length - width;
-			for (int i = 0; i < l; i++) {
-				float min = Float.MAX_VALUE;
+			g[k] = (k % length == 0) ? v : Math.min(v, g[k - 1]);
+		}
 
-				for (int j = 0; j < width; j++)
-					min = Math.min(buffer[i + j], min);
+		for (int k = len - 1; k >= 0; k--) {
+			final int j = k + offset;
+			final float v = (j >= 0 && j < limit) ? data[j] : Float.MAX_VALUE;
 
-				image.pixels[r][i] = min;
-			}
+			h[k] = (k == len - 1 || k % length == length - 1) ? v : Math.min(v, h[k + 1]);
 		}
+
+		for (int x = 0; x < n; x++)
+			out[x] = Math.min(h[x], g[x + length - 1]);
 	}
 
-	private static void minVerticalSym(FImage image, int width) {
+	private static void minHorizontal(FImage image, int width, int startRow, int stopRow) {
 		final int halfsize = width / 2;
+		final float[] g = new float[image.width + width];
+		final float[] h = new float[image.width + width];
 
-		final float buffer[] = new float[image.height + width];
-
-		for (int c = 0; c < image.width; c++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[0][c];
-			for (int i = 0; i < image.height; i++)
-				buffer[halfsize + i] = image.pixels[i][c];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
+		for (int r = startRow; r < stopRow; r++) {
+			final float[] row = image.pixels[r];
+			slidingMin(row, image.width, -halfsize, width, image.width, g, h, row);
+		}
+	}
 
-			final int l = buffer.length - width;
-			for (int i = 0; i < l; i++) {
-				float min = Float.MAX_VALUE;
+	private static void minVertical(FImage image, int height, int startCol, int stopCol) {
+		final int halfsize = height / 2;
+		final float[] g = new float[image.height + height];
+		final float[] h = new float[image.height + height];
+		final float[] buffer = new float[image.height];
 
-				for (int j = 0; j < width; j++)
-					min = Math.min(buffer[i + j], min);
+		for (int c = startCol; c < stopCol; c++) {
+			for (int r = 0; r < image.height; r++)
+				buffer[r] = image.pixels[r][c];
 
-				buffer[i] = min;
-			}
+			slidingMin(buffer, image.height, -halfsize, height, image.height, g, h, buffer);
 
 			for (int r = 0; r < image.height; r++)
 				image.pixels[r][c] = buffer[r];
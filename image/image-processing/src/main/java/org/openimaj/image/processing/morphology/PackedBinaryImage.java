@@ -0,0 +1,818 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.morphology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.image.pixel.PixelSet;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * A binary image packed into the bits of a <code>long[]</code>, with
+ * word-parallel implementations of the morphological operators in this
+ * package. Each row is stored in a whole number of 64-bit words, with pixel
+ * <code>x</code> held in bit <code>x &amp; 63</code> of word
+ * <code>x &gt;&gt;&gt; 6</code>, so an operation such as a shift followed by an
+ * AND processes 64 pixels at a time.
+ * <p>
+ * The operators follow the semantics of the {@link ConnectedComponent} versions
+ * of {@link Dilate}, {@link Erode}, {@link HitAndMiss}, {@link Thin},
+ * {@link Thicken}, {@link SequentialThin} and {@link Skeleton}: the structuring
+ * element is placed with its origin at each pixel, and pixels outside the image
+ * are treated as background. Structuring elements are decomposed into
+ * horizontal runs, and each run is applied with a logarithmic number of shifts,
+ * so large elements (such as big disks) remain cheap.
+ * <p>
+ * Images can be built from, and converted back into, {@link FImage} masks and
+ * {@link PixelSet}s (such as {@link ConnectedComponent}s). When built from a
+ * {@link PixelSet} the image records the coordinates of its top-left pixel so
+ * that the conversion back restores the original coordinate frame.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedBinaryImage implements Cloneable {
+	private static final int AND = 0;
+	private static final int OR = 1;
+	private static final int AND_NOT = 2;
+	private static final int OR_NOT = 3;
+
+	/**
+	 * The width of the image
+	 */
+	public final int width;
+
+	/**
+	 * The height of the image
+	 */
+	public final int height;
+
+	/**
+	 * The x-coordinate of the top-left pixel in the frame of the
+	 * {@link PixelSet} the image was built from
+	 */
+	public int originX;
+
+	/**
+	 * The y-coordinate of the top-left pixel in the frame of the
+	 * {@link PixelSet} the image was built from
+	 */
+	public int originY;
+
+	private final int stride;
+	private final long lastMask;
+	private final long[] data;
+
+	/**
+	 * Construct an empty image of the given size
+	 * 
+	 * @param width
+	 *            the width
+	 * @param height
+	 *            the height
+	 */
+	public PackedBinaryImage(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.stride = (width + 63) >>> 6;
+		this.lastMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+		this.data = new long[stride * height];
+	}
+
+	/**
+	 * Construct from a mask image. Pixels with a value of at least 0.5 are
+	 * considered to be foreground.
+	 * 
+	 * @param mask
+	 *            the mask
+	 */
+	public PackedBinaryImage(FImage mask) {
+		this(mask, 0.5f);
+	}
+
+	/**
+	 * Construct from a mask image. Pixels with a value of at least the given
+	 * threshold are considered to be foreground.
+	 * 
+	 * @param mask
+	 *            the mask
+	 * @param thresh
+	 *            the threshold
+	 */
+	public PackedBinaryImage(FImage mask, float thresh) {
+		this(mask.width, mask.height);
+
+		for (int y = 0; y < height; y++) {
+			final float[] row = mask.pixels[y];
+			final int off = y * stride;
+
+			for (int x = 0; x < width; x++) {
+				if (row[x] >= thresh)
+					data[off + (x >>> 6)] |= 1L << x;
+			}
+		}
+	}
+
+	/**
+	 * Construct from the pixels of a {@link PixelSet}. The image covers the
+	 * bounding box of the pixels plus the given border on every side; the
+	 * border should be large enough to hold any growth caused by the operations
+	 * that will be applied (e.g. the size of the structuring element for a
+	 * dilation).
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 * @param border
+	 *            the border to add around the bounding box
+	 */
+	public PackedBinaryImage(PixelSet pixels, int border) {
+		this(extent(pixels.getPixels(), border), pixels.getPixels());
+	}
+
+	private PackedBinaryImage(int[] extent, Set<Pixel> pixels) {
+		this(extent[2], extent[3]);
+		this.originX = extent[0];
+		this.originY = extent[1];
+
+		for (final Pixel p : pixels)
+			set(p.x - originX, p.y - originY, true);
+	}
+
+	private static int[] extent(Set<Pixel> pixels, int border) {
+		if (pixels.isEmpty())
+			return new int[] { 0, 0, 2 * border, 2 * border };
+
+		int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+		int ymin = Integer.MAX_VALUE, ymax = Integer.MIN_VALUE;
+		for (final Pixel p : pixels) {
+			if (p.x < xmin)
+				xmin = p.x;
+			if (p.x > xmax)
+				xmax = p.x;
+			if (p.y < ymin)
+				ymin = p.y;
+			if (p.y > ymax)
+				ymax = p.y;
+		}
+
+		return new int[] { xmin - border, ymin - border, 1 + xmax - xmin + 2 * border, 1 + ymax - ymin + 2 * border };
+	}
+
+	/**
+	 * Get the value of a pixel. Pixels outside the image are background.
+	 * 
+	 * @param x
+	 *            the x-coordinate
+	 * @param y
+	 *            the y-coordinate
+	 * @return true if the pixel is foreground; false otherwise
+	 */
+	public boolean get(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return false;
+
+		return (data[y * stride + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Set the value of a pixel
+	 * 
+	 * @param x
+	 *            the x-coordinate
+	 * @param y
+	 *            the y-coordinate
+	 * @param value
+	 *            true for foreground; false for background
+	 */
+	public void set(int x, int y, boolean value) {
+		final int idx = y * stride + (x >>> 6);
+
+		if (value)
+			data[idx] |= 1L << x;
+		else
+			data[idx] &= ~(1L << x);
+	}
+
+	/**
+	 * Count the number of foreground pixels
+	 * 
+	 * @return the number of foreground pixels
+	 */
+	public int countPixels() {
+		int count = 0;
+		for (final long w : data)
+			count += Long.bitCount(w);
+		return count;
+	}
+
+	/**
+	 * Test whether the image has any foreground pixels
+	 * 
+	 * @return true if there are no foreground pixels
+	 */
+	public boolean isEmpty() {
+		for (final long w : data)
+			if (w != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Convert to a mask image with foreground pixels set to 1 and background
+	 * pixels set to 0.
+	 * 
+	 * @return the mask image
+	 */
+	public FImage toFImage() {
+		final FImage mask = new FImage(width, height);
+
+		for (int y = 0; y < height; y++) {
+			final float[] row = mask.pixels[y];
+			final int off = y * stride;
+
+			for (int w = 0; w < stride; w++) {
+				long bits = data[off + w];
+				while (bits != 0) {
+					row[(w << 6) + Long.numberOfTrailingZeros(bits)] = 1;
+					bits &= bits - 1;
+				}
+			}
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Convert to a {@link ConnectedComponent}. The pixels are translated by
+	 * the origin, so an image built from a {@link PixelSet} is returned to the
+	 * coordinate frame of that set.
+	 * 
+	 * @return the connected component
+	 */
+	public ConnectedComponent toConnectedComponent() {
+		final ConnectedComponent cc = new ConnectedComponent();
+		copyTo(cc);
+		return cc;
+	}
+
+	/**
+	 * Replace the pixels of the given {@link PixelSet} with the foreground
+	 * pixels of this image, translated by the origin. This allows a
+	 * {@link ConnectedComponent} to be processed in-place:
+	 * 
+	 * <pre>
+	 * new PackedBinaryImage(cc, 1).dilate(StructuringElement.BOX).copyTo(cc);
+	 * </pre>
+	 * 
+	 * @param pixels
+	 *            the set to fill
+	 */
+	public void copyTo(PixelSet pixels) {
+		final Set<Pixel> set = pixels.getPixels();
+		set.clear();
+
+		for (int y = 0; y < height; y++) {
+			final int off = y * stride;
+
+			for (int w = 0; w < stride; w++) {
+				long bits = data[off + w];
+				while (bits != 0) {
+					set.add(new Pixel(originX + (w << 6) + Long.numberOfTrailingZeros(bits), originY + y));
+					bits &= bits - 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the bounding box of the foreground pixels in the coordinate
+	 * frame of the image. The box has the same form as
+	 * {@link PixelSet#calculateRegularBoundingBox()}.
+	 * 
+	 * @return the bounding box, or null if the image is empty
+	 */
+	public Rectangle calculateRegularBoundingBox() {
+		int xmin = Integer.MAX_VALUE, xmax = -1, ymin = Integer.MAX_VALUE, ymax = -1;
+
+		for (int y = 0; y < height; y++) {
+			final int off = y * stride;
+
+			for (int w = 0; w < stride; w++) {
+				final long bits = data[off + w];
+				if (bits == 0)
+					continue;
+
+				final int lo = (w << 6) + Long.numberOfTrailingZeros(bits);
+				final int hi = (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+				if (lo < xmin)
+					xmin = lo;
+				if (hi > xmax)
+					xmax = hi;
+				if (y < ymin)
+					ymin = y;
+				ymax = y;
+			}
+		}
+
+		if (xmax < 0)
+			return null;
+
+		return new Rectangle(xmin, ymin, xmax - xmin, ymax - ymin);
+	}
+
+	/**
+	 * Set this image to the intersection of itself and another image of the
+	 * same size.
+	 * 
+	 * @param other
+	 *            the other image
+	 * @return this
+	 */
+	public PackedBinaryImage and(PackedBinaryImage other) {
+		checkSize(other);
+		for (int i = 0; i < data.length; i++)
+			data[i] &= other.data[i];
+		return this;
+	}
+
+	/**
+	 * Set this image to the union of itself and another image of the same
+	 * size.
+	 * 
+	 * @param other
+	 *            the other image
+	 * @return this
+	 */
+	public PackedBinaryImage or(PackedBinaryImage other) {
+		checkSize(other);
+		for (int i = 0; i < data.length; i++)
+			data[i] |= other.data[i];
+		return this;
+	}
+
+	/**
+	 * Remove the foreground pixels of another image of the same size from this
+	 * image.
+	 * 
+	 * @param other
+	 *            the other image
+	 * @return this
+	 */
+	public PackedBinaryImage andNot(PackedBinaryImage other) {
+		checkSize(other);
+		for (int i = 0; i < data.length; i++)
+			data[i] &= ~other.data[i];
+		return this;
+	}
+
+	/**
+	 * Set this image to the symmetric difference of itself and another image
+	 * of the same size.
+	 * 
+	 * @param other
+	 *            the other image
+	 * @return this
+	 */
+	public PackedBinaryImage xor(PackedBinaryImage other) {
+		checkSize(other);
+		for (int i = 0; i < data.length; i++)
+			data[i] ^= other.data[i];
+		return this;
+	}
+
+	/**
+	 * Invert this image
+	 * 
+	 * @return this
+	 */
+	public PackedBinaryImage not() {
+		for (int i = 0; i < data.length; i++)
+			data[i] = ~data[i];
+		maskRows();
+		return this;
+	}
+
+	private void checkSize(PackedBinaryImage other) {
+		if (other.width != width || other.height != height)
+			throw new IllegalArgumentException("Images must be the same size");
+	}
+
+	private void maskRows() {
+		if (lastMask != -1L)
+			for (int i = stride - 1; i < data.length; i += stride)
+				data[i] &= lastMask;
+	}
+
+	/**
+	 * Create a shifted copy of this image, such that pixel <code>(x, y)</code>
+	 * of the result is pixel <code>(x + dx, y + dy)</code> of this image.
+	 * Pixels shifted in from outside the image are background.
+	 * 
+	 * @param dx
+	 *            the horizontal offset
+	 * @param dy
+	 *            the vertical offset
+	 * @return the shifted image
+	 */
+	public PackedBinaryImage shift(int dx, int dy) {
+		final PackedBinaryImage out = emptyCopy();
+		out.combine(this, dx, dy, OR);
+		return out;
+	}
+
+	/**
+	 * Dilate with the given structuring element. A pixel is set in the output
+	 * if it was set in the input, or if any positive pixel of the element
+	 * placed at it hits the foreground, or any negative pixel hits the
+	 * background.
+	 * 
+	 * @param se
+	 *            the structuring element
+	 * @return the dilated image
+	 */
+	public PackedBinaryImage dilate(StructuringElement se) {
+		final PackedBinaryImage out = clone();
+		out.applyRuns(se.positive, new RunReducer(OR, false), new RunReducer(OR, true), OR);
+		out.applyRuns(se.negative, new RunReducer(AND, false), new RunReducer(AND, true), OR_NOT);
+		return out;
+	}
+
+	/**
+	 * Erode with the given structuring element. A pixel is retained if the
+	 * element placed at it is completely contained in the image (positive
+	 * pixels on the foreground and negative pixels on the background).
+	 * 
+	 * @param se
+	 *            the structuring element
+	 * @return the eroded image
+	 */
+	public PackedBinaryImage erode(StructuringElement se) {
+		return match(se, new RunReducer[] { new RunReducer(AND, false), new RunReducer(AND, true),
+				new RunReducer(OR, false), new RunReducer(OR, true) }).and(this);
+	}
+
+	/**
+	 * Morphological opening (erosion followed by dilation)
+	 * 
+	 * @param se
+	 *            the structuring element
+	 * @return the opened image
+	 */
+	public PackedBinaryImage open(StructuringElement se) {
+		return erode(se).dilate(se);
+	}
+
+	/**
+	 * Morphological closing (dilation followed by erosion)
+	 * 
+	 * @param se
+	 *            the structuring element
+	 * @return the closed image
+	 */
+	public PackedBinaryImage close(StructuringElement se) {
+		return dilate(se).erode(se);
+	}
+
+	/**
+	 * Hit-and-miss transform. The output contains the pixels at which any of
+	 * the given elements is completely contained in the image.
+	 * 
+	 * @param ses
+	 *            the structuring elements
+	 * @return the selected pixels
+	 */
+	public PackedBinaryImage hitAndMiss(StructuringElement... ses) {
+		final RunReducer[] reducers = { new RunReducer(AND, false), new RunReducer(AND, true),
+				new RunReducer(OR, false), new RunReducer(OR, true) };
+
+		PackedBinaryImage out = null;
+		for (final StructuringElement se : ses) {
+			final PackedBinaryImage m = match(se, reducers);
+
+			if (out == null)
+				out = m;
+			else
+				out.or(m);
+		}
+
+		return out == null ? emptyCopy() : out;
+	}
+
+	/**
+	 * Thinning; removes the pixels selected by the hit-and-miss transform with
+	 * the given elements.
+	 * 
+	 * @param ses
+	 *            the structuring elements
+	 * @return the thinned image
+	 */
+	public PackedBinaryImage thin(StructuringElement... ses) {
+		return clone().andNot(hitAndMiss(ses));
+	}
+
+	/**
+	 * Thickening; adds the pixels selected by the hit-and-miss transform with
+	 * the given elements.
+	 * 
+	 * @param ses
+	 *            the structuring elements
+	 * @return the thickened image
+	 */
+	public PackedBinaryImage thicken(StructuringElement... ses) {
+		return clone().or(hitAndMiss(ses));
+	}
+
+	/**
+	 * Repeated thinning until convergence or until the given number of
+	 * iterations has been performed.
+	 * 
+	 * @param niter
+	 *            the maximum number of iterations; a negative value means
+	 *            iterate until convergence
+	 * @param ses
+	 *            the structuring elements
+	 * @return the thinned image
+	 */
+	public PackedBinaryImage sequentialThin(int niter, StructuringElement... ses) {
+		final PackedBinaryImage out = clone();
+
+		for (int i = niter; i != 0; i--) {
+			final PackedBinaryImage hm = out.hitAndMiss(ses);
+
+			if (hm.isEmpty())
+				break;
+
+			out.andNot(hm);
+		}
+
+		return out;
+	}
+
+	/**
+	 * Skeletonise using the {@link GolayAlphabet#L} elements (as per
+	 * {@link Skeleton}).
+	 * 
+	 * @return the skeleton
+	 */
+	public PackedBinaryImage skeleton() {
+		return sequentialThin(-1, GolayAlphabet.L);
+	}
+
+	/**
+	 * Compute the pixels at which the element is completely contained in the
+	 * image
+	 */
+	private PackedBinaryImage match(StructuringElement se, RunReducer[] reducers) {
+		final PackedBinaryImage out = emptyCopy().not();
+		out.applyRuns(se.positive, reducers[0], reducers[1], AND);
+		out.applyRuns(se.negative, reducers[2], reducers[3], AND_NOT);
+		return out;
+	}
+
+	/**
+	 * Combine this image with the runs of the given pixels, reduced over the
+	 * source image. Runs are anchored at the origin column (splitting them if
+	 * they span it) so that the reduced images never need to reach outside
+	 * the image to the left of a pixel that lies inside it.
+	 */
+	private void applyRuns(Set<Pixel> pixels, RunReducer forward, RunReducer backward, int op) {
+		for (final int[] run : runs(pixels)) {
+			final int start = run[1];
+			final int end = run[1] + run[2] - 1;
+
+			if (start >= 0) {
+				combine(forward.reduce(run[2]), start, run[0], op);
+			} else if (end <= 0) {
+				combine(backward.reduce(run[2]), end, run[0], op);
+			} else {
+				combine(backward.reduce(1 - start), 0, run[0], op);
+				combine(forward.reduce(end + 1), 0, run[0], op);
+			}
+		}
+	}
+
+	/**
+	 * Decompose a set of pixels into horizontal runs of the form [y, x,
+	 * length].
+	 */
+	static List<int[]> runs(Set<Pixel> pixels) {
+		final List<Pixel> sorted = new ArrayList<Pixel>(pixels);
+		Collections.sort(sorted, new Comparator<Pixel>() {
+			@Override
+			public int compare(Pixel o1, Pixel o2) {
+				if (o1.y != o2.y)
+					return o1.y < o2.y ? -1 : 1;
+				return o1.x < o2.x ? -1 : (o1.x == o2.x ? 0 : 1);
+			}
+		});
+
+		final List<int[]> runs = new ArrayList<int[]>();
+		int[] current = null;
+		for (final Pixel p : sorted) {
+			if (current != null && current[0] == p.y && current[1] + current[2] == p.x) {
+				current[2]++;
+			} else {
+				current = new int[] { p.y, p.x, 1 };
+				runs.add(current);
+			}
+		}
+
+		return runs;
+	}
+
+	/**
+	 * Computes images in which each pixel is the AND (or OR) of a horizontal
+	 * run of pixels starting (or, going backwards, ending) at it. Runs with
+	 * power-of-two lengths are built by doubling, and other lengths are
+	 * assembled from those, so a run of length n costs O(log n) word
+	 * operations per row.
+	 */
+	private class RunReducer {
+		final int op;
+		final int sign;
+		final List<PackedBinaryImage> powers = new ArrayList<PackedBinaryImage>();
+		final Map<Integer, PackedBinaryImage> cache = new HashMap<Integer, PackedBinaryImage>();
+
+		RunReducer(int op, boolean backward) {
+			this.op = op;
+			this.sign = backward ? -1 : 1;
+			powers.add(PackedBinaryImage.this);
+		}
+
+		PackedBinaryImage power(int b) {
+			while (powers.size() <= b) {
+				final PackedBinaryImage prev = powers.get(powers.size() - 1);
+				final PackedBinaryImage next = prev.clone();
+				next.combine(prev, sign << (powers.size() - 1), 0, op);
+				powers.add(next);
+			}
+			return powers.get(b);
+		}
+
+		PackedBinaryImage reduce(int length) {
+			if (length == 1)
+				return PackedBinaryImage.this;
+
+			PackedBinaryImage result = cache.get(length);
+			if (result != null)
+				return result;
+
+			int offset = 0;
+			for (int b = 0; (length >>> b) != 0; b++) {
+				if ((length & (1 << b)) == 0)
+					continue;
+
+				if (result == null)
+					result = power(b).clone();
+				else
+					result.combine(power(b), sign * offset, 0, op);
+
+				offset += 1 << b;
+			}
+
+			cache.put(length, result);
+			return result;
+		}
+	}
+
+	/**
+	 * Combine this image with a shifted version of another image of the same
+	 * size: this(x, y) = this(x, y) op src(x + dx, y + dy).
+	 */
+	private void combine(PackedBinaryImage src, int dx, int dy, int op) {
+		final long[] row = new long[stride];
+
+		for (int y = 0; y < height; y++) {
+			final int sy = y + dy;
+			final int off = y * stride;
+
+			if (sy < 0 || sy >= height)
+				Arrays.fill(row, 0);
+			else
+				shiftRow(src.data, sy * stride, row, dx);
+
+			switch (op) {
+			case AND:
+				for (int i = 0; i < stride; i++)
+					data[off + i] &= row[i];
+				break;
+			case OR:
+				for (int i = 0; i < stride; i++)
+					data[off + i] |= row[i];
+				break;
+			case AND_NOT:
+				for (int i = 0; i < stride; i++)
+					data[off + i] &= ~row[i];
+				break;
+			case OR_NOT:
+				for (int i = 0; i < stride; i++)
+					data[off + i] |= ~row[i];
+				data[off + stride - 1] &= lastMask;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Shift a row such that dst(x) = src(x + dx)
+	 */
+	private void shiftRow(long[] src, int srcOff, long[] dst, int dx) {
+		final int d = dx < 0 ? -dx : dx;
+		final int ws = d >>> 6;
+		final int bs = d & 63;
+
+		if (dx >= 0) {
+			for (int i = 0; i < stride; i++) {
+				final int j = i + ws;
+				long v = j < stride ? src[srcOff + j] >>> bs : 0;
+				if (bs != 0 && j + 1 < stride)
+					v |= src[srcOff + j + 1] << (64 - bs);
+				dst[i] = v;
+			}
+		} else {
+			for (int i = 0; i < stride; i++) {
+				final int j = i - ws;
+				long v = j >= 0 ? src[srcOff + j] << bs : 0;
+				if (bs != 0 && j - 1 >= 0)
+					v |= src[srcOff + j - 1] >>> (64 - bs);
+				dst[i] = v;
+			}
+			dst[stride - 1] &= lastMask;
+		}
+	}
+
+	private PackedBinaryImage emptyCopy() {
+		final PackedBinaryImage out = new PackedBinaryImage(width, height);
+		out.originX = originX;
+		out.originY = originY;
+		return out;
+	}
+
+	@Override
+	public PackedBinaryImage clone() {
+		final PackedBinaryImage out = emptyCopy();
+		System.arraycopy(data, 0, out.data, 0, data.length);
+		return out;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PackedBinaryImage))
+			return false;
+
+		final PackedBinaryImage other = (PackedBinaryImage) obj;
+		return width == other.width && height == other.height && Arrays.equals(data, other.data);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * width + height) + Arrays.hashCode(data);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++)
+				sb.append(get(x, y) ? '*' : '.');
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
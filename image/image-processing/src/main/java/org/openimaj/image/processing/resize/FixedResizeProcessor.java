@@ -29,17 +29,19 @@
  */
 package org.openimaj.image.processing.resize;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
-import org.openimaj.image.processing.resize.ResizeProcessor.PixelContribution;
-import org.openimaj.image.processing.resize.ResizeProcessor.PixelContributions;
 import org.openimaj.image.processing.resize.filters.TriangleFilter;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 
 
 /**
- * A copy of the {@link ResizeProcessor} which speeds up the resize operation
- * between images of a given size to another fixed size by caching the contribution
- * calculations
+ * A variant of the {@link ResizeProcessor} which speeds up the resize operation
+ * between images of a given size to another fixed size by holding on to the
+ * {@link ResamplingPlan} for those sizes. The results are identical to those
+ * of the {@link ResizeProcessor}. The processor is stateless apart from the
+ * immutable plan, so a single instance can be shared between threads.
  * 
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
  */
@@ -50,8 +52,8 @@ public class FixedResizeProcessor implements SinglebandImageProcessor<Float, FIm
 	private ResizeFilterFunction filterFunction;
 	private float srcX;
 	private float srcY;
-	private ImageContributions ic;
-	final float[] work;
+	private ResamplingPlan plan;
+	private ThreadPoolExecutor pool;
 	
 	/**
 	 * The default {@link TriangleFilter} (bilinear-interpolation filter) used
@@ -81,7 +83,6 @@ public class FixedResizeProcessor implements SinglebandImageProcessor<Float, FIm
 		this.newY = newY;
 		this.filterFunction = ff;
 		prepareResample(true);
-		this.work = new float[(int)newY];
 	}
 
 	/**
@@ -128,236 +129,19 @@ public class FixedResizeProcessor implements SinglebandImageProcessor<Float, FIm
 		this.newX = nx;
 		this.newY = ny;
 
-		this.ic = FixedResizeProcessor.prepareZoom((int)srcX,(int)srcY,(int)newX,(int)newY,this.filterFunction);
-	}
-	static class ImageContributions{
-		PixelContributions[] xContributions;
-		PixelContributions[] yContributions;
+		this.plan = ResamplingPlan.get((int) srcX, (int) srcY, nx, ny, this.filterFunction);
 	}
-	private static ImageContributions prepareZoom(int srcWidth, int srcHeight, int dstWidth, int dstHeight, ResizeFilterFunction filterf) {
-		final double xscale = (double) dstWidth / (double) srcWidth;
-		final double yscale = (double) dstHeight / (double) srcHeight;
-		
-		final PixelContributions[] contribY = new PixelContributions[dstHeight];
-		for (int i = 0; i < contribY.length; i++) {
-			contribY[i] = new PixelContributions();
-		}
-		
-		final PixelContributions[] contribX = new PixelContributions[dstWidth];
-		for (int i = 0; i < contribX.length; i++) {
-			contribX[i] = new PixelContributions();
-		}
-		
-		final double fwidth = filterf.getSupport();
-		if (yscale < 1.0) {
-			double width = fwidth / yscale;
-			double fscale = 1.0 / yscale;
-
-			if (width <= .5) {
-				// Reduce to point sampling.
-				width = .5 + 1.0e-6;
-				fscale = 1.0;
-			}
-
-			for (int i = 0; i < dstHeight; i++) {
-				contribY[i].contributions = new PixelContribution[(int) (width * 2.0 + 1)];
-				contribY[i].numberOfContributors = 0;
-
-				final double center = i / yscale;
-				final int left = (int) Math.ceil(center - width);
-				final int right = (int) Math.floor(center + width);
-
-				double density = 0.0;
-
-				for (int j = left; j <= right; j++) {
-					double weight = center - j;
-					weight = filterf.filter(weight / fscale) / fscale;
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcHeight) {
-						n = (srcHeight - j) + srcHeight - 1;
-					}
-					else {
-						n = j;
-					}
-
-					/**/
-					if (n >= srcHeight) {
-						n = n % srcHeight;
-					}
-					else if (n < 0) {
-						n = srcHeight - 1;
-					}
-					/**/
-
-					final int k = contribY[i].numberOfContributors++;
-					contribY[i].contributions[k] = new PixelContribution();
-					contribY[i].contributions[k].pixel = n;
-					contribY[i].contributions[k].weight = weight;
 
-					density += weight;
-				}
-
-				if ((density != 0.0) && (density != 1.0)) {
-					// Normalize.
-					density = 1.0 / density;
-					for (int k = 0; k < contribY[i].numberOfContributors; k++) {
-						contribY[i].contributions[k].weight *= density;
-					}
-				}
-			}
-		}
-		else {
-			for (int i = 0; i < dstHeight; ++i) {
-				contribY[i].contributions = new PixelContribution[(int) (fwidth * 2 + 1)];
-				contribY[i].numberOfContributors = 0;
-
-				final double center = i / yscale;
-				final double left = Math.ceil(center - fwidth);
-				final double right = Math.floor(center + fwidth);
-				for (int j = (int) left; j <= right; ++j) {
-					double weight = center - j;
-					weight = filterf.filter(weight);
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcHeight) {
-						n = (srcHeight - j) + srcHeight - 1;
-					}
-					else {
-						n = j;
-					}
-
-					/**/
-					if (n >= srcHeight) {
-						n = n % srcHeight;
-					}
-					else if (n < 0) {
-						n = srcHeight - 1;
-					}
-					/**/
-
-					final int k = contribY[i].numberOfContributors++;
-					contribY[i].contributions[k] = new PixelContribution();
-					contribY[i].contributions[k].pixel = n;
-					contribY[i].contributions[k].weight = weight;
-				}
-			}
-		}
-		
-		if (xscale < 1.0) {
-			for (int i = 0; i < dstWidth; ++i) {
-				/* Shrinking image */
-				double width = fwidth / xscale;
-				double fscale = 1.0 / xscale;
-	
-				if (width <= .5) {
-					// Reduce to point sampling.
-					width = .5 + 1.0e-6;
-					fscale = 1.0;
-				}
-	
-				contribX[i].numberOfContributors = 0;
-				contribX[i].contributions = new PixelContribution[(int) (width * 2.0 + 1.0)];
-	
-				double center = i / xscale;
-				final int left = (int) Math.ceil(center - width);// Note: Assumes
-																	// width <= .5
-				final int right = (int) Math.floor(center + width);
-	
-				double density = 0.0;
-	
-				for (int j = left; j <= right; j++) {
-					double weight = center - j;
-					weight = filterf.filter(weight / fscale) / fscale;
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcWidth) {
-						n = (srcWidth - j) + srcWidth - 1;
-					}
-					else {
-						n = j;
-					}
-	
-					/**/
-					if (n >= srcWidth) {
-						n = n % srcWidth;
-					}
-					else if (n < 0) {
-						n = srcWidth - 1;
-					}
-					/**/
-	
-					final int k = contribX[i].numberOfContributors++;
-					contribX[i].contributions[k] = new PixelContribution();
-					contribX[i].contributions[k].pixel = n;
-					contribX[i].contributions[k].weight = weight;
-	
-					density += weight;
-	
-				}
-	
-				if ((density != 0.0) && (density != 1.0)) {
-					// Normalize.
-					density = 1.0 / density;
-					for (int k = 0; k < contribX[i].numberOfContributors; k++) {
-						contribX[i].contributions[k].weight *= density;
-					}
-				}
-			}
-		}
-		else {
-			for (int i = 0; i < dstWidth; ++i) {
-				/* Expanding image */
-				contribX[i].numberOfContributors = 0;
-				contribX[i].contributions = new PixelContribution[(int) (fwidth * 2.0 + 1.0)];
-	
-				double center = i / xscale;
-				final int left = (int) Math.ceil(center - fwidth);
-				final int right = (int) Math.floor(center + fwidth);
-	
-				for (int j = left; j <= right; j++) {
-					double weight = center - j;
-					weight = filterf.filter(weight);
-	
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcWidth) {
-						n = (srcWidth - j) + srcWidth - 1;
-					}
-					else {
-						n = j;
-					}
-	
-					/**/
-					if (n >= srcWidth) {
-						n = n % srcWidth;
-					}
-					else if (n < 0) {
-						n = srcWidth - 1;
-					}
-					/**/
-	
-					final int k = contribX[i].numberOfContributors++;
-					contribX[i].contributions[k] = new PixelContribution();
-					contribX[i].contributions[k].pixel = n;
-					contribX[i].contributions[k].weight = weight;
-				}
-			}
-		}
-		
-		ImageContributions ic = new ImageContributions();
-		ic.xContributions = contribX;
-		ic.yContributions = contribY;
-		
-		return ic;
+	/**
+	 * Set the thread pool used to resample bands of rows in parallel (see
+	 * {@link ResamplingPlan#apply(FImage, FImage, ThreadPoolExecutor)}).
+	 * 
+	 * @param pool
+	 *            the thread pool; if null images are processed in the
+	 *            calling thread
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
 	}
 
 	/**
@@ -370,71 +154,7 @@ public class FixedResizeProcessor implements SinglebandImageProcessor<Float, FIm
 		if(in.width != this.srcX || in.height != srcY){
 			throw new RuntimeException("Incompatible image type used with FixedResizeProcessor, try the normal ResizeProcessor");
 		}
-		/* create intermediate column to hold horizontal dst column zoom */
-		
-		FImage dst = new FImage((int)this.newX,(int)this.newY);
-		final float maxValue = in.max();
-		for (int xx = 0; xx < dst.width; xx++) {
-			final PixelContributions contribX = this.ic.xContributions[xx];
-
-			/* Apply horiz filter to make dst column in tmp. */
-			for (int k = 0; k < in.height; k++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				// TODO: This line throws index out of bounds, if the image
-				// is smaller than filter.support()
-				final double pel = in.pixels[k][contribX.contributions[0].pixel];
-				for (int j = 0; j < contribX.numberOfContributors; j++) {
-					final double pel2 = j == 0 ? pel : in.pixels[k][contribX.contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
-					}
-					weight += pel2 * contribX.contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
-
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
 
-				work[k] = (float) weight;
-			}/* next row in temp column */
-
-			/*
-			 * The temp column has been built. Now stretch it vertically into
-			 * dst column.
-			 */
-			for (int i = 0; i < dst.height; i++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				final double pel = work[ic.yContributions[i].contributions[0].pixel];
-
-				for (int j = 0; j < ic.yContributions[i].numberOfContributors; j++) {
-					// TODO: This line throws index out of bounds, if the
-					// image is smaller than filter.support()
-					final double pel2 = j == 0 ? pel : work[ic.yContributions[i].contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
-					}
-					weight += pel2 * ic.yContributions[i].contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
-
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
-
-				dst.pixels[i][xx] = (float) weight;
-			} /* next dst row */
-		} /* next dst column */
-		
-		in.internalAssign(dst);
+		in.internalAssign(plan.apply(in, new FImage((int) newX, (int) newY), pool));
 	}
-
 }
@@ -0,0 +1,410 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A precomputed plan for resampling images of one size to another with a
+ * given {@link ResizeFilterFunction}. The plan holds, for each output column
+ * and row, the indices and weights of the contributing input pixels in flat
+ * primitive arrays, so that the weights are computed once rather than on
+ * every call. Plans are immutable and can be shared between threads; the
+ * {@link #get(int, int, int, int, ResizeFilterFunction)} method returns
+ * cached plans for recently used combinations of sizes and filter.
+ * <p>
+ * Applying a plan produces exactly the same result as
+ * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)}, but
+ * works through the image in row order (a horizontal pass into an
+ * intermediate image followed by a vertical pass), and can optionally split
+ * both passes into bands of rows that are processed in parallel.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ResamplingPlan {
+	private static final int CACHE_SIZE = 32;
+
+	private static final Map<Key, ResamplingPlan> CACHE = new LinkedHashMap<Key, ResamplingPlan>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, ResamplingPlan> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private static class Key {
+		final int srcWidth;
+		final int srcHeight;
+		final int dstWidth;
+		final int dstHeight;
+		final ResizeFilterFunction filter;
+
+		Key(int srcWidth, int srcHeight, int dstWidth, int dstHeight, ResizeFilterFunction filter) {
+			this.srcWidth = srcWidth;
+			this.srcHeight = srcHeight;
+			this.dstWidth = dstWidth;
+			this.dstHeight = dstHeight;
+			this.filter = filter;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key k = (Key) obj;
+			return srcWidth == k.srcWidth && srcHeight == k.srcHeight && dstWidth == k.dstWidth
+					&& dstHeight == k.dstHeight && filter.equals(k.filter);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = srcWidth;
+			hash = 31 * hash + srcHeight;
+			hash = 31 * hash + dstWidth;
+			hash = 31 * hash + dstHeight;
+			return 31 * hash + filter.hashCode();
+		}
+	}
+
+	/**
+	 * The contributions to each output pixel along one axis. The contributors
+	 * of output pixel <code>i</code> are at positions <code>offsets[i]</code>
+	 * (inclusive) to <code>offsets[i + 1]</code> (exclusive) of the
+	 * <code>pixels</code> and <code>weights</code> arrays.
+	 */
+	static class Axis {
+		final int[] offsets;
+		final int[] pixels;
+		final double[] weights;
+
+		/**
+		 * Compute the contributions. The horizontal axis of
+		 * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)}
+		 * spans the filter support exactly, whereas the vertical axis always
+		 * uses a fixed number of taps; the <code>fixedTaps</code> flag selects
+		 * between these.
+		 */
+		Axis(int srcSize, int dstSize, ResizeFilterFunction filterf, boolean fixedTaps) {
+			final double scale = (double) dstSize / (double) srcSize;
+			final double fwidth = filterf.getSupport();
+			final boolean shrink = scale < 1.0;
+
+			double width = fwidth;
+			double fscale = 1.0;
+			if (shrink) {
+				width = fwidth / scale;
+				fscale = 1.0 / scale;
+
+				if (width <= .5) {
+					// Reduce to point sampling.
+					width = .5 + 1.0e-6;
+					fscale = 1.0;
+				}
+			}
+
+			final TIntArrayList pix = new TIntArrayList();
+			final TDoubleArrayList wts = new TDoubleArrayList();
+			offsets = new int[dstSize + 1];
+
+			for (int i = 0; i < dstSize; i++) {
+				offsets[i] = pix.size();
+
+				final double center = i / scale;
+				final int left = (int) Math.ceil(center - width);
+				final int right = fixedTaps ? left + (int) (width * 2.0 + 1) - 1 : (int) Math.floor(center + width);
+
+				double density = 0.0;
+				for (int j = left; j <= right; j++) {
+					double weight = center - j;
+					weight = shrink ? filterf.filter(weight / fscale) / fscale : filterf.filter(weight);
+
+					pix.add(reflect(j, srcSize));
+					wts.add(weight);
+					density += weight;
+				}
+
+				if (shrink && (density != 0.0) && (density != 1.0)) {
+					// Normalize.
+					density = 1.0 / density;
+					for (int k = offsets[i]; k < wts.size(); k++)
+						wts.setQuick(k, wts.getQuick(k) * density);
+				}
+			}
+			offsets[dstSize] = pix.size();
+
+			pixels = pix.toArray();
+			weights = wts.toArray();
+		}
+
+		private static int reflect(int j, int size) {
+			int n;
+			if (j < 0)
+				n = -j;
+			else if (j >= size)
+				n = (size - j) + size - 1;
+			else
+				n = j;
+
+			if (n >= size)
+				n = n % size;
+			else if (n < 0)
+				n = size - 1;
+
+			return n;
+		}
+	}
+
+	private final int srcWidth;
+	private final int srcHeight;
+	private final int dstWidth;
+	private final int dstHeight;
+	private final Axis x;
+	private final Axis y;
+
+	/**
+	 * Construct a new plan. Consider using
+	 * {@link #get(int, int, int, int, ResizeFilterFunction)} instead to make
+	 * use of cached plans.
+	 * 
+	 * @param srcWidth
+	 *            the width of the input images
+	 * @param srcHeight
+	 *            the height of the input images
+	 * @param dstWidth
+	 *            the width of the output images
+	 * @param dstHeight
+	 *            the height of the output images
+	 * @param filterf
+	 *            the filter function
+	 */
+	public ResamplingPlan(int srcWidth, int srcHeight, int dstWidth, int dstHeight, ResizeFilterFunction filterf) {
+		this.srcWidth = srcWidth;
+		this.srcHeight = srcHeight;
+		this.dstWidth = dstWidth;
+		this.dstHeight = dstHeight;
+		this.x = new Axis(srcWidth, dstWidth, filterf, false);
+		this.y = new Axis(srcHeight, dstHeight, filterf, true);
+	}
+
+	/**
+	 * Get a plan for the given sizes and filter function, reusing a cached
+	 * plan if one is available. Filter functions are compared with
+	 * {@link Object#equals(Object)}, so using the shared filter instances
+	 * (e.g. {@link ResizeProcessor#DEFAULT_FILTER}) maximises reuse.
+	 * 
+	 * @param srcWidth
+	 *            the width of the input images
+	 * @param srcHeight
+	 *            the height of the input images
+	 * @param dstWidth
+	 *            the width of the output images
+	 * @param dstHeight
+	 *            the height of the output images
+	 * @param filterf
+	 *            the filter function
+	 * @return the plan
+	 */
+	public static ResamplingPlan get(int srcWidth, int srcHeight, int dstWidth, int dstHeight,
+			ResizeFilterFunction filterf)
+	{
+		final Key key = new Key(srcWidth, srcHeight, dstWidth, dstHeight, filterf);
+
+		synchronized (CACHE) {
+			final ResamplingPlan plan = CACHE.get(key);
+			if (plan != null)
+				return plan;
+		}
+
+		final ResamplingPlan plan = new ResamplingPlan(srcWidth, srcHeight, dstWidth, dstHeight, filterf);
+		synchronized (CACHE) {
+			CACHE.put(key, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * @return the width of the input images
+	 */
+	public int getSourceWidth() {
+		return srcWidth;
+	}
+
+	/**
+	 * @return the height of the input images
+	 */
+	public int getSourceHeight() {
+		return srcHeight;
+	}
+
+	/**
+	 * @return the width of the output images
+	 */
+	public int getDestinationWidth() {
+		return dstWidth;
+	}
+
+	/**
+	 * @return the height of the output images
+	 */
+	public int getDestinationHeight() {
+		return dstHeight;
+	}
+
+	/**
+	 * Resample the input image into a new image.
+	 * 
+	 * @param in
+	 *            the input image
+	 * @return the resampled image
+	 */
+	public FImage apply(FImage in) {
+		return apply(in, new FImage(dstWidth, dstHeight), null);
+	}
+
+	/**
+	 * Resample the input image into the output image, optionally processing
+	 * bands of rows in parallel with the given thread pool (see
+	 * {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)}).
+	 * 
+	 * @param in
+	 *            the input image
+	 * @param dst
+	 *            the output image
+	 * @param pool
+	 *            the thread pool; if null the image will be processed in the
+	 *            calling thread
+	 * @return the output image
+	 * @throws IllegalArgumentException
+	 *             if the images are not the sizes this plan was created for
+	 */
+	public FImage apply(final FImage in, final FImage dst, ThreadPoolExecutor pool) {
+		if (in.width != srcWidth || in.height != srcHeight || dst.width != dstWidth || dst.height != dstHeight)
+			throw new IllegalArgumentException("Image sizes do not match the resampling plan");
+
+		final float maxValue = in.max();
+		final float[][] work = new float[srcHeight][dstWidth];
+
+		Parallel.forRange(0, srcHeight, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int k = range.start; k < range.stop; k++)
+					resampleRow(in.pixels[k], work[k], maxValue);
+			}
+		}, pool);
+
+		Parallel.forRange(0, dstHeight, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				resampleColumns(work, dst, range.start, range.stop, maxValue);
+			}
+		}, pool);
+
+		return dst;
+	}
+
+	private void resampleRow(float[] row, float[] out, float maxValue) {
+		final int[] offsets = x.offsets;
+		final int[] pixels = x.pixels;
+		final double[] weights = x.weights;
+
+		for (int xx = 0; xx < dstWidth; xx++) {
+			final int start = offsets[xx];
+			final int end = offsets[xx + 1];
+
+			double weight = 0.0;
+			boolean bPelDelta = false;
+			final double pel = row[pixels[start]];
+			for (int j = start; j < end; j++) {
+				final double pel2 = row[pixels[j]];
+				if (pel2 != pel)
+					bPelDelta = true;
+				weight += pel2 * weights[j];
+			}
+
+			out[xx] = clamp(bPelDelta ? Math.round(weight * 255) / 255f : pel, maxValue);
+		}
+	}
+
+	private void resampleColumns(float[][] work, FImage dst, int startRow, int stopRow, float maxValue) {
+		final int[] offsets = y.offsets;
+		final int[] pixels = y.pixels;
+		final double[] weights = y.weights;
+
+		final double[] acc = new double[dstWidth];
+		final boolean[] bPelDelta = new boolean[dstWidth];
+
+		for (int i = startRow; i < stopRow; i++) {
+			final int start = offsets[i];
+			final int end = offsets[i + 1];
+			final float[] pel = work[pixels[start]];
+
+			for (int xx = 0; xx < dstWidth; xx++) {
+				acc[xx] = 0;
+				bPelDelta[xx] = false;
+			}
+
+			for (int j = start; j < end; j++) {
+				final float[] row = work[pixels[j]];
+				final double w = weights[j];
+
+				for (int xx = 0; xx < dstWidth; xx++) {
+					final double pel2 = row[xx];
+					if (pel2 != pel[xx])
+						bPelDelta[xx] = true;
+					acc[xx] += pel2 * w;
+				}
+			}
+
+			final float[] out = dst.pixels[i];
+			for (int xx = 0; xx < dstWidth; xx++)
+				out[xx] = clamp(bPelDelta[xx] ? Math.round(acc[xx] * 255) / 255f : pel[xx], maxValue);
+		}
+	}
+
+	private static float clamp(double weight, float maxValue) {
+		if (weight < 0)
+			return 0;
+		if (weight > maxValue)
+			return maxValue;
+		return (float) weight;
+	}
+}
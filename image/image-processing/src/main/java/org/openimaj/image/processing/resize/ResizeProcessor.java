@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.processing.resize;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
@@ -114,6 +116,9 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	/** The resize filter function to use */
 	private ResizeFilterFunction filterFunction;
 
+	/** The thread pool for processing bands of rows; null to disable */
+	private ThreadPoolExecutor pool;
+
 	/**
 	 * The default {@link TriangleFilter} (bilinear-interpolation filter) used
 	 * by instances of {@link ResizeProcessor}, unless otherwise specified.
@@ -226,6 +231,7 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 		this.mode = area ? Mode.MAX_AREA : Mode.MAX;
 		this.newX = maxSizeArea;
 		this.newY = maxSizeArea;
+		this.filterFunction = DEFAULT_FILTER;
 	}
 
 	/**
@@ -293,24 +299,24 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 			internalHalfSize(image);
 			break;
 		case FIT:
-			zoomInplace(image, (int) newX, (int) newY, filterFunction);
+			zoomInplace(image, (int) newX, (int) newY, filterFunction, pool);
 			break;
 		case SCALE:
 			newX = image.width * amount;
 			newY = image.height * amount;
 		case ASPECT_RATIO:
-			resample(image, (int) newX, (int) newY, true, filterFunction);
+			resample(image, (int) newX, (int) newY, true, filterFunction, pool);
 			break;
 		case MAX:
-			resizeMax(image, (int) newX, filterFunction);
+			resizeMax(image, (int) newX, filterFunction, pool);
 			break;
 		case MAX_AREA:
-			resizeMaxArea(image, (int) newX, filterFunction);
+			resizeMaxArea(image, (int) newX, filterFunction, pool);
 			break;
 		case NONE:
 			return;
 		default:
-			zoomInplace(image, (int) newX, (int) newY, this.filterFunction);
+			zoomInplace(image, (int) newX, (int) newY, this.filterFunction, pool);
 		}
 	}
 
@@ -324,6 +330,18 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 		this.filterFunction = filterFunction;
 	}
 
+	/**
+	 * Set the thread pool used to resample bands of rows in parallel (see
+	 * {@link ResamplingPlan#apply(FImage, FImage, ThreadPoolExecutor)}).
+	 *
+	 * @param pool
+	 *            the thread pool; if null images are processed in the
+	 *            calling thread
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
 	/**
 	 * Resize an image such that its biggest size is at most as big as the given
 	 * size. Images whose sides are smaller than the given size are untouched.
@@ -337,6 +355,10 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 * @return the input image, appropriately resized.
 	 */
 	public static FImage resizeMax(FImage image, int maxDim, ResizeFilterFunction filterf) {
+		return resizeMax(image, maxDim, filterf, null);
+	}
+
+	private static FImage resizeMax(FImage image, int maxDim, ResizeFilterFunction filterf, ThreadPoolExecutor pool) {
 		final int width = image.width;
 		final int height = image.height;
 
@@ -353,7 +375,7 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 			newHeight = (int) (height * resizeRatio);
 		}
 
-		zoomInplace(image, newWidth, newHeight, filterf);
+		zoomInplace(image, newWidth, newHeight, filterf, pool);
 
 		return image;
 	}
@@ -371,6 +393,12 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 * @return the input image, appropriately resized.
 	 */
 	public static FImage resizeMaxArea(FImage image, int maxArea, ResizeFilterFunction filterf) {
+		return resizeMaxArea(image, maxArea, filterf, null);
+	}
+
+	private static FImage resizeMaxArea(FImage image, int maxArea, ResizeFilterFunction filterf,
+			ThreadPoolExecutor pool)
+	{
 		final int width = image.width;
 		final int height = image.height;
 		final int area = width * height;
@@ -382,7 +410,7 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 			final int newWidth = (int) Math.sqrt(maxArea * whRatio);
 			final int newHeight = (int) (newWidth / whRatio);
 
-			zoomInplace(image, newWidth, newHeight, filterf);
+			zoomInplace(image, newWidth, newHeight, filterf, pool);
 
 			return image;
 		}
@@ -597,6 +625,12 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 * @return the input image, resized appropriately
 	 */
 	public static FImage resample(FImage in, int newX, int newY, boolean aspect, ResizeFilterFunction filterf)
+	{
+		return resample(in, newX, newY, aspect, filterf, null);
+	}
+
+	private static FImage resample(FImage in, int newX, int newY, boolean aspect, ResizeFilterFunction filterf,
+			ThreadPoolExecutor pool)
 	{
 		// Work out the size of the resampled image
 		// if the aspect ratio is set to true
@@ -609,7 +643,7 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 				ny = (int) Math.round((in.height * nx) / (double) in.width);
 		}
 
-		zoomInplace(in, nx, ny, filterf);
+		zoomInplace(in, nx, ny, filterf, pool);
 		return in;
 	}
 
@@ -799,8 +833,14 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 * @return the input image, resized appropriately
 	 */
 	public static FImage zoomInplace(FImage in, int newX, int newY, ResizeFilterFunction filterf) {
+		return zoomInplace(in, newX, newY, filterf, null);
+	}
+
+	private static FImage zoomInplace(FImage in, int newX, int newY, ResizeFilterFunction filterf,
+			ThreadPoolExecutor pool)
+	{
 		final FImage dst = new FImage(newX, newY);
-		zoom(in, dst, filterf);
+		ResamplingPlan.get(in.width, in.height, newX, newY, filterf).apply(in, dst, pool);
 		in.internalAssign(dst);
 		return in;
 	}
@@ -818,189 +858,7 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 * @return the destination image
 	 */
 	public static FImage zoom(FImage in, FImage dst, ResizeFilterFunction filterf) {
-		final int dstWidth = dst.getWidth();
-		final int dstHeight = dst.getHeight();
-
-		final int srcWidth = in.getWidth();
-		final int srcHeight = in.getHeight();
-
-		final double xscale = (double) dstWidth / (double) srcWidth;
-		final double yscale = (double) dstHeight / (double) srcHeight;
-
-		/* create intermediate column to hold horizontal dst column zoom */
-		final float[] work = new float[in.height];
-
-		final PixelContributions[] contribY = new PixelContributions[dstHeight];
-		for (int i = 0; i < contribY.length; i++) {
-			contribY[i] = new PixelContributions();
-		}
-
-		final float maxValue = in.max();
-
-		// TODO: What to do when fwidth > srcHeight or dstHeight
-		final double fwidth = filterf.getSupport();
-		if (yscale < 1.0) {
-			double width = fwidth / yscale;
-			double fscale = 1.0 / yscale;
-
-			if (width <= .5) {
-				// Reduce to point sampling.
-				width = .5 + 1.0e-6;
-				fscale = 1.0;
-			}
-
-			for (int i = 0; i < dstHeight; i++) {
-				contribY[i].contributions = new PixelContribution[(int) (width * 2.0 + 1)];
-				contribY[i].numberOfContributors = 0;
-
-				final double center = i / yscale;
-				final int left = (int) Math.ceil(center - width);
-				// final int right = (int) Math.floor(center + width);
-				final int right = left + contribY[i].contributions.length - 1;
-
-				double density = 0.0;
-				for (int j = left; j <= right; j++) {
-					double weight = center - j;
-					weight = filterf.filter(weight / fscale) / fscale;
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcHeight) {
-						n = (srcHeight - j) + srcHeight - 1;
-					}
-					else {
-						n = j;
-					}
-
-					/**/
-					if (n >= srcHeight) {
-						n = n % srcHeight;
-					}
-					else if (n < 0) {
-						n = srcHeight - 1;
-					}
-					/**/
-
-					final int k = contribY[i].numberOfContributors++;
-					contribY[i].contributions[k] = new PixelContribution();
-					contribY[i].contributions[k].pixel = n;
-					contribY[i].contributions[k].weight = weight;
-
-					density += weight;
-				}
-
-				if ((density != 0.0) && (density != 1.0)) {
-					// Normalize.
-					density = 1.0 / density;
-					for (int k = 0; k < contribY[i].numberOfContributors; k++) {
-						contribY[i].contributions[k].weight *= density;
-					}
-				}
-			}
-		}
-		else {
-			for (int i = 0; i < dstHeight; ++i) {
-				contribY[i].contributions = new PixelContribution[(int) (fwidth * 2 + 1)];
-				contribY[i].numberOfContributors = 0;
-
-				final double center = i / yscale;
-				final double left = Math.ceil(center - fwidth);
-				// final double right = Math.floor(center + fwidth);
-				final double right = left + contribY[i].contributions.length - 1;
-				for (int j = (int) left; j <= right; ++j) {
-					double weight = center - j;
-					weight = filterf.filter(weight);
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcHeight) {
-						n = (srcHeight - j) + srcHeight - 1;
-					}
-					else {
-						n = j;
-					}
-
-					/**/
-					if (n >= srcHeight) {
-						n = n % srcHeight;
-					}
-					else if (n < 0) {
-						n = srcHeight - 1;
-					}
-					/**/
-
-					final int k = contribY[i].numberOfContributors++;
-					contribY[i].contributions[k] = new PixelContribution();
-					contribY[i].contributions[k].pixel = n;
-					contribY[i].contributions[k].weight = weight;
-				}
-			}
-		}
-
-		for (int xx = 0; xx < dstWidth; xx++) {
-			final PixelContributions contribX = new PixelContributions();
-			calc_x_contrib(contribX, xscale, fwidth, dst.width, in.width, filterf, xx);
-
-			/* Apply horiz filter to make dst column in tmp. */
-			for (int k = 0; k < srcHeight; k++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				// TODO: This line throws index out of bounds, if the image
-				// is smaller than filter.support()
-				final double pel = in.pixels[k][contribX.contributions[0].pixel];
-				for (int j = 0; j < contribX.numberOfContributors; j++) {
-					final double pel2 = j == 0 ? pel : in.pixels[k][contribX.contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
-					}
-					weight += pel2 * contribX.contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
-
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
-
-				work[k] = (float) weight;
-			}/* next row in temp column */
-
-			/*
-			 * The temp column has been built. Now stretch it vertically into
-			 * dst column.
-			 */
-			for (int i = 0; i < dstHeight; i++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				final double pel = work[contribY[i].contributions[0].pixel];
-
-				for (int j = 0; j < contribY[i].numberOfContributors; j++) {
-					// TODO: This line throws index out of bounds, if the
-					// image is smaller than filter.support()
-					final double pel2 = j == 0 ? pel : work[contribY[i].contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
-					}
-					weight += pel2 * contribY[i].contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
-
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
-
-				dst.pixels[i][xx] = (float) weight;
-			} /* next dst row */
-		} /* next dst column */
-
-		return dst;
+		return ResamplingPlan.get(in.width, in.height, dst.width, dst.height, filterf).apply(in, dst, null);
 	}
 
 	/**
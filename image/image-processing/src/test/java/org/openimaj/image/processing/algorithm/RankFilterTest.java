@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.algorithm;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.math.util.FloatArrayStatsUtils;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for the {@link MedianFilter}, {@link MinFilter} and {@link MaxFilter}
+ * against naive implementations.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RankFilterTest {
+	private static final int MEDIAN = 0;
+	private static final int MIN = 1;
+	private static final int MAX = 2;
+
+	private static FImage randomImage(int width, int height) {
+		final Random rng = new Random(42);
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+		return image;
+	}
+
+	private static Set<Pixel> disc(int radius) {
+		final Set<Pixel> support = new HashSet<Pixel>();
+		for (int y = -radius; y <= radius; y++)
+			for (int x = -radius; x <= radius; x++)
+				if (x * x + y * y <= radius * radius)
+					support.add(new Pixel(x, y));
+		return support;
+	}
+
+	private static List<Set<Pixel>> supports() {
+		final List<Set<Pixel>> supports = new ArrayList<Set<Pixel>>();
+		supports.add(FilterSupport.BLOCK_3x3);
+		supports.add(FilterSupport.CROSS_3x3);
+		supports.add(FilterSupport.createBlockSupport(7, 7));
+		supports.add(FilterSupport.createBlockSupport(5, 9));
+		supports.add(FilterSupport.createBlockSupport(4, 6));
+		supports.add(disc(4));
+		return supports;
+	}
+
+	/**
+	 * Naive reference implementation that visits every support pixel
+	 */
+	private static FImage reference(FImage image, Set<Pixel> support, int type) {
+		final FImage out = new FImage(image.width, image.height);
+		final float[] tmp = new float[support.size()];
+
+		// the non-block max and median filters ignore the last row and column
+		final int xlimit = type == MIN ? image.width : image.width - 1;
+		final int ylimit = type == MIN ? image.height : image.height - 1;
+
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				int count = 0;
+				for (final Pixel p : support) {
+					final int xx = x + p.x;
+					final int yy = y + p.y;
+					if (xx >= 0 && xx < xlimit && yy >= 0 && yy < ylimit)
+						tmp[count++] = image.pixels[yy][xx];
+				}
+
+				if (type == MEDIAN) {
+					out.pixels[y][x] = FloatArrayStatsUtils.median(tmp, 0, count);
+				} else if (type == MIN) {
+					float v = Float.MAX_VALUE;
+					for (int i = 0; i < count; i++)
+						v = Math.min(v, tmp[i]);
+					out.pixels[y][x] = v;
+				} else {
+					float v = -Float.MAX_VALUE;
+					for (int i = 0; i < count; i++)
+						v = Math.max(v, tmp[i]);
+					out.pixels[y][x] = v;
+				}
+			}
+		}
+
+		return out;
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * Test the median filter
+	 */
+	@Test
+	public void testMedian() {
+		final FImage image = randomImage(41, 33);
+
+		for (final Set<Pixel> support : supports()) {
+			final FImage expected = reference(image, support, MEDIAN);
+			assertImageEquals(expected, image.process(new MedianFilter(support)));
+			assertImageEquals(expected, image.process(new MedianFilter(support, GlobalExecutorPool.getPool())));
+		}
+	}
+
+	/**
+	 * Test the median filter on an image with many repeated values
+	 */
+	@Test
+	public void testMedianWithTies() {
+		final FImage image = randomImage(37, 29);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = Math.round(image.pixels[y][x] * 4) / 4f;
+
+		for (final Set<Pixel> support : supports()) {
+			assertImageEquals(reference(image, support, MEDIAN), image.process(new MedianFilter(support)));
+		}
+	}
+
+	/**
+	 * Test the min filter
+	 */
+	@Test
+	public void testMin() {
+		final FImage image = randomImage(41, 33);
+
+		for (final Set<Pixel> support : supports()) {
+			final FImage expected = reference(image, support, MIN);
+			assertImageEquals(expected, image.process(new MinFilter(support)));
+			assertImageEquals(expected, image.process(new MinFilter(support, GlobalExecutorPool.getPool())));
+		}
+	}
+
+	/**
+	 * Test the max filter
+	 */
+	@Test
+	public void testMax() {
+		final FImage image = randomImage(41, 33);
+
+		for (final Set<Pixel> support : supports()) {
+			final FImage expected;
+			if (FilterSupport.isBlockSupport(support)) {
+				// block supports are not subject to the border restriction
+				expected = reference(image.multiply(-1f), support, MIN).multiplyInplace(-1f);
+			} else {
+				expected = reference(image, support, MAX);
+			}
+
+			assertImageEquals(expected, image.process(new MaxFilter(support)));
+			assertImageEquals(expected, image.process(new MaxFilter(support, GlobalExecutorPool.getPool())));
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.morphology;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.Pixel;
+
+/**
+ * Tests for {@link PackedBinaryImage}, checking that the packed operators
+ * agree with the {@link ConnectedComponent} and {@link FImage} based
+ * operators.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedBinaryImageTest {
+	private static final StructuringElement[] SYMMETRIC = {
+			StructuringElement.BOX, StructuringElement.CROSS, StructuringElement.disk(3), StructuringElement.disk(7)
+	};
+
+	private static FImage randomMask(int width, int height, long seed) {
+		final Random rng = new Random(seed);
+		final FImage mask = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				mask.pixels[y][x] = rng.nextFloat() < 0.7 ? 1 : 0;
+		return mask;
+	}
+
+	private static ConnectedComponent randomComponent(long seed) {
+		final ConnectedComponent cc = new ConnectedComponent(randomMask(37, 29, seed), 0.5f);
+		cc.translate(-5, 11);
+		return cc;
+	}
+
+	private static ConnectedComponent copy(ConnectedComponent cc) {
+		return new ConnectedComponent(new HashSet<Pixel>(cc.getPixels()));
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * Test conversions to and from masks and components
+	 */
+	@Test
+	public void testConversion() {
+		final FImage mask = randomMask(131, 17, 1);
+		assertImageEquals(mask, new PackedBinaryImage(mask).toFImage());
+
+		final ConnectedComponent cc = randomComponent(2);
+		final PackedBinaryImage packed = new PackedBinaryImage(cc, 3);
+		assertEquals(cc.getPixels().size(), packed.countPixels());
+		assertEquals(cc.getPixels(), packed.toConnectedComponent().getPixels());
+	}
+
+	/**
+	 * Test shifting across word boundaries
+	 */
+	@Test
+	public void testShift() {
+		final PackedBinaryImage img = new PackedBinaryImage(randomMask(200, 9, 3));
+
+		for (final int dx : new int[] { 0, 1, -1, 63, -63, 64, -64, 65, -65, 130, -130, 250 }) {
+			for (final int dy : new int[] { 0, 2, -3 }) {
+				final PackedBinaryImage shifted = img.shift(dx, dy);
+
+				for (int y = 0; y < img.height; y++)
+					for (int x = 0; x < img.width; x++)
+						assertEquals(img.get(x + dx, y + dy), shifted.get(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Test dilation against {@link Dilate}
+	 */
+	@Test
+	public void testDilate() {
+		for (final StructuringElement se : SYMMETRIC) {
+			final FImage mask = randomMask(150, 40, 4);
+			assertImageEquals(mask.process(new Dilate(se), true), new PackedBinaryImage(mask).dilate(se).toFImage());
+
+			final ConnectedComponent cc = randomComponent(5);
+			final ConnectedComponent expected = copy(cc);
+			new Dilate(se).process(expected);
+			assertEquals(expected.getPixels(), new PackedBinaryImage(cc, 8).dilate(se).toConnectedComponent().getPixels());
+		}
+
+		final ConnectedComponent cc = randomComponent(6);
+		final ConnectedComponent expected = copy(cc);
+		new Dilate(StructuringElement.HPIT).process(expected);
+		assertEquals(expected.getPixels(),
+				new PackedBinaryImage(cc, 2).dilate(StructuringElement.HPIT).toConnectedComponent().getPixels());
+	}
+
+	/**
+	 * Test erosion against {@link Erode}
+	 */
+	@Test
+	public void testErode() {
+		for (final StructuringElement se : SYMMETRIC) {
+			final FImage mask = randomMask(150, 40, 7);
+			assertImageEquals(mask.process(new Erode(se), true), new PackedBinaryImage(mask).erode(se).toFImage());
+
+			final ConnectedComponent cc = randomComponent(8);
+			final ConnectedComponent expected = copy(cc);
+			new Erode(se).process(expected);
+			assertEquals(expected.getPixels(), new PackedBinaryImage(cc, 0).erode(se).toConnectedComponent().getPixels());
+		}
+
+		for (final StructuringElement se : GolayAlphabet.L) {
+			final ConnectedComponent cc = randomComponent(9);
+			final ConnectedComponent expected = copy(cc);
+			new Erode(se).process(expected);
+			assertEquals(expected.getPixels(), new PackedBinaryImage(cc, 2).erode(se).toConnectedComponent().getPixels());
+		}
+	}
+
+	/**
+	 * Test thinning and skeletonisation against {@link Thin} and
+	 * {@link Skeleton}
+	 */
+	@Test
+	public void testThinAndSkeleton() {
+		final ConnectedComponent cc = randomComponent(10);
+
+		final ConnectedComponent thinned = copy(cc);
+		new Thin(GolayAlphabet.L).process(thinned);
+		assertEquals(thinned.getPixels(),
+				new PackedBinaryImage(cc, 2).thin(GolayAlphabet.L).toConnectedComponent().getPixels());
+
+		final ConnectedComponent skeleton = copy(cc);
+		new Skeleton().process(skeleton);
+		assertEquals(skeleton.getPixels(), new PackedBinaryImage(cc, 2).skeleton().toConnectedComponent().getPixels());
+	}
+}
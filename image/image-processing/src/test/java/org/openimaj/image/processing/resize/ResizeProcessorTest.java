@@ -37,6 +37,7 @@ import org.openimaj.image.FImage;
 import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.processing.resize.filters.BSplineFilter;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 /**
  * Tests for the {@link ResizeProcessor}
@@ -142,4 +143,38 @@ public class ResizeProcessorTest {
 		assertTrue(3700000 > image.height * image.width);
 		assertEquals(2687.0 / 3356.0, (double) image.width / (double) image.height, 0.001);
 	}
+
+	/**
+	 * Test that parallel and fixed-size resizing give the same result as the
+	 * standard resize
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testParallelAndFixed() throws Exception {
+		final FImage image = ImageUtilities.readF(ResizeProcessorTest.class
+				.getResourceAsStream("/org/openimaj/image/data/sinaface.jpg"));
+
+		for (final int[] size : new int[][] { { 80, 60 }, { 500, 250 }, { 37, 91 } }) {
+			final FImage expected = image.process(new ResizeProcessor(size[0], size[1]));
+
+			final ResizeProcessor rp = new ResizeProcessor(size[0], size[1]);
+			rp.setThreadPool(GlobalExecutorPool.getPool());
+			final FImage parallel = image.process(rp);
+
+			final FixedResizeProcessor frp = new FixedResizeProcessor(image, size[0], size[1]);
+			final FImage fixed = image.process(frp);
+
+			assertEquals(expected.width, parallel.width);
+			assertEquals(expected.height, parallel.height);
+			assertEquals(expected.width, fixed.width);
+			assertEquals(expected.height, fixed.height);
+			for (int y = 0; y < expected.height; y++) {
+				for (int x = 0; x < expected.width; x++) {
+					assertEquals(expected.pixels[y][x], parallel.pixels[y][x], 0f);
+					assertEquals(expected.pixels[y][x], fixed.pixels[y][x], 0f);
+				}
+			}
+		}
+	}
 }
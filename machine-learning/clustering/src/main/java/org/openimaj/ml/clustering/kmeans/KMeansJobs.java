@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.kmeans;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.openimaj.util.function.Operation;
+
+/**
+ * Helpers for running the per-block jobs of the K-Means implementations on the
+ * thread pool of a {@link KMeansConfiguration}. Failures of a job are rethrown
+ * on the calling thread as the {@link IOException} or unchecked exception that
+ * caused them.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class KMeansJobs {
+	private KMeansJobs() {
+	}
+
+	/**
+	 * Run all the jobs and return their results in the order of the jobs.
+	 * 
+	 * @param service
+	 *            the pool to run the jobs on
+	 * @param jobs
+	 *            the jobs
+	 * @return the results of the jobs
+	 * @throws IOException
+	 *             if a job failed, or the caller was interrupted
+	 */
+	static <V> List<V> invokeAll(ExecutorService service, List<? extends Callable<V>> jobs) throws IOException {
+		final List<V> results = new ArrayList<V>(jobs.size());
+
+		try {
+			for (final Future<V> f : service.invokeAll(jobs))
+				results.add(f.get());
+		} catch (final InterruptedException e) {
+			throw new IOException(e);
+		} catch (final ExecutionException e) {
+			throw rethrow(e);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Run all the jobs, passing each result to the given reduction on the
+	 * calling thread as soon as its job completes. Only the results that are
+	 * waiting to be reduced are held in memory, rather than the results of
+	 * every job. The order in which the results are reduced is undefined.
+	 * 
+	 * @param service
+	 *            the pool to run the jobs on
+	 * @param jobs
+	 *            the jobs
+	 * @param reduce
+	 *            the operation to apply to each result
+	 * @throws IOException
+	 *             if a job failed, or the caller was interrupted
+	 */
+	static <V> void forEachCompleted(ExecutorService service, List<? extends Callable<V>> jobs, Operation<V> reduce)
+			throws IOException
+	{
+		final CompletionService<V> completion = new ExecutorCompletionService<V>(service);
+		final List<Future<V>> futures = new ArrayList<Future<V>>(jobs.size());
+
+		try {
+			for (final Callable<V> job : jobs)
+				futures.add(completion.submit(job));
+
+			for (int i = 0; i < futures.size(); i++)
+				reduce.perform(completion.take().get());
+		} catch (final InterruptedException e) {
+			throw new IOException(e);
+		} catch (final ExecutionException e) {
+			throw rethrow(e);
+		} finally {
+			for (final Future<V> f : futures)
+				f.cancel(true);
+		}
+	}
+
+	private static IOException rethrow(ExecutionException e) throws IOException {
+		final Throwable cause = e.getCause();
+
+		if (cause instanceof IOException)
+			throw (IOException) cause;
+		if (cause instanceof RuntimeException)
+			throw (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		return new IOException(cause);
+	}
+}
@@ -0,0 +1,604 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.gmm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.commons.math.util.MathUtils;
+import org.openimaj.data.DataSource;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+import org.openimaj.math.statistics.distribution.SphericalMultivariateGaussian;
+import org.openimaj.ml.clustering.FloatCentroidsResult;
+import org.openimaj.ml.clustering.kmeans.FloatKMeans;
+import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.Matrix;
+
+/**
+ * Gaussian mixture model learning using the EM algorithm over a
+ * {@link DataSource} that is read in blocks, rather than loaded into memory.
+ * Rather than building the full responsibility matrix like
+ * {@link GaussianMixtureModelEM}, each E-step accumulates the sufficient
+ * statistics of the model (the total responsibility, and the
+ * responsibility-weighted sums of the data and the squared data, of each
+ * component) directly, so the memory required is independent of the number of
+ * samples. Blocks can be spread over a thread pool, in which case each thread
+ * accumulates its own statistics which are reduced at the end of the pass.
+ * The reads from the {@link DataSource} are serialised by synchronising on the
+ * source, so it need not be thread-safe; only the accumulation of the
+ * statistics runs concurrently.
+ * <p>
+ * For very large datasets, a mini-batch size can be set, in which case each
+ * iteration draws a random batch of that size from the data and blends its
+ * statistics into a running estimate with a decaying step size (stepwise EM,
+ * see P. Liang and D. Klein, "Online EM for Unsupervised Models", NAACL 2009).
+ * In this mode the convergence threshold is not used and the given number of
+ * iterations is always performed.
+ * <p>
+ * Only the {@link CovarianceType#Diagonal} and {@link CovarianceType#Spherical}
+ * covariance forms are supported, as full covariances need a quadratic number
+ * of statistics per component. The initial means are found by running K-Means
+ * on a random sample of the data.
+ * <p>
+ * The time taken and the log-likelihood of each iteration are recorded, and
+ * can be retrieved with {@link #getIterationStatistics()} once
+ * {@link #estimate(DataSource)} has returned.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingGaussianMixtureModelEM {
+	/**
+	 * Statistics about a single iteration of the EM algorithm.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class IterationStatistics {
+		/**
+		 * The iteration number (starting at 0)
+		 */
+		public final int iteration;
+
+		/**
+		 * The number of samples used by the iteration
+		 */
+		public final int nSamples;
+
+		/**
+		 * The total log-likelihood of the samples under the model at the start
+		 * of the iteration
+		 */
+		public final double logLikelihood;
+
+		/**
+		 * The time taken by the E-step in milliseconds
+		 */
+		public final long expectationTime;
+
+		/**
+		 * The time taken by the M-step in milliseconds
+		 */
+		public final long maximisationTime;
+
+		IterationStatistics(int iteration, int nSamples, double logLikelihood, long expectationTime,
+				long maximisationTime)
+		{
+			this.iteration = iteration;
+			this.nSamples = nSamples;
+			this.logLikelihood = logLikelihood;
+			this.expectationTime = expectationTime;
+			this.maximisationTime = maximisationTime;
+		}
+
+		/**
+		 * @return the average log-likelihood of each sample
+		 */
+		public double getAverageLogLikelihood() {
+			return logLikelihood / nSamples;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("iteration %d: avg log-likelihood %.4f (E-step %dms, M-step %dms)", iteration,
+					getAverageLogLikelihood(), expectationTime, maximisationTime);
+		}
+	}
+
+	/**
+	 * The sufficient statistics of the model
+	 */
+	private static class SufficientStatistics {
+		final double[] n;
+		final double[][] sx;
+		final double[][] sxx;
+		double logLikelihood;
+		int count;
+
+		SufficientStatistics(int K, int D) {
+			n = new double[K];
+			sx = new double[K][D];
+			sxx = new double[K][D];
+		}
+
+		void add(SufficientStatistics other) {
+			for (int k = 0; k < n.length; k++) {
+				n[k] += other.n[k];
+
+				final double[] sxk = sx[k];
+				final double[] sxxk = sxx[k];
+				final double[] osxk = other.sx[k];
+				final double[] osxxk = other.sxx[k];
+				for (int j = 0; j < sxk.length; j++) {
+					sxk[j] += osxk[j];
+					sxxk[j] += osxxk[j];
+				}
+			}
+			logLikelihood += other.logLikelihood;
+			count += other.count;
+		}
+
+		/**
+		 * this = (1 - eta) * this + eta * other / other.count
+		 */
+		void blend(SufficientStatistics other, double eta) {
+			final double a = 1 - eta;
+			final double b = eta / other.count;
+
+			for (int k = 0; k < n.length; k++) {
+				n[k] = a * n[k] + b * other.n[k];
+
+				final double[] sxk = sx[k];
+				final double[] sxxk = sxx[k];
+				final double[] osxk = other.sx[k];
+				final double[] osxxk = other.sxx[k];
+				for (int j = 0; j < sxk.length; j++) {
+					sxk[j] = a * sxk[j] + b * osxk[j];
+					sxxk[j] = a * sxxk[j] + b * osxxk[j];
+				}
+			}
+		}
+	}
+
+	private static final double DEFAULT_THRESH = 1e-2;
+	private static final double DEFAULT_MIN_COVAR = 1e-3;
+	private static final int DEFAULT_NITERS = 100;
+	private static final int DEFAULT_BLOCK_SIZE = 10000;
+	private static final int DEFAULT_INIT_SAMPLE_SIZE = 100;
+	private static final double STEP_DECAY = 0.6;
+
+	private CovarianceType ctype;
+	private int nComponents;
+	private double thresh;
+	private double minCovar;
+	private int nIters;
+	private int blockSize;
+	private int miniBatchSize;
+	private ThreadPoolExecutor pool;
+	private Long seed;
+
+	private boolean converged = false;
+	private List<IterationStatistics> iterationStatistics = new ArrayList<IterationStatistics>();
+
+	// current state of the model
+	private double[] weights;
+	private double[][] means;
+	private double[][] variances;
+	private double[] logConsts;
+
+	/**
+	 * Construct with the given arguments.
+	 * 
+	 * @param nComponents
+	 *            the number of gaussian components
+	 * @param ctype
+	 *            the form of the covariance matrices; must be either
+	 *            {@link CovarianceType#Diagonal} or
+	 *            {@link CovarianceType#Spherical}
+	 * @param thresh
+	 *            the threshold on the change in total log-likelihood at which
+	 *            to stop iterating
+	 * @param minCovar
+	 *            the minimum value allowed in the diagonal of the estimated
+	 *            covariance matrices to prevent overfitting
+	 * @param nIters
+	 *            the maximum number of iterations
+	 * @param blockSize
+	 *            the number of rows to read from the data source at a time
+	 * @param miniBatchSize
+	 *            the number of random samples to use in each iteration; if
+	 *            less than 1, every sample is used in every iteration
+	 * @param pool
+	 *            the pool to spread the blocks of each iteration over; may be
+	 *            null to run on the calling thread (see
+	 *            {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)})
+	 */
+	public StreamingGaussianMixtureModelEM(int nComponents, CovarianceType ctype, double thresh, double minCovar,
+			int nIters, int blockSize, int miniBatchSize, ThreadPoolExecutor pool)
+	{
+		if (ctype != CovarianceType.Diagonal && ctype != CovarianceType.Spherical)
+			throw new IllegalArgumentException("Only diagonal and spherical covariances are supported");
+		if (blockSize < 1)
+			throw new IllegalArgumentException("The block size must be at least one");
+
+		this.ctype = ctype;
+		this.nComponents = nComponents;
+		this.thresh = thresh;
+		this.minCovar = minCovar;
+		this.nIters = nIters;
+		this.blockSize = blockSize;
+		this.miniBatchSize = miniBatchSize;
+		this.pool = pool;
+	}
+
+	/**
+	 * Construct with the given arguments, and default values for the others.
+	 * Every sample is used in every iteration, and everything runs on the
+	 * calling thread.
+	 * 
+	 * @param nComponents
+	 *            the number of gaussian components
+	 * @param ctype
+	 *            the form of the covariance matrices; must be either
+	 *            {@link CovarianceType#Diagonal} or
+	 *            {@link CovarianceType#Spherical}
+	 */
+	public StreamingGaussianMixtureModelEM(int nComponents, CovarianceType ctype) {
+		this(nComponents, ctype, DEFAULT_THRESH, DEFAULT_MIN_COVAR, DEFAULT_NITERS, DEFAULT_BLOCK_SIZE, 0, null);
+	}
+
+	/**
+	 * Set the seed of the K-Means used to initialise the means, so that the
+	 * initialisation is repeatable for a given sample.
+	 * 
+	 * @param seed
+	 *            the random seed
+	 */
+	public void seed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Get's the convergence state of the algorithm. Will return false if
+	 * {@link #estimate(DataSource)} has not been called, if the last call to
+	 * {@link #estimate(DataSource)} failed to reach convergence before running
+	 * out of iterations, or if mini-batches are being used.
+	 * 
+	 * @return true if the last call to {@link #estimate(DataSource)} reached
+	 *         convergence; false otherwise
+	 */
+	public boolean hasConverged() {
+		return converged;
+	}
+
+	/**
+	 * Get the statistics of each iteration of the last call to
+	 * {@link #estimate(DataSource)}.
+	 * 
+	 * @return the iteration statistics
+	 */
+	public List<IterationStatistics> getIterationStatistics() {
+		return Collections.unmodifiableList(iterationStatistics);
+	}
+
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the given data. Use
+	 * {@link #hasConverged()} to check whether the EM algorithm reached
+	 * convergence in the estimation of the returned model.
+	 * 
+	 * @param data
+	 *            the data source.
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimate(DataSource<float[]> data) {
+		final int N = data.size();
+		final int D = data.numDimensions();
+		final int K = nComponents;
+
+		if (N < K)
+			throw new IllegalArgumentException(String.format(
+					"GMM estimation with %d components, but got only %d samples", K, N));
+
+		initialise(data);
+
+		converged = false;
+		iterationStatistics = new ArrayList<IterationStatistics>();
+
+		final boolean miniBatch = miniBatchSize > 0 && miniBatchSize < N;
+		final float[][] batch = miniBatch ? data.createTemporaryArray(miniBatchSize) : null;
+		SufficientStatistics running = null;
+
+		for (int i = 0; i < nIters; i++) {
+			final long t0 = System.currentTimeMillis();
+
+			final SufficientStatistics stats;
+			if (miniBatch) {
+				data.getRandomRows(batch);
+				stats = expectation(batch);
+
+				if (running == null) {
+					running = new SufficientStatistics(K, D);
+					running.blend(stats, 1);
+				} else {
+					running.blend(stats, Math.pow(i + 1, -STEP_DECAY));
+				}
+			} else {
+				stats = expectation(data);
+			}
+
+			final long t1 = System.currentTimeMillis();
+
+			if (!miniBatch && i > 0) {
+				final double prev = iterationStatistics.get(i - 1).logLikelihood;
+				if (Math.abs(stats.logLikelihood - prev) < thresh) {
+					iterationStatistics.add(new IterationStatistics(i, stats.count, stats.logLikelihood, t1 - t0, 0));
+					converged = true;
+					break;
+				}
+			}
+
+			if (Double.isInfinite(stats.logLikelihood) || Double.isNaN(stats.logLikelihood)) {
+				throw new RuntimeException(
+						"EM algorithm was unable to compute a valid likelihood given initial " +
+								"parameters. Check for degenerate data.");
+			}
+
+			maximisation(miniBatch ? running : stats);
+
+			final long t2 = System.currentTimeMillis();
+			iterationStatistics.add(new IterationStatistics(i, stats.count, stats.logLikelihood, t1 - t0, t2 - t1));
+		}
+
+		return createModel();
+	}
+
+	private void initialise(DataSource<float[]> data) {
+		final int K = nComponents;
+		final int D = data.numDimensions();
+
+		final float[][] sample = data.createTemporaryArray(Math.min(data.size(), K * DEFAULT_INIT_SAMPLE_SIZE));
+		data.getRandomRows(sample);
+
+		final FloatKMeans kmeans = FloatKMeans.createExact(K);
+		if (seed != null)
+			kmeans.seed(seed);
+		final FloatCentroidsResult km = kmeans.cluster(sample);
+
+		// global variance of the sample
+		final double[] mean = new double[D];
+		final double[] var = new double[D];
+		for (final float[] x : sample) {
+			for (int j = 0; j < D; j++) {
+				mean[j] += x[j];
+				var[j] += x[j] * x[j];
+			}
+		}
+		for (int j = 0; j < D; j++) {
+			mean[j] /= sample.length;
+			var[j] = var[j] / sample.length - mean[j] * mean[j] + minCovar;
+		}
+
+		weights = new double[K];
+		means = new double[K][D];
+		variances = new double[K][];
+		Arrays.fill(weights, 1.0 / K);
+		for (int k = 0; k < K; k++) {
+			for (int j = 0; j < D; j++)
+				means[k][j] = km.centroids[k][j];
+			variances[k] = var.clone();
+		}
+
+		if (ctype == CovarianceType.Spherical)
+			makeSpherical();
+
+		updateLogConsts();
+	}
+
+	private void makeSpherical() {
+		for (final double[] v : variances) {
+			double mean = 0;
+			for (int j = 0; j < v.length; j++)
+				mean += v[j];
+			Arrays.fill(v, mean / v.length);
+		}
+	}
+
+	private void updateLogConsts() {
+		final int D = means[0].length;
+
+		logConsts = new double[nComponents];
+		for (int k = 0; k < nComponents; k++) {
+			double logDet = 0;
+			for (int j = 0; j < D; j++)
+				logDet += Math.log(variances[k][j]);
+
+			logConsts[k] = Math.log(weights[k]) - 0.5 * (D * Math.log(2 * Math.PI) + logDet);
+		}
+	}
+
+	/**
+	 * Accumulate the statistics of every row of the data source, reading the
+	 * data a block at a time
+	 */
+	private SufficientStatistics expectation(final DataSource<float[]> data) {
+		final int nBlocks = (data.size() + blockSize - 1) / blockSize;
+		final SufficientStatistics total = new SufficientStatistics(nComponents, data.numDimensions());
+
+		Parallel.forRange(0, nBlocks, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final SufficientStatistics local = new SufficientStatistics(nComponents, data.numDimensions());
+				final float[][] block = data.createTemporaryArray(blockSize);
+
+				for (int b = range.start; b < range.stop; b++) {
+					final int start = b * blockSize;
+					final int stop = Math.min(start + blockSize, data.size());
+
+					synchronized (data) {
+						data.getData(start, stop, block);
+					}
+					accumulate(block, 0, stop - start, local);
+				}
+
+				synchronized (total) {
+					total.add(local);
+				}
+			}
+		}, pool);
+
+		return total;
+	}
+
+	/**
+	 * Accumulate the statistics of the given samples
+	 */
+	private SufficientStatistics expectation(final float[][] samples) {
+		final int nBlocks = (samples.length + blockSize - 1) / blockSize;
+		final SufficientStatistics total = new SufficientStatistics(nComponents, samples[0].length);
+
+		Parallel.forRange(0, nBlocks, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final SufficientStatistics local = new SufficientStatistics(nComponents, samples[0].length);
+
+				for (int b = range.start; b < range.stop; b++) {
+					final int start = b * blockSize;
+					accumulate(samples, start, Math.min(start + blockSize, samples.length), local);
+				}
+
+				synchronized (total) {
+					total.add(local);
+				}
+			}
+		}, pool);
+
+		return total;
+	}
+
+	private void accumulate(float[][] samples, int start, int stop, SufficientStatistics stats) {
+		final int K = nComponents;
+		final int D = means[0].length;
+		final double[] logp = new double[K];
+
+		for (int i = start; i < stop; i++) {
+			final float[] x = samples[i];
+
+			double max = Double.NEGATIVE_INFINITY;
+			for (int k = 0; k < K; k++) {
+				final double[] mean = means[k];
+				final double[] var = variances[k];
+
+				double sum = 0;
+				for (int j = 0; j < D; j++) {
+					final double diff = x[j] - mean[j];
+					sum += diff * diff / var[j];
+				}
+
+				logp[k] = logConsts[k] - 0.5 * sum;
+				if (logp[k] > max)
+					max = logp[k];
+			}
+
+			double total = 0;
+			for (int k = 0; k < K; k++) {
+				logp[k] = Math.exp(logp[k] - max);
+				total += logp[k];
+			}
+			stats.logLikelihood += max + Math.log(total);
+			stats.count++;
+
+			for (int k = 0; k < K; k++) {
+				final double r = logp[k] / total;
+
+				if (r < 1e-10)
+					continue; // speed-up: ignore negligible terms
+
+				final double[] sx = stats.sx[k];
+				final double[] sxx = stats.sxx[k];
+				for (int j = 0; j < D; j++) {
+					final double rx = r * x[j];
+					sx[j] += rx;
+					sxx[j] += rx * x[j];
+				}
+				stats.n[k] += r;
+			}
+		}
+	}
+
+	private void maximisation(SufficientStatistics stats) {
+		final int D = means[0].length;
+
+		double sum = 0;
+		for (int k = 0; k < nComponents; k++)
+			sum += stats.n[k];
+
+		for (int k = 0; k < nComponents; k++) {
+			weights[k] = stats.n[k] / (sum + 10 * MathUtils.EPSILON) + MathUtils.EPSILON;
+
+			// leave components that have lost all their support where they are
+			if (stats.n[k] < 10 * MathUtils.EPSILON)
+				continue;
+
+			final double norm = 1.0 / stats.n[k];
+			for (int j = 0; j < D; j++) {
+				final double mu = stats.sx[k][j] * norm;
+				means[k][j] = mu;
+				variances[k][j] = Math.max(stats.sxx[k][j] * norm - mu * mu, 0) + minCovar;
+			}
+		}
+
+		if (ctype == CovarianceType.Spherical)
+			makeSpherical();
+
+		updateLogConsts();
+	}
+
+	private MixtureOfGaussians createModel() {
+		final MultivariateGaussian[] gaussians = new MultivariateGaussian[nComponents];
+
+		for (int k = 0; k < nComponents; k++) {
+			final Matrix mean = new Matrix(new double[][] { means[k].clone() });
+
+			if (ctype == CovarianceType.Spherical)
+				gaussians[k] = new SphericalMultivariateGaussian(mean, variances[k][0]);
+			else
+				gaussians[k] = new DiagonalMultivariateGaussian(mean, variances[k].clone());
+		}
+
+		return new MixtureOfGaussians(gaussians, weights.clone());
+	}
+}
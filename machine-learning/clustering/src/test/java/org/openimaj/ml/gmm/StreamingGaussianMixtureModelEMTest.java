@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.gmm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.FloatArrayBackedDataSource;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.SphericalMultivariateGaussian;
+import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.ml.gmm.StreamingGaussianMixtureModelEM.IterationStatistics;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link StreamingGaussianMixtureModelEM}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingGaussianMixtureModelEMTest {
+	private static final double[][] MEANS = { { 0, 0, 0 }, { 10, 10, 0 }, { -10, 5, 10 } };
+	private static final double[][] SIGMAS = { { 1, 1, 1 }, { 2, 0.5, 1 }, { 1, 1, 3 } };
+	private static final double[] WEIGHTS = { 0.5, 0.3, 0.2 };
+
+	private FloatArrayBackedDataSource data;
+
+	/**
+	 * Draw samples from a known mixture
+	 */
+	@Before
+	public void setup() {
+		data = new FloatArrayBackedDataSource(createData(3000, new Random(0)), new Random(1));
+	}
+
+	private static float[][] createData(int n, Random rng) {
+		final float[][] x = new float[n][];
+
+		for (int i = 0; i < n; i++) {
+			final double r = rng.nextDouble();
+			int k = 0;
+			for (double c = WEIGHTS[0]; r > c; c += WEIGHTS[++k])
+				;
+
+			x[i] = new float[MEANS[k].length];
+			for (int j = 0; j < x[i].length; j++)
+				x[i][j] = (float) (MEANS[k][j] + rng.nextGaussian() * SIGMAS[k][j]);
+		}
+
+		return x;
+	}
+
+	private void checkModel(MixtureOfGaussians gmm, double meanTol, double weightTol) {
+		assertEquals(MEANS.length, gmm.gaussians.length);
+
+		for (int k = 0; k < MEANS.length; k++) {
+			// find the closest estimated component
+			int best = -1;
+			double bestDist = Double.MAX_VALUE;
+			for (int i = 0; i < gmm.gaussians.length; i++) {
+				final double[] mean = gmm.gaussians[i].getMean().getArray()[0];
+				double dist = 0;
+				for (int j = 0; j < mean.length; j++)
+					dist += (mean[j] - MEANS[k][j]) * (mean[j] - MEANS[k][j]);
+
+				if (dist < bestDist) {
+					bestDist = dist;
+					best = i;
+				}
+			}
+
+			assertTrue(Math.sqrt(bestDist) < meanTol);
+			assertEquals(WEIGHTS[k], gmm.weights[best], weightTol);
+		}
+	}
+
+	/**
+	 * Full-batch EM should recover the mixture and converge
+	 */
+	@Test
+	public void testDiagonal() {
+		final StreamingGaussianMixtureModelEM em = new StreamingGaussianMixtureModelEM(3, CovarianceType.Diagonal,
+				1e-2, 1e-3, 100, 500, 0, null);
+		em.seed(0);
+		final MixtureOfGaussians gmm = em.estimate(data);
+
+		assertTrue(em.hasConverged());
+		checkModel(gmm, 0.3, 0.05);
+
+		for (int k = 0; k < 3; k++) {
+			assertTrue(gmm.gaussians[k] instanceof DiagonalMultivariateGaussian);
+		}
+
+		// the log-likelihood should never decrease
+		double prev = Double.NEGATIVE_INFINITY;
+		for (final IterationStatistics s : em.getIterationStatistics()) {
+			assertEquals(3000, s.nSamples);
+			assertTrue(s.logLikelihood >= prev - 1e-6);
+			prev = s.logLikelihood;
+		}
+	}
+
+	/**
+	 * Spherical covariances should be produced if requested
+	 */
+	@Test
+	public void testSpherical() {
+		final StreamingGaussianMixtureModelEM em = new StreamingGaussianMixtureModelEM(3, CovarianceType.Spherical);
+		em.seed(0);
+		final MixtureOfGaussians gmm = em.estimate(data);
+
+		checkModel(gmm, 0.5, 0.05);
+		for (int k = 0; k < 3; k++) {
+			assertTrue(gmm.gaussians[k] instanceof SphericalMultivariateGaussian);
+		}
+	}
+
+	/**
+	 * Spreading the blocks over a pool should also recover the mixture
+	 */
+	@Test
+	public void testParallel() {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+		final StreamingGaussianMixtureModelEM em = new StreamingGaussianMixtureModelEM(3, CovarianceType.Diagonal,
+				1e-2, 1e-3, 100, 100, 0, pool);
+		em.seed(0);
+		final MixtureOfGaussians gmm = em.estimate(data);
+
+		checkModel(gmm, 0.3, 0.05);
+	}
+
+	/**
+	 * Mini-batch EM should get close to the mixture
+	 */
+	@Test
+	public void testMiniBatch() {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+		final StreamingGaussianMixtureModelEM em = new StreamingGaussianMixtureModelEM(3, CovarianceType.Diagonal,
+				1e-2, 1e-3, 50, 100, 500, pool);
+		em.seed(0);
+		final MixtureOfGaussians gmm = em.estimate(data);
+
+		assertEquals(50, em.getIterationStatistics().size());
+		for (final IterationStatistics s : em.getIterationStatistics())
+			assertEquals(500, s.nSamples);
+
+		checkModel(gmm, 0.5, 0.08);
+	}
+
+	/**
+	 * Illegal covariance types should be rejected
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testFullRejected() {
+		new StreamingGaussianMixtureModelEM(3, CovarianceType.Full);
+	}
+}
@@ -0,0 +1,507 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.pgm.vb.lda.mle;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.commons.math.special.Gamma;
+import org.openimaj.pgm.util.Corpus;
+import org.openimaj.pgm.util.Document;
+import org.openimaj.util.array.SparseIntArray.Entry;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A faster implementation of maximum likelihood variational inference LDA (D.
+ * Blei, A. Ng and M. Jordan, "Latent Dirichlet Allocation", JMLR 2003) that
+ * produces an {@link LDAModel}. Compared to {@link LDALearner}:
+ * <ul>
+ * <li>log(Beta) is computed once per iteration rather than for every word,
+ * topic and inner iteration;</li>
+ * <li>the digamma of each topic's variational parameter is computed once per
+ * inner iteration of a document, rather than once per word;</li>
+ * <li>the E-step can be spread over a thread pool; each task accumulates the
+ * sufficient statistics of its documents into its own shard, and the shards
+ * are summed for the M-step.</li>
+ * </ul>
+ * <p>
+ * As well as batch estimation over a {@link Corpus}, an online mode (M.
+ * Hoffman, D. Blei and F. Bach, "Online Learning for Latent Dirichlet
+ * Allocation", NIPS 2010) is provided, which reads mini-batches of documents
+ * from an iterator and blends the sufficient statistics of each into the model
+ * with a decaying step size. This means that a single pass over a stream of
+ * documents is enough, and the corpus never needs to be held in memory. In
+ * this mode the topic-word counts of the model are the variational Dirichlet
+ * parameters (lambda), which are smoothed by a symmetric Dirichlet prior (eta)
+ * on the topics, and the E-step uses their expected log rather than the log of
+ * their normalised values.
+ * <p>
+ * Alpha is held fixed at the given value, as with {@link LDALearner}.
+ * 
+ * @author Sina Samangooei (ss@ecs.soton.ac.uk)
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ParallelLDALearner {
+	private static final double DEFAULT_ALPHA = 0.3;
+	private static final int DEFAULT_MAX_ITERATIONS = 10;
+	private static final int DEFAULT_VAR_MAX_ITERATIONS = 10;
+	private static final double DEFAULT_EM_CONVERGED = 1e-5;
+	private static final double DEFAULT_VAR_CONVERGED = 1e-5;
+	private static final double DEFAULT_TAU0 = 1;
+	private static final double DEFAULT_KAPPA = 0.7;
+	private static final double DEFAULT_ETA = 0.01;
+
+	/**
+	 * log(Beta) of words that have never been seen in a topic (from Blei's
+	 * implementation; Beta ~= 1e-34)
+	 */
+	private static final double LOG_BETA_UNSEEN = -100;
+
+	private int ntopics;
+	private double alpha = DEFAULT_ALPHA;
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+	private int varMaxIterations = DEFAULT_VAR_MAX_ITERATIONS;
+	private double emConverged = DEFAULT_EM_CONVERGED;
+	private double varConverged = DEFAULT_VAR_CONVERGED;
+	private double tau0 = DEFAULT_TAU0;
+	private double kappa = DEFAULT_KAPPA;
+	private double eta = DEFAULT_ETA;
+	private LDABetaInitStrategy initStrategy = new LDABetaInitStrategy.RandomBetaInit();
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Construct a learner that runs on the calling thread.
+	 * 
+	 * @param ntopics
+	 *            the number of topics
+	 */
+	public ParallelLDALearner(int ntopics) {
+		this(ntopics, null);
+	}
+
+	/**
+	 * Construct a learner that spreads the E-step over the given pool.
+	 * 
+	 * @param ntopics
+	 *            the number of topics
+	 * @param pool
+	 *            the pool; may be null to run on the calling thread (see
+	 *            {@link Parallel#forRange(int, int, int, Operation, ThreadPoolExecutor)})
+	 */
+	public ParallelLDALearner(int ntopics, ThreadPoolExecutor pool) {
+		this.ntopics = ntopics;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param alpha
+	 *            the dirichlet parameter of the topic prior
+	 */
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	/**
+	 * @param maxIterations
+	 *            the maximum number of EM iterations in batch mode
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @param varMaxIterations
+	 *            the maximum number of variational iterations per document
+	 */
+	public void setVarMaxIterations(int varMaxIterations) {
+		this.varMaxIterations = varMaxIterations;
+	}
+
+	/**
+	 * @param emConverged
+	 *            the relative change in likelihood at which batch EM stops
+	 */
+	public void setEMConverged(double emConverged) {
+		this.emConverged = emConverged;
+	}
+
+	/**
+	 * @param varConverged
+	 *            the mean change in the variational parameters of a document
+	 *            at which its inner iterations stop
+	 */
+	public void setVarConverged(double varConverged) {
+		this.varConverged = varConverged;
+	}
+
+	/**
+	 * Set the step size schedule of the online mode; batch t is weighted by
+	 * (tau0 + t)^-kappa.
+	 * 
+	 * @param tau0
+	 *            the delay; must be non-negative
+	 * @param kappa
+	 *            the forgetting rate; should be in (0.5, 1]
+	 */
+	public void setLearningRate(double tau0, double kappa) {
+		this.tau0 = tau0;
+		this.kappa = kappa;
+	}
+
+	/**
+	 * @param eta
+	 *            the parameter of the symmetric dirichlet prior on the topics
+	 *            used by the online mode; must be non-negative
+	 */
+	public void setEta(double eta) {
+		this.eta = eta;
+	}
+
+	/**
+	 * @param initStrategy
+	 *            the strategy for initialising Beta
+	 */
+	public void setInitStrategy(LDABetaInitStrategy initStrategy) {
+		this.initStrategy = initStrategy;
+	}
+
+	/**
+	 * Estimate a model from the documents of the given corpus using batch
+	 * variational EM.
+	 * 
+	 * @param corpus
+	 *            the corpus
+	 * @return the estimated model
+	 */
+	public LDAModel estimate(Corpus corpus) {
+		LDAModel model = initialModel(corpus);
+		final List<Document> docs = corpus.getDocuments();
+
+		while (model.iteration < maxIterations) {
+			final double[][] logBeta = computeLogBeta(model);
+
+			final LDAModel next = model.newInstance();
+			next.setAlpha(alpha);
+			expectation(docs, logBeta, next);
+			next.iteration++;
+
+			model = next;
+
+			final double change = (model.likelihood - model.oldLikelihood) / Math.abs(model.oldLikelihood);
+			if (model.iteration > 2 && Math.abs(change) < emConverged)
+				break;
+		}
+
+		return model;
+	}
+
+	/**
+	 * Estimate a model from a single pass over the documents of the given
+	 * corpus using online variational inference.
+	 * 
+	 * @param corpus
+	 *            the corpus
+	 * @param batchSize
+	 *            the number of documents in each mini-batch
+	 * @return the estimated model
+	 */
+	public LDAModel estimateOnline(Corpus corpus, int batchSize) {
+		return estimateOnline(corpus.getDocuments().iterator(), corpus.vocabularySize(), corpus.size(), batchSize);
+	}
+
+	/**
+	 * Estimate a model from a single pass over a stream of documents using
+	 * online variational inference. The size of the corpus is used to scale
+	 * the statistics of each mini-batch; it need only be approximate. After
+	 * batch t, each topic's parameters are updated as lambda = (1 - rho) *
+	 * lambda + rho * (eta + corpusSize / batchSize * stats), where rho = (tau0
+	 * + t)^-kappa.
+	 * 
+	 * @param documents
+	 *            the stream of documents
+	 * @param vocabularySize
+	 *            the size of the vocabulary
+	 * @param corpusSize
+	 *            the (approximate) number of documents in the corpus
+	 * @param batchSize
+	 *            the number of documents in each mini-batch
+	 * @return the estimated model
+	 */
+	public LDAModel estimateOnline(Iterator<? extends Document> documents, int vocabularySize, long corpusSize,
+			int batchSize)
+	{
+		final LDAModel model = initialModel(new Corpus(vocabularySize));
+		final List<Document> batch = new ArrayList<Document>(batchSize);
+
+		while (documents.hasNext()) {
+			batch.add(documents.next());
+
+			if (batch.size() == batchSize || !documents.hasNext()) {
+				final double[][] logBeta = computeExpectedLogBeta(model);
+
+				final LDAModel stats = model.newInstance();
+				expectation(batch, logBeta, stats);
+
+				final double rho = Math.pow(tau0 + model.iteration, -kappa);
+				final double scale = rho * corpusSize / batch.size();
+				final double prior = rho * eta;
+				for (int k = 0; k < ntopics; k++) {
+					final double[] tw = model.topicWord[k];
+					final double[] stw = stats.topicWord[k];
+
+					for (int w = 0; w < tw.length; w++)
+						tw[w] = (1 - rho) * tw[w] + prior + scale * stw[w];
+					model.topicTotal[k] = (1 - rho) * model.topicTotal[k] + prior * tw.length + scale
+							* stats.topicTotal[k];
+				}
+
+				model.oldLikelihood = model.likelihood;
+				model.likelihood = stats.likelihood;
+				model.iteration++;
+				batch.clear();
+			}
+		}
+
+		return model;
+	}
+
+	private LDAModel initialModel(Corpus corpus) {
+		final LDAModel model = new LDAModel(ntopics);
+		model.prepare(corpus);
+		model.setAlpha(alpha);
+		initStrategy.initModel(model, corpus);
+
+		return model;
+	}
+
+	private double[][] computeLogBeta(LDAModel model) {
+		final int V = model.topicWord[0].length;
+		final double[][] logBeta = new double[ntopics][V];
+
+		for (int k = 0; k < ntopics; k++) {
+			final double logTotal = Math.log(model.topicTotal[k]);
+
+			for (int w = 0; w < V; w++) {
+				final double tw = model.topicWord[k][w];
+				logBeta[k][w] = tw > 0 ? Math.log(tw) - logTotal : LOG_BETA_UNSEEN;
+			}
+		}
+
+		return logBeta;
+	}
+
+	/**
+	 * E[log(Beta)] under the variational dirichlet with the topic-word counts
+	 * of the model as its parameters
+	 */
+	private double[][] computeExpectedLogBeta(LDAModel model) {
+		final int V = model.topicWord[0].length;
+		final double[][] logBeta = new double[ntopics][V];
+
+		for (int k = 0; k < ntopics; k++) {
+			final double digammaTotal = Gamma.digamma(model.topicTotal[k]);
+
+			for (int w = 0; w < V; w++) {
+				final double tw = model.topicWord[k][w];
+				logBeta[k][w] = tw > 0 ? Gamma.digamma(tw) - digammaTotal : LOG_BETA_UNSEEN;
+			}
+		}
+
+		return logBeta;
+	}
+
+	/**
+	 * Run the E-step over the given documents, accumulating the sufficient
+	 * statistics and likelihood into the given model
+	 */
+	private void expectation(final List<? extends Document> docs, final double[][] logBeta, final LDAModel out) {
+		final double alpha = this.alpha;
+		final int V = logBeta[0].length;
+
+		Parallel.forRange(0, docs.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final LDAModel shard = new LDAModel(ntopics);
+				shard.prepare(V);
+
+				final DocumentState ds = new DocumentState();
+				for (int i = range.start; i < range.stop; i++) {
+					ds.infer(docs.get(i), logBeta, alpha);
+					ds.accumulate(shard);
+					shard.likelihood += ds.likelihood(logBeta, alpha);
+				}
+
+				synchronized (out) {
+					for (int k = 0; k < ntopics; k++) {
+						final double[] tw = out.topicWord[k];
+						final double[] stw = shard.topicWord[k];
+						for (int w = 0; w < V; w++)
+							tw[w] += stw[w];
+						out.topicTotal[k] += shard.topicTotal[k];
+					}
+					out.likelihood += shard.likelihood;
+				}
+			}
+		}, pool);
+	}
+
+	/**
+	 * The variational parameters of a single document. Instances are reused
+	 * across the documents of a task to avoid reallocation.
+	 */
+	private class DocumentState {
+		int nwords;
+		int[] words = new int[16];
+		int[] counts = new int[16];
+		double[][] phi = new double[16][ntopics];
+		final double[] gamma = new double[ntopics];
+		final double[] newGamma = new double[ntopics];
+		final double[] digamma = new double[ntopics];
+
+		void load(Document doc) {
+			final int n = doc.countUniqueWords();
+			if (n > words.length) {
+				words = new int[n];
+				counts = new int[n];
+				phi = new double[n][ntopics];
+			}
+
+			nwords = 0;
+			for (final Entry e : doc.getVector().entries()) {
+				words[nwords] = e.index;
+				counts[nwords] = e.value;
+				nwords++;
+			}
+		}
+
+		void infer(Document doc, double[][] logBeta, double alpha) {
+			load(doc);
+
+			int total = 0;
+			for (int n = 0; n < nwords; n++)
+				total += counts[n];
+
+			for (int k = 0; k < ntopics; k++)
+				gamma[k] = alpha + (double) total / ntopics;
+
+			for (int iter = 0; iter < varMaxIterations; iter++) {
+				// digamma only changes when gamma does
+				for (int k = 0; k < ntopics; k++) {
+					digamma[k] = Gamma.digamma(gamma[k]);
+					newGamma[k] = alpha;
+				}
+
+				// eqn 16 in Blei 2003, normalised in log space
+				for (int n = 0; n < nwords; n++) {
+					final double[] phin = phi[n];
+					final int w = words[n];
+
+					double max = Double.NEGATIVE_INFINITY;
+					for (int k = 0; k < ntopics; k++) {
+						phin[k] = logBeta[k][w] + digamma[k];
+						if (phin[k] > max)
+							max = phin[k];
+					}
+
+					double sum = 0;
+					for (int k = 0; k < ntopics; k++) {
+						phin[k] = Math.exp(phin[k] - max);
+						sum += phin[k];
+					}
+
+					// eqn 17: gamma = alpha + sum_n count_n phi_n
+					final double norm = counts[n] / sum;
+					for (int k = 0; k < ntopics; k++) {
+						newGamma[k] += norm * phin[k];
+						phin[k] /= sum;
+					}
+				}
+
+				double change = 0;
+				for (int k = 0; k < ntopics; k++) {
+					change += Math.abs(newGamma[k] - gamma[k]);
+					gamma[k] = newGamma[k];
+				}
+
+				if (change / ntopics < varConverged)
+					break;
+			}
+
+			for (int k = 0; k < ntopics; k++)
+				digamma[k] = Gamma.digamma(gamma[k]);
+		}
+
+		void accumulate(LDAModel shard) {
+			for (int n = 0; n < nwords; n++) {
+				final int w = words[n];
+				final int c = counts[n];
+
+				for (int k = 0; k < ntopics; k++) {
+					final double v = c * phi[n][k];
+					shard.topicWord[k][w] += v;
+					shard.topicTotal[k] += v;
+				}
+			}
+		}
+
+		/**
+		 * The variational lower bound on the log likelihood of the document
+		 * (eqn 15 in Blei 2003)
+		 */
+		double likelihood(double[][] logBeta, double alpha) {
+			double sumGamma = 0;
+			for (int k = 0; k < ntopics; k++)
+				sumGamma += gamma[k];
+			final double digammaSum = Gamma.digamma(sumGamma);
+
+			double likelihood = Gamma.logGamma(alpha * ntopics) - ntopics * Gamma.logGamma(alpha)
+					- Gamma.logGamma(sumGamma);
+
+			for (int k = 0; k < ntopics; k++) {
+				final double eLogTheta = digamma[k] - digammaSum;
+
+				likelihood += (alpha - 1) * eLogTheta + Gamma.logGamma(gamma[k]) - (gamma[k] - 1) * eLogTheta;
+
+				for (int n = 0; n < nwords; n++) {
+					final double p = phi[n][k];
+
+					if (p > 0)
+						likelihood += counts[n] * p * (eLogTheta - Math.log(p) + logBeta[k][words[n]]);
+				}
+			}
+
+			return likelihood;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.pgm.vb.lda.mle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.pgm.util.Corpus;
+import org.openimaj.pgm.util.Document;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link ParallelLDALearner}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ParallelLDALearnerTest {
+	private static final int NTOPICS = 4;
+	private static final int WORDS_PER_TOPIC = 10;
+
+	private Corpus corpus;
+
+	/**
+	 * Create a corpus where each topic uses its own block of the vocabulary
+	 */
+	@Before
+	public void setup() {
+		corpus = createCorpus(NTOPICS, WORDS_PER_TOPIC, 400, 50, new Random(0));
+	}
+
+	private static Corpus createCorpus(int ntopics, int wordsPerTopic, int ndocs, int docLength, Random rng) {
+		final Corpus corpus = new Corpus(ntopics * wordsPerTopic);
+
+		for (int i = 0; i < ndocs; i++) {
+			// each document mixes two topics
+			final int t1 = rng.nextInt(ntopics);
+			final int t2 = rng.nextInt(ntopics);
+			final int[] counts = new int[corpus.vocabularySize()];
+
+			for (int j = 0; j < docLength; j++) {
+				final int topic = rng.nextBoolean() ? t1 : t2;
+				counts[topic * wordsPerTopic + rng.nextInt(wordsPerTopic)]++;
+			}
+
+			final Document doc = new Document(corpus);
+			for (int w = 0; w < counts.length; w++)
+				if (counts[w] > 0)
+					doc.setWordCount(w, counts[w]);
+			corpus.addDocument(doc);
+		}
+
+		return corpus;
+	}
+
+	/**
+	 * Check that every topic puts most of its mass on a single, distinct block
+	 * of the vocabulary
+	 */
+	private void checkTopics(LDAModel model) {
+		final boolean[] seen = new boolean[NTOPICS];
+
+		for (int k = 0; k < NTOPICS; k++) {
+			int best = -1;
+			double bestMass = 0;
+			for (int b = 0; b < NTOPICS; b++) {
+				double mass = 0;
+				for (int w = b * WORDS_PER_TOPIC; w < (b + 1) * WORDS_PER_TOPIC; w++)
+					mass += model.topicWord[k][w] / model.topicTotal[k];
+
+				if (mass > bestMass) {
+					bestMass = mass;
+					best = b;
+				}
+			}
+
+			assertTrue(bestMass > 0.8);
+			assertTrue(!seen[best]);
+			seen[best] = true;
+		}
+	}
+
+	/**
+	 * Batch estimation should recover the topics
+	 */
+	@Test
+	public void testBatch() {
+		final ParallelLDALearner learner = new ParallelLDALearner(NTOPICS);
+		learner.setInitStrategy(new LDABetaInitStrategy.RandomBetaInit(1));
+		learner.setMaxIterations(50);
+
+		checkTopics(learner.estimate(corpus));
+	}
+
+	/**
+	 * Running the E-step in parallel should give the same model as running it
+	 * serially, up to rounding in the reduction
+	 */
+	@Test
+	public void testParallel() {
+		final ParallelLDALearner serial = new ParallelLDALearner(NTOPICS);
+		serial.setInitStrategy(new LDABetaInitStrategy.RandomBetaInit(1));
+		final LDAModel expected = serial.estimate(corpus);
+
+		final ParallelLDALearner parallel = new ParallelLDALearner(NTOPICS, GlobalExecutorPool.getPool());
+		parallel.setInitStrategy(new LDABetaInitStrategy.RandomBetaInit(1));
+		final LDAModel actual = parallel.estimate(corpus);
+
+		assertEquals(expected.iteration, actual.iteration);
+		assertEquals(expected.likelihood, actual.likelihood, Math.abs(expected.likelihood) * 1e-6);
+		for (int k = 0; k < NTOPICS; k++)
+			for (int w = 0; w < corpus.vocabularySize(); w++)
+				assertEquals(expected.topicWord[k][w], actual.topicWord[k][w], 1e-6);
+	}
+
+	/**
+	 * Online estimation over several passes of the documents should also
+	 * recover the topics
+	 */
+	@Test
+	public void testOnline() {
+		final Corpus big = createCorpus(NTOPICS, WORDS_PER_TOPIC, 4000, 50, new Random(0));
+
+		final ParallelLDALearner learner = new ParallelLDALearner(NTOPICS, GlobalExecutorPool.getPool());
+		learner.setInitStrategy(new LDABetaInitStrategy.RandomBetaInit(1));
+
+		checkTopics(learner.estimateOnline(big, 100));
+	}
+
+	/**
+	 * The prior should give every word some mass in every topic in online
+	 * mode
+	 */
+	@Test
+	public void testOnlinePrior() {
+		final ParallelLDALearner learner = new ParallelLDALearner(NTOPICS);
+		learner.setInitStrategy(new LDABetaInitStrategy.RandomBetaInit(1));
+		learner.setEta(0.1);
+
+		final LDAModel model = learner.estimateOnline(corpus, 100);
+		for (int k = 0; k < NTOPICS; k++) {
+			double total = 0;
+			for (int w = 0; w < corpus.vocabularySize(); w++) {
+				assertTrue(model.topicWord[k][w] > 0);
+				total += model.topicWord[k][w];
+			}
+			assertEquals(total, model.topicTotal[k], 1e-6 * total);
+		}
+	}
+}
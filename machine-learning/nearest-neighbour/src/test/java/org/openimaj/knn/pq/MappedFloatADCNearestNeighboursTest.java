@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.knn.pq;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.knn.FloatNearestNeighbours;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for {@link MappedFloatADCNearestNeighbours}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MappedFloatADCNearestNeighboursTest {
+	/**
+	 * Temp folder for the codes
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final int NDIMS = 16;
+	private static final int NASSIGNERS = 4;
+
+	private FloatProductQuantiser pq;
+	private float[][] data;
+	private float[][] queries;
+
+	private static float[][] random(Random rng, int n, int d) {
+		final float[][] v = new float[n][d];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < d; j++)
+				v[i][j] = rng.nextFloat();
+		return v;
+	}
+
+	/**
+	 * Create a product quantiser with random centroids and some data
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		final FloatNearestNeighbours[] assigners = new FloatNearestNeighbours[NASSIGNERS];
+		for (int i = 0; i < NASSIGNERS; i++)
+			assigners[i] = new FloatNearestNeighboursExact(random(rng, 256, NDIMS / NASSIGNERS));
+		pq = new FloatProductQuantiser(assigners);
+
+		data = random(rng, 1000, NDIMS);
+		queries = random(rng, 20, NDIMS);
+	}
+
+	/**
+	 * The mapped index must give the same results as the in-memory one, both
+	 * for single queries and batches
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameAsInMemory() throws IOException {
+		final byte[][] codes = new byte[data.length][];
+		for (int i = 0; i < data.length; i++)
+			codes[i] = pq.quantise(data[i]);
+
+		final File file = folder.newFile("codes.bin");
+		MappedFloatADCNearestNeighbours.write(file, codes, NDIMS);
+
+		final FloatADCNearestNeighbours expected = new FloatADCNearestNeighbours(pq, codes, NDIMS);
+		final MappedFloatADCNearestNeighbours actual = MappedFloatADCNearestNeighbours.map(file, pq);
+
+		assertEquals(data.length, actual.size());
+		assertEquals(NDIMS, actual.numDimensions());
+
+		final int K = 10;
+		final int[][] eidx = new int[queries.length][K];
+		final float[][] edst = new float[queries.length][K];
+		expected.searchKNN(queries, K, eidx, edst);
+
+		final int[][] aidx = new int[queries.length][K];
+		final float[][] adst = new float[queries.length][K];
+		actual.searchKNN(queries, K, aidx, adst);
+
+		for (int i = 0; i < queries.length; i++) {
+			final List<IntFloatPair> single = actual.searchKNN(queries[i], K);
+
+			for (int k = 0; k < K; k++) {
+				assertEquals(edst[i][k], adst[i][k], 0);
+				assertEquals(edst[i][k], single.get(k).second, 0);
+			}
+
+			assertEquals(expected.searchNN(queries[i]).second, actual.searchNN(queries[i]).second, 0);
+		}
+	}
+}
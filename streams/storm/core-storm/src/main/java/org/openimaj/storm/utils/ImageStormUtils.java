@@ -0,0 +1,499 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.storm.utils;
+
+import org.openimaj.feature.ByteFV;
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.feature.IntFV;
+import org.openimaj.feature.LongFV;
+import org.openimaj.feature.ShortFV;
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+
+import backtype.storm.Config;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serialisers for passing OpenIMAJ images and features between Storm
+ * components. Without these, Storm falls back on Java serialisation, which is
+ * both slow and verbose for the primitive arrays that make up images and
+ * feature vectors.
+ * <p>
+ * Images can optionally be transported with their pixels quantised to 8 bits;
+ * this is lossy (values are clipped to the range 0..1), but reduces the size of
+ * each tuple by a factor of four.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ImageStormUtils {
+	private static final byte RAW = 0;
+	private static final byte QUANTISED = 1;
+
+	private ImageStormUtils() {
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link FImage}s that copies the raw pixel
+	 * values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class FImageSerialiser extends Serializer<FImage> {
+		private final boolean quantise;
+
+		/**
+		 * Construct a lossless serialiser
+		 */
+		public FImageSerialiser() {
+			this(false);
+		}
+
+		protected FImageSerialiser(boolean quantise) {
+			this.quantise = quantise;
+		}
+
+		@Override
+		public void write(Kryo kryo, Output output, FImage object) {
+			writeImage(output, object, quantise);
+		}
+
+		@Override
+		public FImage read(Kryo kryo, Input input, Class<FImage> type) {
+			return readImage(input);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link FImage}s that quantises the pixels to
+	 * 8 bits.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class QuantisedFImageSerialiser extends FImageSerialiser {
+		/**
+		 * Construct the serialiser
+		 */
+		public QuantisedFImageSerialiser() {
+			super(true);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link MBFImage}s that copies the raw pixel
+	 * values of each band.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class MBFImageSerialiser extends Serializer<MBFImage> {
+		private final boolean quantise;
+
+		/**
+		 * Construct a lossless serialiser
+		 */
+		public MBFImageSerialiser() {
+			this(false);
+		}
+
+		protected MBFImageSerialiser(boolean quantise) {
+			this.quantise = quantise;
+		}
+
+		@Override
+		public void write(Kryo kryo, Output output, MBFImage object) {
+			output.writeString(object.colourSpace.name());
+			output.writeInt(object.numBands(), true);
+			for (final FImage band : object.bands)
+				writeImage(output, band, quantise);
+		}
+
+		@Override
+		public MBFImage read(Kryo kryo, Input input, Class<MBFImage> type) {
+			final ColourSpace colourSpace = ColourSpace.valueOf(input.readString());
+			final FImage[] bands = new FImage[input.readInt(true)];
+			for (int i = 0; i < bands.length; i++)
+				bands[i] = readImage(input);
+			return new MBFImage(colourSpace, bands);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link MBFImage}s that quantises the pixels
+	 * to 8 bits.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class QuantisedMBFImageSerialiser extends MBFImageSerialiser {
+		/**
+		 * Construct the serialiser
+		 */
+		public QuantisedMBFImageSerialiser() {
+			super(true);
+		}
+	}
+
+	/**
+	 * The format is recorded with each image, so any of the image serialisers
+	 * can read images written by any other.
+	 */
+	private static void writeImage(Output output, FImage image, boolean quantise) {
+		final float[][] pixels = image.pixels;
+		final int width = image.width;
+		final int height = image.height;
+
+		output.writeInt(width, true);
+		output.writeInt(height, true);
+		output.writeByte(quantise ? QUANTISED : RAW);
+
+		if (quantise) {
+			final byte[] row = new byte[width];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					final float v = pixels[y][x];
+					row[x] = (byte) (v <= 0 ? 0 : v >= 1 ? 255 : (int) (v * 255 + 0.5f));
+				}
+				output.writeBytes(row);
+			}
+		} else {
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					output.writeFloat(pixels[y][x]);
+		}
+	}
+
+	private static FImage readImage(Input input) {
+		final int width = input.readInt(true);
+		final int height = input.readInt(true);
+		final byte mode = input.readByte();
+		final float[][] pixels = new float[height][width];
+
+		if (mode == QUANTISED) {
+			final byte[] row = new byte[width];
+			for (int y = 0; y < height; y++) {
+				input.readBytes(row);
+				for (int x = 0; x < width; x++)
+					pixels[y][x] = (row[x] & 0xff) / 255f;
+			}
+		} else {
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					pixels[y][x] = input.readFloat();
+		}
+
+		return new FImage(pixels);
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link ByteFV}s that copies the raw values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class ByteFVSerialiser extends Serializer<ByteFV> {
+		@Override
+		public void write(Kryo kryo, Output output, ByteFV object) {
+			final byte[] values = object.values;
+			output.writeInt(values.length, true);
+			output.writeBytes(values);
+		}
+
+		@Override
+		public ByteFV read(Kryo kryo, Input input, Class<ByteFV> type) {
+			return new ByteFV(input.readBytes(input.readInt(true)));
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link ShortFV}s that copies the raw values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class ShortFVSerialiser extends Serializer<ShortFV> {
+		@Override
+		public void write(Kryo kryo, Output output, ShortFV object) {
+			final short[] values = object.values;
+			output.writeInt(values.length, true);
+			for (int i = 0; i < values.length; i++)
+				output.writeShort(values[i]);
+		}
+
+		@Override
+		public ShortFV read(Kryo kryo, Input input, Class<ShortFV> type) {
+			final short[] values = new short[input.readInt(true)];
+			for (int i = 0; i < values.length; i++)
+				values[i] = input.readShort();
+			return new ShortFV(values);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link IntFV}s that copies the raw values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class IntFVSerialiser extends Serializer<IntFV> {
+		@Override
+		public void write(Kryo kryo, Output output, IntFV object) {
+			final int[] values = object.values;
+			output.writeInt(values.length, true);
+			for (int i = 0; i < values.length; i++)
+				output.writeInt(values[i]);
+		}
+
+		@Override
+		public IntFV read(Kryo kryo, Input input, Class<IntFV> type) {
+			final int[] values = new int[input.readInt(true)];
+			for (int i = 0; i < values.length; i++)
+				values[i] = input.readInt();
+			return new IntFV(values);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link LongFV}s that copies the raw values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class LongFVSerialiser extends Serializer<LongFV> {
+		@Override
+		public void write(Kryo kryo, Output output, LongFV object) {
+			final long[] values = object.values;
+			output.writeInt(values.length, true);
+			for (int i = 0; i < values.length; i++)
+				output.writeLong(values[i]);
+		}
+
+		@Override
+		public LongFV read(Kryo kryo, Input input, Class<LongFV> type) {
+			final long[] values = new long[input.readInt(true)];
+			for (int i = 0; i < values.length; i++)
+				values[i] = input.readLong();
+			return new LongFV(values);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link FloatFV}s that copies the raw values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class FloatFVSerialiser extends Serializer<FloatFV> {
+		@Override
+		public void write(Kryo kryo, Output output, FloatFV object) {
+			final float[] values = object.values;
+			output.writeInt(values.length, true);
+			for (int i = 0; i < values.length; i++)
+				output.writeFloat(values[i]);
+		}
+
+		@Override
+		public FloatFV read(Kryo kryo, Input input, Class<FloatFV> type) {
+			final float[] values = new float[input.readInt(true)];
+			for (int i = 0; i < values.length; i++)
+				values[i] = input.readFloat();
+			return new FloatFV(values);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link DoubleFV}s that copies the raw values.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class DoubleFVSerialiser extends Serializer<DoubleFV> {
+		@Override
+		public void write(Kryo kryo, Output output, DoubleFV object) {
+			final double[] values = object.values;
+			output.writeInt(values.length, true);
+			for (int i = 0; i < values.length; i++)
+				output.writeDouble(values[i]);
+		}
+
+		@Override
+		public DoubleFV read(Kryo kryo, Input input, Class<DoubleFV> type) {
+			final double[] values = new double[input.readInt(true)];
+			for (int i = 0; i < values.length; i++)
+				values[i] = input.readDouble();
+			return new DoubleFV(values);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link Keypoint}s.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static class KeypointSerialiser extends Serializer<Keypoint> {
+		@Override
+		public void write(Kryo kryo, Output output, Keypoint object) {
+			output.writeFloat(object.x);
+			output.writeFloat(object.y);
+			output.writeFloat(object.scale);
+			output.writeFloat(object.ori);
+			output.writeInt(object.ivec.length, true);
+			output.writeBytes(object.ivec);
+		}
+
+		@Override
+		public Keypoint read(Kryo kryo, Input input, Class<Keypoint> type) {
+			final float x = input.readFloat();
+			final float y = input.readFloat();
+			final float scale = input.readFloat();
+			final float ori = input.readFloat();
+			final byte[] ivec = input.readBytes(input.readInt(true));
+			return new Keypoint(x, y, ori, scale, ivec);
+		}
+	}
+
+	/**
+	 * Kryo {@link Serializer} for {@link MemoryLocalFeatureList}s. The class of
+	 * the features is written once if the list is homogeneous (as is almost
+	 * always the case), so each feature costs only its own data.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static class LocalFeatureListSerialiser extends Serializer<LocalFeatureList> {
+		@Override
+		public void write(Kryo kryo, Output output, LocalFeatureList object) {
+			final int size = object.size();
+			output.writeInt(size, true);
+			output.writeInt(size == 0 ? 0 : object.vecLength(), true);
+
+			final Class<?> clz = size == 0 ? null : object.get(0).getClass();
+			boolean homogeneous = true;
+			for (int i = 1; i < size && homogeneous; i++)
+				homogeneous = object.get(i).getClass() == clz;
+
+			output.writeBoolean(homogeneous);
+			if (homogeneous) {
+				if (size > 0)
+					kryo.writeClass(output, clz);
+				for (int i = 0; i < size; i++)
+					kryo.writeObject(output, object.get(i));
+			} else {
+				for (int i = 0; i < size; i++)
+					kryo.writeClassAndObject(output, object.get(i));
+			}
+		}
+
+		@Override
+		public LocalFeatureList read(Kryo kryo, Input input, Class<LocalFeatureList> type) {
+			final int size = input.readInt(true);
+			final int veclen = input.readInt(true);
+			final MemoryLocalFeatureList list = new MemoryLocalFeatureList(veclen, size);
+
+			if (input.readBoolean()) {
+				if (size > 0) {
+					final Registration reg = kryo.readClass(input);
+					for (int i = 0; i < size; i++)
+						list.add((LocalFeature) kryo.readObject(input, reg.getType()));
+				}
+			} else {
+				for (int i = 0; i < size; i++)
+					list.add((LocalFeature) kryo.readClassAndObject(input));
+			}
+
+			return list;
+		}
+	}
+
+	/**
+	 * Register serialisers for images, feature vectors, keypoints and local
+	 * feature lists with the given configuration. Images are transported
+	 * losslessly.
+	 *
+	 * @param conf
+	 *            the configuration
+	 */
+	public static void registerSerializers(Config conf) {
+		registerSerializers(conf, false);
+	}
+
+	/**
+	 * Register serialisers for images, feature vectors, keypoints and local
+	 * feature lists with the given configuration.
+	 *
+	 * @param conf
+	 *            the configuration
+	 * @param quantiseImages
+	 *            if true, image pixels are quantised to 8 bits for transport
+	 */
+	public static void registerSerializers(Config conf, boolean quantiseImages) {
+		if (quantiseImages) {
+			conf.registerSerialization(FImage.class, QuantisedFImageSerialiser.class);
+			conf.registerSerialization(MBFImage.class, QuantisedMBFImageSerialiser.class);
+		} else {
+			conf.registerSerialization(FImage.class, FImageSerialiser.class);
+			conf.registerSerialization(MBFImage.class, MBFImageSerialiser.class);
+		}
+		conf.registerSerialization(ByteFV.class, ByteFVSerialiser.class);
+		conf.registerSerialization(ShortFV.class, ShortFVSerialiser.class);
+		conf.registerSerialization(IntFV.class, IntFVSerialiser.class);
+		conf.registerSerialization(LongFV.class, LongFVSerialiser.class);
+		conf.registerSerialization(FloatFV.class, FloatFVSerialiser.class);
+		conf.registerSerialization(DoubleFV.class, DoubleFVSerialiser.class);
+		conf.registerSerialization(Keypoint.class, KeypointSerialiser.class);
+		conf.registerSerialization(MemoryLocalFeatureList.class, LocalFeatureListSerialiser.class);
+	}
+
+	/**
+	 * Register the same serialisers as
+	 * {@link #registerSerializers(Config, boolean)} directly with a
+	 * {@link Kryo} instance; useful for testing and for code that uses Kryo
+	 * outside of Storm.
+	 *
+	 * @param kryo
+	 *            the Kryo instance
+	 * @param quantiseImages
+	 *            if true, image pixels are quantised to 8 bits for transport
+	 */
+	public static void registerSerializers(Kryo kryo, boolean quantiseImages) {
+		kryo.register(FImage.class, quantiseImages ? new QuantisedFImageSerialiser() : new FImageSerialiser());
+		kryo.register(MBFImage.class, quantiseImages ? new QuantisedMBFImageSerialiser() : new MBFImageSerialiser());
+		kryo.register(ByteFV.class, new ByteFVSerialiser());
+		kryo.register(ShortFV.class, new ShortFVSerialiser());
+		kryo.register(IntFV.class, new IntFVSerialiser());
+		kryo.register(LongFV.class, new LongFVSerialiser());
+		kryo.register(FloatFV.class, new FloatFVSerialiser());
+		kryo.register(DoubleFV.class, new DoubleFVSerialiser());
+		kryo.register(Keypoint.class, new KeypointSerialiser());
+		kryo.register(MemoryLocalFeatureList.class, new LocalFeatureListSerialiser());
+	}
+}
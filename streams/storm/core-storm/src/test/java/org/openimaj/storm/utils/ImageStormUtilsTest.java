@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2012, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.storm.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.feature.ByteFV;
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.feature.IntFV;
+import org.openimaj.feature.LongFV;
+import org.openimaj.feature.ShortFV;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Round-trip tests for the serialisers in {@link ImageStormUtils}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ImageStormUtilsTest {
+	private final Random rng = new Random(0);
+
+	private static byte[] write(Kryo kryo, Object obj) {
+		final Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, obj);
+		return output.toBytes();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T roundTrip(Kryo kryo, T obj) {
+		return (T) kryo.readClassAndObject(new Input(write(kryo, obj)));
+	}
+
+	private static Kryo kryo(boolean quantise) {
+		final Kryo kryo = new Kryo();
+		ImageStormUtils.registerSerializers(kryo, quantise);
+		return kryo;
+	}
+
+	private FImage randomImage(int width, int height) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+		return image;
+	}
+
+	/**
+	 * Lossless images must be reproduced exactly, and be smaller than their
+	 * Java serialised form
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testFImage() throws IOException {
+		final FImage image = randomImage(37, 23);
+		final FImage result = roundTrip(kryo(false), image);
+
+		assertEquals(image.width, result.width);
+		assertEquals(image.height, result.height);
+		for (int y = 0; y < image.height; y++)
+			assertArrayEquals(image.pixels[y], result.pixels[y], 0f);
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(image);
+		oos.close();
+		assertTrue(write(kryo(false), image).length < baos.size());
+	}
+
+	/**
+	 * Quantised images are accurate to within half a grey level and a quarter
+	 * of the size
+	 */
+	@Test
+	public void testQuantisedImages() {
+		final MBFImage image = new MBFImage(ColourSpace.RGB, randomImage(40, 30), randomImage(40, 30),
+				randomImage(40, 30));
+		final MBFImage result = roundTrip(kryo(true), image);
+
+		assertEquals(ColourSpace.RGB, result.colourSpace);
+		assertEquals(3, result.numBands());
+		for (int b = 0; b < 3; b++)
+			for (int y = 0; y < 30; y++)
+				assertArrayEquals(image.getBand(b).pixels[y], result.getBand(b).pixels[y], 0.5f / 255);
+
+		assertTrue(write(kryo(true), image).length < write(kryo(false), image).length / 3);
+
+		// either serialiser can read the other's output
+		final MBFImage lossless = (MBFImage) kryo(true).readClassAndObject(new Input(write(kryo(false), image)));
+		assertArrayEquals(image.getBand(0).pixels[0], lossless.getBand(0).pixels[0], 0f);
+	}
+
+	/**
+	 * Feature vectors of every type must be reproduced exactly
+	 */
+	@Test
+	public void testFeatureVectors() {
+		final Kryo kryo = kryo(false);
+
+		final byte[] b = { 1, -2, 3 };
+		assertArrayEquals(b, roundTrip(kryo, new ByteFV(b)).values);
+		final short[] s = { 1, -2, 300 };
+		assertArrayEquals(s, roundTrip(kryo, new ShortFV(s)).values);
+		final int[] i = { 1, -2, 300000 };
+		assertArrayEquals(i, roundTrip(kryo, new IntFV(i)).values);
+		final long[] l = { 1, -2, Long.MAX_VALUE };
+		assertArrayEquals(l, roundTrip(kryo, new LongFV(l)).values);
+		final float[] f = { 1.5f, -2, Float.NaN };
+		assertArrayEquals(f, roundTrip(kryo, new FloatFV(f)).values, 0f);
+		final double[] d = { 1.5, -2, Double.MIN_VALUE };
+		assertArrayEquals(d, roundTrip(kryo, new DoubleFV(d)).values, 0);
+	}
+
+	/**
+	 * Keypoint lists must be reproduced exactly
+	 */
+	@Test
+	public void testKeypointList() {
+		final MemoryLocalFeatureList<Keypoint> list = new MemoryLocalFeatureList<Keypoint>(128);
+		for (int i = 0; i < 50; i++) {
+			final byte[] ivec = new byte[128];
+			rng.nextBytes(ivec);
+			list.add(new Keypoint(rng.nextFloat() * 100, rng.nextFloat() * 100, rng.nextFloat(), rng.nextFloat() * 10,
+					ivec));
+		}
+
+		final LocalFeatureList<Keypoint> result = roundTrip(kryo(false), list);
+		assertEquals(list.size(), result.size());
+		assertEquals(128, result.vecLength());
+		for (int i = 0; i < list.size(); i++) {
+			final Keypoint expected = list.get(i);
+			final Keypoint actual = result.get(i);
+			assertEquals(expected.x, actual.x, 0f);
+			assertEquals(expected.y, actual.y, 0f);
+			assertEquals(expected.scale, actual.scale, 0f);
+			assertEquals(expected.ori, actual.ori, 0f);
+			assertArrayEquals(expected.ivec, actual.ivec);
+		}
+
+		assertEquals(0, roundTrip(kryo(false), new MemoryLocalFeatureList<Keypoint>()).size());
+	}
+}
@@ -0,0 +1,500 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.cbir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.indexing.vlad.VLADIndexerData;
+import org.openimaj.knn.FloatNearestNeighbours;
+import org.openimaj.knn.pq.MappedFloatADCNearestNeighbours;
+import org.openimaj.util.metrics.Counter;
+import org.openimaj.util.metrics.Histogram;
+import org.openimaj.util.metrics.MetricRegistry;
+import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small embeddable HTTP server that answers image search queries against a
+ * VLAD + PCA + product-quantisation index. The index is loaded once (with the
+ * product-quantised codes memory-mapped), so queries don't pay the cost of
+ * starting a JVM and loading the index.
+ * <p>
+ * Uploaded images are decoded and their PCA-VLAD features extracted on a pool
+ * of worker threads; the resultant vectors are then passed through a
+ * {@link QueryBatcher} so that concurrently arriving queries are searched
+ * together. The server provides the following endpoints:
+ * <dl>
+ * <dt><code>POST /search?k=N</code></dt>
+ * <dd>search with the image in the request body</dd>
+ * <dt><code>POST /search/vector?k=N</code></dt>
+ * <dd>search with a PCA-VLAD vector given as whitespace or comma separated
+ * numbers in the request body</dd>
+ * <dt><code>GET /metrics[?format=csv]</code></dt>
+ * <dd>latency and throughput metrics as JSON (or CSV)</dd>
+ * </dl>
+ * Search results are returned as JSON.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CBIRQueryServer {
+	/**
+	 * Command-line options for running the server
+	 */
+	protected static class Options {
+		@Option(
+				name = "--indexer-data",
+				aliases = "-id",
+				required = true,
+				usage = "the VLADIndexerData file created by VLADIndexerBuilder")
+		File indexerData;
+
+		@Option(
+				name = "--codes",
+				aliases = "-c",
+				required = true,
+				usage = "the product-quantised codes file created by VLADCodesBuilder")
+		File codes;
+
+		@Option(
+				name = "--ids",
+				required = false,
+				usage = "file containing the identifier of each indexed image, one per line")
+		File ids;
+
+		@Option(name = "--port", aliases = "-p", required = false, usage = "the port to listen on (default 8080)")
+		int port = 8080;
+
+		@Option(
+				name = "--extraction-threads",
+				aliases = "-et",
+				required = false,
+				usage = "the number of threads for decoding images and extracting features (defaults to the number of processors)")
+		int extractionThreads = Runtime.getRuntime().availableProcessors();
+
+		@Option(
+				name = "--search-threads",
+				aliases = "-st",
+				required = false,
+				usage = "the number of threads searching batches of queries (default 1)")
+		int searchThreads = 1;
+
+		@Option(
+				name = "--max-batch-size",
+				aliases = "-b",
+				required = false,
+				usage = "the maximum number of queries searched together (default 64)")
+		int maxBatchSize = 64;
+
+		@Option(
+				name = "--max-k",
+				aliases = "-k",
+				required = false,
+				usage = "the maximum number of results a query can request; larger values of k are clamped (default 1000)")
+		int maxK = 1000;
+	}
+
+	private static final Logger logger = Logger.getLogger(CBIRQueryServer.class);
+	private static final int DEFAULT_K = 10;
+
+	private final VLADIndexerData indexerData;
+	private final FloatNearestNeighbours nn;
+	private final List<String> ids;
+	private final int maxK;
+	private final QueryBatcher batcher;
+	private final ExecutorService workers;
+	private final MetricRegistry metrics = new MetricRegistry();
+	private final Histogram requestTimes = metrics.histogram("request.time");
+	private final Histogram extractTimes = metrics.histogram("extract.time");
+	private final Histogram searchTimes = metrics.histogram("search.time");
+	private final Counter requests = metrics.counter("request.count");
+	private final Counter errors = metrics.counter("request.errors");
+	private HttpServer server;
+
+	/**
+	 * Construct the server. The server doesn't listen for requests until
+	 * {@link #start(InetSocketAddress)} is called.
+	 * 
+	 * @param indexerData
+	 *            the indexer data for extracting features from query images;
+	 *            can be null if only vector queries are to be supported
+	 * @param nn
+	 *            the nearest-neighbour searcher over the indexed images
+	 * @param ids
+	 *            the identifiers of the indexed images; can be null, in which
+	 *            case the index of each image is used
+	 * @param extractionThreads
+	 *            the number of threads for handling requests and extracting
+	 *            features
+	 * @param searchThreads
+	 *            the number of threads searching batches of queries
+	 * @param maxBatchSize
+	 *            the maximum number of queries searched together
+	 */
+	public CBIRQueryServer(VLADIndexerData indexerData, FloatNearestNeighbours nn, List<String> ids,
+			int extractionThreads, int searchThreads, int maxBatchSize)
+	{
+		this(indexerData, nn, ids, extractionThreads, searchThreads, maxBatchSize, nn.size());
+	}
+
+	/**
+	 * Construct the server. The server doesn't listen for requests until
+	 * {@link #start(InetSocketAddress)} is called.
+	 * 
+	 * @param indexerData
+	 *            the indexer data for extracting features from query images;
+	 *            can be null if only vector queries are to be supported
+	 * @param nn
+	 *            the nearest-neighbour searcher over the indexed images
+	 * @param ids
+	 *            the identifiers of the indexed images; can be null, in which
+	 *            case the index of each image is used
+	 * @param extractionThreads
+	 *            the number of threads for handling requests and extracting
+	 *            features
+	 * @param searchThreads
+	 *            the number of threads searching batches of queries
+	 * @param maxBatchSize
+	 *            the maximum number of queries searched together
+	 * @param maxK
+	 *            the maximum number of results returned for a query; requests
+	 *            for more are clamped to this
+	 */
+	public CBIRQueryServer(VLADIndexerData indexerData, FloatNearestNeighbours nn, List<String> ids,
+			int extractionThreads, int searchThreads, int maxBatchSize, int maxK)
+	{
+		if (maxK < 1)
+			throw new IllegalArgumentException("maxK must be positive");
+
+		this.indexerData = indexerData;
+		this.nn = nn;
+		this.ids = ids;
+		this.maxK = maxK;
+		this.batcher = new QueryBatcher(nn, maxBatchSize, searchThreads, metrics);
+		this.workers = Executors.newFixedThreadPool(extractionThreads, new DaemonThreadFactory());
+	}
+
+	/**
+	 * Start listening for requests on the given address
+	 * 
+	 * @param address
+	 *            the address
+	 * @throws IOException
+	 *             if the server can't be bound to the address
+	 */
+	public void start(InetSocketAddress address) throws IOException {
+		server = HttpServer.create(address, 0);
+		server.setExecutor(workers);
+
+		server.createContext("/search", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleSearch(exchange);
+			}
+		});
+
+		server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleMetrics(exchange);
+			}
+		});
+
+		server.start();
+	}
+
+	/**
+	 * Stop the server, waiting up to the given number of seconds for
+	 * in-progress requests to complete.
+	 * 
+	 * @param delay
+	 *            the maximum time to wait in seconds
+	 */
+	public void stop(int delay) {
+		if (server != null)
+			server.stop(delay);
+
+		batcher.shutdown();
+		workers.shutdown();
+	}
+
+	/**
+	 * Get the port the server is listening on; useful when it was started on
+	 * an ephemeral port.
+	 * 
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Get the registry holding the server's metrics
+	 * 
+	 * @return the metrics
+	 */
+	public MetricRegistry getMetrics() {
+		return metrics;
+	}
+
+	private void handleSearch(HttpExchange exchange) throws IOException {
+		final long t0 = System.nanoTime();
+		requests.increment();
+
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, "text/plain", "Only POST is supported");
+				return;
+			}
+
+			final String path = exchange.getRequestURI().getPath();
+			final int k = Math.min(getIntParameter(exchange.getRequestURI(), "k", DEFAULT_K), maxK);
+
+			float[] query;
+			final long t1 = System.nanoTime();
+			if (path.equals("/search/vector")) {
+				query = parseVector(exchange.getRequestBody());
+			} else if (path.equals("/search")) {
+				if (indexerData == null) {
+					send(exchange, 400, "text/plain", "Image queries are not supported by this server");
+					return;
+				}
+
+				final MBFImage image = ImageUtilities.readMBF(exchange.getRequestBody());
+				query = indexerData.extractPcaVlad(image);
+			} else {
+				send(exchange, 404, "text/plain", "Not found");
+				return;
+			}
+			final long t2 = System.nanoTime();
+			extractTimes.record(t2 - t1);
+
+			if (query != null && query.length != nn.numDimensions()) {
+				send(exchange, 400, "text/plain", "Query vector has " + query.length + " dimensions; expected "
+						+ nn.numDimensions());
+				return;
+			}
+
+			final List<IntFloatPair> results = query == null ? new ArrayList<IntFloatPair>() : batcher
+					.search(query, k);
+			searchTimes.record(System.nanoTime() - t2);
+
+			send(exchange, 200, "application/json", toJSON(results));
+		} catch (final IllegalArgumentException e) {
+			send(exchange, 400, "text/plain", e.getMessage());
+		} catch (final Throwable e) {
+			logger.error("Error handling " + exchange.getRequestURI(), e);
+			send(exchange, 500, "text/plain", "Internal error");
+		} finally {
+			requestTimes.record(System.nanoTime() - t0);
+		}
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		final StringWriter sw = new StringWriter();
+
+		if ("csv".equals(getParameter(exchange.getRequestURI(), "format"))) {
+			metrics.writeCSV(sw);
+			send(exchange, 200, "text/csv", sw.toString());
+		} else {
+			metrics.writeJSON(sw);
+			send(exchange, 200, "application/json", sw.toString());
+		}
+	}
+
+	private String toJSON(List<IntFloatPair> results) {
+		final StringBuilder sb = new StringBuilder();
+
+		sb.append("{\"results\":[");
+		for (int i = 0; i < results.size(); i++) {
+			final IntFloatPair r = results.get(i);
+
+			if (i > 0)
+				sb.append(',');
+
+			sb.append("{\"index\":").append(r.first);
+			sb.append(",\"id\":\"").append(escape(ids == null ? Integer.toString(r.first) : ids.get(r.first)));
+			sb.append("\",\"distance\":").append(r.second).append('}');
+		}
+		sb.append("]}");
+
+		return sb.toString();
+	}
+
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static float[] parseVector(InputStream is) throws IOException {
+		final BufferedReader br = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		final StringBuilder sb = new StringBuilder();
+
+		String line;
+		while ((line = br.readLine()) != null)
+			sb.append(line).append(' ');
+
+		final String[] parts = sb.toString().trim().split("[\\s,]+");
+		final float[] vector = new float[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			vector[i] = Float.parseFloat(parts[i]);
+
+		return vector;
+	}
+
+	private static String getParameter(URI uri, String name) {
+		final String query = uri.getRawQuery();
+		if (query == null)
+			return null;
+
+		for (final String part : query.split("&")) {
+			final int eq = part.indexOf('=');
+			if (eq > 0 && part.substring(0, eq).equals(name))
+				return part.substring(eq + 1);
+		}
+
+		return null;
+	}
+
+	private static int getIntParameter(URI uri, String name, int defaultValue) {
+		final String value = getParameter(uri, name);
+
+		if (value == null)
+			return defaultValue;
+
+		final int v = Integer.parseInt(value);
+		if (v < 1)
+			throw new IllegalArgumentException(name + " must be positive");
+
+		return v;
+	}
+
+	private void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		if (status >= 400)
+			errors.increment();
+
+		final byte[] bytes = body.getBytes("UTF-8");
+
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		final OutputStream os = exchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	/**
+	 * Read a file of identifiers, one per line
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the identifiers
+	 * @throws IOException
+	 *             if an error occurs reading
+	 */
+	static List<String> readIds(File file) throws IOException {
+		final List<String> ids = new ArrayList<String>();
+		final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+		try {
+			String line;
+			while ((line = br.readLine()) != null)
+				ids.add(line);
+		} finally {
+			br.close();
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 *            arguments
+	 * @throws IOException
+	 *             if an error occurs loading the index or starting the server
+	 * @throws InterruptedException
+	 *             if interrupted whilst running
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		final Options options = new Options();
+		final CmdLineParser parser = new CmdLineParser(options);
+
+		try {
+			parser.parseArgument(args);
+		} catch (final CmdLineException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java -jar CBIRTool.jar CBIRQueryServer [options]");
+			parser.printUsage(System.err);
+			return;
+		}
+
+		final VLADIndexerData indexerData = VLADIndexerData.read(options.indexerData);
+		final MappedFloatADCNearestNeighbours nn = MappedFloatADCNearestNeighbours.map(options.codes,
+				indexerData.getProductQuantiser());
+		final List<String> ids = options.ids == null ? null : readIds(options.ids);
+
+		if (ids != null && ids.size() != nn.size())
+			throw new IOException("Number of ids (" + ids.size() + ") doesn't match the number of codes (" + nn.size()
+					+ ")");
+
+		final CBIRQueryServer server = new CBIRQueryServer(indexerData, nn, ids, options.extractionThreads,
+				options.searchThreads, options.maxBatchSize, options.maxK);
+		server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port));
+
+		System.err.println("Serving " + nn.size() + " images on http://localhost:" + server.getPort() + "/search");
+
+		// the server threads are daemons, so keep the main thread alive
+		Thread.sleep(Long.MAX_VALUE);
+	}
+}
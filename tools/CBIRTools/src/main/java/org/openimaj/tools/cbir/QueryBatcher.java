@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.cbir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openimaj.knn.FloatNearestNeighbours;
+import org.openimaj.util.metrics.Gauge;
+import org.openimaj.util.metrics.Histogram;
+import org.openimaj.util.metrics.MetricRegistry;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Groups concurrently arriving queries into batches that are searched with a
+ * single call to
+ * {@link FloatNearestNeighbours#searchKNN(List, int, int[][], float[][])}.
+ * Searchers that scan their data once per batch (such as
+ * {@link org.openimaj.knn.pq.MappedFloatADCNearestNeighbours}) then amortise
+ * the scan over all the queries in the batch.
+ * <p>
+ * Batching is adaptive: a search thread takes whatever queries have queued up
+ * while it was busy (up to the maximum batch size), so under light load
+ * queries are searched immediately and alone, and under heavy load the
+ * batches grow rather than the queue.
+ * <p>
+ * If the search of a batch fails, its queries are retried one at a time so
+ * that a bad query only fails its own search.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class QueryBatcher {
+	private static class PendingQuery {
+		final float[] query;
+		final int k;
+		final CountDownLatch done = new CountDownLatch(1);
+		List<IntFloatPair> result;
+		Throwable error;
+
+		PendingQuery(float[] query, int k) {
+			this.query = query;
+			this.k = k;
+		}
+	}
+
+	private final FloatNearestNeighbours nn;
+	private final int maxBatchSize;
+	private final BlockingQueue<PendingQuery> queue = new LinkedBlockingQueue<PendingQuery>();
+	private final Thread[] threads;
+	private final Histogram batchSizes;
+	private final Histogram searchTimes;
+	private final Object lock = new Object();
+	private volatile boolean running = true;
+
+	/**
+	 * Construct a batcher and start its search threads.
+	 * 
+	 * @param nn
+	 *            the nearest-neighbour searcher
+	 * @param maxBatchSize
+	 *            the maximum number of queries to search together
+	 * @param nthreads
+	 *            the number of threads performing searches
+	 * @param metrics
+	 *            the registry in which to record the batch sizes, search
+	 *            times and queue length
+	 */
+	public QueryBatcher(FloatNearestNeighbours nn, int maxBatchSize, int nthreads, MetricRegistry metrics) {
+		this.nn = nn;
+		this.maxBatchSize = maxBatchSize;
+		this.batchSizes = metrics.histogram("search.batchSize");
+		this.searchTimes = metrics.histogram("search.batchTime");
+
+		metrics.register("search.queueLength", new Gauge() {
+			@Override
+			public double getValue() {
+				return queue.size();
+			}
+		});
+
+		this.threads = new Thread[nthreads];
+		for (int i = 0; i < nthreads; i++) {
+			threads[i] = new Thread("QueryBatcher-" + i) {
+				@Override
+				public void run() {
+					processQueue();
+				}
+			};
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Search for the k nearest neighbours of the given query, blocking until
+	 * the batch containing the query has been searched.
+	 * 
+	 * @param query
+	 *            the query vector
+	 * @param k
+	 *            the number of neighbours
+	 * @return the indices and distances of the neighbours, closest first
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws IllegalArgumentException
+	 *             if the query has the wrong number of dimensions or k is not
+	 *             positive
+	 * @throws IllegalStateException
+	 *             if the batcher has been shut down
+	 */
+	public List<IntFloatPair> search(float[] query, int k) throws InterruptedException {
+		if (query.length != nn.numDimensions())
+			throw new IllegalArgumentException("Query has " + query.length + " dimensions; expected "
+					+ nn.numDimensions());
+		if (k < 1)
+			throw new IllegalArgumentException("k must be positive");
+
+		final PendingQuery pending = new PendingQuery(query, k);
+
+		// the check and the enqueue must be atomic with respect to shutdown(),
+		// otherwise a query could be queued after the threads have exited
+		synchronized (lock) {
+			if (!running)
+				throw new IllegalStateException("QueryBatcher has been shut down");
+
+			queue.add(pending);
+		}
+		pending.done.await();
+
+		if (pending.error instanceof RuntimeException)
+			throw (RuntimeException) pending.error;
+		if (pending.error instanceof Error)
+			throw (Error) pending.error;
+		if (pending.error != null)
+			throw new RuntimeException(pending.error);
+
+		return pending.result;
+	}
+
+	/**
+	 * Stop the search threads. Queries already queued are still searched.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			running = false;
+		}
+	}
+
+	private void processQueue() {
+		final List<PendingQuery> batch = new ArrayList<PendingQuery>(maxBatchSize);
+
+		while (running || !queue.isEmpty()) {
+			try {
+				final PendingQuery first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+
+				batch.add(first);
+				queue.drainTo(batch, maxBatchSize - 1);
+			} catch (final InterruptedException e) {
+				return;
+			}
+
+			searchBatch(batch);
+			batch.clear();
+		}
+	}
+
+	private void searchBatch(List<PendingQuery> batch) {
+		try {
+			searchKNN(batch);
+		} catch (final Throwable e) {
+			// every query must get either a result or an error before it is
+			// released, otherwise its search would return null
+			if (batch.size() == 1) {
+				batch.get(0).error = e;
+			} else {
+				for (final PendingQuery p : batch) {
+					try {
+						searchKNN(Collections.singletonList(p));
+					} catch (final Throwable e1) {
+						p.error = e1;
+					}
+				}
+			}
+		} finally {
+			for (final PendingQuery p : batch)
+				p.done.countDown();
+		}
+	}
+
+	private void searchKNN(List<PendingQuery> batch) {
+		final int n = batch.size();
+
+		int K = 0;
+		final List<float[]> qus = new ArrayList<float[]>(n);
+		for (final PendingQuery p : batch) {
+			qus.add(p.query);
+			K = Math.max(K, p.k);
+		}
+		K = Math.min(K, nn.size());
+
+		final int[][] indices = new int[n][K];
+		final float[][] distances = new float[n][K];
+
+		final long t0 = System.nanoTime();
+		nn.searchKNN(qus, K, indices, distances);
+		searchTimes.record(System.nanoTime() - t0);
+		batchSizes.record(n);
+
+		for (int i = 0; i < n; i++) {
+			final PendingQuery p = batch.get(i);
+			final int k = Math.min(p.k, K);
+
+			p.result = new ArrayList<IntFloatPair>(k);
+			for (int j = 0; j < k; j++)
+				p.result.add(new IntFloatPair(indices[i][j], distances[i][j]));
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.cbir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.image.indexing.vlad.VLADIndexerData;
+import org.openimaj.knn.pq.MappedFloatADCNearestNeighbours;
+
+/**
+ * Tool to build the product-quantised PCA-VLAD codes of a set of images from
+ * their local features, and write them in the memory-mappable format used by
+ * {@link MappedFloatADCNearestNeighbours} and the {@link CBIRQueryServer}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class VLADCodesBuilder {
+	@Option(
+			name = "--indexer-data",
+			aliases = "-id",
+			required = true,
+			usage = "the VLADIndexerData file created by VLADIndexerBuilder")
+	protected File indexerData;
+
+	@Option(
+			name = "--features-dir",
+			required = true,
+			usage = "directory of the files containing the input local features (one per image)")
+	protected File localFeaturesDir;
+
+	@Option(
+			name = "--features-regex",
+			required = false,
+			usage = "regular expression to match the feature filenames against")
+	protected String regex;
+
+	@Option(
+			name = "--output",
+			aliases = "-o",
+			required = true,
+			usage = "the output codes file")
+	protected File output;
+
+	@Option(
+			name = "--ids-output",
+			required = true,
+			usage = "the output file listing the feature file of each code, one per line")
+	protected File idsOutput;
+
+	/**
+	 * Main method
+	 * 
+	 * @param args
+	 *            arguments
+	 * @throws IOException
+	 *             if an error occurs during reading or writing
+	 */
+	public static void main(String[] args) throws IOException {
+		final VLADCodesBuilder builder = new VLADCodesBuilder();
+		final CmdLineParser parser = new CmdLineParser(builder);
+
+		try {
+			parser.parseArgument(args);
+		} catch (final CmdLineException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java -jar CBIRTool.jar VLADCodesBuilder [options]");
+			parser.printUsage(System.err);
+			return;
+		}
+
+		final VLADIndexerData indexer = VLADIndexerData.read(builder.indexerData);
+
+		final List<File> localFeatures = new ArrayList<File>();
+		VLADBuilder.getInputFiles(localFeatures, builder.localFeaturesDir,
+				builder.regex == null ? null : Pattern.compile(builder.regex));
+
+		final List<byte[]> codes = new ArrayList<byte[]>(localFeatures.size());
+		final PrintWriter ids = new PrintWriter(new OutputStreamWriter(new FileOutputStream(builder.idsOutput),
+				"UTF-8"));
+
+		try {
+			for (final File file : localFeatures) {
+				final List<? extends LocalFeature<?, ?>> features = MemoryLocalFeatureList.read(file, indexer
+						.getExtractor().getFeatureClass());
+				final byte[] code = indexer.extractPQPcaVlad(features);
+
+				if (code == null) {
+					System.err.println("Skipping " + file + " as it has no features");
+					continue;
+				}
+
+				codes.add(code);
+				ids.println(file.getPath());
+			}
+		} finally {
+			ids.close();
+		}
+
+		MappedFloatADCNearestNeighbours.write(builder.output, codes.toArray(new byte[codes.size()][]),
+				indexer.numDimensions());
+	}
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.cbir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.util.metrics.MetricRegistry;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for the {@link CBIRQueryServer}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CBIRQueryServerTest {
+	private CBIRQueryServer server;
+	private float[][] points;
+
+	/**
+	 * Start a server over a small exact index
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		points = new float[100][4];
+		final List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < points.length; i++) {
+			points[i][0] = i;
+			ids.add("img" + i);
+		}
+
+		server = new CBIRQueryServer(null, new FloatNearestNeighboursExact(points), ids, 4, 1, 16, 5);
+		server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	/**
+	 * Stop the server
+	 */
+	@After
+	public void teardown() {
+		server.stop(0);
+	}
+
+	private String request(String method, String path, String body) throws IOException {
+		final HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+				.openConnection();
+		conn.setRequestMethod(method);
+
+		if (body != null) {
+			conn.setDoOutput(true);
+			final OutputStream os = conn.getOutputStream();
+			os.write(body.getBytes("UTF-8"));
+			os.close();
+		}
+
+		final InputStream is = conn.getResponseCode() < 400 ? conn.getInputStream() : conn.getErrorStream();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final byte[] buf = new byte[4096];
+		int n;
+		while ((n = is.read(buf)) > 0)
+			baos.write(buf, 0, n);
+		is.close();
+
+		return conn.getResponseCode() + " " + baos.toString("UTF-8");
+	}
+
+	/**
+	 * Concurrent vector queries must each get their own results
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentVectorSearch() throws Exception {
+		final ExecutorService pool = Executors.newFixedThreadPool(8);
+		final List<Future<String>> futures = new ArrayList<Future<String>>();
+
+		for (int i = 0; i < 50; i++) {
+			final int target = i;
+			futures.add(pool.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return request("POST", "/search/vector?k=2", target + ".1, 0 0 0");
+				}
+			}));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			final String response = futures.get(i).get();
+			assertTrue(response, response.startsWith("200 {\"results\":[{\"index\":" + i + ",\"id\":\"img" + i
+					+ "\""));
+			assertTrue(response.contains("{\"index\":" + (i + 1) + ",\"id\":\"img" + (i + 1) + "\""));
+		}
+		pool.shutdown();
+
+		assertEquals(50, server.getMetrics().counter("request.count").getCount());
+		assertTrue(server.getMetrics().histogram("search.batchSize").snapshot().getSum() == 50);
+
+		final String metrics = request("GET", "/metrics", null);
+		assertTrue(metrics.startsWith("200 {"));
+		assertTrue(metrics.contains("\"request.count\":{\"type\":\"counter\",\"count\":50}"));
+	}
+
+	/**
+	 * Bad requests must be rejected
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testErrors() throws IOException {
+		assertTrue(request("GET", "/search/vector", null).startsWith("405"));
+		assertTrue(request("POST", "/search/vector?k=0", "1 2 3 4").startsWith("400"));
+		assertTrue(request("POST", "/search/vector?k=-1", "1 2 3 4").startsWith("400"));
+		assertTrue(request("POST", "/search/vector", "a b").startsWith("400"));
+		assertTrue(request("POST", "/search/vector", "1 2 3").startsWith("400"));
+		assertTrue(request("POST", "/search/vector", "1 2 3 4 5").startsWith("400"));
+		assertTrue(request("POST", "/search", "not an image").startsWith("400"));
+		assertEquals(7, server.getMetrics().counter("request.errors").getCount());
+		assertEquals(0, server.getMetrics().histogram("search.batchSize").snapshot().getCount());
+	}
+
+	/**
+	 * Requests for more results than the maximum must be clamped
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testMaxK() throws IOException {
+		final String response = request("POST", "/search/vector?k=50", "10 0 0 0");
+		assertTrue(response, response.startsWith("200 "));
+		assertEquals(5, response.split("\\{\"index\"").length - 1);
+	}
+
+	/**
+	 * A failing query must not fail the other queries in its batch
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBatchFailureIsolated() throws Exception {
+		final MetricRegistry metrics = new MetricRegistry();
+		final FloatNearestNeighboursExact nn = new FloatNearestNeighboursExact(points) {
+			@Override
+			public void searchKNN(List<float[]> qus, int K, int[][] indices, float[][] distances) {
+				for (final float[] q : qus)
+					if (q[0] < 0)
+						throw new IllegalStateException("bad query");
+
+				super.searchKNN(qus, K, indices, distances);
+			}
+		};
+		final QueryBatcher batcher = new QueryBatcher(nn, 16, 1, metrics);
+
+		final ExecutorService pool = Executors.newFixedThreadPool(8);
+		final List<Future<List<IntFloatPair>>> futures = new ArrayList<Future<List<IntFloatPair>>>();
+		for (int i = 0; i < 20; i++) {
+			final float[] query = { i % 5 == 0 ? -1 : i, 0, 0, 0 };
+			futures.add(pool.submit(new Callable<List<IntFloatPair>>() {
+				@Override
+				public List<IntFloatPair> call() throws Exception {
+					return batcher.search(query, 1);
+				}
+			}));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				final List<IntFloatPair> result = futures.get(i).get();
+				assertTrue(i % 5 != 0);
+				assertEquals(i, result.get(0).first);
+			} catch (final ExecutionException e) {
+				assertTrue(i % 5 == 0);
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		pool.shutdown();
+		batcher.shutdown();
+	}
+
+	/**
+	 * An {@link Error} thrown by the search must be rethrown to the caller,
+	 * and the server must not reveal internal errors to the client
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSearchError() throws Exception {
+		final FloatNearestNeighboursExact nn = new FloatNearestNeighboursExact(points) {
+			@Override
+			public void searchKNN(List<float[]> qus, int K, int[][] indices, float[][] distances) {
+				throw new Error("internal details");
+			}
+		};
+
+		final QueryBatcher batcher = new QueryBatcher(nn, 16, 1, new MetricRegistry());
+		try {
+			batcher.search(new float[4], 1);
+			fail();
+		} catch (final Error e) {
+			assertEquals("internal details", e.getMessage());
+		} finally {
+			batcher.shutdown();
+		}
+
+		server.stop(0);
+		server = new CBIRQueryServer(null, nn, null, 4, 1, 16);
+		server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		assertEquals("500 Internal error", request("POST", "/search/vector", "1 2 3 4"));
+	}
+
+	/**
+	 * Searching after shutdown must fail rather than block
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testSearchAfterShutdown() throws InterruptedException {
+		final QueryBatcher batcher = new QueryBatcher(new FloatNearestNeighboursExact(points), 16, 1,
+				new MetricRegistry());
+		batcher.shutdown();
+		batcher.search(new float[4], 1);
+	}
+}
@@ -31,6 +31,7 @@ package org.openimaj.tools.clusterquantiser.fastkmeans;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 import org.kohsuke.args4j.CmdLineOptionsProvider;
 import org.kohsuke.args4j.Option;
@@ -39,6 +40,7 @@ import org.openimaj.io.IOUtils;
 import org.openimaj.ml.clustering.ByteCentroidsResult;
 import org.openimaj.ml.clustering.kmeans.ByteKMeans;
 import org.openimaj.ml.clustering.kmeans.ByteKMeansInit;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 /**
  * Initialisation options for k-means.
@@ -65,6 +67,24 @@ public enum ByteKMeansInitialisers implements CmdLineOptionsProvider {
 		public Options getOptions() {
 			return new RandomSetClusterOptions();
 		}
+	},
+	/**
+	 * k-means++ seeding
+	 */
+	KMEANS_PLUS_PLUS {
+		@Override
+		public Options getOptions() {
+			return new KMeansPlusPlusOptions();
+		}
+	},
+	/**
+	 * Scalable k-means++ (k-means||) seeding
+	 */
+	KMEANS_PARALLEL {
+		@Override
+		public Options getOptions() {
+			return new KMeansParallelOptions();
+		}
 	};
 
 	@Override
@@ -93,6 +113,29 @@ public enum ByteKMeansInitialisers implements CmdLineOptionsProvider {
 		}
 	}
 
+	class KMeansPlusPlusOptions extends Options {
+		@Override
+		public void setClusterInit(ByteKMeans fkmb) {
+			fkmb.setInit(new ByteKMeansInit.KMEANS_PLUS_PLUS(new Random(), GlobalExecutorPool.getPool(), fkmb
+					.getConfiguration().getBlockSize()));
+		}
+	}
+
+	class KMeansParallelOptions extends Options {
+		@Option(name = "--init-rounds", aliases = "-ir", required = false, usage = "Number of k-means|| sampling rounds")
+		private int rounds = 5;
+
+		@Option(name = "--init-oversampling", aliases = "-io", required = false, usage = "Number of candidates sampled per k-means|| round, as a multiple of K")
+		private double oversampling = 2;
+
+		@Override
+		public void setClusterInit(ByteKMeans fkmb) {
+			fkmb.setInit(new ByteKMeansInit.KMEANS_PARALLEL(fkmb.getConfiguration().getNearestNeighbourFactory(),
+					oversampling, rounds, new Random(), GlobalExecutorPool.getPool(), fkmb.getConfiguration()
+							.getBlockSize()));
+		}
+	}
+
 	class RandomSetClusterOptions extends Options {
 		@Option(name = "--random-set-source", aliases = "-rss", required = true, usage = "Specify the random set source")
 		private File randomSetSource = null;
@@ -29,6 +29,7 @@
  */
 package org.openimaj.tools.twitter;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.List;
@@ -80,60 +81,69 @@ public class TwitterPreprocessingTool
 		while(options.hasNextFile()){
 			options.nextFile();
 			options.progress("Preparing tweets\n");
-			TwitterStatusList<USMFStatus> tweets = options.getTwitterStatusList();
-			options.progress("Processing " + tweets.size() + " tweets\n");
+			Iterable<USMFStatus> tweets = options.getTwitterStatuses();
+			if(tweets instanceof TwitterStatusList)
+				options.progress("Processing " + ((TwitterStatusList<USMFStatus>) tweets).size() + " tweets\n");
+			else
+				options.progress("Processing tweets\n");
 
 			long done = 0;
 			long skipped = 0;
 			long start = System.currentTimeMillis();
 			PrintWriter oWriter = options.outputWriter();
-			for (final USMFStatus twitterStatus : tweets) {
-				if(twitterStatus.isInvalid() || twitterStatus.text.isEmpty()){
+			try {
+				for (final USMFStatus twitterStatus : tweets) {
+					if(twitterStatus.isInvalid() || twitterStatus.text.isEmpty()){
+						if(options.veryLoud()){
+							System.out.println("\nTWEET INVALID, skipping.");
+						}
+						continue;
+					}
 					if(options.veryLoud()){
-						System.out.println("\nTWEET INVALID, skipping.");
+						System.out.println("\nPROCESSING TWEET");
+						System.out.println(twitterStatus);
 					}
-					continue;
-				}
-				if(options.veryLoud()){
-					System.out.println("\nPROCESSING TWEET");
-					System.out.println(twitterStatus);
-				}
 
-				if(options.preProcessesSkip(twitterStatus)) continue;
+					if(options.preProcessesSkip(twitterStatus)) continue;
 
-				WatchedRunner runner = new WatchedRunner(options.getTimeBeforeSkip()){
-					@Override
-					public void doTask() {
-						for (TwitterPreprocessingMode<?> mode : modes) {
-							try {
-								TwitterPreprocessingMode.results(twitterStatus, mode);
-							} catch (Exception e) {
-								System.err.println("Mode failed: " + mode);
+					WatchedRunner runner = new WatchedRunner(options.getTimeBeforeSkip()){
+						@Override
+						public void doTask() {
+							for (TwitterPreprocessingMode<?> mode : modes) {
+								try {
+									TwitterPreprocessingMode.results(twitterStatus, mode);
+								} catch (Exception e) {
+									System.err.println("Mode failed: " + mode);
+								}
 							}
 						}
-					}
-				};
-				runner.go();
-				if(runner.taskCompleted()){
-					done++;
-					options.progress("\rDone: " + done);
+					};
+					runner.go();
+					if(runner.taskCompleted()){
+						done++;
+						options.progress("\rDone: " + done);
 
 
-					if(!options.postProcessesSkip(twitterStatus))
-					{
-						outputMode.output(options.convertToOutputFormat(twitterStatus),oWriter);
-						oWriter.flush();
+						if(!options.postProcessesSkip(twitterStatus))
+						{
+							outputMode.output(options.convertToOutputFormat(twitterStatus),oWriter);
+							oWriter.flush();
+						}
+					}
+					else{
+						skipped ++;
+					}
+					if(skipped > 0){
+						options.progress(" (Skipped: " + skipped + ") ");
 					}
-				}
-				else{
-					skipped ++;
-				}
-				if(skipped > 0){
-					options.progress(" (Skipped: " + skipped + ") ");
-				}
 
 
 
+				}
+			} finally {
+				if(tweets instanceof Closeable){
+					((Closeable) tweets).close();
+				}
 			}
 			long end = System.currentTimeMillis();
 			options.progress(String.format("\nTook: %d\n",(end-start)));
@@ -31,11 +31,14 @@ package org.openimaj.tools.twitter.modes.filter;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.joda.time.format.DateTimeFormat;
 import org.kohsuke.args4j.Option;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -115,4 +118,8 @@ public class DateFilter extends TwitterPreprocessingPredicate {
 		}
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.of(Field.DATE);
+	}
 }
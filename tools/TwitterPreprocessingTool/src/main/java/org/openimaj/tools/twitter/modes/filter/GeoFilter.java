@@ -30,11 +30,14 @@
 package org.openimaj.tools.twitter.modes.filter;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.kohsuke.args4j.Option;
 import org.openimaj.math.geometry.point.Point2d;
 import org.openimaj.math.geometry.point.Point2dImpl;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -87,4 +90,9 @@ public class GeoFilter extends TwitterPreprocessingPredicate {
 		}
 		return location;
 	}
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.of(Field.GEO);
+	}
 }
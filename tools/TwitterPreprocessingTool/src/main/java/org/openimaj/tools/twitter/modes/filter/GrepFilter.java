@@ -30,11 +30,14 @@
 package org.openimaj.tools.twitter.modes.filter;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.arabidopsis.ahocorasick.AhoCorasick;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.args4j.ProxyOptionHandler;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -77,4 +80,9 @@ public class GrepFilter extends TwitterPreprocessingPredicate {
 			this.regexEngineOp.add(pat);
 		}
 	}
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
@@ -29,6 +29,10 @@
  */
 package org.openimaj.tools.twitter.modes.filter;
 
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -43,4 +47,8 @@ public class IsReplyFilter extends TwitterPreprocessingPredicate {
 		return twitterStatus.reply_to!=null && twitterStatus.reply_to.name!=null;
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.of(Field.REPLY_TO);
+	}
 }
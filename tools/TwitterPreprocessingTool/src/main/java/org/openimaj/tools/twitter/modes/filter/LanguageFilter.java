@@ -31,13 +31,16 @@ package org.openimaj.tools.twitter.modes.filter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.kohsuke.args4j.Option;
 import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
 import org.openimaj.tools.twitter.modes.preprocessing.LanguageDetectionMode;
 import org.openimaj.tools.twitter.modes.preprocessing.TwitterPreprocessingMode;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 public class LanguageFilter extends TwitterPreprocessingPredicate {
@@ -80,4 +83,8 @@ public class LanguageFilter extends TwitterPreprocessingPredicate {
 		}
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
@@ -29,9 +29,12 @@
  */
 package org.openimaj.tools.twitter.modes.filter;
 
+import java.util.EnumSet;
 import java.util.Random;
+import java.util.Set;
 
 import org.kohsuke.args4j.Option;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -49,4 +52,8 @@ public class RandomFilter extends TwitterPreprocessingPredicate {
 		return r.nextDouble() < chance;
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
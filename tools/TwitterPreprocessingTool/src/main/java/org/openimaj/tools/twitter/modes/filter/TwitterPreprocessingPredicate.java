@@ -29,6 +29,10 @@
  */
 package org.openimaj.tools.twitter.modes.filter;
 
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 import org.openimaj.util.function.Predicate;
 
@@ -47,4 +51,14 @@ public abstract class TwitterPreprocessingPredicate implements Predicate<USMFSta
 	public void validate(){
 		
 	}
+
+	/**
+	 * Get the parts of a status, beyond its id, text and analysis, that this
+	 * filter reads. By default all fields are assumed to be required.
+	 *
+	 * @return the required fields
+	 */
+	public Set<Field> requiredFields() {
+		return EnumSet.allOf(Field.class);
+	}
 }
@@ -32,11 +32,14 @@ package org.openimaj.tools.twitter.modes.output;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.openimaj.tools.twitter.modes.preprocessing.TwitterPreprocessingMode;
 import org.openimaj.tools.twitter.options.AbstractTwitterPreprocessingToolOptions;
 import org.openimaj.twitter.GeneralJSON;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 
 /**
  * An ouput mode which alters the tweets being outputted
@@ -69,5 +72,10 @@ public class SelectiveAnalysisOutputMode extends AnalysisOutputMode{
 			this.selectiveAnalysis.add(mode.getAnalysisKey());
 		}
 	}
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
 
@@ -32,12 +32,15 @@ package org.openimaj.tools.twitter.modes.output;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.kohsuke.args4j.Option;
 import org.openimaj.tools.InOutToolOptions;
 import org.openimaj.tools.twitter.options.AbstractTwitterPreprocessingToolOptions;
 import org.openimaj.twitter.GeneralJSON;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 
 /**
  * An ouput mode which alters the tweets being outputted
@@ -72,6 +75,32 @@ public class SelectiveAnalysisTwitterOutputMode extends SelectiveAnalysisOutputM
 		InOutToolOptions.prepareMultivaluedArgument(twitterExtras, "id","created_at");
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		final Set<Field> fields = EnumSet.noneOf(Field.class);
+		for (final String extra : twitterExtras) {
+			if (extra.equals("id") || extra.equals("text") || extra.equals("analysis") || extra.equals("service"))
+				continue;
+			else if (extra.equals("created_at") || extra.equals("date"))
+				fields.add(Field.DATE);
+			else if (extra.equals("source") || extra.equals("application"))
+				fields.add(Field.APPLICATION);
+			else if (extra.equals("geo") || extra.equals("coordinates"))
+				fields.add(Field.GEO);
+			else if (extra.equals("place") || extra.equals("location") || extra.equals("country_code"))
+				fields.add(Field.PLACE);
+			else if (extra.equals("user"))
+				fields.add(Field.USER);
+			else if (extra.equals("entities") || extra.equals("links") || extra.equals("keywords") || extra.equals("to_users"))
+				fields.add(Field.ENTITIES);
+			else if (extra.startsWith("in_reply_to") || extra.equals("reply_to"))
+				fields.add(Field.REPLY_TO);
+			else
+				return EnumSet.allOf(Field.class);
+		}
+		return fields;
+	}
+
 
 }
 
@@ -31,8 +31,12 @@ package org.openimaj.tools.twitter.modes.output;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.openimaj.tools.twitter.options.AbstractTwitterPreprocessingToolOptions;
 import org.openimaj.twitter.GeneralJSON;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 
 /**
  * how the processing should be outputed
@@ -63,4 +67,14 @@ public abstract class TwitterOutputMode {
 		
 	}
 
+	/**
+	 * Get the parts of a status, beyond its id, text and analysis, that are
+	 * written by this output mode. By default the whole status is written.
+	 *
+	 * @return the required fields
+	 */
+	public Set<Field> requiredFields() {
+		return EnumSet.allOf(Field.class);
+	}
+
 }
@@ -30,11 +30,14 @@
 package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.geonames.ToponymSearchCriteria;
 import org.geonames.ToponymSearchResult;
 import org.geonames.WebService;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 import org.openimaj.twitter.utils.Twitter4jUtil;
 
@@ -213,4 +216,9 @@ public class CountryCodeMode extends TwitterPreprocessingMode<String> {
 			return null;
 		}
 	}
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.of(Field.GEO, Field.PLACE, Field.USER);
+	}
 }
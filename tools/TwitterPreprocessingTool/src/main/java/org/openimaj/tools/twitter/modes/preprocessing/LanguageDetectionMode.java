@@ -30,13 +30,16 @@
 package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.openimaj.io.FileUtils;
 import org.openimaj.text.nlp.language.LanguageDetector;
 import org.openimaj.twitter.GeneralJSON;
 import org.openimaj.twitter.GeneralJSONRDF;
 import org.openimaj.twitter.RDFAnalysisProvider;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 import com.hp.hpl.jena.query.ParameterizedSparqlString;
@@ -121,4 +124,9 @@ public class LanguageDetectionMode extends TwitterPreprocessingMode<Map<String,
 	public String getAnalysisKey() {
 		return LANGUAGES;
 	}
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
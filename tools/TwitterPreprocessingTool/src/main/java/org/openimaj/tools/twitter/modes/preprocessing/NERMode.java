@@ -31,9 +31,11 @@ package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.kohsuke.args4j.Option;
 import org.openimaj.ml.annotation.ScoredAnnotation;
@@ -45,6 +47,7 @@ import org.openimaj.text.nlp.namedentity.YagoEntityCompleteAnnotator;
 import org.openimaj.text.nlp.namedentity.YagoEntityContextAnnotator;
 import org.openimaj.text.nlp.namedentity.YagoEntityContextScorerFactory;
 import org.openimaj.text.nlp.namedentity.YagoEntityContextScorerFactory.YagoEntityContextScorer;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -187,4 +190,8 @@ public class NERMode extends
 		System.out.println("Done");
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
@@ -34,13 +34,16 @@
 package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openimaj.text.nlp.sentiment.BillMPQASentiment;
 import org.openimaj.text.nlp.sentiment.SentimentExtractor;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -85,4 +88,9 @@ public class SentimentExtractionMode extends TwitterPreprocessingMode<Map<String
     public String getAnalysisKey() {
         return "sentiment";
     }
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
@@ -31,12 +31,15 @@ package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 import org.tartarus.snowball.SnowballProgram;
 import org.tartarus.snowball.ext.EnglishStemmer;
@@ -100,4 +103,8 @@ public class StemmingMode extends TwitterPreprocessingMode<List<String>> {
 		return StemmingMode.STEMMED;
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
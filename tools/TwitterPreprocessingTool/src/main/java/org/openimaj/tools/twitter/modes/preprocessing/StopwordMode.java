@@ -31,13 +31,16 @@ package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.openimaj.io.FileUtils;
 import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -129,4 +132,8 @@ public class StopwordMode extends TwitterPreprocessingMode<List<String>> {
 		return STOPWORDS_KEY;
 	}
 
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
@@ -30,12 +30,15 @@
 package org.openimaj.tools.twitter.modes.preprocessing;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.openimaj.text.nlp.TweetTokeniser;
 import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 /**
@@ -94,4 +97,9 @@ public class TokeniseMode extends TwitterPreprocessingMode<Map<String, List<Stri
 	public String getAnalysisKey() {
 		return TokeniseMode.TOKENS;
 	}
+
+	@Override
+	public Set<Field> requiredFields() {
+		return EnumSet.noneOf(Field.class);
+	}
 }
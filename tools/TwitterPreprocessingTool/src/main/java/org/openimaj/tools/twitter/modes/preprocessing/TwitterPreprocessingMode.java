@@ -29,8 +29,12 @@
  */
 package org.openimaj.tools.twitter.modes.preprocessing;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import org.openimaj.twitter.GeneralJSON;
 import org.openimaj.twitter.RDFAnalysisProvider;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 
 import com.hp.hpl.jena.rdf.model.Model;
@@ -104,4 +108,15 @@ public abstract class TwitterPreprocessingMode<T> {
 	 * @return the keys this mode adds to the twitter analysis map
 	 */
 	public abstract String getAnalysisKey();
+
+	/**
+	 * Get the parts of a status, beyond its id, text and analysis, that this
+	 * mode reads. Fields that no mode, filter or output requires need not be
+	 * parsed from the input. By default all fields are assumed to be required.
+	 *
+	 * @return the required fields
+	 */
+	public Set<Field> requiredFields() {
+		return EnumSet.allOf(Field.class);
+	}
 }
@@ -30,7 +30,9 @@
 package org.openimaj.tools.twitter.options;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -45,6 +47,7 @@ import org.openimaj.tools.twitter.modes.preprocessing.TwitterPreprocessingMode;
 import org.openimaj.tools.twitter.modes.preprocessing.TwitterPreprocessingModeOption;
 import org.openimaj.twitter.GeneralJSON;
 import org.openimaj.twitter.GeneralJSONRDF;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
 import org.openimaj.twitter.USMFStatus;
 import org.openimaj.twitter.collection.TwitterStatusListUtils;
 
@@ -241,6 +244,28 @@ public abstract class AbstractTwitterPreprocessingToolOptions extends InOutToolO
 		return outputModeOptionOp;
 	}
 
+	/**
+	 * Get the parts of the input statuses, beyond their id, text and analysis,
+	 * that are read by any of the selected modes, filters or the output mode.
+	 * Other fields can be skipped when the input is parsed.
+	 *
+	 * @return the required fields
+	 */
+	public Set<Field> requiredFields() {
+		final Set<Field> fields = EnumSet.noneOf(Field.class);
+		for (final TwitterPreprocessingMode<?> mode : this.modeOptionsOp) {
+			fields.addAll(mode.requiredFields());
+		}
+		for (final TwitterPreprocessingPredicate filter : this.preFilterOptionsOp) {
+			fields.addAll(filter.requiredFields());
+		}
+		for (final TwitterPreprocessingPredicate filter : this.postFilterOptionsOp) {
+			fields.addAll(filter.requiredFields());
+		}
+		fields.addAll(this.outputModeOptionOp.requiredFields());
+		return fields;
+	}
+
 	/**
 	 * @return whether the options provided make sense
 	 * @throws CmdLineException
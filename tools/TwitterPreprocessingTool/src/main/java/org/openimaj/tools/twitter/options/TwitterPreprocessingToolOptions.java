@@ -31,6 +31,7 @@ package org.openimaj.tools.twitter.options;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -42,12 +43,14 @@ import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.kohsuke.args4j.CmdLineException;
 import org.openimaj.tools.FileToolsUtil;
 import org.openimaj.twitter.USMFStatus;
 import org.openimaj.twitter.collection.FileTwitterStatusList;
 import org.openimaj.twitter.collection.StreamTwitterStatusList;
 import org.openimaj.twitter.collection.TwitterStatusList;
+import org.openimaj.twitter.collection.USMFStatusReader;
 
 /**
  * The single processing command line version of the twitter tool
@@ -130,6 +133,31 @@ public class TwitterPreprocessingToolOptions extends  AbstractTwitterPreprocessi
 		
 	}
 
+	/**
+	 * Get the tweets from the input file. When all the raw twitter statuses
+	 * of the input are to be processed they are streamed through a
+	 * {@link USMFStatusReader} which parses only the fields required by the
+	 * selected modes, filters and output mode, and reuses a single status
+	 * object; otherwise this is {@link #getTwitterStatusList()}.
+	 *
+	 * @return the tweets from the input file
+	 * @throws IOException
+	 */
+	public Iterable<USMFStatus> getTwitterStatuses() throws IOException {
+		if (this.nTweets != -1 || this.statusType != StatusType.TWITTER)
+			return getTwitterStatusList();
+
+		final InputStream stream;
+		if (this.stdin) {
+			this.stdin = false;
+			// closing the reader mustn't close stdin
+			stream = new CloseShieldInputStream(sysin);
+		} else {
+			stream = new FileInputStream(this.inputFile);
+		}
+		return new USMFStatusReader(stream, this.encoding, this.statusType.type(), requiredFields(), true);
+	}
+
 	/**
 	 * @return a print writer to the output file or stdout
 	 * @throws UnsupportedEncodingException
@@ -32,9 +32,11 @@
  */
 package org.openimaj.video.processing.shotdetector;
 
+import java.util.Arrays;
+
 import org.openimaj.feature.DoubleFVComparison;
+import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
-import org.openimaj.image.analysis.algorithm.histogram.HistogramAnalyser;
 import org.openimaj.math.statistics.distribution.Histogram;
 import org.openimaj.video.Video;
 
@@ -50,6 +52,13 @@ import org.openimaj.video.Video;
  * 	ShotDetected event which provides a VideoKeyframe which has a timecode
  * 	and an image. Each event will receive the same VideoKeyframe instance
  * 	containing different information. USe VideoKeyframe#clone() to make a copy.
+ * 	<p>
+ * 	The histogram buffers are reused between frames. For high resolution
+ * 	material, the histograms can be estimated from a subsampled proxy of each
+ * 	frame (see {@link #setSubsampleFactor(int)}), which is much faster and
+ * 	has little effect on the detected boundaries. The histogram counts are
+ * 	scaled by the number of pixels represented by each sample, so the
+ * 	threshold does not need to be changed when subsampling.
  *
  *  @author David Dupplaw (dpd@ecs.soton.ac.uk)
  *
@@ -58,9 +67,18 @@ import org.openimaj.video.Video;
 public class HistogramVideoShotDetector
 	extends VideoShotDetector<MBFImage>
 {
+	/** The number of bins in the histograms */
+	private static final int NBINS = 64;
+
 	/** The previous frame's histogram */
 	private Histogram lastHistogram;
 
+	/** The current frame's histogram */
+	private Histogram currentHistogram;
+
+	/** The sampling step in each direction */
+	private int subsample = 1;
+
 	/**
 	 * 	If you use this constructor, your timecodes will be messed up
 	 * 	unless you call {@link #setFPS(double)} before you process
@@ -102,6 +120,29 @@ public class HistogramVideoShotDetector
 		this.threshold = 5000;
 	}
 
+	/**
+	 * 	Set the subsampling factor. Only every n-th pixel in every n-th row
+	 * 	of each frame will be used to estimate the frame histograms. A factor
+	 * 	of 1 (the default) uses all pixels.
+	 *
+	 *	@param subsample The subsampling factor
+	 */
+	public void setSubsampleFactor( final int subsample )
+	{
+		if( subsample < 1 )
+			throw new IllegalArgumentException( "Subsample factor must be at least 1" );
+		this.subsample = subsample;
+	}
+
+	/**
+	 * 	Returns the subsampling factor.
+	 *	@return The subsampling factor
+	 */
+	public int getSubsampleFactor()
+	{
+		return this.subsample;
+	}
+
 	/**
 	 * 	Checks whether a shot boundary occurred between the given frame
 	 * 	and the previous frame, and if so, it will add a shot boundary
@@ -112,20 +153,48 @@ public class HistogramVideoShotDetector
 	@Override
 	protected double getInterframeDistance( final MBFImage frame )
 	{
-		// Get the histogram for the frame.
-		final HistogramAnalyser hp = new HistogramAnalyser( 64 );
-		if( frame instanceof MBFImage )
-			hp.analyseImage( frame.getBand(0) );
-		final Histogram newHisto = hp.getHistogram();
+		// Reuse the buffer of the histogram from two frames ago
+		Histogram newHisto = this.currentHistogram;
+		if( newHisto == null || newHisto == this.lastHistogram )
+			newHisto = new Histogram( NBINS );
+		else
+			Arrays.fill( newHisto.values, 0 );
+
+		this.computeHistogram( frame.getBand(0), newHisto.values );
 
 		double dist = 0;
 
 		// If we have a last histogram, compare against it.
 		if( this.lastHistogram != null )
-			dist = newHisto.compare( this.lastHistogram, DoubleFVComparison.EUCLIDEAN );
+			dist = DoubleFVComparison.EUCLIDEAN.compare( newHisto.values, this.lastHistogram.values );
 
+		this.currentHistogram = this.lastHistogram;
 		this.lastHistogram = newHisto;
 
 		return dist;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * 	Accumulate the histogram of the (subsampled) image into the given
+	 * 	bins. Each sample is weighted by the number of pixels it represents.
+	 */
+	private void computeHistogram( final FImage image, final double[] bins )
+	{
+		final int nbins = bins.length;
+		final float[][] pixels = image.pixels;
+		final int step = this.subsample;
+		final double weight = step * step;
+
+		for( int r = 0; r < image.height; r += step )
+		{
+			final float[] row = pixels[r];
+			for( int c = 0; c < image.width; c += step )
+			{
+				int bin = (int) (row[c] * nbins);
+				if( bin > (nbins - 1) )
+					bin = nbins - 1;
+				bins[bin] += weight;
+			}
+		}
+	}
+}
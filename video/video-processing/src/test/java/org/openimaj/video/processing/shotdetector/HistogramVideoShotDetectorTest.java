@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.video.processing.shotdetector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+
+/**
+ * Tests for the {@link HistogramVideoShotDetector}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class HistogramVideoShotDetectorTest {
+	private static final int CUT = 30;
+	private static final int N_FRAMES = 60;
+
+	/**
+	 * Make a frame with a horizontal ramp whose brightness drifts slowly
+	 * within a shot and jumps at the cut
+	 */
+	private static MBFImage frame(int i) {
+		final float base = (i < CUT ? 0.2f : 0.6f) + 0.001f * (i % CUT);
+		final FImage band = new FImage(128, 96);
+
+		for (int y = 0; y < band.height; y++)
+			for (int x = 0; x < band.width; x++)
+				band.pixels[y][x] = base + 0.1f * x / band.width;
+
+		return new MBFImage(ColourSpace.RGB, band, band.clone(), band.clone());
+	}
+
+	private static int[] detect(int subsample) {
+		final HistogramVideoShotDetector detector = new HistogramVideoShotDetector(25);
+		detector.setThreshold(2000);
+		detector.setSubsampleFactor(subsample);
+
+		for (int i = 0; i < N_FRAMES; i++)
+			detector.processFrame(frame(i));
+
+		final List<ShotBoundary<MBFImage>> boundaries = detector.getShotBoundaries();
+		final int[] frames = new int[boundaries.size()];
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = (int) boundaries.get(i).getTimecode().getFrameNumber();
+
+		return frames;
+	}
+
+	/**
+	 * Test that the start of the video and the cut are detected, with and
+	 * without subsampling
+	 */
+	@Test
+	public void testCut() {
+		final int[] expected = { 0, CUT };
+
+		assertArrayEquals(expected, detect(1));
+		assertArrayEquals(expected, detect(4));
+	}
+
+	/**
+	 * Test that subsampling gives distances on the same scale as the full
+	 * resolution histograms
+	 */
+	@Test
+	public void testSubsampledDistanceScale() {
+		final HistogramVideoShotDetector full = new HistogramVideoShotDetector(25);
+		final HistogramVideoShotDetector sub = new HistogramVideoShotDetector(25);
+		sub.setSubsampleFactor(4);
+
+		full.getInterframeDistance(frame(CUT - 1));
+		sub.getInterframeDistance(frame(CUT - 1));
+
+		final double d1 = full.getInterframeDistance(frame(CUT));
+		final double d4 = sub.getInterframeDistance(frame(CUT));
+
+		assertEquals(1, d4 / d1, 0.1);
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openimaj.twitter.USMFStatus.Link;
+import org.openimaj.twitter.USMFStatus.User;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * A streaming parser that fills a {@link USMFStatus} directly from a Twitter
+ * JSON string. This produces the same result as parsing the string into a
+ * {@link GeneralJSONTwitter} with {@link Gson} and calling
+ * {@link GeneralJSONTwitter#fillUSMF(USMFStatus)}, but without building the
+ * intermediate maps. Parts of the tweet that are not required can be skipped
+ * entirely by only selecting the {@link Field}s that are needed; the id, text
+ * and analysis are always extracted.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingTwitterParser {
+	/**
+	 * The optional parts of a tweet that can be extracted
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public enum Field {
+		/**
+		 * The creation date ({@link USMFStatus#date})
+		 */
+		DATE,
+		/**
+		 * The posting application ({@link USMFStatus#application})
+		 */
+		APPLICATION,
+		/**
+		 * The coordinates ({@link USMFStatus#geo})
+		 */
+		GEO,
+		/**
+		 * The place ({@link USMFStatus#location} and
+		 * {@link USMFStatus#country_code})
+		 */
+		PLACE,
+		/**
+		 * The user ({@link USMFStatus#user})
+		 */
+		USER,
+		/**
+		 * The entities ({@link USMFStatus#links}, {@link USMFStatus#keywords}
+		 * and {@link USMFStatus#to_users})
+		 */
+		ENTITIES,
+		/**
+		 * The user being replied to ({@link USMFStatus#reply_to})
+		 */
+		REPLY_TO
+	}
+
+	private static final Type ANALYSIS_TYPE = new TypeToken<Map<String, Object>>() {
+	}.getType();
+
+	private final Gson gson = new Gson();
+	private final boolean date;
+	private final boolean application;
+	private final boolean geo;
+	private final boolean place;
+	private final boolean user;
+	private final boolean entities;
+	private final boolean replyTo;
+
+	/**
+	 * Construct a parser that extracts all fields
+	 */
+	public StreamingTwitterParser() {
+		this(EnumSet.allOf(Field.class));
+	}
+
+	/**
+	 * Construct a parser that extracts only the given fields (in addition to
+	 * the id, text and analysis).
+	 *
+	 * @param fields
+	 *            the fields to extract
+	 */
+	public StreamingTwitterParser(Set<Field> fields) {
+		date = fields.contains(Field.DATE);
+		application = fields.contains(Field.APPLICATION);
+		geo = fields.contains(Field.GEO);
+		place = fields.contains(Field.PLACE);
+		user = fields.contains(Field.USER);
+		entities = fields.contains(Field.ENTITIES);
+		replyTo = fields.contains(Field.REPLY_TO);
+	}
+
+	/**
+	 * Parse the given line into the given status. The status is reset first,
+	 * so the same instance can be reused for successive lines. If the line
+	 * cannot be parsed as JSON, the line itself becomes the text of the
+	 * status.
+	 *
+	 * @param line
+	 *            the JSON line
+	 * @param status
+	 *            the status to fill
+	 */
+	public void parse(String line, USMFStatus status) {
+		status.reset();
+
+		try {
+			final JsonReader reader = new JsonReader(new StringReader(line));
+			reader.setLenient(true);
+			parseStatus(reader, status);
+		} catch (final Exception e) {
+			status.reset();
+			status.text = line;
+		}
+
+		status.updateValidity();
+	}
+
+	private void parseStatus(JsonReader reader, USMFStatus status) throws IOException {
+		boolean hasEntities = false;
+		String replyName = null;
+		double replyId = 0;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			} else if (name.equals("id")) {
+				status.id = reader.nextLong();
+			} else if (name.equals("text")) {
+				status.text = reader.nextString();
+			} else if (name.equals("analysis")) {
+				status.analysis = gson.fromJson(reader, ANALYSIS_TYPE);
+			} else if (name.equals("entities")) {
+				hasEntities = true;
+				if (entities)
+					parseEntities(reader, status);
+				else
+					reader.skipValue();
+			} else if (date && name.equals("created_at")) {
+				status.date = reader.nextString();
+			} else if (application && name.equals("source")) {
+				status.application = reader.nextString();
+			} else if (geo && name.equals("coordinates")) {
+				parseCoordinates(reader, status);
+			} else if (place && name.equals("place")) {
+				parsePlace(reader, status);
+			} else if (user && name.equals("user")) {
+				parseUser(reader, status.user);
+			} else if (replyTo && name.equals("in_reply_to_screen_name")) {
+				replyName = reader.nextString();
+			} else if (replyTo && name.equals("in_reply_to_user_id")) {
+				replyId = reader.nextDouble();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (status.id == 0) {
+			// not a tweet; treat as raw text
+			final String text = status.text;
+			status.reset();
+			status.text = text;
+		} else if (hasEntities && replyName != null) {
+			status.reply_to = new User();
+			status.reply_to.name = replyName;
+			status.reply_to.id = replyId;
+		}
+
+		status.service = "Twitter";
+	}
+
+	private static String nextStringOrNull(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextString();
+	}
+
+	private static void parseCoordinates(JsonReader reader, USMFStatus status) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			reader.skipValue();
+			return;
+		}
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("coordinates") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				final double[] coords = new double[2];
+				reader.beginArray();
+				coords[0] = reader.nextDouble();
+				coords[1] = reader.nextDouble();
+				while (reader.hasNext())
+					reader.skipValue();
+				reader.endArray();
+				status.geo = coords;
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void parsePlace(JsonReader reader, USMFStatus status) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			reader.skipValue();
+			return;
+		}
+
+		boolean hasName = false, hasCountryCode = false;
+		String name = null, countryCode = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String key = reader.nextName();
+			if (key.equals("name")) {
+				hasName = true;
+				name = nextStringOrNull(reader);
+			} else if (key.equals("country_code")) {
+				hasCountryCode = true;
+				countryCode = nextStringOrNull(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (hasName && hasCountryCode) {
+			status.location = name;
+			status.country_code = countryCode;
+		}
+	}
+
+	private static void parseUser(JsonReader reader, User user) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String key = reader.nextName();
+
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+			} else if (key.equals("profile_image_url")) {
+				user.avatar = reader.nextString();
+			} else if (key.equals("description")) {
+				user.description = reader.nextString();
+			} else if (key.equals("id")) {
+				user.id = reader.nextDouble();
+			} else if (key.equals("lang")) {
+				user.language = reader.nextString();
+			} else if (key.equals("statuses_count")) {
+				user.postings = reader.nextDouble();
+			} else if (key.equals("name")) {
+				user.real_name = reader.nextString();
+			} else if (key.equals("screen_name")) {
+				user.name = reader.nextString();
+			} else if (key.equals("followers_count")) {
+				user.subscribers = reader.nextDouble();
+			} else if (key.equals("utc_offset")) {
+				user.utc = reader.nextDouble();
+			} else if (key.equals("url")) {
+				user.website = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private static void parseEntities(JsonReader reader, USMFStatus status) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String key = reader.nextName();
+
+			if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+				reader.skipValue();
+				continue;
+			}
+
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (key.equals("urls"))
+					parseURL(reader, status);
+				else if (key.equals("hashtags"))
+					parseHashtag(reader, status);
+				else if (key.equals("user_mentions"))
+					parseMention(reader, status);
+				else
+					reader.skipValue();
+			}
+			reader.endArray();
+		}
+		reader.endObject();
+	}
+
+	private static void parseURL(JsonReader reader, USMFStatus status) throws IOException {
+		String href = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("expanded_url"))
+				href = nextStringOrNull(reader);
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		if (href != null) {
+			final Link link = new Link();
+			link.href = href;
+			status.links.add(link);
+		}
+	}
+
+	private static void parseHashtag(JsonReader reader, USMFStatus status) throws IOException {
+		String text = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("text"))
+				text = nextStringOrNull(reader);
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		if (text != null)
+			status.keywords.add(text);
+	}
+
+	private static void parseMention(JsonReader reader, USMFStatus status) throws IOException {
+		final User mention = new User();
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String key = reader.nextName();
+
+			if (reader.peek() == JsonToken.NULL)
+				reader.nextNull();
+			else if (key.equals("screen_name"))
+				mention.name = reader.nextString();
+			else if (key.equals("name"))
+				mention.real_name = reader.nextString();
+			else if (key.equals("id"))
+				mention.id = reader.nextDouble();
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+
+		status.to_users.add(mention);
+	}
+}
@@ -34,6 +34,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -58,6 +59,7 @@ import com.google.gson.Gson;
  */
 public class USMFStatus extends GeneralJSON implements Cloneable {
 	private static final Logger logger = Logger.getLogger(USMFStatus.class);
+	private static final StreamingTwitterParser TWITTER_PARSER = new StreamingTwitterParser();
 	private transient Class<? extends GeneralJSON> generalJSONclass; // class of
 	// the
 	// source.
@@ -234,6 +236,12 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 	 *            json string)
 	 */
 	public void fillFromString(String line) {
+		if (generalJSONclass == GeneralJSONTwitter.class) {
+			// avoid building the intermediate maps of a full Gson parse
+			TWITTER_PARSER.parse(line, this);
+			return;
+		}
+
 		GeneralJSON jsonInstance = null;
 		try {
 			jsonInstance = IOUtils.newInstance(generalJSONclass);
@@ -248,11 +256,59 @@ public class USMFStatus extends GeneralJSON implements Cloneable {
 			jsonInstance.fillUSMF(this);
 		}
 
-		if (this.text == null && this.analysis.size() == 0) {
-			this.invalid = true;
-			return;
-		}
-		this.invalid = false;
+		updateValidity();
+	}
+
+	/**
+	 * Mark this status as invalid if it has neither text nor analysis
+	 */
+	void updateValidity() {
+		this.invalid = this.text == null && this.analysis.size() == 0;
+	}
+
+	/**
+	 * Reset all fields to their initial state so this status can be reused.
+	 * The lists are cleared rather than replaced, so should not be shared with
+	 * other objects.
+	 */
+	public void reset() {
+		service = null;
+		id = 0;
+		geo = null;
+		application = null;
+		location = null;
+		date = null;
+		source = null;
+		text = null;
+		description = null;
+		if (keywords == null)
+			keywords = new ArrayList<String>();
+		else
+			keywords.clear();
+		category = null;
+		duration = 0;
+		likes = 0;
+		dislikes = 0;
+		favorites = 0;
+		comments = 0;
+		rates = 0;
+		rating = 0;
+		min_rating = 0;
+		max_rating = 0;
+		user = new User();
+		if (to_users == null)
+			to_users = new ArrayList<User>();
+		else
+			to_users.clear();
+		reply_to = null;
+		if (links == null)
+			links = new ArrayList<Link>();
+		else
+			links.clear();
+		country_code = null;
+		if (analysis == null || !analysis.isEmpty())
+			analysis = new HashMap<String, Object>();
+		invalid = false;
 	}
 
 	@Override
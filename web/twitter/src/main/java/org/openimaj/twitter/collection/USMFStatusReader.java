@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter.collection;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.openimaj.twitter.GeneralJSON;
+import org.openimaj.twitter.GeneralJSONTwitter;
+import org.openimaj.twitter.StreamingTwitterParser;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
+import org.openimaj.twitter.USMFStatus;
+
+/**
+ * Reads {@link USMFStatus}es one at a time from a stream of line-delimited
+ * JSON. Unlike {@link StreamTwitterStatusList} the stream is read through a
+ * large buffer rather than a {@link java.util.Scanner}, Twitter JSON is parsed
+ * with a {@link StreamingTwitterParser} that only extracts the requested
+ * fields, and a single status object can optionally be reused for every line.
+ * When statuses are reused, each one is only valid until the next call to
+ * {@link #next()}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class USMFStatusReader implements Iterator<USMFStatus>, Iterable<USMFStatus>, Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final BufferedReader reader;
+	private final Class<? extends GeneralJSON> type;
+	private final StreamingTwitterParser parser;
+	private final boolean reuse;
+	private USMFStatus status;
+	private String nextLine;
+
+	/**
+	 * Construct a reader that extracts all fields into a new status for each
+	 * line.
+	 *
+	 * @param stream
+	 *            the stream to read
+	 * @param charset
+	 *            the character set of the stream
+	 * @param type
+	 *            the type of JSON being read
+	 * @throws IOException
+	 *             if the character set is unsupported
+	 */
+	public USMFStatusReader(InputStream stream, String charset, Class<? extends GeneralJSON> type)
+			throws IOException
+	{
+		this(stream, charset, type, EnumSet.allOf(Field.class), false);
+	}
+
+	/**
+	 * Construct a reader.
+	 *
+	 * @param stream
+	 *            the stream to read
+	 * @param charset
+	 *            the character set of the stream
+	 * @param type
+	 *            the type of JSON being read
+	 * @param fields
+	 *            the fields to extract; only used if the type is
+	 *            {@link GeneralJSONTwitter}
+	 * @param reuse
+	 *            if true, the same status object is returned for every line
+	 * @throws IOException
+	 *             if the character set is unsupported
+	 */
+	public USMFStatusReader(InputStream stream, String charset, Class<? extends GeneralJSON> type,
+			Set<Field> fields, boolean reuse) throws IOException
+	{
+		this.reader = new BufferedReader(new InputStreamReader(stream, charset), BUFFER_SIZE);
+		this.type = type;
+		this.parser = type == GeneralJSONTwitter.class ? new StreamingTwitterParser(fields) : null;
+		this.reuse = reuse;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextLine == null) {
+			try {
+				nextLine = reader.readLine();
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return nextLine != null;
+	}
+
+	@Override
+	public USMFStatus next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		final String line = nextLine;
+		nextLine = null;
+
+		USMFStatus current = status;
+		if (current == null || !reuse) {
+			current = new USMFStatus(type);
+			if (reuse)
+				status = current;
+		} else if (parser == null) {
+			current.reset();
+		}
+
+		if (parser != null)
+			parser.parse(line, current);
+		else
+			current.fillFromString(line);
+
+		return current;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Iterator<USMFStatus> iterator() {
+		return this;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.twitter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.twitter.StreamingTwitterParser.Field;
+import org.openimaj.twitter.collection.USMFStatusReader;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Tests for the {@link StreamingTwitterParser} and {@link USMFStatusReader}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class StreamingTwitterParserTest {
+	private static final String[] RESOURCES = {
+			"/org/openimaj/twitter/json_tweets.txt",
+			"/org/openimaj/twitter/json_tweets_utf.txt",
+			"/org/openimaj/twitter/json_tweets-stemmed.txt",
+			"/org/openimaj/twitter/geo-sample.json",
+			"/org/openimaj/twitter/sample-2010-10.json",
+			"/org/openimaj/twitter/deletedRetweetedTweets.json",
+			"/org/openimaj/twitter/newtweets.json",
+			"/org/openimaj/twitter/broken_raw_tweets.txt",
+			"/org/openimaj/twitter/tweets_fewer.txt"
+	};
+
+	private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+	private static List<String> lines(String resource) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				StreamingTwitterParserTest.class.getResourceAsStream(resource), "UTF-8"));
+		final List<String> lines = new ArrayList<String>();
+		String line;
+		while ((line = reader.readLine()) != null)
+			lines.add(line);
+		reader.close();
+		return lines;
+	}
+
+	/**
+	 * Fill a status the way {@link USMFStatus#fillFromString(String)} did
+	 * before the streaming parser, through a full Gson parse.
+	 */
+	private static USMFStatus legacy(String line) {
+		final USMFStatus status = new USMFStatus(GeneralJSONTwitter.class);
+		GeneralJSON json = null;
+		try {
+			json = new GeneralJSONTwitter().instanceFromString(line);
+		} catch (final Throwable e) {
+		}
+
+		if (json == null)
+			status.text = line;
+		else
+			json.fillUSMF(status);
+
+		return status;
+	}
+
+	private String toJson(USMFStatus status) {
+		return gson.toJson(status).replaceAll(",?\"invalid\":(true|false)", "");
+	}
+
+	/**
+	 * Parsing all fields must give the same status as the Gson route
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testMatchesGson() throws IOException {
+		final StreamingTwitterParser parser = new StreamingTwitterParser();
+		int compared = 0;
+
+		for (final String resource : RESOURCES) {
+			for (final String line : lines(resource)) {
+				final USMFStatus expected;
+				try {
+					expected = legacy(line);
+				} catch (final RuntimeException e) {
+					// the Gson route can't cope with this line at all
+					continue;
+				}
+
+				final USMFStatus actual = new USMFStatus(GeneralJSONTwitter.class);
+				parser.parse(line, actual);
+				assertEquals(resource, toJson(expected), toJson(actual));
+
+				final USMFStatus viaFill = new USMFStatus(GeneralJSONTwitter.class);
+				viaFill.fillFromString(line);
+				assertEquals(toJson(expected), toJson(viaFill));
+				compared++;
+			}
+		}
+
+		assertTrue(compared > 500);
+	}
+
+	/**
+	 * Unselected fields should be left empty, and reused statuses should not
+	 * retain anything from previous lines
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testSelectiveReuse() throws IOException {
+		final StreamingTwitterParser all = new StreamingTwitterParser();
+		final StreamingTwitterParser textOnly = new StreamingTwitterParser(EnumSet.noneOf(Field.class));
+		final USMFStatus reused = new USMFStatus(GeneralJSONTwitter.class);
+
+		for (final String line : lines("/org/openimaj/twitter/geo-sample.json")) {
+			final USMFStatus full = new USMFStatus(GeneralJSONTwitter.class);
+			all.parse(line, full);
+
+			textOnly.parse(line, reused);
+			assertEquals(full.id, reused.id);
+			assertEquals(full.text, reused.text);
+			assertEquals(full.analysis, reused.analysis);
+			assertEquals(full.isInvalid(), reused.isInvalid());
+			assertNull(reused.date);
+			assertNull(reused.geo);
+			assertNull(reused.user.name);
+			assertTrue(reused.links.isEmpty());
+			assertTrue(reused.keywords.isEmpty());
+			assertTrue(reused.to_users.isEmpty());
+
+			all.parse(line, reused);
+			assertEquals(toJson(full), toJson(reused));
+		}
+	}
+
+	/**
+	 * The reader should produce the same statuses as parsing line by line
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testReader() throws IOException {
+		final String resource = "/org/openimaj/twitter/json_tweets.txt";
+		final List<String> lines = lines(resource);
+
+		final USMFStatusReader reader = new USMFStatusReader(
+				StreamingTwitterParserTest.class.getResourceAsStream(resource), "UTF-8", GeneralJSONTwitter.class,
+				EnumSet.allOf(Field.class), true);
+
+		USMFStatus first = null;
+		int i = 0;
+		for (final USMFStatus status : reader) {
+			if (first == null)
+				first = status;
+			assertSame(first, status);
+			assertEquals(toJson(legacy(lines.get(i++))), toJson(status));
+		}
+		reader.close();
+
+		assertEquals(lines.size(), i);
+	}
+}